@@ -41,8 +41,12 @@ public final class ShuttlConstants {
 	public static final String ENDPOINT_BUCKET_THAW = "/bucket/thaw";
 	public static final String ENDPOINT_BUCKET_FLUSH = "/bucket/flush";
 	public static final String ENDPOINT_THAW_LIST = "/thaw/list";
+	public static final String ENDPOINT_THAW_JOBS = "/thaw/jobs";
+	public static final String ENDPOINT_THAW_PLAN = "/thaw/plan";
 	public static final String ENDPOINT_LIST_BUCKETS = "/bucket/list";
 	public static final String ENDPOINT_LIST_INDEXES = "/index/list";
+	public static final String ENDPOINT_CATALOG_REBUILD = "/catalog/rebuild";
+	public static final String ENDPOINT_GLACIER_INVENTORY_IMPORT = "/glacier/inventory/import";
 	public static final String ENDPOINT_ARCHIVER = "/archiver";
 	public static final String ENDPOINT_SHUTDOWN = "/shutdown";
 	public static final String ENDPOINT_EXPORT_SRVC_STATUS = "/exportservicestatus";
@@ -55,6 +55,18 @@ public class LocalFileSystemPaths {
 
 	final String COPY_LOCKS_NAME = "copy-locks-dir";
 
+	final String ARCHIVE_CATALOG_NAME = "archive-catalog-dir";
+
+	final String METADATA_MANIFEST_TRANSFERS_NAME = "metadata-manifest-transfers-dir";
+
+	final String METADATA_STORAGE_NAME = "metadata-storage-dir";
+
+	final String GLACIER_ARCHIVE_IDS_NAME = "glacier-archive-ids-dir";
+
+	final String THAW_ACCESS_NAME = "thaw-access-dir";
+
+	final String THAWED_BYTES_NAME = "thawed-bytes-dir";
+
 	private final String archiverDirectoryPath;
 
 	public LocalFileSystemPaths(File directory) {
@@ -111,14 +123,18 @@ public class LocalFileSystemPaths {
 	}
 
 	private File createBucketUniqueDirUnderArchiverDir(String name, Bucket bucket) {
-		File directoryUnderArchiverDir = createDirectoryUnderArchiverDir(name);
-		File indexDir = new File(directoryUnderArchiverDir, bucket.getIndex());
-		File bucketNameDir = new File(indexDir, bucket.getName());
-		File formatDir = new File(bucketNameDir, bucket.getFormat().toString());
+		File formatDir = getBucketUniqueDirUnderArchiverDir(name, bucket);
 		formatDir.mkdirs();
 		return formatDir;
 	}
 
+	private File getBucketUniqueDirUnderArchiverDir(String name, Bucket bucket) {
+		File directoryUnderArchiverDir = new File(getArchiverDirectory(), name);
+		File indexDir = new File(directoryUnderArchiverDir, bucket.getIndex());
+		File bucketNameDir = new File(indexDir, bucket.getName());
+		return new File(bucketNameDir, bucket.getFormat().toString());
+	}
+
 	/**
 	 * Contains files required when exporting a bucket to a new format. Unique
 	 * path for each bucket within a Splunk indexer.
@@ -151,6 +167,14 @@ public class LocalFileSystemPaths {
 		return createBucketUniqueDirUnderArchiverDir(THAW_TRANSFERS_NAME, bucket);
 	}
 
+	/**
+	 * Same path as {@link #getThawTransfersDirectory(Bucket)}, without creating
+	 * it.
+	 */
+	public File getThawTransfersPath(Bucket bucket) {
+		return getBucketUniqueDirUnderArchiverDir(THAW_TRANSFERS_NAME, bucket);
+	}
+
 	/**
 	 * The parent of all the thaw transfers. @see
 	 * {@link LocalFileSystemPaths#getThawTransfersDirectory(Bucket)}
@@ -175,6 +199,37 @@ public class LocalFileSystemPaths {
 				bucket);
 	}
 
+	/**
+	 * Directory for transferring the metadata manifest of an index. Will be
+	 * unique for the index.
+	 */
+	public File getMetadataManifestTransfersDirectory(String index) {
+		File dir = new File(
+				createDirectoryUnderArchiverDir(METADATA_MANIFEST_TRANSFERS_NAME),
+				index);
+		dir.mkdirs();
+		return dir;
+	}
+
+	/**
+	 * Directory for metadata storages that keep the metadata of all buckets
+	 * together, instead of in the bucket unique metadata directories.
+	 */
+	public File getMetadataStorageDirectory() {
+		return createDirectoryUnderArchiverDir(METADATA_STORAGE_NAME);
+	}
+
+	/**
+	 * Directory for the index of glacier archive ids. Will be unique for the
+	 * vault.
+	 */
+	public File getGlacierArchiveIdsDirectory(String vault) {
+		File dir = new File(
+				createDirectoryUnderArchiverDir(GLACIER_ARCHIVE_IDS_NAME), vault);
+		dir.mkdirs();
+		return dir;
+	}
+
 	public File getCopyBucketReceiptsDirectory(Bucket bucket) {
 		return createBucketUniqueDirUnderArchiverDir(COPY_RECEIPTS_NAME, bucket);
 	}
@@ -183,6 +238,28 @@ public class LocalFileSystemPaths {
 		return createBucketUniqueDirUnderArchiverDir(COPY_LOCKS_NAME, bucket);
 	}
 
+	/**
+	 * Directory for the local catalog of archived buckets.
+	 */
+	public File getArchiveCatalogDirectory() {
+		return createDirectoryUnderArchiverDir(ARCHIVE_CATALOG_NAME);
+	}
+
+	/**
+	 * Directory for the thaw and access times of thawed buckets.
+	 */
+	public File getThawAccessDirectory() {
+		return createDirectoryUnderArchiverDir(THAW_ACCESS_NAME);
+	}
+
+	/**
+	 * Directory for how much bigger the buckets of each format get when they are
+	 * thawed.
+	 */
+	public File getThawedBytesDirectory() {
+		return createDirectoryUnderArchiverDir(THAWED_BYTES_NAME);
+	}
+
 	public static LocalFileSystemPaths create() {
 		String archiverPath = getPathForArchiverData();
 		return new LocalFileSystemPaths(archiverPath);
@@ -18,18 +18,26 @@ package com.splunk.shuttl.archiver.archive;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.log4j.Logger;
 
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
 import com.splunk.shuttl.archiver.filesystem.transaction.Transaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionException;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.PutBucketStreamTransaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.PutBucketTransaction;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.WritesBucketStream;
+import com.splunk.shuttl.archiver.importexport.BucketStreamExporter;
 import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
 
 /**
  * Class for transferring buckets
@@ -43,14 +51,26 @@ public class ArchiveBucketTransferer {
 	private final PathResolver pathResolver;
 	private final ArchiveBucketSize archiveBucketSize;
 	private final TransactionExecuter transactionExecuter;
+	private final ArchiveCatalog archiveCatalog;
 
 	public ArchiveBucketTransferer(ArchiveFileSystem archive,
 			PathResolver pathResolver, ArchiveBucketSize archiveBucketSize,
 			TransactionExecuter transactionExecuter) {
+		this(archive, pathResolver, archiveBucketSize, transactionExecuter, null);
+	}
+
+	/**
+	 * @param archiveCatalog
+	 *          to add buckets to when they are committed. May be null.
+	 */
+	public ArchiveBucketTransferer(ArchiveFileSystem archive,
+			PathResolver pathResolver, ArchiveBucketSize archiveBucketSize,
+			TransactionExecuter transactionExecuter, ArchiveCatalog archiveCatalog) {
 		this.archiveFileSystem = archive;
 		this.pathResolver = pathResolver;
 		this.archiveBucketSize = archiveBucketSize;
 		this.transactionExecuter = transactionExecuter;
+		this.archiveCatalog = archiveCatalog;
 	}
 
 	/**
@@ -68,17 +88,74 @@ public class ArchiveBucketTransferer {
 				bucket, "destination", destination));
 		Transaction bucketTransaction = PutBucketTransaction.create(
 				archiveFileSystem, bucket, tempPath, destination);
-
-		// TODO: Merge the bucket transaction and the bucketsize transaction. They
-		// should be able to be run at once with
-		// transactionExecuter.execute(Transaction... transactions)
 		bucketTransaction(bucket, bucketTransaction);
-		bucketSizeTransaction(bucket);
 	}
 
+	/**
+	 * @return true if buckets can be transferred with
+	 *         {@link #streamBucketToArchive(LocalBucket, BucketFormat, BucketStreamExporter)}
+	 */
+	public boolean canStreamBuckets() {
+		return archiveFileSystem.getBucketTransferer().canPutStream();
+	}
+
+	/**
+	 * Exports the bucket with the stream exporter and transfers the exported
+	 * stream to the archive, without the exported bucket ever being stored on
+	 * the local file system. The exported bucket's size is the bytes written to
+	 * the stream, since it isn't the size of the bucket it was exported from.
+	 * 
+	 * @param bucket
+	 *          in {@link BucketFormat#SPLUNK_BUCKET} to export and transfer.
+	 * @param format
+	 *          that the stream exporter exports to.
+	 * @throws FailedToArchiveBucketException
+	 *           if bucket failed to be transfered to the archive for any reason.
+	 */
+	public void streamBucketToArchive(final LocalBucket bucket,
+			BucketFormat format, final BucketStreamExporter streamExporter) {
+		Bucket exportedBucket = new Bucket(bucket.getPath(), bucket.getIndex(),
+				bucket.getName(), format);
+		String destination = pathResolver.resolveArchivePath(exportedBucket);
+		String tempPath = pathResolver.resolveTempPathForBucket(exportedBucket);
+		logger.info(will("attempting to stream bucket to archive", "bucket",
+				exportedBucket, "destination", destination));
+
+		final AtomicLong writtenBytes = new AtomicLong();
+		Transaction bucketTransaction = PutBucketStreamTransaction.create(
+				archiveFileSystem, exportedBucket,
+				streamExporter.getExportFileName(bucket), new WritesBucketStream() {
+
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						CountingOutputStream countingOut = new CountingOutputStream(out);
+						streamExporter.exportBucket(bucket, countingOut);
+						writtenBytes.set(countingOut.getByteCount());
+					}
+				}, tempPath, destination);
+		WrittenBucketSizeTransaction sizeTransaction = new WrittenBucketSizeTransaction(
+				exportedBucket, writtenBytes);
+		executeBucketTransaction(exportedBucket, bucketTransaction,
+				sizeTransaction);
+		addToCatalog(sizeTransaction.getWrittenBucket());
+	}
+
+	/**
+	 * Executes the bucket transaction together with the bucket size transaction.
+	 * The bucket size is prepared inside the bucket's temp path, after the
+	 * bucket, so the bucket and its size are committed at once. The committed
+	 * bucket is then added to the archive catalog.
+	 */
 	private void bucketTransaction(Bucket bucket, Transaction bucketTransaction) {
+		executeBucketTransaction(bucket, bucketTransaction,
+				archiveBucketSize.getPersistBucketSizeTransaction(bucket));
+		addToCatalog(bucket);
+	}
+
+	private void executeBucketTransaction(Bucket bucket,
+			Transaction bucketTransaction, Transaction sizeTransaction) {
 		try {
-			transactionExecuter.execute(bucketTransaction);
+			transactionExecuter.execute(bucketTransaction, sizeTransaction);
 		} catch (TransactionException e) {
 			logger.error(did("Executed a bucket transaction.", e,
 					"To transfer the bucket to the archive.", "bucket", bucket));
@@ -86,8 +163,59 @@ public class ArchiveBucketTransferer {
 		}
 	}
 
-	private void bucketSizeTransaction(Bucket bucket) {
-		archiveBucketSize.persistBucketSize(bucket);
+	private void addToCatalog(Bucket bucket) {
+		if (archiveCatalog != null)
+			archiveCatalog.addArchivedBucket(bucket);
+	}
+
+	/**
+	 * Persists the size of a streamed bucket, once the bucket has been written
+	 * by the transaction prepared before it.
+	 */
+	private class WrittenBucketSizeTransaction implements Transaction {
+
+		private final Bucket bucket;
+		private final AtomicLong writtenBytes;
+		private Bucket writtenBucket;
+		private Transaction sizeTransaction;
+
+		public WrittenBucketSizeTransaction(Bucket bucket, AtomicLong writtenBytes) {
+			this.bucket = bucket;
+			this.writtenBytes = writtenBytes;
+		}
+
+		@Override
+		public void prepare() {
+			writtenBucket = new Bucket(bucket.getPath(), bucket.getIndex(),
+					bucket.getName(), bucket.getFormat(), writtenBytes.get());
+			sizeTransaction = archiveBucketSize
+					.getPersistBucketSizeTransaction(writtenBucket);
+			sizeTransaction.prepare();
+		}
+
+		@Override
+		public void commit() {
+			sizeTransaction.commit();
+		}
+
+		@Override
+		public void clean() {
+			if (sizeTransaction != null)
+				sizeTransaction.clean();
+		}
+
+		/**
+		 * @return the bucket with the bytes that were written, once prepared.
+		 */
+		public Bucket getWrittenBucket() {
+			return writtenBucket;
+		}
+
+		@Override
+		public String toString() {
+			return "WrittenBucketSizeTransaction [bucket=" + bucket
+					+ ", writtenBytes=" + writtenBytes + "]";
+		}
 	}
 
 	/**
@@ -32,6 +32,7 @@ public class ArchiveConfiguration {
 
 	private static final String ARCHIVE_DATA_DIRECTORY_NAME = "archive_data";
 	private static final String TEMPORARY_DATA_DIRECTORY_NAME = "temporary_data";
+	private static final String ARCHIVE_METADATA_DIRECTORY_NAME = "archive_metadata";
 
 	private final String localArchiverDir;
 	private final List<BucketFormat> bucketFormats;
@@ -40,12 +41,21 @@ public class ArchiveConfiguration {
 	private final List<BucketFormat> bucketFormatPriority;
 	private final String tempPath;
 	private final String archivePath;
+	private final String metadataPath;
 	private final String backendName;
+	private final Integer formatCopyConcurrency;
+	private final Integer fileTransferStreams;
+	private final Integer listingConcurrency;
+	private final Integer thawConcurrency;
+	private final Integer thawConcurrencyPerVolume;
 
 	ArchiveConfiguration(String localArchiverDir,
 			List<BucketFormat> bucketFormats, String clusterName, String serverName,
 			List<BucketFormat> bucketFormatPriority, String tempPath,
-			String archivePath, String backendName) {
+			String archivePath, String metadataPath, String backendName,
+			Integer formatCopyConcurrency, Integer fileTransferStreams,
+			Integer listingConcurrency, Integer thawConcurrency,
+			Integer thawConcurrencyPerVolume) {
 		this.localArchiverDir = localArchiverDir;
 		this.bucketFormats = bucketFormats;
 		this.clusterName = clusterName;
@@ -53,7 +63,13 @@ public class ArchiveConfiguration {
 		this.bucketFormatPriority = bucketFormatPriority;
 		this.tempPath = tempPath;
 		this.archivePath = archivePath;
+		this.metadataPath = metadataPath;
 		this.backendName = backendName;
+		this.formatCopyConcurrency = formatCopyConcurrency;
+		this.fileTransferStreams = fileTransferStreams;
+		this.listingConcurrency = listingConcurrency;
+		this.thawConcurrency = thawConcurrency;
+		this.thawConcurrencyPerVolume = thawConcurrencyPerVolume;
 	}
 
 	/**
@@ -105,20 +121,50 @@ public class ArchiveConfiguration {
 		List<BucketFormat> bucketFormatPriority = createFormatPriorityList(mBean);
 		return createSafeConfiguration(mBean.getLocalArchiverDir(), archivePath,
 				bucketFormats, clusterName, serverName, bucketFormatPriority,
-				backendName);
+				backendName, mBean.getFormatCopyConcurrency(),
+				mBean.getFileTransferStreams(), mBean.getListingConcurrency(),
+				mBean.getThawConcurrency(), mBean.getThawConcurrencyPerVolume());
 	}
 
 	public static ArchiveConfiguration createSafeConfiguration(
 			String localArchiverDir, String archivePath,
 			List<BucketFormat> bucketFormats, String clusterName, String serverName,
 			List<BucketFormat> bucketFormatPriority, String backendName) {
+		return createSafeConfiguration(localArchiverDir, archivePath,
+				bucketFormats, clusterName, serverName, bucketFormatPriority,
+				backendName, null, null, null);
+	}
+
+	public static ArchiveConfiguration createSafeConfiguration(
+			String localArchiverDir, String archivePath,
+			List<BucketFormat> bucketFormats, String clusterName, String serverName,
+			List<BucketFormat> bucketFormatPriority, String backendName,
+			Integer formatCopyConcurrency, Integer fileTransferStreams,
+			Integer listingConcurrency) {
+		return createSafeConfiguration(localArchiverDir, archivePath,
+				bucketFormats, clusterName, serverName, bucketFormatPriority,
+				backendName, formatCopyConcurrency, fileTransferStreams,
+				listingConcurrency, null, null);
+	}
+
+	public static ArchiveConfiguration createSafeConfiguration(
+			String localArchiverDir, String archivePath,
+			List<BucketFormat> bucketFormats, String clusterName, String serverName,
+			List<BucketFormat> bucketFormatPriority, String backendName,
+			Integer formatCopyConcurrency, Integer fileTransferStreams,
+			Integer listingConcurrency, Integer thawConcurrency,
+			Integer thawConcurrencyPerVolume) {
 		String archiveDataPath = getChildToArchivingRoot(archivePath,
 				ARCHIVE_DATA_DIRECTORY_NAME);
 		String archiveTempPath = getChildToArchivingRoot(archivePath,
 				TEMPORARY_DATA_DIRECTORY_NAME) + "/" + serverName;
+		String archiveMetadataPath = getChildToArchivingRoot(archivePath,
+				ARCHIVE_METADATA_DIRECTORY_NAME);
 		return new ArchiveConfiguration(localArchiverDir, bucketFormats,
 				clusterName, serverName, bucketFormatPriority, archiveTempPath,
-				archiveDataPath, backendName);
+				archiveDataPath, archiveMetadataPath, backendName,
+				formatCopyConcurrency, fileTransferStreams, listingConcurrency,
+				thawConcurrency, thawConcurrencyPerVolume);
 	}
 
 	private static List<BucketFormat> bucketFormatsFromMBean(
@@ -160,7 +206,8 @@ public class ArchiveConfiguration {
 	public ArchiveConfiguration newConfigWithServerName(String serverName) {
 		return new ArchiveConfiguration(localArchiverDir, bucketFormats,
 				clusterName, serverName, bucketFormatPriority, tempPath, archivePath,
-				backendName);
+				metadataPath, backendName, formatCopyConcurrency, fileTransferStreams,
+				listingConcurrency, thawConcurrency, thawConcurrencyPerVolume);
 	}
 
 	/**
@@ -193,6 +240,14 @@ public class ArchiveConfiguration {
 		return archivePath;
 	}
 
+	/**
+	 * @return path where the per index metadata manifests are stored on the
+	 *         archiving file system.
+	 */
+	public String getArchiveMetadataPath() {
+		return metadataPath;
+	}
+
 	/**
 	 * @return backend name to archive data to.
 	 */
@@ -200,4 +255,47 @@ public class ArchiveConfiguration {
 		return backendName;
 	}
 
+	/**
+	 * @return max number of buckets that can be copied concurrently in the same
+	 *         format, when copying the formats of a bucket concurrently. null if
+	 *         the formats should be copied one at a time.
+	 */
+	public Integer getFormatCopyConcurrency() {
+		return formatCopyConcurrency;
+	}
+
+	/**
+	 * @return number of streams that a bucket's files are transferred over, to
+	 *         and from the archive. null if a bucket should be transferred with a
+	 *         single stream.
+	 */
+	public Integer getFileTransferStreams() {
+		return fileTransferStreams;
+	}
+
+	/**
+	 * @return max number of list calls that can be made to the archive at the
+	 *         same time, when listing indexes, buckets and formats. null if the
+	 *         archive should be listed one call at a time.
+	 */
+	public Integer getListingConcurrency() {
+		return listingConcurrency;
+	}
+
+	/**
+	 * @return max number of buckets that are thawed at the same time. null if
+	 *         the backend's default should be used.
+	 */
+	public Integer getThawConcurrency() {
+		return thawConcurrency;
+	}
+
+	/**
+	 * @return max number of buckets that are thawed to the same thaw directory
+	 *         at the same time. null if the default should be used.
+	 */
+	public Integer getThawConcurrencyPerVolume() {
+		return thawConcurrencyPerVolume;
+	}
+
 }
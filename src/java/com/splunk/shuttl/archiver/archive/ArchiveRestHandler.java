@@ -111,6 +111,7 @@ public class ArchiveRestHandler implements SharedLockBucketHandler {
 			HttpResponse response, Bucket bucket) throws HttpResponseException {
 		switch (response.getStatusLine().getStatusCode()) {
 		case HttpStatus.SC_OK:
+		case HttpStatus.SC_ACCEPTED:
 		case HttpStatus.SC_NO_CONTENT:
 			logSuccess(response, bucket, response.getStatusLine().getStatusCode());
 			break;
@@ -142,7 +143,7 @@ public class ArchiveRestHandler implements SharedLockBucketHandler {
 
 	private void logHttpResponseException(Bucket bucket, HttpResponseException e) {
 		logger.error(did("Sent an archive bucket reuqest",
-				"Got non ok http_status", "expected HttpStatus.SC_OK or SC_NO_CONTENT",
+				"Got non ok http_status", "expected HttpStatus.SC_OK, SC_ACCEPTED or SC_NO_CONTENT",
 				"http_status", e.getStatusCode(), "bucket_name", bucket.getName()));
 	}
 
@@ -17,15 +17,21 @@ package com.splunk.shuttl.archiver.archive;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.importexport.BucketExportController;
+import com.splunk.shuttl.archiver.importexport.BucketStreamExporter;
 import com.splunk.shuttl.archiver.model.LocalBucket;
 
 /**
- * Copies a bucket in all formats with the {@link ArchiveBucketTransferer}.
+ * Copies a bucket in all formats with the {@link ArchiveBucketTransferer}. The
+ * formats are copied one at a time, unless there's a {@link FormatCopyExecutor}
+ * to copy them concurrently.
  */
 public class BucketCopier implements BucketShuttler {
 
@@ -35,20 +41,39 @@ public class BucketCopier implements BucketShuttler {
 	private final ArchiveBucketTransferer archiveBucketTransferer;
 	private final List<BucketFormat> bucketFormats;
 	private final BucketDeleter bucketDeleter;
+	private final FormatCopyExecutor formatCopyExecutor;
 
 	public BucketCopier(BucketExportController bucketExportController,
 			ArchiveBucketTransferer archiveBucketTransferer,
 			List<BucketFormat> bucketFormats, BucketDeleter bucketDeleter) {
+		this(bucketExportController, archiveBucketTransferer, bucketFormats,
+				bucketDeleter, null);
+	}
+
+	/**
+	 * @param formatCopyExecutor
+	 *          for copying the formats concurrently, or null for copying them
+	 *          one at a time.
+	 */
+	public BucketCopier(BucketExportController bucketExportController,
+			ArchiveBucketTransferer archiveBucketTransferer,
+			List<BucketFormat> bucketFormats, BucketDeleter bucketDeleter,
+			FormatCopyExecutor formatCopyExecutor) {
 		this.bucketExportController = bucketExportController;
 		this.archiveBucketTransferer = archiveBucketTransferer;
 		this.bucketFormats = bucketFormats;
 		this.bucketDeleter = bucketDeleter;
+		this.formatCopyExecutor = formatCopyExecutor;
 	}
 
 	public void copyBucket(LocalBucket bucket) {
-		List<RuntimeException> copyExceptions = new ArrayList<RuntimeException>();
-		for (BucketFormat format : bucketFormats)
-			if (!archiveBucketTransferer.isArchived(bucket, format))
+		List<RuntimeException> copyExceptions = Collections
+				.synchronizedList(new ArrayList<RuntimeException>());
+		List<BucketFormat> formatsToCopy = getFormatsNotYetArchived(bucket);
+		if (formatCopyExecutor != null && formatsToCopy.size() > 1)
+			copyFormatsConcurrently(bucket, formatsToCopy, copyExceptions);
+		else
+			for (BucketFormat format : formatsToCopy)
 				exportBucketThenCopy(bucket, format, copyExceptions);
 
 		if (!copyExceptions.isEmpty())
@@ -56,8 +81,58 @@ public class BucketCopier implements BucketShuttler {
 					+ copyExceptions.toString());
 	}
 
+	private List<BucketFormat> getFormatsNotYetArchived(LocalBucket bucket) {
+		List<BucketFormat> formatsToCopy = new ArrayList<BucketFormat>();
+		for (BucketFormat format : bucketFormats)
+			if (!archiveBucketTransferer.isArchived(bucket, format))
+				formatsToCopy.add(format);
+		return formatsToCopy;
+	}
+
+	private void copyFormatsConcurrently(final LocalBucket bucket,
+			List<BucketFormat> formatsToCopy,
+			final List<RuntimeException> copyExceptions) {
+		Map<BucketFormat, Runnable> copies = new LinkedHashMap<BucketFormat, Runnable>();
+		for (final BucketFormat format : formatsToCopy)
+			copies.put(format, new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						exportBucketThenCopy(bucket, format, copyExceptions);
+					} catch (RuntimeException e) {
+						logException(bucket, e);
+						copyExceptions.add(e);
+					}
+				}
+			});
+		formatCopyExecutor.copyConcurrently(copies);
+	}
+
 	private void exportBucketThenCopy(LocalBucket bucket, BucketFormat format,
 			List<RuntimeException> copyExceptions) {
+		BucketStreamExporter streamExporter = bucketExportController
+				.getStreamExporter(bucket, format);
+		if (streamExporter != null && archiveBucketTransferer.canStreamBuckets())
+			streamBucket(bucket, format, streamExporter, copyExceptions);
+		else
+			exportBucketToLocalFileSystemThenCopy(bucket, format, copyExceptions);
+	}
+
+	private void streamBucket(LocalBucket bucket, BucketFormat format,
+			BucketStreamExporter streamExporter,
+			List<RuntimeException> copyExceptions) {
+		try {
+			archiveBucketTransferer.streamBucketToArchive(bucket, format,
+					streamExporter);
+		} catch (RuntimeException e) {
+			logException(bucket, e);
+			copyExceptions.add(e);
+		}
+	}
+
+	private void exportBucketToLocalFileSystemThenCopy(LocalBucket bucket,
+			BucketFormat format, List<RuntimeException> copyExceptions) {
 		LocalBucket exportedBucket = bucketExportController.exportBucket(bucket,
 				format);
 		try {
@@ -16,7 +16,12 @@
 package com.splunk.shuttl.archiver.archive;
 
 public enum BucketFormat {
-	SPLUNK_BUCKET, UNKNOWN, CSV, SPLUNK_BUCKET_TGZ;
+	SPLUNK_BUCKET, UNKNOWN, CSV, SPLUNK_BUCKET_TGZ,
+	/**
+	 * Splunk bucket with only the rawdata journal and the small metadata files.
+	 * The index files are rebuilt by Splunk when it's thawed.
+	 */
+	SPLUNK_BUCKET_RAWDATA;
 
 	public static String extensionOfFormat(BucketFormat format) {
 		if (format.equals(CSV))
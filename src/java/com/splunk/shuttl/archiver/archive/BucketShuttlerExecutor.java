@@ -0,0 +1,432 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceNotFoundException;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.JobClassQueue.ClassifiedJob;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiver;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiverMBean;
+import com.splunk.shuttl.server.mbeans.util.RegistersMBeans;
+
+/**
+ * Server wide executor that runs {@link BucketShuttlerRunner}s and thaws on a
+ * fixed number of workers, with a bounded queue of jobs waiting for a worker.
+ * Jobs are rejected with a {@link RejectedExecutionException} when the queue is
+ * full, instead of piling up buckets in memory.<br/>
+ * <br/>
+ * Waiting jobs are started in the priority order of their {@link JobClass},
+ * where each class still gets its reserved minimum share. See
+ * {@link JobClassQueue}. The time that jobs wait in the queue and the time
+ * they run are measured per class.
+ */
+public class BucketShuttlerExecutor implements BucketShuttlerExecutorMBean {
+
+	private static final Logger logger = Logger
+			.getLogger(BucketShuttlerExecutor.class);
+
+	public static final int DEFAULT_WORKER_COUNT = 4;
+	public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+	private final ThreadPoolExecutor executor;
+	private final int queueCapacity;
+	private final AtomicLong submittedJobs = new AtomicLong();
+	private final AtomicLong rejectedJobs = new AtomicLong();
+	private final JobClassQueue queue;
+	private final Map<JobClass, JobTimes> jobTimes;
+
+	/**
+	 * @param queueCapacity
+	 *          max number of jobs that can wait for a worker, in each
+	 *          {@link JobClass}.
+	 */
+	public BucketShuttlerExecutor(int workerCount, int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+		this.queue = new JobClassQueue(queueCapacity);
+		this.executor = new ThreadPoolExecutor(workerCount, workerCount, 0L,
+				TimeUnit.MILLISECONDS, queue, new ShuttlerThreadFactory(),
+				new CountsRejectedJobs());
+		this.jobTimes = new EnumMap<JobClass, JobTimes>(JobClass.class);
+		for (JobClass jobClass : JobClass.values())
+			jobTimes.put(jobClass, new JobTimes());
+	}
+
+	/**
+	 * Queues the runner to be executed by a worker, as an
+	 * {@link JobClass#ARCHIVE} job.
+	 * 
+	 * @return job id of the queued runner.
+	 * @throws RejectedExecutionException
+	 *           if the queue is full.
+	 */
+	public String submit(BucketShuttlerRunner runner) {
+		return submit(JobClass.ARCHIVE, runner);
+	}
+
+	/**
+	 * Queues the job to be executed by a worker, in the job class.
+	 * 
+	 * @return job id of the queued job.
+	 * @throws RejectedExecutionException
+	 *           if the queue of the job class is full.
+	 */
+	public String submit(JobClass jobClass, Runnable job) {
+		return execute(jobClass, job).jobId;
+	}
+
+	private ShuttlerJob execute(JobClass jobClass, Runnable job) {
+		ShuttlerJob shuttlerJob = new ShuttlerJob(UUID.randomUUID().toString(),
+				jobClass, job, jobTimes.get(jobClass));
+		executor.execute(shuttlerJob);
+		submittedJobs.incrementAndGet();
+		return shuttlerJob;
+	}
+
+	/**
+	 * Queues the job in the job class and waits for a worker to run it. For
+	 * interactive jobs, whose caller needs the result.
+	 * 
+	 * @return the result of the job.
+	 * @throws RejectedExecutionException
+	 *           if the queue of the job class is full.
+	 * @throws ExecutionException
+	 *           if the job threw an exception.
+	 */
+	public <T> T submitAndWait(JobClass jobClass, Callable<T> job)
+			throws InterruptedException, ExecutionException {
+		FutureTask<T> task = new FutureTask<T>(job);
+		submit(jobClass, task);
+		return task.get();
+	}
+
+	/**
+	 * Queues the job in the job class and waits for it, unless no worker starts
+	 * it within the start timeout, in which case the job is taken off the queue
+	 * and never run. So that the caller isn't held for as long as every worker
+	 * is busy.
+	 * 
+	 * @return the result of the job.
+	 * @throws RejectedExecutionException
+	 *           if the queue of the job class is full.
+	 * @throws TimeoutException
+	 *           if no worker started the job within the start timeout.
+	 * @throws ExecutionException
+	 *           if the job threw an exception.
+	 */
+	public <T> T submitAndWait(JobClass jobClass, Callable<T> job,
+			long startTimeout, TimeUnit unit) throws InterruptedException,
+			ExecutionException, TimeoutException {
+		final CountDownLatch started = new CountDownLatch(1);
+		FutureTask<T> task = new FutureTask<T>(job) {
+
+			@Override
+			public void run() {
+				started.countDown();
+				super.run();
+			}
+		};
+		ShuttlerJob shuttlerJob = execute(jobClass, task);
+		if (!started.await(startTimeout, unit) && executor.remove(shuttlerJob))
+			throw new TimeoutException("No worker started job " + shuttlerJob
+					+ " within " + startTimeout + " " + unit);
+		return task.get();
+	}
+
+	/**
+	 * Stops accepting jobs and lets the queued jobs finish.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @return true if the executor terminated before the timeout.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public int getWorkerCount() {
+		return executor.getMaximumPoolSize();
+	}
+
+	@Override
+	public int getActiveWorkers() {
+		return executor.getActiveCount();
+	}
+
+	@Override
+	public double getWorkerUtilization() {
+		return (double) getActiveWorkers() / getWorkerCount();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	@Override
+	public long getSubmittedJobs() {
+		return submittedJobs.get();
+	}
+
+	@Override
+	public long getCompletedJobs() {
+		return executor.getCompletedTaskCount();
+	}
+
+	@Override
+	public long getRejectedJobs() {
+		return rejectedJobs.get();
+	}
+
+	/**
+	 * @return number of jobs of the class waiting for a worker.
+	 */
+	public int getQueueDepth(JobClass jobClass) {
+		return queue.size(jobClass);
+	}
+
+	/**
+	 * @return number of jobs of the class that have finished.
+	 */
+	public long getCompletedJobs(JobClass jobClass) {
+		return jobTimes.get(jobClass).getCompletedJobs();
+	}
+
+	/**
+	 * @return average milliseconds that finished jobs of the class waited for a
+	 *         worker.
+	 */
+	public long getAverageWaitMillis(JobClass jobClass) {
+		return jobTimes.get(jobClass).getAverageWaitMillis();
+	}
+
+	/**
+	 * @return average milliseconds that finished jobs of the class ran.
+	 */
+	public long getAverageServiceMillis(JobClass jobClass) {
+		return jobTimes.get(jobClass).getAverageServiceMillis();
+	}
+
+	@Override
+	public int getThawQueueDepth() {
+		return getQueueDepth(JobClass.THAW);
+	}
+
+	@Override
+	public long getThawAverageWaitMillis() {
+		return getAverageWaitMillis(JobClass.THAW);
+	}
+
+	@Override
+	public long getThawAverageServiceMillis() {
+		return getAverageServiceMillis(JobClass.THAW);
+	}
+
+	@Override
+	public int getArchiveQueueDepth() {
+		return getQueueDepth(JobClass.ARCHIVE);
+	}
+
+	@Override
+	public long getArchiveAverageWaitMillis() {
+		return getAverageWaitMillis(JobClass.ARCHIVE);
+	}
+
+	@Override
+	public long getArchiveAverageServiceMillis() {
+		return getAverageServiceMillis(JobClass.ARCHIVE);
+	}
+
+	@Override
+	public int getColdCopyQueueDepth() {
+		return getQueueDepth(JobClass.COLD_COPY);
+	}
+
+	@Override
+	public long getColdCopyAverageWaitMillis() {
+		return getAverageWaitMillis(JobClass.COLD_COPY);
+	}
+
+	@Override
+	public long getColdCopyAverageServiceMillis() {
+		return getAverageServiceMillis(JobClass.COLD_COPY);
+	}
+
+	private class CountsRejectedJobs implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			rejectedJobs.incrementAndGet();
+			logger.warn(warn("Queued job for shuttling bucket",
+					"queue was full or executor was shut down", "rejecting the job",
+					"job", r, "queue_depth", getQueueDepth(), "queue_capacity",
+					queueCapacity));
+			throw new RejectedExecutionException("Could not queue job: " + r);
+		}
+	}
+
+	private static class ShuttlerJob implements ClassifiedJob {
+
+		private final String jobId;
+		private final JobClass jobClass;
+		private final Runnable job;
+		private final JobTimes jobTimes;
+		private final long queuedAt;
+
+		public ShuttlerJob(String jobId, JobClass jobClass, Runnable job,
+				JobTimes jobTimes) {
+			this.jobId = jobId;
+			this.jobClass = jobClass;
+			this.job = job;
+			this.jobTimes = jobTimes;
+			this.queuedAt = System.nanoTime();
+		}
+
+		@Override
+		public JobClass getJobClass() {
+			return jobClass;
+		}
+
+		@Override
+		public void run() {
+			long startedAt = System.nanoTime();
+			try {
+				logger.debug(will("Run shuttler job", "job_id", jobId, "job_class",
+						jobClass));
+				job.run();
+				logger.debug(done("Running shuttler job", "job_id", jobId));
+			} catch (Throwable e) {
+				logger.error(did("Ran shuttler job", e, "to shuttl the bucket",
+						"job_id", jobId));
+			} finally {
+				jobTimes.add(startedAt - queuedAt, System.nanoTime() - startedAt);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return jobId;
+		}
+	}
+
+	private static class JobTimes {
+
+		private final AtomicLong completedJobs = new AtomicLong();
+		private final AtomicLong waitNanos = new AtomicLong();
+		private final AtomicLong serviceNanos = new AtomicLong();
+
+		public void add(long waited, long serviced) {
+			waitNanos.addAndGet(waited);
+			serviceNanos.addAndGet(serviced);
+			completedJobs.incrementAndGet();
+		}
+
+		public long getCompletedJobs() {
+			return completedJobs.get();
+		}
+
+		public long getAverageWaitMillis() {
+			return averageMillis(waitNanos.get());
+		}
+
+		public long getAverageServiceMillis() {
+			return averageMillis(serviceNanos.get());
+		}
+
+		private long averageMillis(long totalNanos) {
+			long completed = completedJobs.get();
+			return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos
+					/ completed);
+		}
+	}
+
+	private static class ShuttlerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			return new Thread(r, "shuttl-bucket-shuttler-"
+					+ threadNumber.incrementAndGet());
+		}
+	}
+
+	private static BucketShuttlerExecutor sharedInstance;
+
+	/**
+	 * @return the server wide executor, configured with the
+	 *         {@link ShuttlArchiverMBean} and registered as an MBean.
+	 */
+	public static synchronized BucketShuttlerExecutor getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = createWithMBean(getArchiverMBean());
+			RegistersMBeans.create().registerMBean(OBJECT_NAME, sharedInstance);
+		}
+		return sharedInstance;
+	}
+
+	private static ShuttlArchiverMBean getArchiverMBean() {
+		try {
+			return ShuttlArchiver.getMBeanProxy();
+		} catch (InstanceNotFoundException e) {
+			logger.error(did("Tried getting a ShuttlArchiverMBean", e,
+					"An instance to be registered to the MBean."));
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return executor with worker count and queue capacity from the mBean, or
+	 *         defaults if they are not configured.
+	 */
+	public static BucketShuttlerExecutor createWithMBean(ShuttlArchiverMBean mBean) {
+		return new BucketShuttlerExecutor(valueOrDefault(
+				mBean.getArchivingThreads(), DEFAULT_WORKER_COUNT), valueOrDefault(
+				mBean.getArchivingQueueSize(), DEFAULT_QUEUE_CAPACITY));
+	}
+
+	private static int valueOrDefault(Integer value, int defaultValue) {
+		return value == null || value < 1 ? defaultValue : value;
+	}
+}
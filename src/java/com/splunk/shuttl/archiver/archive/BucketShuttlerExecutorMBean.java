@@ -0,0 +1,110 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+/**
+ * JMX view of the {@link BucketShuttlerExecutor}, for monitoring how the
+ * archiving and copying of buckets keeps up with the buckets being frozen, and
+ * how long thaws wait behind them.
+ */
+public interface BucketShuttlerExecutorMBean {
+
+	public static final String OBJECT_NAME = "com.splunk.shuttl.mbeans:type=ArchivingExecutor";
+
+	/**
+	 * @return number of worker threads shuttling buckets.
+	 */
+	public int getWorkerCount();
+
+	/**
+	 * @return number of workers that are currently shuttling a bucket.
+	 */
+	public int getActiveWorkers();
+
+	/**
+	 * @return active workers divided by the worker count, between 0.0 and 1.0.
+	 */
+	public double getWorkerUtilization();
+
+	/**
+	 * @return number of jobs waiting for a worker.
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * @return max number of jobs that can wait for a worker, in each job class.
+	 */
+	public int getQueueCapacity();
+
+	/**
+	 * @return number of jobs that were accepted to the queue.
+	 */
+	public long getSubmittedJobs();
+
+	/**
+	 * @return number of jobs that have finished, successfully or not.
+	 */
+	public long getCompletedJobs();
+
+	/**
+	 * @return number of jobs that were rejected because the queue was full.
+	 */
+	public long getRejectedJobs();
+
+	/**
+	 * @return number of thaw jobs waiting for a worker.
+	 */
+	public int getThawQueueDepth();
+
+	/**
+	 * @return average milliseconds that thaw jobs waited for a worker.
+	 */
+	public long getThawAverageWaitMillis();
+
+	/**
+	 * @return average milliseconds that thaw jobs ran.
+	 */
+	public long getThawAverageServiceMillis();
+
+	/**
+	 * @return number of archive jobs waiting for a worker.
+	 */
+	public int getArchiveQueueDepth();
+
+	/**
+	 * @return average milliseconds that archive jobs waited for a worker.
+	 */
+	public long getArchiveAverageWaitMillis();
+
+	/**
+	 * @return average milliseconds that archive jobs ran.
+	 */
+	public long getArchiveAverageServiceMillis();
+
+	/**
+	 * @return number of cold copy jobs waiting for a worker.
+	 */
+	public int getColdCopyQueueDepth();
+
+	/**
+	 * @return average milliseconds that cold copy jobs waited for a worker.
+	 */
+	public long getColdCopyAverageWaitMillis();
+
+	/**
+	 * @return average milliseconds that cold copy jobs ran.
+	 */
+	public long getColdCopyAverageServiceMillis();
+}
@@ -17,14 +17,18 @@ package com.splunk.shuttl.archiver.archive;
 import java.util.List;
 
 import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferBudget;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
 import com.splunk.shuttl.archiver.importexport.BucketExportController;
 import com.splunk.shuttl.archiver.importexport.csv.BucketToCsvFileExporter;
 import com.splunk.shuttl.archiver.importexport.csv.CsvExporter;
+import com.splunk.shuttl.archiver.importexport.rawdata.RawdataExporter;
 import com.splunk.shuttl.archiver.importexport.tgz.CreatesBucketTgz;
+import com.splunk.shuttl.archiver.importexport.tgz.StreamingTgzExporter;
 import com.splunk.shuttl.archiver.importexport.tgz.TgzFormatExporter;
 import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
 
@@ -44,15 +48,15 @@ public class BucketShuttlerFactory {
 
 	public static BucketCopier createCopierWithConfig(ArchiveConfiguration config) {
 		BucketCopierDependencies deps = getDependencies(config,
-				ArchiveFileSystemFactory.getWithConfiguration(config),
-				LocalFileSystemPaths.create(config));
+				ArchiveFileSystemFactory.getWithConfigurationAndTransferBudget(config,
+						TransferBudget.COLD_COPY), LocalFileSystemPaths.create(config));
 		return newCopierWithDependencies(deps);
 	}
 
 	private static BucketCopier newCopierWithDependencies(
 			BucketCopierDependencies deps) {
 		return new BucketCopier(deps.exporter, deps.transferer, deps.formats,
-				deps.deleter);
+				deps.deleter, deps.formatCopyExecutor);
 	}
 
 	/**
@@ -65,7 +69,7 @@ public class BucketShuttlerFactory {
 	public static BucketArchiver createWithConfAndLocalPaths(
 			ArchiveConfiguration config, LocalFileSystemPaths localFileSystemPaths) {
 		ArchiveFileSystem archiveFileSystem = ArchiveFileSystemFactory
-				.getWithConfiguration(config);
+				.getWithConfigurationAndTransferBudget(config, TransferBudget.ARCHIVE);
 		return createWithConfFileSystemAndLocalPaths(config, archiveFileSystem,
 				localFileSystemPaths);
 	}
@@ -102,33 +106,48 @@ public class BucketShuttlerFactory {
 				.create(CreatesBucketTgz.create(localFileSystemPaths));
 
 		BucketExportController bucketExportController = BucketExportController
-				.create(CsvExporter.create(bucketToCsvFileExporter), tgzFormatExporter);
+				.create(CsvExporter.create(bucketToCsvFileExporter), tgzFormatExporter,
+						new StreamingTgzExporter(),
+						RawdataExporter.create(localFileSystemPaths));
 		ArchiveBucketTransferer bucketTransferer = new ArchiveBucketTransferer(
 				archiveFileSystem, pathResolver, archiveBucketSize,
-				new TransactionExecuter());
+				new TransactionExecuter(),
+				ArchiveCatalog.create(localFileSystemPaths));
 		BucketDeleter bucketDeleter = BucketDeleter.create();
 		List<BucketFormat> archiveFormats = config.getArchiveFormats();
 
 		BucketCopierDependencies deps = new BucketCopierDependencies(
-				bucketExportController, bucketTransferer, bucketDeleter, archiveFormats);
+				bucketExportController, bucketTransferer, bucketDeleter,
+				archiveFormats, getFormatCopyExecutor(config));
 		return deps;
 	}
 
+	private static FormatCopyExecutor getFormatCopyExecutor(
+			ArchiveConfiguration config) {
+		Integer formatCopyConcurrency = config.getFormatCopyConcurrency();
+		if (formatCopyConcurrency == null || formatCopyConcurrency < 1)
+			return null;
+		else
+			return FormatCopyExecutor.getSharedInstance(formatCopyConcurrency);
+	}
+
 	private static class BucketCopierDependencies {
 
 		public BucketExportController exporter;
 		public ArchiveBucketTransferer transferer;
 		public BucketDeleter deleter;
 		public List<BucketFormat> formats;
+		public FormatCopyExecutor formatCopyExecutor;
 
 		public BucketCopierDependencies(
 				BucketExportController bucketExportController,
 				ArchiveBucketTransferer bucketTransferer, BucketDeleter bucketDeleter,
-				List<BucketFormat> archiveFormats) {
+				List<BucketFormat> archiveFormats, FormatCopyExecutor formatCopyExecutor) {
 			this.exporter = bucketExportController;
 			this.transferer = bucketTransferer;
 			this.deleter = bucketDeleter;
 			this.formats = archiveFormats;
+			this.formatCopyExecutor = formatCopyExecutor;
 		}
 
 	}
@@ -0,0 +1,175 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the copying of a bucket's formats concurrently. The number of buckets
+ * that are copied in the same format at the same time is limited per format,
+ * so that for example csv exports, which are CPU heavy, don't starve each
+ * other.
+ */
+public class FormatCopyExecutor {
+
+	private final ExecutorService executor;
+	private final int permitsPerFormat;
+	private final ConcurrentMap<BucketFormat, Semaphore> formatPermits;
+
+	public FormatCopyExecutor(ExecutorService executor, int permitsPerFormat) {
+		this.executor = executor;
+		this.permitsPerFormat = permitsPerFormat;
+		this.formatPermits = new ConcurrentHashMap<BucketFormat, Semaphore>();
+	}
+
+	/**
+	 * Runs all the copies concurrently and returns when all of them are done.
+	 * A copy's format permit is taken before the copy is submitted, so that
+	 * copies waiting for a permit don't hold threads. A copy that can't be
+	 * submitted, because the executor has been shut down, runs in the calling
+	 * thread. The copies are expected to handle their own exceptions.
+	 */
+	public void copyConcurrently(Map<BucketFormat, Runnable> copies) {
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (Entry<BucketFormat, Runnable> copy : copies.entrySet()) {
+			Semaphore permits = getPermits(copy.getKey());
+			acquire(permits);
+			PermittedCopy permittedCopy = new PermittedCopy(permits, copy.getValue());
+			try {
+				futures.add(executor.submit(permittedCopy));
+			} catch (RejectedExecutionException e) {
+				permittedCopy.run();
+			}
+		}
+		waitForAll(futures);
+	}
+
+	private void acquire(Semaphore permits) {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Semaphore getPermits(BucketFormat format) {
+		Semaphore permits = formatPermits.get(format);
+		if (permits == null) {
+			formatPermits.putIfAbsent(format, new Semaphore(permitsPerFormat, true));
+			permits = formatPermits.get(format);
+		}
+		return permits;
+	}
+
+	private void waitForAll(List<Future<?>> futures) {
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	public int getPermitsPerFormat() {
+		return permitsPerFormat;
+	}
+
+	/**
+	 * Stops taking new copies. Copies that are already submitted finish, and
+	 * later copies run in the calling thread.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static class PermittedCopy implements Runnable {
+
+		private final Semaphore permits;
+		private final Runnable copy;
+
+		public PermittedCopy(Semaphore permits, Runnable copy) {
+			this.permits = permits;
+			this.copy = copy;
+		}
+
+		/**
+		 * Releases the permit, which has been taken before the copy was
+		 * submitted.
+		 */
+		@Override
+		public void run() {
+			try {
+				copy.run();
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	private static class FormatCopyThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "shuttl-format-copier-"
+					+ threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static FormatCopyExecutor sharedInstance;
+
+	/**
+	 * The format permits have to be shared between all the copiers for the
+	 * limit to mean anything, since there is one copier per bucket.
+	 * 
+	 * When the permits per format change, the previous executor is shut down
+	 * and lets its running copies finish.
+	 * 
+	 * @return executor shared by all the copiers in this JVM.
+	 */
+	public static synchronized FormatCopyExecutor getSharedInstance(
+			int permitsPerFormat) {
+		if (sharedInstance == null
+				|| sharedInstance.getPermitsPerFormat() != permitsPerFormat) {
+			if (sharedInstance != null)
+				sharedInstance.shutdown();
+			sharedInstance = new FormatCopyExecutor(
+					Executors.newCachedThreadPool(new FormatCopyThreadFactory()),
+					permitsPerFormat);
+		}
+		return sharedInstance;
+	}
+}
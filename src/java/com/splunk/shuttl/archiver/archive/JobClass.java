@@ -0,0 +1,48 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+/**
+ * Kinds of jobs that the {@link BucketShuttlerExecutor} runs, in order of
+ * priority. Interactive thaws go first, then freezes, since Splunk is waiting
+ * to delete the frozen buckets, and background cold copies last.<br/>
+ * <br/>
+ * Each class has a reserved minimum share of the jobs that are started while
+ * it has jobs waiting, so that a steady stream of higher priority jobs can't
+ * starve it.
+ */
+public enum JobClass {
+
+	THAW(1000), ARCHIVE(250), COLD_COPY(100);
+
+	/**
+	 * Share that is all of the started jobs.
+	 */
+	static final int FULL_SHARE = 1000;
+
+	private final int minimumShare;
+
+	private JobClass(int minimumShare) {
+		this.minimumShare = minimumShare;
+	}
+
+	/**
+	 * @return reserved share of the started jobs, in parts of
+	 *         {@value #FULL_SHARE}.
+	 */
+	public int getMinimumShare() {
+		return minimumShare;
+	}
+}
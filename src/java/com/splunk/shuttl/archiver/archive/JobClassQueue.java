@@ -0,0 +1,322 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Work queue with one bounded queue per {@link JobClass}. Jobs are taken from
+ * the class with the highest priority, except when a class with waiting jobs
+ * has gone without its reserved minimum share. Every time a job is taken, the
+ * other waiting classes earn credit by their share, and a class with a full
+ * share of credit goes first.<br/>
+ * <br/>
+ * Jobs that are not a {@link ClassifiedJob} are queued as
+ * {@link JobClass#ARCHIVE}. Blocking puts wait for room in the queue of their
+ * job's class.
+ */
+public class JobClassQueue extends AbstractQueue<Runnable> implements
+		BlockingQueue<Runnable> {
+
+	/**
+	 * A job that knows what class it belongs to.
+	 */
+	public static interface ClassifiedJob extends Runnable {
+		JobClass getJobClass();
+	}
+
+	private final int capacityPerClass;
+	private final Map<JobClass, ArrayDeque<Runnable>> queues;
+	private final Map<JobClass, Integer> credits;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Map<JobClass, Condition> notFull;
+	private int count;
+
+	/**
+	 * @param capacityPerClass
+	 *          max number of jobs that can wait in each class.
+	 */
+	public JobClassQueue(int capacityPerClass) {
+		this.capacityPerClass = capacityPerClass;
+		this.queues = new EnumMap<JobClass, ArrayDeque<Runnable>>(JobClass.class);
+		this.credits = new EnumMap<JobClass, Integer>(JobClass.class);
+		this.notFull = new EnumMap<JobClass, Condition>(JobClass.class);
+		for (JobClass jobClass : JobClass.values()) {
+			queues.put(jobClass, new ArrayDeque<Runnable>());
+			credits.put(jobClass, 0);
+			notFull.put(jobClass, lock.newCondition());
+		}
+	}
+
+	/**
+	 * @return number of jobs waiting in the class.
+	 */
+	public int size(JobClass jobClass) {
+		lock.lock();
+		try {
+			return queues.get(jobClass).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(Runnable job) {
+		if (job == null)
+			throw new NullPointerException();
+		lock.lock();
+		try {
+			if (isFull(classOf(job)))
+				return false;
+			enqueue(job);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isFull(JobClass jobClass) {
+		return queues.get(jobClass).size() >= capacityPerClass;
+	}
+
+	private void enqueue(Runnable job) {
+		queues.get(classOf(job)).add(job);
+		count++;
+		notEmpty.signal();
+	}
+
+	private JobClass classOf(Runnable job) {
+		if (job instanceof ClassifiedJob)
+			return ((ClassifiedJob) job).getJobClass();
+		else
+			return JobClass.ARCHIVE;
+	}
+
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			return count == 0 ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Runnable dequeue() {
+		JobClass next = nextClass();
+		for (JobClass jobClass : JobClass.values())
+			if (jobClass != next)
+				earnCredit(jobClass);
+		if (credits.get(next) >= JobClass.FULL_SHARE)
+			credits.put(next, credits.get(next) - JobClass.FULL_SHARE);
+		else
+			credits.put(next, 0);
+		count--;
+		notFull.get(next).signal();
+		return queues.get(next).poll();
+	}
+
+	private JobClass nextClass() {
+		JobClass highestPriority = null;
+		for (JobClass jobClass : JobClass.values()) {
+			if (queues.get(jobClass).isEmpty())
+				continue;
+			if (credits.get(jobClass) >= JobClass.FULL_SHARE)
+				return jobClass;
+			if (highestPriority == null)
+				highestPriority = jobClass;
+		}
+		return highestPriority;
+	}
+
+	private void earnCredit(JobClass jobClass) {
+		if (queues.get(jobClass).isEmpty())
+			credits.put(jobClass, 0);
+		else
+			credits.put(jobClass,
+					credits.get(jobClass) + jobClass.getMinimumShare());
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (count == 0)
+				notEmpty.await();
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				if (nanos <= 0)
+					return null;
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for room in the queue of the job's class.
+	 */
+	@Override
+	public void put(Runnable job) throws InterruptedException {
+		if (job == null)
+			throw new NullPointerException();
+		JobClass jobClass = classOf(job);
+		lock.lockInterruptibly();
+		try {
+			while (isFull(jobClass))
+				notFull.get(jobClass).await();
+			enqueue(job);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits up to the timeout for room in the queue of the job's class.
+	 * 
+	 * @return false if there was no room before the timeout.
+	 */
+	@Override
+	public boolean offer(Runnable job, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		if (job == null)
+			throw new NullPointerException();
+		JobClass jobClass = classOf(job);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (isFull(jobClass)) {
+				if (nanos <= 0)
+					return false;
+				nanos = notFull.get(jobClass).awaitNanos(nanos);
+			}
+			enqueue(job);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			if (count == 0)
+				return null;
+			else
+				return queues.get(nextClass()).peek();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacityPerClass * JobClass.values().length - count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		lock.lock();
+		try {
+			for (Map.Entry<JobClass, ArrayDeque<Runnable>> queue : queues
+					.entrySet())
+				if (queue.getValue().remove(o)) {
+					count--;
+					notFull.get(queue.getKey()).signal();
+					return true;
+				}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c, int maxElements) {
+		lock.lock();
+		try {
+			int drained = 0;
+			while (count > 0 && drained < maxElements) {
+				c.add(dequeue());
+				drained++;
+			}
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Iterates over a snapshot of the waiting jobs, in priority order.
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		lock.lock();
+		try {
+			List<Runnable> snapshot = new ArrayList<Runnable>(count);
+			for (JobClass jobClass : JobClass.values())
+				snapshot.addAll(queues.get(jobClass));
+			return snapshot.iterator();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,434 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.InstanceNotFoundException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketTimeIndex;
+import com.splunk.shuttl.archiver.thaw.BucketTimeIndexCache;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiver;
+
+/**
+ * Local, on-disk catalog of the buckets in the archive, so that listing and
+ * thawing doesn't have to walk the archive file system.<br/>
+ * <br/>
+ * There is one file per index, with one line per archived bucket format:
+ * {@code name\tearliest\tlatest\tFORMAT=size,...}. Archived buckets are
+ * appended and the lines of a bucket are merged when read. The catalog is only
+ * complete, and should only be trusted, after it has been rebuilt from the
+ * archive with {@link ArchiveCatalogRebuilder}, since buckets may have been
+ * archived before the catalog existed or by other Shuttl hosts.<br/>
+ * <br/>
+ * A host only appends the buckets it archives itself, so without a max age
+ * the catalog is only right for setups with a single Shuttl host archiving to
+ * the archive. With a max age, a rebuilt catalog becomes stale, and is no
+ * longer complete, once the max age has passed since it was rebuilt.
+ */
+public class ArchiveCatalog {
+
+	private static final Logger logger = Logger.getLogger(ArchiveCatalog.class);
+
+	static final String CATALOG_FILE_EXTENSION = ".catalog";
+	static final String COMPLETE_MARKER_NAME = "catalog.complete";
+	private static final String ENCODING = "UTF-8";
+
+	/**
+	 * Writes are serialized for all catalog instances, since every request
+	 * creates its own instance on the same directory.
+	 */
+	private static final Object WRITE_LOCK = new Object();
+
+	/**
+	 * Time indexes are kept for all catalog instances, by catalog file.
+	 */
+	private static final BucketTimeIndexCache<CatalogedBucket> TIME_INDEXES = new BucketTimeIndexCache<CatalogedBucket>();
+
+	private final File catalogDirectory;
+	private final Long maxAgeMillis;
+
+	public ArchiveCatalog(File catalogDirectory) {
+		this(catalogDirectory, null);
+	}
+
+	/**
+	 * @param maxAgeMillis
+	 *          millis that a rebuilt catalog is trusted. {@code null} for a
+	 *          catalog that never becomes stale.
+	 */
+	public ArchiveCatalog(File catalogDirectory, Long maxAgeMillis) {
+		this.catalogDirectory = catalogDirectory;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	/**
+	 * @return true if the catalog has been rebuilt from the archive, has not
+	 *         missed any archived bucket since and is not stale.
+	 */
+	public boolean isComplete() {
+		return getCompleteMarker().exists() && !isStale();
+	}
+
+	/**
+	 * @return true if the catalog was rebuilt longer than the max age ago, and
+	 *         should be rebuilt to see buckets archived by other hosts.
+	 */
+	public boolean isStale() {
+		if (maxAgeMillis == null)
+			return false;
+		long rebuiltAt = getCompleteMarker().lastModified();
+		return rebuiltAt != 0
+				&& System.currentTimeMillis() - rebuiltAt > maxAgeMillis;
+	}
+
+	private File getCompleteMarker() {
+		return new File(catalogDirectory, COMPLETE_MARKER_NAME);
+	}
+
+	/**
+	 * Marks the catalog as complete. Done after rebuilding it from the archive.
+	 */
+	public void markComplete() {
+		try {
+			FileUtils.touch(getCompleteMarker());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Marks the catalog as incomplete, until it is rebuilt.
+	 */
+	public void markIncomplete() {
+		FileUtils.deleteQuietly(getCompleteMarker());
+	}
+
+	/**
+	 * Adds a bucket that has been committed to the archive, with its format and
+	 * size. If the catalog cannot be written to, the catalog is marked
+	 * incomplete so that it is not trusted until it is rebuilt.
+	 */
+	public void addArchivedBucket(Bucket bucket) {
+		String line = toLine(CatalogedBucket.fromBucket(bucket));
+		synchronized (WRITE_LOCK) {
+			try {
+				appendLine(getCatalogFile(bucket.getIndex()), line);
+			} catch (IOException e) {
+				logger.warn(warn("Added archived bucket to the catalog", e,
+						"Marking catalog incomplete until it is rebuilt", "bucket",
+						bucket, "catalog_directory", catalogDirectory));
+				markIncomplete();
+			}
+		}
+	}
+
+	private void appendLine(File catalogFile, String line) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(catalogFile,
+				true), ENCODING);
+		try {
+			writer.write(line);
+			writer.write('\n');
+		} finally {
+			writer.close();
+		}
+	}
+
+	private File getCatalogFile(String index) {
+		return new File(catalogDirectory, index + CATALOG_FILE_EXTENSION);
+	}
+
+	/**
+	 * @return indexes that have buckets in the catalog.
+	 */
+	public List<String> listIndexes() {
+		List<String> indexes = new ArrayList<String>();
+		File[] files = catalogDirectory.listFiles();
+		if (files != null)
+			for (File file : files)
+				if (file.getName().endsWith(CATALOG_FILE_EXTENSION))
+					indexes.add(getIndex(file));
+		return indexes;
+	}
+
+	private String getIndex(File catalogFile) {
+		String fileName = catalogFile.getName();
+		return fileName.substring(0,
+				fileName.length() - CATALOG_FILE_EXTENSION.length());
+	}
+
+	/**
+	 * @return all buckets in the catalog.
+	 */
+	public List<CatalogedBucket> listBuckets() {
+		List<CatalogedBucket> buckets = new ArrayList<CatalogedBucket>();
+		for (String index : listIndexes())
+			buckets.addAll(listBucketsInIndex(index));
+		return buckets;
+	}
+
+	/**
+	 * @return buckets in the catalog for an index, in the order they were first
+	 *         cataloged.
+	 */
+	public List<CatalogedBucket> listBucketsInIndex(String index) {
+		File catalogFile = getCatalogFile(index);
+		if (!catalogFile.exists())
+			return new ArrayList<CatalogedBucket>();
+		try {
+			return readCatalogFile(index, catalogFile);
+		} catch (IOException e) {
+			logger.error(did("Read catalog file", e, "To read cataloged buckets",
+					"index", index, "catalog_file", catalogFile));
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return time index of the cataloged buckets of an index. It is kept in
+	 *         memory until the index's catalog file changes.
+	 */
+	public BucketTimeIndex<CatalogedBucket> getTimeIndex(String index) {
+		File catalogFile = getCatalogFile(index);
+		String key = catalogFile.getAbsolutePath();
+		String stamp = catalogFile.length() + ":" + catalogFile.lastModified();
+		BucketTimeIndex<CatalogedBucket> timeIndex = TIME_INDEXES.get(key, stamp);
+		if (timeIndex == null) {
+			timeIndex = createTimeIndex(listBucketsInIndex(index));
+			TIME_INDEXES.put(key, stamp, timeIndex);
+		}
+		return timeIndex;
+	}
+
+	private BucketTimeIndex<CatalogedBucket> createTimeIndex(
+			List<CatalogedBucket> buckets) {
+		BucketTimeIndex.Builder<CatalogedBucket> builder = new BucketTimeIndex.Builder<CatalogedBucket>(
+				buckets.size());
+		for (CatalogedBucket bucket : buckets)
+			builder.add(bucket, bucket.getEarliestSeconds() * 1000,
+					bucket.getLatestSeconds() * 1000);
+		return builder.build();
+	}
+
+	private List<CatalogedBucket> readCatalogFile(String index, File catalogFile)
+			throws IOException {
+		Map<String, CatalogedBucket> buckets = new LinkedHashMap<String, CatalogedBucket>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(catalogFile), ENCODING));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null)
+				addParsedLine(buckets, index, line);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+		return new ArrayList<CatalogedBucket>(buckets.values());
+	}
+
+	private void addParsedLine(Map<String, CatalogedBucket> buckets,
+			String index, String line) {
+		CatalogedBucket bucket = parseLine(index, line);
+		if (bucket == null)
+			return;
+		CatalogedBucket existing = buckets.get(bucket.getName());
+		buckets.put(bucket.getName(),
+				existing == null ? bucket : existing.merge(bucket));
+	}
+
+	private CatalogedBucket parseLine(String index, String line) {
+		String[] columns = line.split("\t", -1);
+		if (columns.length != 4) {
+			logBrokenLine(index, line);
+			return null;
+		}
+		try {
+			return new CatalogedBucket(index, columns[0],
+					Long.parseLong(columns[1]), Long.parseLong(columns[2]),
+					parseFormatSizes(columns[3]));
+		} catch (IllegalArgumentException e) {
+			logBrokenLine(index, line);
+			return null;
+		}
+	}
+
+	private Map<BucketFormat, Long> parseFormatSizes(String column) {
+		Map<BucketFormat, Long> formatSizes = new LinkedHashMap<BucketFormat, Long>();
+		if (column.isEmpty())
+			return formatSizes;
+		for (String formatSize : column.split(",")) {
+			int separator = formatSize.indexOf('=');
+			String size = formatSize.substring(separator + 1);
+			formatSizes.put(BucketFormat.valueOf(formatSize.substring(0, separator)),
+					size.isEmpty() ? null : Long.valueOf(size));
+		}
+		return formatSizes;
+	}
+
+	private void logBrokenLine(String index, String line) {
+		logger.warn(warn("Read line in catalog", "line was broken",
+				"ignoring the line", "index", index, "line", line));
+	}
+
+	private String toLine(CatalogedBucket bucket) {
+		StringBuilder line = new StringBuilder();
+		line.append(bucket.getName()).append('\t')
+				.append(bucket.getEarliestSeconds()).append('\t')
+				.append(bucket.getLatestSeconds()).append('\t');
+		boolean first = true;
+		for (Map.Entry<BucketFormat, Long> entry : bucket.getFormatSizes()
+				.entrySet()) {
+			if (!first)
+				line.append(',');
+			line.append(entry.getKey()).append('=');
+			if (entry.getValue() != null)
+				line.append(entry.getValue());
+			first = false;
+		}
+		return line.toString();
+	}
+
+	/**
+	 * @return mark to pass to {@link #replaceIndex(String, List, long)}, so that
+	 *         buckets archived while an index is rebuilt are not lost.
+	 */
+	public long getAppendMark(String index) {
+		synchronized (WRITE_LOCK) {
+			return getCatalogFile(index).length();
+		}
+	}
+
+	/**
+	 * Replaces the cataloged buckets of an index. Buckets appended to the index
+	 * after the append mark are kept.
+	 * 
+	 * @param appendMark
+	 *          from {@link #getAppendMark(String)}, taken before the buckets
+	 *          were listed.
+	 */
+	public void replaceIndex(String index, List<CatalogedBucket> buckets,
+			long appendMark) {
+		synchronized (WRITE_LOCK) {
+			File catalogFile = getCatalogFile(index);
+			File tempFile = new File(catalogDirectory, index
+					+ CATALOG_FILE_EXTENSION + ".tmp");
+			try {
+				writeIndexFile(tempFile, buckets, readAppendedSince(catalogFile,
+						appendMark));
+				replaceFile(tempFile, catalogFile);
+				TIME_INDEXES.invalidate(catalogFile.getAbsolutePath());
+			} catch (IOException e) {
+				FileUtils.deleteQuietly(tempFile);
+				logger.error(did("Replaced cataloged buckets for index", e,
+						"To write the catalog file", "index", index, "catalog_file",
+						catalogFile));
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private String readAppendedSince(File catalogFile, long appendMark)
+			throws IOException {
+		if (!catalogFile.exists() || catalogFile.length() <= appendMark)
+			return "";
+		RandomAccessFile file = new RandomAccessFile(catalogFile, "r");
+		try {
+			byte[] appended = new byte[(int) (file.length() - appendMark)];
+			file.seek(appendMark);
+			file.readFully(appended);
+			return new String(appended, ENCODING);
+		} finally {
+			file.close();
+		}
+	}
+
+	private void writeIndexFile(File file, List<CatalogedBucket> buckets,
+			String appended) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+				ENCODING);
+		try {
+			for (CatalogedBucket bucket : buckets) {
+				writer.write(toLine(bucket));
+				writer.write('\n');
+			}
+			writer.write(appended);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void replaceFile(File source, File destination) throws IOException {
+		if (!source.renameTo(destination)) {
+			FileUtils.deleteQuietly(destination);
+			if (!source.renameTo(destination))
+				throw new IOException("Could not rename " + source + " to "
+						+ destination);
+		}
+	}
+
+	/**
+	 * Removes the cataloged buckets of indexes that are not in the archive.
+	 */
+	public void retainIndexes(Collection<String> indexes) {
+		synchronized (WRITE_LOCK) {
+			for (String index : listIndexes())
+				if (!indexes.contains(index)) {
+					FileUtils.deleteQuietly(getCatalogFile(index));
+					TIME_INDEXES.invalidate(getCatalogFile(index).getAbsolutePath());
+				}
+		}
+	}
+
+	/**
+	 * @return catalog stored under the local archiver directory.
+	 */
+	public static ArchiveCatalog create(LocalFileSystemPaths localFileSystemPaths) {
+		return new ArchiveCatalog(
+				localFileSystemPaths.getArchiveCatalogDirectory(),
+				getConfiguredMaxAgeMillis());
+	}
+
+	private static Long getConfiguredMaxAgeMillis() {
+		try {
+			Long maxAgeSeconds = ShuttlArchiver.getMBeanProxy().getCatalogMaxAge();
+			return maxAgeSeconds == null ? null : maxAgeSeconds * 1000;
+		} catch (InstanceNotFoundException e) {
+			logger.debug(happened("No archiver configuration is registered",
+					"catalog_max_age", "none"));
+			return null;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.listers.ArchiveBucketsLister;
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor;
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor.Outcome;
+import com.splunk.shuttl.archiver.listers.ArchivedIndexesLister;
+import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatChooser;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
+
+/**
+ * Rebuilds the {@link ArchiveCatalog} by walking the archive. This is the one
+ * walk over indexes, buckets, formats and sizes that the catalog saves every
+ * listing and thaw from doing.
+ */
+public class ArchiveCatalogRebuilder {
+
+	private static final Logger logger = Logger
+			.getLogger(ArchiveCatalogRebuilder.class);
+
+	/**
+	 * There is one catalog per Shuttl server, so at most one background rebuild
+	 * runs at a time.
+	 */
+	private static final AtomicBoolean rebuildingInBackground = new AtomicBoolean();
+
+	private final ArchivedIndexesLister indexesLister;
+	private final ArchiveBucketsLister bucketsLister;
+	private final BucketFormatResolver bucketFormatResolver;
+	private final ArchiveBucketSize archiveBucketSize;
+	private final PathResolver pathResolver;
+	private final ArchiveCatalog archiveCatalog;
+	private final ArchiveListingExecutor listingExecutor;
+	private final List<FailedBucket> failedBuckets;
+
+	public ArchiveCatalogRebuilder(ArchivedIndexesLister indexesLister,
+			ArchiveBucketsLister bucketsLister,
+			BucketFormatResolver bucketFormatResolver,
+			ArchiveBucketSize archiveBucketSize, PathResolver pathResolver,
+			ArchiveCatalog archiveCatalog) {
+		this(indexesLister, bucketsLister, bucketFormatResolver,
+				archiveBucketSize, pathResolver, archiveCatalog,
+				ArchiveListingExecutor.createSequential());
+	}
+
+	/**
+	 * @param listingExecutor
+	 *          for cataloging the buckets of an index concurrently.
+	 */
+	public ArchiveCatalogRebuilder(ArchivedIndexesLister indexesLister,
+			ArchiveBucketsLister bucketsLister,
+			BucketFormatResolver bucketFormatResolver,
+			ArchiveBucketSize archiveBucketSize, PathResolver pathResolver,
+			ArchiveCatalog archiveCatalog, ArchiveListingExecutor listingExecutor) {
+		this.listingExecutor = listingExecutor;
+		this.failedBuckets = new ArrayList<FailedBucket>();
+		this.indexesLister = indexesLister;
+		this.bucketsLister = bucketsLister;
+		this.bucketFormatResolver = bucketFormatResolver;
+		this.archiveBucketSize = archiveBucketSize;
+		this.pathResolver = pathResolver;
+		this.archiveCatalog = archiveCatalog;
+	}
+
+	/**
+	 * Rebuilds the catalog. The catalog is incomplete while it is rebuilt, and
+	 * stays incomplete if the rebuild fails or if any bucket couldn't be
+	 * cataloged.
+	 * 
+	 * @see ArchiveCatalogRebuilder#getFailedBuckets()
+	 * @return number of cataloged buckets for each index.
+	 */
+	public Map<String, Integer> rebuild() {
+		logger.info(will("Rebuild archive catalog"));
+		failedBuckets.clear();
+		archiveCatalog.markIncomplete();
+		Map<String, Integer> bucketsPerIndex = new LinkedHashMap<String, Integer>();
+		List<String> indexes = indexesLister.listIndexes();
+		for (String index : indexes)
+			bucketsPerIndex.put(index, rebuildIndex(index));
+		archiveCatalog.retainIndexes(indexes);
+		if (failedBuckets.isEmpty()) {
+			archiveCatalog.markComplete();
+			logger.info(done("Rebuilt archive catalog", "buckets_per_index",
+					bucketsPerIndex));
+		} else {
+			logger.warn(warn("Rebuilt archive catalog", "Buckets failed to be "
+					+ "cataloged", "Catalog stays incomplete", "failed_buckets",
+					failedBuckets.size(), "buckets_per_index", bucketsPerIndex));
+		}
+		return bucketsPerIndex;
+	}
+
+	private int rebuildIndex(String index) {
+		long appendMark = archiveCatalog.getAppendMark(index);
+		List<Bucket> buckets = bucketsLister.listBucketsInIndex(index);
+		List<CatalogBucket> calls = new ArrayList<CatalogBucket>();
+		for (Bucket bucket : buckets)
+			calls.add(new CatalogBucket(bucket));
+		List<Outcome<CatalogedBucket>> outcomes = listingExecutor.callAll(calls);
+
+		List<CatalogedBucket> catalogedBuckets = new ArrayList<CatalogedBucket>();
+		for (int i = 0; i < buckets.size(); i++) {
+			Outcome<CatalogedBucket> outcome = outcomes.get(i);
+			if (outcome.isFailure())
+				failedBuckets.add(new FailedBucket(buckets.get(i), outcome
+						.getFailure()));
+			else
+				catalogedBuckets.add(outcome.getValue());
+		}
+		archiveCatalog.replaceIndex(index, catalogedBuckets, appendMark);
+		return catalogedBuckets.size();
+	}
+
+	/**
+	 * @return buckets that couldn't be cataloged by the last rebuild.
+	 */
+	public List<FailedBucket> getFailedBuckets() {
+		return failedBuckets;
+	}
+
+	private class CatalogBucket implements Callable<CatalogedBucket> {
+
+		private final Bucket bucket;
+
+		public CatalogBucket(Bucket bucket) {
+			this.bucket = bucket;
+		}
+
+		@Override
+		public CatalogedBucket call() throws IOException {
+			return catalogBucket(bucket);
+		}
+	}
+
+	private CatalogedBucket catalogBucket(Bucket bucket) throws IOException {
+		Map<BucketFormat, Long> formatSizes = new LinkedHashMap<BucketFormat, Long>();
+		for (BucketFormat format : bucketFormatResolver
+				.listAvailableFormats(bucket))
+			formatSizes.put(format, readSize(bucket, format));
+		return new CatalogedBucket(bucket.getIndex(), bucket.getName(), bucket
+				.getEarliest().getTime() / 1000, bucket.getLatest().getTime() / 1000,
+				formatSizes);
+	}
+
+	private Long readSize(Bucket bucket, BucketFormat format) {
+		String path = pathResolver.resolveArchivedBucketPath(bucket.getIndex(),
+				bucket.getName(), format);
+		return archiveBucketSize.readBucketSize(new RemoteBucket(path, bucket
+				.getIndex(), bucket.getName(), format));
+	}
+
+	/**
+	 * Rebuilds the catalog in a background thread if it is stale, unless a
+	 * background rebuild is already running. The catalog is not complete until
+	 * the rebuild is done, so the archive is walked meanwhile.
+	 */
+	public static void rebuildInBackgroundIfStale(
+			final ArchiveConfiguration config, final ArchiveCatalog archiveCatalog) {
+		if (!archiveCatalog.isStale()
+				|| !rebuildingInBackground.compareAndSet(false, true))
+			return;
+		logger.info(will("Rebuild stale archive catalog in the background"));
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					create(config, LocalFileSystemPaths.create(), archiveCatalog)
+							.rebuild();
+				} catch (RuntimeException e) {
+					logger.error(did("Rebuilt stale archive catalog", e,
+							"the catalog to be rebuilt"));
+				} finally {
+					rebuildingInBackground.set(false);
+				}
+			}
+		}, "shuttl-archive-catalog-rebuilder");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return instance configured with the configuration.
+	 */
+	public static ArchiveCatalogRebuilder create(ArchiveConfiguration config,
+			LocalFileSystemPaths localFileSystemPaths) {
+		return create(config, localFileSystemPaths,
+				ArchiveCatalog.create(localFileSystemPaths));
+	}
+
+	private static ArchiveCatalogRebuilder create(ArchiveConfiguration config,
+			LocalFileSystemPaths localFileSystemPaths, ArchiveCatalog archiveCatalog) {
+		ArchiveFileSystem archiveFileSystem = ArchiveFileSystemFactory
+				.getWithConfiguration(config);
+		PathResolver pathResolver = new PathResolver(config);
+		ArchivedIndexesLister indexesLister = new ArchivedIndexesLister(
+				pathResolver, archiveFileSystem);
+		ArchiveListingExecutor listingExecutor = ArchiveListingExecutor
+				.getSharedInstance(config.getListingConcurrency());
+		return new ArchiveCatalogRebuilder(indexesLister, new ArchiveBucketsLister(
+				archiveFileSystem, indexesLister, pathResolver, listingExecutor),
+				new BucketFormatResolver(pathResolver, archiveFileSystem,
+						new BucketFormatChooser(config), listingExecutor),
+				ArchiveBucketSize.create(pathResolver, archiveFileSystem,
+						localFileSystemPaths), pathResolver, archiveCatalog,
+				listingExecutor);
+	}
+}
@@ -0,0 +1,116 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * A bucket as it is recorded in the {@link ArchiveCatalog}. Has the formats
+ * that the bucket is archived in, with the bucket's size for each format.
+ */
+public class CatalogedBucket {
+
+	private final String index;
+	private final String name;
+	private final long earliestSeconds;
+	private final long latestSeconds;
+	private final Map<BucketFormat, Long> formatSizes;
+
+	/**
+	 * @param earliestSeconds
+	 *          earliest time of the bucket, in seconds as in the bucket name.
+	 * @param latestSeconds
+	 *          latest time of the bucket, in seconds as in the bucket name.
+	 * @param formatSizes
+	 *          archived formats and their sizes. A size may be null if unknown.
+	 */
+	public CatalogedBucket(String index, String name, long earliestSeconds,
+			long latestSeconds, Map<BucketFormat, Long> formatSizes) {
+		this.index = index;
+		this.name = name;
+		this.earliestSeconds = earliestSeconds;
+		this.latestSeconds = latestSeconds;
+		this.formatSizes = new LinkedHashMap<BucketFormat, Long>(formatSizes);
+	}
+
+	public String getIndex() {
+		return index;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getEarliestSeconds() {
+		return earliestSeconds;
+	}
+
+	public long getLatestSeconds() {
+		return latestSeconds;
+	}
+
+	/**
+	 * @return formats that the bucket is archived in.
+	 */
+	public List<BucketFormat> getFormats() {
+		return new ArrayList<BucketFormat>(formatSizes.keySet());
+	}
+
+	/**
+	 * @return size of the bucket in the format, or null if it is unknown.
+	 */
+	public Long getSize(BucketFormat format) {
+		return formatSizes.get(format);
+	}
+
+	Map<BucketFormat, Long> getFormatSizes() {
+		return Collections.unmodifiableMap(formatSizes);
+	}
+
+	/**
+	 * @return bucket with the formats of both buckets. The other bucket's sizes
+	 *         win for formats that both buckets have.
+	 */
+	public CatalogedBucket merge(CatalogedBucket other) {
+		Map<BucketFormat, Long> merged = new LinkedHashMap<BucketFormat, Long>(
+				formatSizes);
+		merged.putAll(other.formatSizes);
+		return new CatalogedBucket(index, name, earliestSeconds, latestSeconds,
+				merged);
+	}
+
+	/**
+	 * @return cataloged bucket with the bucket's format and size.
+	 */
+	public static CatalogedBucket fromBucket(Bucket bucket) {
+		return new CatalogedBucket(bucket.getIndex(), bucket.getName(),
+				bucket.getEarliest().getTime() / 1000,
+				bucket.getLatest().getTime() / 1000, Collections.singletonMap(
+						bucket.getFormat(), bucket.getSize()));
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogedBucket [index=" + index + ", name=" + name
+				+ ", formatSizes=" + formatSizes + "]";
+	}
+}
@@ -71,8 +71,7 @@ public class ColdCopyEntryPoint {
 		ColdBucketCopier coldBucketCopier = new ColdBucketCopier(
 				new ColdBucketInterator(EntryPointUtil.getSplunkService(),
 						new BucketIteratorFactory()), receipts, new LockedBucketCopier(
-						new CopyBucketLocker(fileSystemPaths), callCopyBucketEndpoint,
-						receipts));
+						new CopyBucketLocker(fileSystemPaths), callCopyBucketEndpoint));
 
 		return coldBucketCopier;
 	}
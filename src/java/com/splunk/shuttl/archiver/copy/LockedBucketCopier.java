@@ -31,19 +31,18 @@ public class LockedBucketCopier {
 	private static Logger logger = Logger.getLogger(LockedBucketCopier.class);
 
 	private final CallCopyBucketEndpoint endpoint;
-	private final CopyBucketReceipts receipts;
 	private BucketLocker bucketLocker;
 
 	public LockedBucketCopier(BucketLocker bucketLocker,
-			CallCopyBucketEndpoint endpoint, CopyBucketReceipts receipts) {
+			CallCopyBucketEndpoint endpoint) {
 		this.bucketLocker = bucketLocker;
 		this.endpoint = endpoint;
-		this.receipts = receipts;
 	}
 
 	/**
 	 * Locks and copies a bucket. Then copies all the buckets that has not
-	 * successfully been copied.
+	 * successfully been copied. The receipt is created by the copy endpoint,
+	 * once the queued copy has finished.
 	 */
 	public void copyBucket(LocalBucket bucket) {
 		bucketLocker.callBucketHandlerUnderSharedLock(bucket,
@@ -59,10 +58,9 @@ public class LockedBucketCopier {
 			try {
 				endpoint.call(localBucket);
 				logger.info(done("calling copy bucket endpoint", "bucket", bucket));
-				receipts.createReceipt(localBucket);
 			} catch (RuntimeException e) {
 				logger.error(did("Call copy endpoint to copy bucket", e,
-						"to copy and then create a copy receipt", "bucket", bucket));
+						"to queue the bucket for copying", "bucket", bucket));
 			}
 		}
 
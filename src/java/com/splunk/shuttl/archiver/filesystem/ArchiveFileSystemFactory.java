@@ -27,6 +27,8 @@ import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferBudget;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferBudgets;
 import com.splunk.shuttl.archiver.filesystem.glacier.GlacierArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.filesystem.hadoop.HadoopArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.hadoop.HadoopArchiveFileSystemFactory;
@@ -75,8 +77,36 @@ public class ArchiveFileSystemFactory {
 	 */
 	public static ArchiveFileSystem getWithConfiguration(
 			ArchiveConfiguration config) {
-		return getByNameAndLocalFileSystemPaths(config.getBackendName(),
-				LocalFileSystemPaths.create(config));
+		ArchiveFileSystem archiveFileSystem = getByNameAndLocalFileSystemPaths(
+				config.getBackendName(), LocalFileSystemPaths.create(config));
+		return withFileTransferStreams(archiveFileSystem,
+				config.getFileTransferStreams());
+	}
+
+	/**
+	 * @return {@link ArchiveFileSystem} with a specific
+	 *         {@link ArchiveConfiguration}, that transfers within the shared
+	 *         limit of the {@link TransferBudget}. Transfers are not wrapped
+	 *         when the budget has no limit.
+	 */
+	public static ArchiveFileSystem getWithConfigurationAndTransferBudget(
+			ArchiveConfiguration config, TransferBudget budget) {
+		ArchiveFileSystem archiveFileSystem = getWithConfiguration(config);
+		if (archiveFileSystem instanceof HadoopArchiveFileSystem)
+			return ((HadoopArchiveFileSystem) archiveFileSystem)
+					.withRateLimiter(TransferBudgets.getSharedInstance().getLimiter(
+							budget));
+		else
+			return archiveFileSystem;
+	}
+
+	private static ArchiveFileSystem withFileTransferStreams(
+			ArchiveFileSystem archiveFileSystem, Integer fileTransferStreams) {
+		if (archiveFileSystem instanceof HadoopArchiveFileSystem)
+			return ((HadoopArchiveFileSystem) archiveFileSystem)
+					.withFileTransferStreams(fileTransferStreams);
+		else
+			return archiveFileSystem;
 	}
 
 	/**
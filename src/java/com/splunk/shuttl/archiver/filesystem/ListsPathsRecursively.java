@@ -0,0 +1,53 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * An {@link ArchiveFileSystem} that can walk the paths below a path, instead
+ * of being listed one directory at a time with
+ * {@link ArchiveFileSystem#listPath(String)}. Whether the walk saves calls to
+ * the archive is told by {@link #isBulkListing()}.
+ */
+public interface ListsPathsRecursively {
+
+	/**
+	 * The paths are listed lazily while iterating, so that only the directories
+	 * that are being walked are kept in memory. An {@link IOException} while
+	 * iterating is thrown as a {@link RuntimeException}.
+	 * 
+	 * @param path
+	 *          to walk.
+	 * @param depth
+	 *          levels below the path to list. 1 lists the same paths as
+	 *          {@link ArchiveFileSystem#listPath(String)}.
+	 * @return paths at the depth below the path, where paths with the same
+	 *         parent come after each other. Empty if the path doesn't exist.
+	 * @throws IOException
+	 *           if the path couldn't be listed.
+	 */
+	Iterator<String> listPathsRecursively(String path, int depth)
+			throws IOException;
+
+	/**
+	 * @return true if the paths are listed in bulk, with fewer calls to the
+	 *         archive than one per directory. False if the listing walks the
+	 *         directories one at a time, which is only a more convenient
+	 *         listing.
+	 */
+	boolean isBulkListing();
+}
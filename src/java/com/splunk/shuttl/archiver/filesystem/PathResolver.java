@@ -138,6 +138,27 @@ public class PathResolver {
 		return getFormatsHome(index, bucketName) + SEPARATOR + format;
 	}
 
+	/**
+	 * @return Path to where the metadata manifest of an index is stored. It is
+	 *         outside of the indexes home, so that it's never listed as an index
+	 *         or a bucket.
+	 */
+	public String getMetadataManifestHome(String index) {
+		return configuration.getArchiveMetadataPath() + SEPARATOR
+				+ configuration.getClusterName() + SEPARATOR
+				+ configuration.getServerName() + SEPARATOR + index;
+	}
+
+	/**
+	 * @return Path to a temporary location for a file in the metadata manifest
+	 *         of an index, where it can be transferred.
+	 */
+	public String resolveTempPathForMetadataManifest(String index,
+			String fileName) {
+		return configuration.getArchiveTempPath()
+				+ getMetadataManifestHome(index) + SEPARATOR + fileName;
+	}
+
 	/**
 	 * @return a {@link PathResolver} configured with
 	 *         {@link ArchiverConfiguration}.
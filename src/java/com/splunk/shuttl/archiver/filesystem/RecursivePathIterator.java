@@ -0,0 +1,157 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the paths below a path depth first, listing one directory at a time.
+ * Directories are listed when the walk gets to them, so only one listing per
+ * level is kept in memory.
+ */
+public class RecursivePathIterator implements Iterator<String> {
+
+	/**
+	 * Lists the children of a directory in the walk.
+	 */
+	public interface ListsChildren {
+
+		/**
+		 * @param isLeafLevel
+		 *          true if the children are the paths that are iterated, false if
+		 *          they are directories to walk.
+		 * @return children of the path. A path that is a file has no children.
+		 */
+		List<String> listChildren(String path, boolean isLeafLevel)
+				throws IOException;
+	}
+
+	private final ListsChildren listsChildren;
+	private final int depth;
+	private final List<Iterator<String>> levels;
+	private String next;
+
+	/**
+	 * @throws IOException
+	 *           if the path couldn't be listed.
+	 */
+	public RecursivePathIterator(ListsChildren listsChildren, String path,
+			int depth) throws IOException {
+		if (depth < 1)
+			throw new IllegalArgumentException("Depth must be at least 1, was: "
+					+ depth);
+		this.listsChildren = listsChildren;
+		this.depth = depth;
+		this.levels = new ArrayList<Iterator<String>>(depth);
+		levels.add(listsChildren.listChildren(path, depth == 1).iterator());
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null)
+			next = walkToNext();
+		return next != null;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		String path = next;
+		next = null;
+		return path;
+	}
+
+	private String walkToNext() {
+		while (!levels.isEmpty()) {
+			int level = levels.size() - 1;
+			Iterator<String> paths = levels.get(level);
+			if (!paths.hasNext())
+				levels.remove(level);
+			else if (level == depth - 1)
+				return paths.next();
+			else
+				levels.add(listChildrenOrThrow(paths.next(), level + 2 == depth)
+						.iterator());
+		}
+		return null;
+	}
+
+	private List<String> listChildrenOrThrow(String path, boolean isLeafLevel) {
+		try {
+			return listsChildren.listChildren(path, isLeafLevel);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return paths at the depth below the path, with the file system's own bulk
+	 *         listing if it has one.
+	 * @see ListsPathsRecursively#listPathsRecursively(String, int)
+	 */
+	public static Iterator<String> listPathsRecursively(
+			ArchiveFileSystem archiveFileSystem, String path, int depth)
+			throws IOException {
+		if (archiveFileSystem instanceof ListsPathsRecursively)
+			return ((ListsPathsRecursively) archiveFileSystem).listPathsRecursively(
+					path, depth);
+		else
+			return new RecursivePathIterator(new ListsPathChildren(
+					archiveFileSystem), path, depth);
+	}
+
+	/**
+	 * Lists children with {@link ArchiveFileSystem#listPath(String)}.
+	 */
+	private static class ListsPathChildren implements ListsChildren {
+
+		private final ArchiveFileSystem archiveFileSystem;
+
+		public ListsPathChildren(ArchiveFileSystem archiveFileSystem) {
+			this.archiveFileSystem = archiveFileSystem;
+		}
+
+		@Override
+		public List<String> listChildren(String path, boolean isLeafLevel)
+				throws IOException {
+			List<String> children = archiveFileSystem.listPath(path);
+			if (children.size() == 1 && isSamePath(path, children.get(0)))
+				return Collections.emptyList();
+			return children;
+		}
+
+		private boolean isSamePath(String path, String child) {
+			return removeTrailingSeparator(path).equals(
+					removeTrailingSeparator(child));
+		}
+
+		private String removeTrailingSeparator(String path) {
+			if (path.length() > 1 && path.charAt(path.length() - 1) == '/')
+				return path.substring(0, path.length() - 1);
+			return path;
+		}
+	}
+}
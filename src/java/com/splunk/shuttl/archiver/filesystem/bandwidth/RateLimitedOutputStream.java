@@ -0,0 +1,45 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.bandwidth;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes to a stream within the rate of a {@link TransferRateLimiter}.
+ */
+public class RateLimitedOutputStream extends FilterOutputStream {
+
+	private final TransferRateLimiter rateLimiter;
+
+	public RateLimitedOutputStream(OutputStream out,
+			TransferRateLimiter rateLimiter) {
+		super(out);
+		this.rateLimiter = rateLimiter;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		rateLimiter.acquire(1);
+		out.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		rateLimiter.acquire(len);
+		out.write(b, off, len);
+	}
+}
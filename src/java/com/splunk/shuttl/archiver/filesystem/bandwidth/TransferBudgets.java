@@ -0,0 +1,112 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.bandwidth;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.management.InstanceNotFoundException;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.server.mbeans.ShuttlArchiver;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiverMBean;
+
+/**
+ * Holds a {@link TransferRateLimiter} for every {@link TransferBudget}, so that
+ * for example thawing is not slowed down by a burst of archiving.
+ */
+public class TransferBudgets {
+
+	private static final Logger logger = Logger.getLogger(TransferBudgets.class);
+
+	private final Map<TransferBudget, TransferRateLimiter> limiters;
+
+	public TransferBudgets(Map<TransferBudget, TransferRateLimiter> limiters) {
+		this.limiters = limiters;
+	}
+
+	/**
+	 * @return limiter that all transfers of the budget share.
+	 */
+	public TransferRateLimiter getLimiter(TransferBudget budget) {
+		return limiters.get(budget);
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *          limit for the budget. null or 0 if it should not be limited.
+	 */
+	public void setBytesPerSecond(TransferBudget budget, Long bytesPerSecond) {
+		getLimiter(budget).setBytesPerSecond(
+				bytesPerSecond == null ? 0 : bytesPerSecond);
+	}
+
+	/**
+	 * @return bytes per second recently transferred with the budget.
+	 */
+	public long getObservedBytesPerSecond(TransferBudget budget) {
+		return getLimiter(budget).getObservedBytesPerSecond();
+	}
+
+	/**
+	 * Sets the limits that are configured in the mBean.
+	 */
+	public void configure(ShuttlArchiverMBean mBean) {
+		setBytesPerSecond(TransferBudget.ARCHIVE, mBean.getArchiveBandwidthLimit());
+		setBytesPerSecond(TransferBudget.COLD_COPY,
+				mBean.getColdCopyBandwidthLimit());
+		setBytesPerSecond(TransferBudget.THAW, mBean.getThawBandwidthLimit());
+	}
+
+	/**
+	 * @return budgets where no transfers are limited.
+	 */
+	public static TransferBudgets createUnlimited() {
+		Map<TransferBudget, TransferRateLimiter> limiters = new EnumMap<TransferBudget, TransferRateLimiter>(
+				TransferBudget.class);
+		for (TransferBudget budget : TransferBudget.values())
+			limiters.put(budget, TransferRateLimiter.createUnlimited());
+		return new TransferBudgets(limiters);
+	}
+
+	private static TransferBudgets sharedInstance;
+
+	/**
+	 * The budgets are shared by all transfers in the JVM, for the limits to
+	 * mean anything.
+	 * 
+	 * @return budgets with the limits that are configured in the
+	 *         {@link ShuttlArchiverMBean}.
+	 */
+	public static synchronized TransferBudgets getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = createUnlimited();
+			configureWithMBeanProxy(sharedInstance);
+		}
+		return sharedInstance;
+	}
+
+	private static void configureWithMBeanProxy(TransferBudgets transferBudgets) {
+		try {
+			transferBudgets.configure(ShuttlArchiver.getMBeanProxy());
+		} catch (InstanceNotFoundException e) {
+			logger.warn(warn("Tried configuring bandwidth limits", e,
+					"Transfers will not be limited until the limits are set"));
+		}
+	}
+}
@@ -0,0 +1,155 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.bandwidth;
+
+/**
+ * Token bucket that limits how many bytes per second are transferred, by all
+ * the threads that share it. The bucket holds at most one second's worth of
+ * bytes, so a transfer can burst that much after being idle. A transfer that
+ * takes more bytes than there are tokens sleeps until the debt is paid, so the
+ * rate holds for any size of reads and writes.<br/>
+ * <br/>
+ * The limit can be changed while transfers are running. It also measures the
+ * observed rate, whether it's limited or not.
+ */
+public class TransferRateLimiter {
+
+	private static final long NANOS_PER_SECOND = 1000L * 1000 * 1000;
+	static final long MEASURE_WINDOW_NANOS = 5 * NANOS_PER_SECOND;
+
+	private final Clock clock;
+
+	private long bytesPerSecond;
+	private double tokens;
+	private long lastRefill;
+
+	private long windowStart;
+	private long bytesInWindow;
+	private long observedBytesPerSecond;
+
+	public TransferRateLimiter(Clock clock, long bytesPerSecond) {
+		this.clock = clock;
+		this.lastRefill = clock.nanoTime();
+		this.windowStart = lastRefill;
+		setBytesPerSecond(bytesPerSecond);
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *          limit of the rate. 0 or less means that the rate is not limited.
+	 */
+	public synchronized void setBytesPerSecond(long bytesPerSecond) {
+		refill(clock.nanoTime());
+		this.bytesPerSecond = Math.max(0, bytesPerSecond);
+		this.tokens = Math.min(tokens, this.bytesPerSecond);
+	}
+
+	/**
+	 * @return limit of the rate, or 0 if it is not limited.
+	 */
+	public synchronized long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @return true if the limiter is not null and has a limit, so that
+	 *         transfers have to go through it.
+	 */
+	public static boolean isLimiting(TransferRateLimiter rateLimiter) {
+		return rateLimiter != null && rateLimiter.getBytesPerSecond() > 0;
+	}
+
+	/**
+	 * Takes tokens for bytes that are transferred, and blocks the calling thread
+	 * until the rate is within the limit.
+	 */
+	public void acquire(long bytes) {
+		long sleepNanos = takeTokens(bytes);
+		if (sleepNanos > 0)
+			clock.sleepNanos(sleepNanos);
+	}
+
+	private synchronized long takeTokens(long bytes) {
+		long now = clock.nanoTime();
+		measure(now, bytes);
+		if (bytesPerSecond == 0)
+			return 0;
+		refill(now);
+		tokens -= bytes;
+		if (tokens >= 0)
+			return 0;
+		else
+			return (long) (-tokens * NANOS_PER_SECOND / bytesPerSecond);
+	}
+
+	private void refill(long now) {
+		long elapsed = now - lastRefill;
+		lastRefill = now;
+		if (bytesPerSecond > 0)
+			tokens = Math.min(bytesPerSecond, tokens + (double) elapsed
+					* bytesPerSecond / NANOS_PER_SECOND);
+	}
+
+	private void measure(long now, long bytes) {
+		rollWindowIfNeeded(now);
+		bytesInWindow += bytes;
+	}
+
+	private void rollWindowIfNeeded(long now) {
+		long elapsed = now - windowStart;
+		if (elapsed >= MEASURE_WINDOW_NANOS) {
+			if (elapsed >= 2 * MEASURE_WINDOW_NANOS)
+				observedBytesPerSecond = 0;
+			else
+				observedBytesPerSecond = bytesInWindow * NANOS_PER_SECOND / elapsed;
+			bytesInWindow = 0;
+			windowStart = now;
+		}
+	}
+
+	/**
+	 * @return bytes per second that were transferred during the last measured
+	 *         period of a few seconds.
+	 */
+	public synchronized long getObservedBytesPerSecond() {
+		rollWindowIfNeeded(clock.nanoTime());
+		return observedBytesPerSecond;
+	}
+
+	/**
+	 * Source of time, for testability.
+	 */
+	public static class Clock {
+
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		public void sleepNanos(long nanos) {
+			try {
+				Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return limiter that doesn't limit the rate until it's given a limit.
+	 */
+	public static TransferRateLimiter createUnlimited() {
+		return new TransferRateLimiter(new Clock(), 0);
+	}
+}
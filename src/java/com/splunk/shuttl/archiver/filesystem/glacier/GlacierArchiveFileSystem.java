@@ -18,6 +18,7 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -25,8 +26,13 @@ import org.apache.log4j.Logger;
 import com.splunk.shuttl.archiver.archive.BucketDeleter;
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.DeletesPaths;
+import com.splunk.shuttl.archiver.filesystem.ListsPathsRecursively;
+import com.splunk.shuttl.archiver.filesystem.RecursivePathIterator;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.BucketTransactionCleaner;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.ReadsBucketStream;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.TransfersBuckets;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.WritesBucketStream;
 import com.splunk.shuttl.archiver.filesystem.transaction.file.FileTransactionCleaner;
 import com.splunk.shuttl.archiver.filesystem.transaction.file.TransfersFiles;
 import com.splunk.shuttl.archiver.importexport.tgz.TgzFormatExporter;
@@ -38,7 +44,8 @@ import com.splunk.shuttl.archiver.model.LocalBucket;
  * therefore rely on s3 to handle the storing of meta data and file structure.
  * It supports only buckets that contain a single file.
  */
-public class GlacierArchiveFileSystem implements ArchiveFileSystem {
+public class GlacierArchiveFileSystem implements ArchiveFileSystem,
+		ListsPathsRecursively, DeletesPaths {
 
 	private final ArchiveFileSystem hadoop;
 	private final GlacierClient glacierClient;
@@ -159,6 +166,30 @@ public class GlacierArchiveFileSystem implements ArchiveFileSystem {
 		return hadoop.listPath(pathToBeListed);
 	}
 
+	@Override
+	public Iterator<String> listPathsRecursively(String path, int depth)
+			throws IOException {
+		return RecursivePathIterator.listPathsRecursively(hadoop, path, depth);
+	}
+
+	@Override
+	public boolean isBulkListing() {
+		return hadoop instanceof ListsPathsRecursively
+				&& ((ListsPathsRecursively) hadoop).isBulkListing();
+	}
+
+	/**
+	 * Deletes the path on the file system that stores the meta data. Archived
+	 * buckets in glacier are never deleted.
+	 */
+	@Override
+	public void deletePath(String path) {
+		if (hadoop instanceof DeletesPaths)
+			((DeletesPaths) hadoop).deletePath(path);
+		else
+			throw new UnsupportedOperationException("Cannot delete path: " + path);
+	}
+
 	@Override
 	public TransfersBuckets getBucketTransferer() {
 		return new TransfersBuckets() {
@@ -169,11 +200,41 @@ public class GlacierArchiveFileSystem implements ArchiveFileSystem {
 				putBucket((LocalBucket) localBucket, temp, dst);
 			}
 
+			/**
+			 * Glacier uploads need the whole file to compute the tree hash.
+			 */
+			@Override
+			public boolean canPutStream() {
+				return false;
+			}
+
+			@Override
+			public void putStream(Bucket bucket, String fileName,
+					WritesBucketStream writesBucketStream, String temp, String dst) {
+				throw new UnsupportedOperationException(
+						"Glacier cannot stream buckets. Bucket: " + bucket);
+			}
+
 			@Override
 			public void get(Bucket remoteBucket, File temp, File dst)
 					throws IOException {
 				getBucket(remoteBucket, temp, dst);
 			}
+
+			/**
+			 * Glacier archives are retrieved with a job, to a local file.
+			 */
+			@Override
+			public boolean canGetStream() {
+				return false;
+			}
+
+			@Override
+			public void getStream(Bucket remoteBucket, String fileName,
+					ReadsBucketStream readsBucketStream, File temp, File dst) {
+				throw new UnsupportedOperationException(
+						"Glacier cannot stream buckets. Bucket: " + remoteBucket);
+			}
 		};
 	}
 
@@ -41,7 +41,8 @@ public class GlacierArchiveFileSystemFactory {
 	public static GlacierArchiveFileSystem create(
 			LocalFileSystemPaths localFileSystemPaths) {
 		AWSCredentialsImpl credentials = AWSCredentialsImpl.create();
-		GlacierClient client = GlacierClient.create(credentials);
+		GlacierClient client = GlacierClient.create(credentials,
+				localFileSystemPaths);
 		ArchiveFileSystem s3 = S3ArchiveFileSystemFactory.createS3n();
 		ArchiveConfiguration config = ArchiveConfiguration.getSharedInstance();
 		return create(localFileSystemPaths, client, s3, config);
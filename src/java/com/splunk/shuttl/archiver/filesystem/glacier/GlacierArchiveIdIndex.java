@@ -0,0 +1,273 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.glacier;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+
+/**
+ * Persistent index of the glacier archive id of every archived path, so that
+ * an archive can be downloaded without reading its archive id from the
+ * archive. The index is split into shard files by the hash of the path, with
+ * lines {@code path\tarchiveId}, so that a lookup only reads one shard. Only a
+ * bounded number of archive ids is cached in memory.<br/>
+ * <br/>
+ * Archive ids that are put with a {@link BulkPut}, like when importing a vault
+ * inventory, are buffered and appended to their shards in batches. The shards
+ * are compacted when the bulk put is finished, so that every path is only in
+ * its shard once.
+ */
+public class GlacierArchiveIdIndex {
+
+	private static final Logger logger = Logger
+			.getLogger(GlacierArchiveIdIndex.class);
+
+	public static final int DEFAULT_SHARDS = 1024;
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	static final int BATCH_SIZE = 10000;
+	static final String SHARD_PREFIX = "shard-";
+	private static final String ENCODING = "UTF-8";
+	private static final String SEPARATOR = "\t";
+
+	private final File directory;
+	private final int shards;
+	private final Map<String, String> cache;
+
+	public GlacierArchiveIdIndex(File directory, int shards, final int cacheSize) {
+		this.directory = directory;
+		this.shards = shards;
+		this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * @return archive id of the path, or null if it's not in the index.
+	 */
+	public synchronized String get(String path) {
+		String archiveId = cache.get(path);
+		if (archiveId == null) {
+			archiveId = readFromShard(path);
+			if (archiveId != null)
+				cache.put(path, archiveId);
+		}
+		return archiveId;
+	}
+
+	private String readFromShard(String path) {
+		File shard = getShardFile(getShard(path));
+		if (!shard.exists())
+			return null;
+		try {
+			return readShard(shard).get(path);
+		} catch (IOException e) {
+			logger.warn(warn("Read glacier archive id index shard", e,
+					"Archive id will be read from the archive", "shard", shard, "path",
+					path));
+			return null;
+		}
+	}
+
+	/**
+	 * @return archive ids in the shard, where later lines replace earlier ones.
+	 */
+	private Map<String, String> readShard(File shard) throws IOException {
+		Map<String, String> archiveIds = new LinkedHashMap<String, String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(shard), ENCODING));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int separator = line.indexOf(SEPARATOR);
+				if (separator > 0)
+					archiveIds.put(line.substring(0, separator),
+							line.substring(separator + 1));
+			}
+			return archiveIds;
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Maps the path to the archive id, replacing any archive id it was mapped
+	 * to.
+	 */
+	public synchronized void put(String path, String archiveId) {
+		appendLines(getShard(path),
+				Collections.singletonList(toLine(path, archiveId)));
+		cache.put(path, archiveId);
+	}
+
+	private static String toLine(String path, String archiveId) {
+		if (path.isEmpty() || containsLineBreakOrSeparator(path)
+				|| containsLineBreakOrSeparator(archiveId))
+			throw new IllegalArgumentException("Path must not be empty, and path "
+					+ "and archive id cannot contain tabs or new lines. Path: " + path
+					+ ", archive id: " + archiveId);
+		return path + SEPARATOR + archiveId;
+	}
+
+	private static boolean containsLineBreakOrSeparator(String s) {
+		return s.contains(SEPARATOR) || s.contains("\n") || s.contains("\r");
+	}
+
+	private void appendLines(int shard, List<String> lines) {
+		File shardFile = getShardFile(shard);
+		try {
+			FileUtils.writeLines(shardFile, ENCODING, lines, true);
+		} catch (IOException e) {
+			logger.error(did("Appended to glacier archive id index shard", e,
+					"To append the archive ids", "shard", shardFile));
+			throw new RuntimeException(e);
+		}
+	}
+
+	private int getShard(String path) {
+		return (path.hashCode() & Integer.MAX_VALUE) % shards;
+	}
+
+	private File getShardFile(int shard) {
+		return new File(directory, SHARD_PREFIX + shard);
+	}
+
+	/**
+	 * @return a bulk put, which must be finished for the archive ids to be
+	 *         readable.
+	 */
+	public BulkPut startBulkPut() {
+		return new BulkPut();
+	}
+
+	/**
+	 * Puts many archive ids, with at most {@link GlacierArchiveIdIndex#BATCH_SIZE}
+	 * of them in memory. Not thread safe.
+	 */
+	public class BulkPut {
+
+		private final Map<Integer, List<String>> bufferedLines = new HashMap<Integer, List<String>>();
+		private final Set<Integer> appendedShards = new HashSet<Integer>();
+		private int buffered;
+		private long count;
+
+		private BulkPut() {
+		}
+
+		public void put(String path, String archiveId) {
+			int shard = getShard(path);
+			List<String> lines = bufferedLines.get(shard);
+			if (lines == null) {
+				lines = new ArrayList<String>();
+				bufferedLines.put(shard, lines);
+			}
+			lines.add(toLine(path, archiveId));
+			count++;
+			if (++buffered >= BATCH_SIZE)
+				flush();
+		}
+
+		private void flush() {
+			synchronized (GlacierArchiveIdIndex.this) {
+				for (Map.Entry<Integer, List<String>> lines : bufferedLines.entrySet())
+					appendLines(lines.getKey(), lines.getValue());
+			}
+			appendedShards.addAll(bufferedLines.keySet());
+			bufferedLines.clear();
+			buffered = 0;
+		}
+
+		/**
+		 * Appends the buffered archive ids and compacts the shards that were
+		 * appended to.
+		 * 
+		 * @return number of archive ids that were put.
+		 */
+		public long finish() {
+			flush();
+			synchronized (GlacierArchiveIdIndex.this) {
+				for (int shard : appendedShards)
+					compact(getShardFile(shard));
+				cache.clear();
+			}
+			return count;
+		}
+	}
+
+	private void compact(File shard) {
+		File compacted = new File(shard.getPath() + ".compacting");
+		try {
+			List<String> lines = new ArrayList<String>();
+			for (Map.Entry<String, String> archiveId : readShard(shard).entrySet())
+				lines.add(archiveId.getKey() + SEPARATOR + archiveId.getValue());
+			FileUtils.writeLines(compacted, ENCODING, lines);
+			if (!compacted.renameTo(shard))
+				throw new IOException("Could not replace shard with compacted shard: "
+						+ compacted);
+		} catch (IOException e) {
+			logger.warn(warn("Compacted glacier archive id index shard", e,
+					"Shard will have paths more than once until it's compacted",
+					"shard", shard));
+		} finally {
+			FileUtils.deleteQuietly(compacted);
+		}
+	}
+
+	private static final Map<File, GlacierArchiveIdIndex> sharedInstances = new HashMap<File, GlacierArchiveIdIndex>();
+
+	/**
+	 * There is one instance per vault in the JVM, so that puts and bulk puts to
+	 * the same shards don't interleave.
+	 * 
+	 * @return index with the default number of shards and cache size.
+	 */
+	public static synchronized GlacierArchiveIdIndex getSharedInstance(
+			LocalFileSystemPaths localFileSystemPaths, String vault) {
+		File directory = localFileSystemPaths.getGlacierArchiveIdsDirectory(vault)
+				.getAbsoluteFile();
+		GlacierArchiveIdIndex instance = sharedInstances.get(directory);
+		if (instance == null) {
+			instance = new GlacierArchiveIdIndex(directory, DEFAULT_SHARDS,
+					DEFAULT_CACHE_SIZE);
+			sharedInstances.put(directory, instance);
+		}
+		return instance;
+	}
+}
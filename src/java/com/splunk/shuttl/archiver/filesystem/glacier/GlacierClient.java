@@ -18,8 +18,6 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -28,6 +26,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.glacier.AmazonGlacierClient;
 import com.amazonaws.services.glacier.transfer.ArchiveTransferManager;
 import com.amazonaws.services.glacier.transfer.UploadResult;
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 
 /**
  * Implementation of doing operations to the Amazon Glacier service.
@@ -38,27 +37,18 @@ public class GlacierClient {
 
 	private ArchiveTransferManager transferManager;
 	private String vault;
-	// TODO: Better solution with db or flat files?
-	private static final HashMap<String, String> archiveIdCache = new HashMap<String, String>();
-	private final Map<String, String> archiveIds;
-
-	/**
-	 * Uses the in-memory static final archiveIdCache.
-	 */
-	private GlacierClient(ArchiveTransferManager transferManager, String vault) {
-		this(transferManager, vault, archiveIdCache);
-	}
+	private final GlacierArchiveIdIndex archiveIds;
 
 	public GlacierClient(ArchiveTransferManager transferManager, String vault,
-			Map<String, String> archiveIds) {
+			GlacierArchiveIdIndex archiveIds) {
 		this.transferManager = transferManager;
 		this.vault = vault;
 		this.archiveIds = archiveIds;
 	}
 
 	/**
-	 * Uploads a file to glacier and stores the of the transfer archiveId in
-	 * memory.
+	 * Uploads a file to glacier and stores the archiveId of the transfer in the
+	 * {@link GlacierArchiveIdIndex}.
 	 */
 	public void upload(File file, String dst) throws AmazonServiceException,
 			AmazonClientException, FileNotFoundException {
@@ -74,7 +64,7 @@ public class GlacierClient {
 	 * Downloads a file stored in glacier with a path.
 	 * 
 	 * @throws GlacierArchiveIdDoesNotExist
-	 *           if the archiveId is not stored in memory.
+	 *           if the archiveId is not in the {@link GlacierArchiveIdIndex}.
 	 */
 	public void downloadArchiveToFile(String key, File file) {
 		if (file.isDirectory())
@@ -101,13 +91,14 @@ public class GlacierClient {
 	 * Get the archiveId mapped to a path.
 	 */
 	public String getArchiveId(String path) {
-		if (!archiveIds.containsKey(path))
+		String archiveId = archiveIds.get(path);
+		if (archiveId == null)
 			throw new GlacierArchiveIdDoesNotExist(
 					"Could not get the archiveId for dst: " + path
 							+ ", which means that we cannot download the archive. "
-							+ "Download the archive inventory and parse out the "
-							+ "description for the path->archiveId mappings.");
-		return archiveIds.get(path);
+							+ "Download the vault inventory and import it with the "
+							+ "glacier inventory import endpoint.");
+		return archiveId;
 	}
 
 	/**
@@ -117,11 +108,14 @@ public class GlacierClient {
 		archiveIds.put(path, archiveId);
 	}
 
-	public static GlacierClient create(AWSCredentialsImpl credentials) {
+	public static GlacierClient create(AWSCredentialsImpl credentials,
+			LocalFileSystemPaths localFileSystemPaths) {
 		AmazonGlacierClient amazonGlacierClient = new AmazonGlacierClient(
 				credentials);
 		amazonGlacierClient.setEndpoint(credentials.getGlacierEndpoint());
+		String vault = credentials.getGlacierVault();
 		return new GlacierClient(new ArchiveTransferManager(amazonGlacierClient,
-				credentials), credentials.getGlacierVault());
+				credentials), vault, GlacierArchiveIdIndex.getSharedInstance(
+				localFileSystemPaths, vault));
 	}
 }
@@ -0,0 +1,127 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.glacier;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import com.splunk.shuttl.archiver.filesystem.glacier.GlacierArchiveIdIndex.BulkPut;
+
+/**
+ * Imports the archive ids of a glacier vault inventory to a
+ * {@link GlacierArchiveIdIndex}. The archive description is the path that the
+ * archive was uploaded to. The inventory is streamed, so that inventories with
+ * millions of archives are imported with bounded memory. When a path has more
+ * than one archive, the last one in the inventory is imported.
+ */
+public class GlacierInventoryImporter {
+
+	private static final Logger logger = Logger
+			.getLogger(GlacierInventoryImporter.class);
+
+	static final String ARCHIVE_LIST = "ArchiveList";
+	static final String ARCHIVE_ID = "ArchiveId";
+	static final String ARCHIVE_DESCRIPTION = "ArchiveDescription";
+
+	private final GlacierArchiveIdIndex archiveIdIndex;
+
+	public GlacierInventoryImporter(GlacierArchiveIdIndex archiveIdIndex) {
+		this.archiveIdIndex = archiveIdIndex;
+	}
+
+	/**
+	 * Archives that were imported before a parse error are kept.
+	 * 
+	 * @return number of imported archive ids.
+	 * @throws IOException
+	 *           if the inventory cannot be read or parsed.
+	 */
+	public long importInventory(InputStream inventory) throws IOException {
+		logger.info(will("Import glacier vault inventory"));
+		JsonParser parser = new JsonFactory().createJsonParser(inventory);
+		BulkPut bulkPut = archiveIdIndex.startBulkPut();
+		long imported = 0;
+		try {
+			expect(parser, JsonToken.START_OBJECT);
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if (ARCHIVE_LIST.equals(field))
+					importArchiveList(parser, bulkPut);
+				else
+					parser.skipChildren();
+			}
+		} finally {
+			imported = bulkPut.finish();
+			parser.close();
+		}
+		logger.info(done("Imported glacier vault inventory", "archive_ids",
+				imported));
+		return imported;
+	}
+
+	private void importArchiveList(JsonParser parser, BulkPut bulkPut)
+			throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY)
+			throw new JsonParseException(ARCHIVE_LIST + " is not an array",
+					parser.getCurrentLocation());
+		long skipped = 0;
+		while (parser.nextToken() == JsonToken.START_OBJECT)
+			if (!importArchive(parser, bulkPut))
+				skipped++;
+		if (skipped > 0)
+			logger.warn(happened("Skipped archives without archive id or with an "
+					+ "invalid description in glacier vault inventory", "skipped",
+					skipped));
+	}
+
+	private boolean importArchive(JsonParser parser, BulkPut bulkPut)
+			throws IOException {
+		String archiveId = null;
+		String description = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (ARCHIVE_ID.equals(field))
+				archiveId = parser.getText();
+			else if (ARCHIVE_DESCRIPTION.equals(field))
+				description = parser.getText();
+			else
+				parser.skipChildren();
+		}
+		if (archiveId == null || description == null || description.isEmpty())
+			return false;
+		try {
+			bulkPut.put(description, archiveId);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private void expect(JsonParser parser, JsonToken token) throws IOException {
+		if (parser.nextToken() != token)
+			throw new JsonParseException("Expected " + token + " in glacier "
+					+ "vault inventory", parser.getCurrentLocation());
+	}
+}
@@ -15,33 +15,94 @@
 
 package com.splunk.shuttl.archiver.filesystem.hadoop;
 
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.DeletesPaths;
 import com.splunk.shuttl.archiver.filesystem.FileOverwriteException;
+import com.splunk.shuttl.archiver.filesystem.ListsPathsRecursively;
+import com.splunk.shuttl.archiver.filesystem.RecursivePathIterator;
+import com.splunk.shuttl.archiver.filesystem.RecursivePathIterator.ListsChildren;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.RateLimitedInputStream;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.RateLimitedOutputStream;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferRateLimiter;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionalFileSystem;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.BucketTransactionCleaner;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.ReadsBucketStream;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.TransfersBuckets;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.WritesBucketStream;
 import com.splunk.shuttl.archiver.filesystem.transaction.file.FileTransactionCleaner;
 import com.splunk.shuttl.archiver.filesystem.transaction.file.TransfersFiles;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.LocalBucket;
 
 public class HadoopArchiveFileSystem implements ArchiveFileSystem,
-		TransactionalFileSystem {
+		TransactionalFileSystem, ListsPathsRecursively, DeletesPaths {
+
+	private static final Logger logger = Logger
+			.getLogger(HadoopArchiveFileSystem.class);
+
+	/**
+	 * Temp directories of bucket puts that haven't been touched for this long
+	 * are deleted, since they will not be resumed.
+	 */
+	static final long ABANDONED_TEMP_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+	private static final long ABANDONED_TEMP_CHECK_MILLIS = 60 * 60 * 1000L;
+	private static final ConcurrentMap<String, Long> abandonedTempChecks = new ConcurrentHashMap<String, Long>();
 
 	private final FileSystem hadoopFileSystem;
+	private final ParallelDirectoryTransfer parallelDirectoryTransfer;
+	private final TransferRateLimiter rateLimiter;
+	private final long checkpointBytes;
 
 	public HadoopArchiveFileSystem(FileSystem hadoopFileSystem) {
+		this(hadoopFileSystem, null, null);
+	}
+
+	/**
+	 * @param parallelDirectoryTransfer
+	 *          to transfer files and directories with, file by file. null if
+	 *          they should be transferred with hadoop's copy methods.
+	 * @param rateLimiter
+	 *          to limit streamed transfers with. null if they are not limited.
+	 *          The parallelDirectoryTransfer should have the same limiter.
+	 */
+	public HadoopArchiveFileSystem(FileSystem hadoopFileSystem,
+			ParallelDirectoryTransfer parallelDirectoryTransfer,
+			TransferRateLimiter rateLimiter) {
+		this(hadoopFileSystem, parallelDirectoryTransfer, rateLimiter,
+				TransferCheckpoint.DEFAULT_CHECKPOINT_BYTES);
+	}
+
+	/**
+	 * @param checkpointBytes
+	 *          to put between writes of a bucket put's {@link TransferCheckpoint}.
+	 *          Buckets smaller than this are put without a checkpoint.
+	 */
+	public HadoopArchiveFileSystem(FileSystem hadoopFileSystem,
+			ParallelDirectoryTransfer parallelDirectoryTransfer,
+			TransferRateLimiter rateLimiter, long checkpointBytes) {
 		this.hadoopFileSystem = hadoopFileSystem;
+		this.parallelDirectoryTransfer = parallelDirectoryTransfer;
+		this.rateLimiter = rateLimiter;
+		this.checkpointBytes = checkpointBytes;
 	}
 
 	@Override
@@ -54,20 +115,166 @@ public class HadoopArchiveFileSystem implements ArchiveFileSystem,
 			return Collections.emptyList();
 	}
 
+	/**
+	 * Walks the directories with the file statuses of each listing, so that
+	 * files are never listed as if they were directories.
+	 */
+	@Override
+	public Iterator<String> listPathsRecursively(String path, int depth)
+			throws IOException {
+		return new RecursivePathIterator(new ListsChildren() {
+
+			@Override
+			public List<String> listChildren(String path, boolean isLeafLevel)
+					throws IOException {
+				return listChildStatuses(new Path(path), isLeafLevel);
+			}
+		}, path, depth);
+	}
+
+	/**
+	 * The hadoop version in use has no recursive listing, so the walk lists
+	 * every directory.
+	 */
+	@Override
+	public boolean isBulkListing() {
+		return false;
+	}
+
+	private List<String> listChildStatuses(Path path, boolean isLeafLevel)
+			throws IOException {
+		FileStatus[] statuses = hadoopFileSystem.listStatus(path);
+		if (statuses == null)
+			return Collections.emptyList();
+		if (isLeafLevel)
+			return new FileStatusBackedList(statuses);
+		List<FileStatus> directories = new ArrayList<FileStatus>(statuses.length);
+		for (FileStatus status : statuses)
+			if (status.isDir())
+				directories.add(status);
+		return new FileStatusBackedList(directories.toArray(new FileStatus[directories
+				.size()]));
+	}
+
 	private void putFile(File src, Path temp, Path dst) throws IOException {
 		if (hadoopFileSystem.exists(dst))
 			throw new FileOverwriteException();
 		hadoopFileSystem.delete(temp, true);
-		hadoopFileSystem.copyFromLocalFile(new Path(src.getAbsoluteFile().toURI()),
-				temp);
+		if (parallelDirectoryTransfer != null)
+			parallelDirectoryTransfer.put(src, temp);
+		else
+			hadoopFileSystem.copyFromLocalFile(
+					new Path(src.getAbsoluteFile().toURI()), temp);
+	}
+
+	/**
+	 * Puts the bucket directory file by file, with a {@link TransferCheckpoint}
+	 * next to the temp directory. When an earlier attempt failed, the temp
+	 * directory is kept by the cleaner and only the files that didn't make it
+	 * are put.
+	 */
+	private void putBucketDirectory(File src, Path temp, Path dst)
+			throws IOException {
+		if (hadoopFileSystem.exists(dst))
+			throw new FileOverwriteException();
+		deleteAbandonedTemps(temp);
+		TransferCheckpoint checkpoint = TransferCheckpoint.load(hadoopFileSystem,
+				temp, checkpointBytes, TransferCheckpoint.DEFAULT_CHECKPOINT_MILLIS);
+		if (checkpoint.isEmpty())
+			hadoopFileSystem.delete(temp, true);
+		else
+			logger.info(will("Resume putting bucket directory", "src", src, "temp",
+					temp));
+		boolean isPut = false;
+		try {
+			getDirectoryTransfer().put(src, temp, checkpoint);
+			isPut = true;
+		} finally {
+			if (!isPut)
+				saveCheckpoint(checkpoint, temp);
+		}
+	}
+
+	private void saveCheckpoint(TransferCheckpoint checkpoint, Path temp) {
+		try {
+			checkpoint.save();
+		} catch (IOException e) {
+			logger.warn(warn("Saved checkpoint of failed bucket put", e,
+					"the put will start over", "temp", temp));
+		}
+	}
+
+	/**
+	 * Deletes abandoned temp directories of the index that the temp is in, at
+	 * most once an hour per index.
+	 */
+	private void deleteAbandonedTemps(Path temp) {
+		Path bucketTemps = temp.getParent() == null ? null : temp.getParent()
+				.getParent();
+		if (bucketTemps == null)
+			return;
+		String key = bucketTemps.toString();
+		long now = System.currentTimeMillis();
+		Long lastCheck = abandonedTempChecks.get(key);
+		if (lastCheck != null && now - lastCheck < ABANDONED_TEMP_CHECK_MILLIS)
+			return;
+		abandonedTempChecks.put(key, now);
+		try {
+			List<Path> deleted = TransferCheckpoint.deleteAbandoned(
+					hadoopFileSystem, bucketTemps, ABANDONED_TEMP_MILLIS);
+			if (!deleted.isEmpty())
+				logger.info(done("Deleted abandoned temps of bucket puts",
+						"directory", bucketTemps, "deleted", deleted));
+		} catch (IOException e) {
+			logger.warn(warn("Deleted abandoned temps of bucket puts", e,
+					"will try again later", "directory", bucketTemps));
+		}
+	}
+
+	private ParallelDirectoryTransfer getDirectoryTransfer() {
+		if (parallelDirectoryTransfer != null)
+			return parallelDirectoryTransfer;
+		else
+			return ParallelDirectoryTransfer.create(hadoopFileSystem, 1);
+	}
+
+	private void putFileStream(String fileName,
+			WritesBucketStream writesBucketStream, Path temp, Path dst)
+			throws IOException {
+		if (hadoopFileSystem.exists(dst))
+			throw new FileOverwriteException();
+		hadoopFileSystem.delete(temp, true);
+		hadoopFileSystem.mkdirs(temp);
+		OutputStream out = limit(hadoopFileSystem.create(new Path(temp, fileName)));
+		try {
+			writesBucketStream.writeTo(out);
+		} finally {
+			out.close();
+		}
 	}
 
 	private void getFile(Path src, File temp, File dst) throws IOException {
 		if (dst.exists())
 			throw new FileOverwriteException();
 		FileUtils.deleteDirectory(temp);
-		hadoopFileSystem.copyToLocalFile(src, new Path(temp.getAbsoluteFile()
-				.toURI()));
+		if (parallelDirectoryTransfer != null)
+			parallelDirectoryTransfer.get(src, temp);
+		else
+			hadoopFileSystem.copyToLocalFile(src, new Path(temp.getAbsoluteFile()
+					.toURI()));
+	}
+
+	private void getFileStream(Path src, ReadsBucketStream readsBucketStream,
+			File temp, File dst) throws IOException {
+		if (dst.exists())
+			throw new FileOverwriteException();
+		FileUtils.deleteDirectory(temp);
+		InputStream in = limit(hadoopFileSystem.open(src));
+		try {
+			readsBucketStream.readFrom(in, temp);
+		} finally {
+			in.close();
+		}
 	}
 
 	@Override
@@ -90,6 +297,7 @@ public class HadoopArchiveFileSystem implements ArchiveFileSystem,
 		return hadoopFileSystem.exists(new Path(path));
 	}
 
+	@Override
 	public void deletePath(String path) {
 		try {
 			hadoopFileSystem.delete(new Path(path), true);
@@ -106,7 +314,21 @@ public class HadoopArchiveFileSystem implements ArchiveFileSystem,
 			public void put(Bucket bucket, String temp, String dst)
 					throws IOException {
 				LocalBucket localBucket = (LocalBucket) bucket;
-				putFile(localBucket.getDirectory(), new Path(temp), new Path(dst));
+				putBucketDirectory(localBucket.getDirectory(), new Path(temp),
+						new Path(dst));
+			}
+
+			@Override
+			public boolean canPutStream() {
+				return true;
+			}
+
+			@Override
+			public void putStream(Bucket bucket, String fileName,
+					WritesBucketStream writesBucketStream, String temp, String dst)
+					throws IOException {
+				putFileStream(fileName, writesBucketStream, new Path(temp),
+						new Path(dst));
 			}
 
 			@Override
@@ -114,6 +336,19 @@ public class HadoopArchiveFileSystem implements ArchiveFileSystem,
 					throws IOException {
 				getFile(new Path(remoteBucket.getPath()), temp, dst);
 			}
+
+			@Override
+			public boolean canGetStream() {
+				return true;
+			}
+
+			@Override
+			public void getStream(Bucket remoteBucket, String fileName,
+					ReadsBucketStream readsBucketStream, File temp, File dst)
+					throws IOException {
+				getFileStream(new Path(remoteBucket.getPath(), fileName),
+						readsBucketStream, temp, dst);
+			}
 		};
 	}
 
@@ -141,11 +376,30 @@ public class HadoopArchiveFileSystem implements ArchiveFileSystem,
 
 			@Override
 			public void cleanTransaction(Bucket bucket, String temp) {
-				deletePath(temp);
+				cleanBucketTemp(new Path(temp));
 			}
 		};
 	}
 
+	/**
+	 * Keeps a temp directory that has a {@link TransferCheckpoint}, since the
+	 * put failed and can be resumed. The checkpoint is deleted when the temp
+	 * directory is gone, which it is after a commit.
+	 */
+	private void cleanBucketTemp(Path temp) {
+		try {
+			if (!TransferCheckpoint.exists(hadoopFileSystem, temp))
+				hadoopFileSystem.delete(temp, true);
+			else if (!hadoopFileSystem.exists(temp))
+				hadoopFileSystem.delete(TransferCheckpoint.getManifestPath(temp), false);
+			else
+				logger.info(done("Kept temp directory of unfinished bucket put",
+						"temp", temp));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public FileTransactionCleaner getFileTransactionCleaner() {
 		return new FileTransactionCleaner() {
@@ -160,4 +414,45 @@ public class HadoopArchiveFileSystem implements ArchiveFileSystem,
 	public FileSystem getFileSystem() {
 		return hadoopFileSystem;
 	}
+
+	private OutputStream limit(OutputStream out) {
+		return TransferRateLimiter.isLimiting(rateLimiter) ? new RateLimitedOutputStream(
+				out, rateLimiter) : out;
+	}
+
+	private InputStream limit(InputStream in) {
+		return TransferRateLimiter.isLimiting(rateLimiter) ? new RateLimitedInputStream(
+				in, rateLimiter) : in;
+	}
+
+	/**
+	 * @return a file system on the same hadoop file system, that transfers
+	 *         directories file by file over the number of streams. This file
+	 *         system if streams is null or less than 2.
+	 */
+	public HadoopArchiveFileSystem withFileTransferStreams(Integer streams) {
+		if (streams == null || streams < 2)
+			return this;
+		else
+			return new HadoopArchiveFileSystem(hadoopFileSystem,
+					ParallelDirectoryTransfer.create(hadoopFileSystem, streams,
+							rateLimiter), rateLimiter, checkpointBytes);
+	}
+
+	/**
+	 * @return a file system on the same hadoop file system, that transfers all
+	 *         data within the rate of the limiter. This file system if the
+	 *         limiter has no limit, so that unlimited transfers are copied by
+	 *         hadoop. A limit that is set later applies to the file systems that
+	 *         are created after it.
+	 */
+	public HadoopArchiveFileSystem withRateLimiter(TransferRateLimiter rateLimiter) {
+		if (!TransferRateLimiter.isLimiting(rateLimiter))
+			return this;
+		int streams = parallelDirectoryTransfer == null ? 1
+				: parallelDirectoryTransfer.getStreams();
+		return new HadoopArchiveFileSystem(hadoopFileSystem,
+				ParallelDirectoryTransfer.create(hadoopFileSystem, streams,
+						rateLimiter), rateLimiter, checkpointBytes);
+	}
 }
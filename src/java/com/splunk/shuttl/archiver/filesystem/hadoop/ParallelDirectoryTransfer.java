@@ -0,0 +1,378 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.hadoop;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.splunk.shuttl.archiver.filesystem.bandwidth.InterruptibleInputStream;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.RateLimitedInputStream;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferRateLimiter;
+
+/**
+ * Copies directories between the local file system and a hadoop
+ * {@link FileSystem} file by file, over several streams at once. A single
+ * stream rarely saturates the network to HDFS or S3, and buckets consist of
+ * many large files. The largest files are copied first so the streams finish
+ * at about the same time.<br/>
+ * <br/>
+ * With a {@link TransferRateLimiter}, the files are copied by reading and
+ * writing their content within the limiter's rate.
+ */
+public class ParallelDirectoryTransfer {
+
+	private final FileSystem hadoopFileSystem;
+	private final ExecutorService executor;
+	private final int streams;
+	private final TransferRateLimiter rateLimiter;
+
+	public ParallelDirectoryTransfer(FileSystem hadoopFileSystem,
+			ExecutorService executor, int streams) {
+		this(hadoopFileSystem, executor, streams, null);
+	}
+
+	/**
+	 * @param rateLimiter
+	 *          to limit the transfer rate with. null if it's not limited.
+	 */
+	public ParallelDirectoryTransfer(FileSystem hadoopFileSystem,
+			ExecutorService executor, int streams, TransferRateLimiter rateLimiter) {
+		this.hadoopFileSystem = hadoopFileSystem;
+		this.executor = executor;
+		this.streams = streams;
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Copies the local file, or directory with everything in it, to the remote
+	 * path. Same result as {@link FileSystem#copyFromLocalFile(Path, Path)} when
+	 * the remote path does not exist.
+	 */
+	public void put(File localDirectory, Path remoteDirectory)
+			throws IOException {
+		if (localDirectory.isDirectory())
+			put(localDirectory, remoteDirectory, null);
+		else
+			copyConcurrently(Collections.<FileCopy> singletonList(new PutFile(
+					localDirectory, remoteDirectory, null, null)));
+	}
+
+	/**
+	 * Copies the local directory, with everything in it, to the remote
+	 * directory. Skips the files that the checkpoint has as transferred, and
+	 * adds every file that is copied to the checkpoint.
+	 * 
+	 * @param checkpoint
+	 *          of earlier attempts to copy the directory. null if the copy
+	 *          should not be resumable.
+	 */
+	public void put(File localDirectory, Path remoteDirectory,
+			TransferCheckpoint checkpoint) throws IOException {
+		List<FileCopy> copies = new ArrayList<FileCopy>();
+		addLocalFiles(localDirectory, remoteDirectory, "", checkpoint, copies);
+		copyConcurrently(copies);
+	}
+
+	private void addLocalFiles(File localDirectory, Path remoteDirectory,
+			String relativeDirectory, TransferCheckpoint checkpoint,
+			List<FileCopy> copies) throws IOException {
+		hadoopFileSystem.mkdirs(remoteDirectory);
+		File[] children = localDirectory.listFiles();
+		if (children == null)
+			throw new IOException("Could not list directory: " + localDirectory);
+		for (File child : children) {
+			Path remoteChild = new Path(remoteDirectory, child.getName());
+			String relativeChild = relativeDirectory + child.getName();
+			if (child.isDirectory())
+				addLocalFiles(child, remoteChild, relativeChild + "/", checkpoint,
+						copies);
+			else if (checkpoint == null
+					|| !checkpoint.isTransferred(child, relativeChild, remoteChild))
+				copies.add(new PutFile(child, remoteChild, relativeChild, checkpoint));
+		}
+	}
+
+	/**
+	 * Copies the remote file, or directory with everything in it, to the local
+	 * path. Same result as {@link FileSystem#copyToLocalFile(Path, Path)} when
+	 * the local path does not exist.
+	 */
+	public void get(Path remoteDirectory, File localDirectory)
+			throws IOException {
+		List<FileCopy> copies = new ArrayList<FileCopy>();
+		FileStatus status = hadoopFileSystem.getFileStatus(remoteDirectory);
+		if (status.isDir())
+			addRemoteFiles(remoteDirectory, localDirectory, copies);
+		else
+			copies.add(new GetFile(remoteDirectory, localDirectory, status.getLen()));
+		copyConcurrently(copies);
+	}
+
+	private void addRemoteFiles(Path remoteDirectory, File localDirectory,
+			List<FileCopy> copies) throws IOException {
+		if (!localDirectory.mkdirs() && !localDirectory.isDirectory())
+			throw new IOException("Could not create directory: " + localDirectory);
+		FileStatus[] children = hadoopFileSystem.listStatus(remoteDirectory);
+		if (children == null)
+			throw new IOException("Could not list directory: " + remoteDirectory);
+		for (FileStatus child : children) {
+			File localChild = new File(localDirectory, child.getPath().getName());
+			if (child.isDir())
+				addRemoteFiles(child.getPath(), localChild, copies);
+			else
+				copies.add(new GetFile(child.getPath(), localChild, child.getLen()));
+		}
+	}
+
+	private void copyConcurrently(List<FileCopy> copies) throws IOException {
+		Collections.sort(copies, new LargestFirst());
+		Queue<FileCopy> queue = new ConcurrentLinkedQueue<FileCopy>(copies);
+		int workers = Math.min(streams, copies.size());
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 1; i < workers; i++)
+			futures.add(executor.submit(new CopyWorker(queue)));
+
+		IOException exception = null;
+		try {
+			new CopyWorker(queue).call();
+		} catch (IOException e) {
+			exception = e;
+		}
+		IOException workerException = waitForAll(futures);
+		if (exception == null)
+			exception = workerException;
+		if (exception != null)
+			throw exception;
+	}
+
+	private IOException waitForAll(List<Future<?>> futures) throws IOException {
+		IOException exception = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancelAll(futures);
+				throw new IOException("Interrupted while copying files", e);
+			} catch (ExecutionException e) {
+				if (exception == null)
+					exception = asIOException(e.getCause());
+			}
+		}
+		return exception;
+	}
+
+	private void cancelAll(List<Future<?>> futures) {
+		for (Future<?> future : futures)
+			future.cancel(true);
+	}
+
+	private IOException asIOException(Throwable cause) {
+		if (cause instanceof IOException)
+			return (IOException) cause;
+		else
+			return new IOException(cause);
+	}
+
+	/**
+	 * Copies files until there are none left. Clears the queue when a copy
+	 * fails or the worker is interrupted, so that the other workers stop too.
+	 */
+	private static class CopyWorker implements Callable<Void> {
+
+		private final Queue<FileCopy> queue;
+
+		public CopyWorker(Queue<FileCopy> queue) {
+			this.queue = queue;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			FileCopy copy;
+			while ((copy = queue.poll()) != null) {
+				if (Thread.currentThread().isInterrupted()) {
+					queue.clear();
+					throw new InterruptedIOException("Interrupted while copying files");
+				}
+				try {
+					copy.copy();
+				} catch (IOException e) {
+					queue.clear();
+					throw e;
+				} catch (RuntimeException e) {
+					queue.clear();
+					throw e;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static abstract class FileCopy {
+
+		abstract long getSize();
+
+		abstract void copy() throws IOException;
+	}
+
+	private class PutFile extends FileCopy {
+
+		private final File src;
+		private final Path dst;
+		private final String relativePath;
+		private final TransferCheckpoint checkpoint;
+
+		public PutFile(File src, Path dst, String relativePath,
+				TransferCheckpoint checkpoint) {
+			this.src = src;
+			this.dst = dst;
+			this.relativePath = relativePath;
+			this.checkpoint = checkpoint;
+		}
+
+		@Override
+		long getSize() {
+			return src.length();
+		}
+
+		@Override
+		void copy() throws IOException {
+			if (!TransferRateLimiter.isLimiting(rateLimiter))
+				hadoopFileSystem.copyFromLocalFile(false, true, new Path(src
+						.getAbsoluteFile().toURI()), dst);
+			else
+				copyLimited(new FileInputStream(src), hadoopFileSystem.create(dst, true));
+			if (checkpoint != null)
+				checkpoint.addTransferred(src, relativePath, dst);
+		}
+	}
+
+	private class GetFile extends FileCopy {
+
+		private final Path src;
+		private final File dst;
+		private final long size;
+
+		public GetFile(Path src, File dst, long size) {
+			this.src = src;
+			this.dst = dst;
+			this.size = size;
+		}
+
+		@Override
+		long getSize() {
+			return size;
+		}
+
+		@Override
+		void copy() throws IOException {
+			if (!TransferRateLimiter.isLimiting(rateLimiter)) {
+				hadoopFileSystem.copyToLocalFile(false, src, new Path(dst
+						.getAbsoluteFile().toURI()));
+			} else {
+				dst.getParentFile().mkdirs();
+				copyLimited(hadoopFileSystem.open(src), new FileOutputStream(dst));
+			}
+		}
+	}
+
+	private void copyLimited(InputStream in, OutputStream out)
+			throws IOException {
+		try {
+			IOUtils.copyLarge(new InterruptibleInputStream(
+					new RateLimitedInputStream(in, rateLimiter)), out);
+			out.close();
+		} finally {
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private static class LargestFirst implements Comparator<FileCopy> {
+
+		@Override
+		public int compare(FileCopy o1, FileCopy o2) {
+			return Long.valueOf(o2.getSize()).compareTo(o1.getSize());
+		}
+	}
+
+	private static class TransferThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "shuttl-file-transfer-"
+					+ threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static ExecutorService sharedExecutor;
+
+	private static synchronized ExecutorService getSharedExecutor() {
+		if (sharedExecutor == null)
+			sharedExecutor = Executors
+					.newCachedThreadPool(new TransferThreadFactory());
+		return sharedExecutor;
+	}
+
+	/**
+	 * @return transfer that copies over the number of streams, with threads
+	 *         shared by all transfers in this JVM.
+	 */
+	public static ParallelDirectoryTransfer create(FileSystem hadoopFileSystem,
+			int streams) {
+		return create(hadoopFileSystem, streams, null);
+	}
+
+	/**
+	 * @return transfer that copies over the number of streams within the rate
+	 *         limit, with threads shared by all transfers in this JVM.
+	 */
+	public static ParallelDirectoryTransfer create(FileSystem hadoopFileSystem,
+			int streams, TransferRateLimiter rateLimiter) {
+		return new ParallelDirectoryTransfer(hadoopFileSystem,
+				getSharedExecutor(), streams, rateLimiter);
+	}
+
+	public int getStreams() {
+		return streams;
+	}
+}
@@ -0,0 +1,345 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.hadoop;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.ChecksumException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+/**
+ * Manifest of the files of a directory upload that have reached the remote
+ * temp directory. It's stored next to the temp directory, so that it's not
+ * committed with it. A retried upload skips the files that are in the
+ * manifest, unchanged locally and unchanged on the remote side.<br/>
+ * <br/>
+ * The manifest is rewritten in batches, when another batch of bytes has been
+ * transferred or the last write is old enough, and by {@link #save()} when an
+ * upload fails. Uploads smaller than a batch never write a manifest, since
+ * they are cheaper to upload again than to resume.<br/>
+ * <br/>
+ * The manifest format is one line per file: length, last modified, last
+ * modified on the remote side and the path relative to the uploaded
+ * directory, separated by tabs. Lines that can't be read are ignored, so the
+ * worst a broken manifest does is make files upload again.
+ */
+public class TransferCheckpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(TransferCheckpoint.class);
+
+	static final String MANIFEST_SUFFIX = ".checkpoint";
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * Bytes to transfer between manifest writes, and the least bytes of an
+	 * upload that is worth resuming.
+	 */
+	public static final long DEFAULT_CHECKPOINT_BYTES = 64 * 1024 * 1024;
+
+	/**
+	 * Time after which the manifest is written, even if less than a batch of
+	 * bytes has been transferred since the last write.
+	 */
+	public static final long DEFAULT_CHECKPOINT_MILLIS = 60 * 1000;
+
+	private final FileSystem hadoopFileSystem;
+	private final Path manifest;
+	private final Map<String, TransferredFile> transferredFiles;
+	private final long checkpointBytes;
+	private final long checkpointMillis;
+	private long transferredBytes;
+	private long unsavedBytes;
+	private boolean isSaved;
+	private long lastSave;
+
+	private TransferCheckpoint(FileSystem hadoopFileSystem, Path manifest,
+			Map<String, TransferredFile> transferredFiles, long checkpointBytes,
+			long checkpointMillis) {
+		this.hadoopFileSystem = hadoopFileSystem;
+		this.manifest = manifest;
+		this.transferredFiles = transferredFiles;
+		this.checkpointBytes = checkpointBytes;
+		this.checkpointMillis = checkpointMillis;
+		for (TransferredFile file : transferredFiles.values())
+			transferredBytes += file.length;
+		this.isSaved = true;
+		this.lastSave = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return true if no files have been recorded as transferred.
+	 */
+	public synchronized boolean isEmpty() {
+		return transferredFiles.isEmpty();
+	}
+
+	/**
+	 * @return true if the local file has been transferred to the remote path,
+	 *         and neither has changed since.
+	 */
+	public boolean isTransferred(File localFile, String relativePath,
+			Path remotePath) throws IOException {
+		TransferredFile transferred;
+		synchronized (this) {
+			transferred = transferredFiles.get(relativePath);
+		}
+		return transferred != null && transferred.isSameAs(localFile)
+				&& transferred.isSameAs(getRemoteStatus(remotePath));
+	}
+
+	private FileStatus getRemoteStatus(Path remotePath) throws IOException {
+		if (!hadoopFileSystem.exists(remotePath))
+			return null;
+		FileStatus status = hadoopFileSystem.getFileStatus(remotePath);
+		return status.isDir() ? null : status;
+	}
+
+	/**
+	 * Records the local file as transferred to the remote path, and writes the
+	 * manifest if a batch of bytes has been transferred since the last write,
+	 * or if the last write is old enough.
+	 */
+	public void addTransferred(File localFile, String relativePath,
+			Path remotePath) throws IOException {
+		FileStatus remoteStatus = getRemoteStatus(remotePath);
+		if (remoteStatus == null)
+			throw new IOException("Transferred file is missing: " + remotePath);
+		synchronized (this) {
+			transferredFiles.put(relativePath,
+					new TransferredFile(localFile.length(), localFile.lastModified(),
+							remoteStatus.getModificationTime()));
+			transferredBytes += localFile.length();
+			unsavedBytes += localFile.length();
+			isSaved = false;
+			if (isWorthResuming()
+					&& (unsavedBytes >= checkpointBytes || System.currentTimeMillis()
+							- lastSave >= checkpointMillis))
+				writeManifest();
+		}
+	}
+
+	/**
+	 * Writes the files that haven't been written to the manifest yet, unless
+	 * the upload is too small to be worth resuming.
+	 */
+	public synchronized void save() throws IOException {
+		if (!isSaved && isWorthResuming())
+			writeManifest();
+	}
+
+	private boolean isWorthResuming() {
+		return transferredBytes >= checkpointBytes;
+	}
+
+	private void writeManifest() throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (Map.Entry<String, TransferredFile> entry : transferredFiles
+				.entrySet()) {
+			TransferredFile file = entry.getValue();
+			lines.append(file.length).append(SEPARATOR).append(file.lastModified)
+					.append(SEPARATOR).append(file.remoteLastModified)
+					.append(SEPARATOR).append(entry.getKey()).append('\n');
+		}
+		OutputStream out = hadoopFileSystem.create(manifest, true);
+		try {
+			IOUtils.write(lines.toString(), out, "UTF-8");
+		} finally {
+			out.close();
+		}
+		unsavedBytes = 0;
+		isSaved = true;
+		lastSave = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return path of the manifest for an upload to the temp directory.
+	 */
+	public static Path getManifestPath(Path temp) {
+		return new Path(temp.getParent(), temp.getName() + MANIFEST_SUFFIX);
+	}
+
+	/**
+	 * @return true if there is a persisted manifest for the temp directory.
+	 */
+	public static boolean exists(FileSystem hadoopFileSystem, Path temp)
+			throws IOException {
+		return hadoopFileSystem.exists(getManifestPath(temp));
+	}
+
+	/**
+	 * @return checkpoint for an upload to the temp directory, with the files
+	 *         that are recorded in its persisted manifest, if there is one.
+	 */
+	public static TransferCheckpoint load(FileSystem hadoopFileSystem, Path temp)
+			throws IOException {
+		return load(hadoopFileSystem, temp, DEFAULT_CHECKPOINT_BYTES,
+				DEFAULT_CHECKPOINT_MILLIS);
+	}
+
+	/**
+	 * @param checkpointBytes
+	 *          to transfer between manifest writes. Uploads of fewer bytes are
+	 *          not resumable.
+	 * @param checkpointMillis
+	 *          after which the manifest is written, even if less than a batch
+	 *          has been transferred.
+	 */
+	public static TransferCheckpoint load(FileSystem hadoopFileSystem,
+			Path temp, long checkpointBytes, long checkpointMillis)
+			throws IOException {
+		Path manifest = getManifestPath(temp);
+		Map<String, TransferredFile> transferredFiles = new LinkedHashMap<String, TransferredFile>();
+		if (hadoopFileSystem.exists(manifest))
+			readManifestSafe(hadoopFileSystem, manifest, transferredFiles);
+		return new TransferCheckpoint(hadoopFileSystem, manifest,
+				transferredFiles, checkpointBytes, checkpointMillis);
+	}
+
+	/**
+	 * Deletes the temp directories under the directory of bucket temps, that
+	 * haven't been modified within the max age, with their manifests. These
+	 * are uploads that were never resumed, or temps left by a crash. The
+	 * directory is expected to have a directory per bucket, with a temp
+	 * directory per format.
+	 * 
+	 * @return the deleted temp directories and manifests.
+	 */
+	public static List<Path> deleteAbandoned(FileSystem hadoopFileSystem,
+			Path directory, long maxAgeMillis) throws IOException {
+		List<Path> deleted = new ArrayList<Path>();
+		long oldest = System.currentTimeMillis() - maxAgeMillis;
+		FileStatus[] buckets = hadoopFileSystem.listStatus(directory);
+		if (buckets != null)
+			for (FileStatus bucket : buckets)
+				if (bucket.isDir())
+					deleteAbandonedTemps(hadoopFileSystem, bucket.getPath(), oldest,
+							deleted);
+		return deleted;
+	}
+
+	private static void deleteAbandonedTemps(FileSystem hadoopFileSystem,
+			Path bucket, long oldest, List<Path> deleted) throws IOException {
+		FileStatus[] statuses = hadoopFileSystem.listStatus(bucket);
+		if (statuses == null)
+			return;
+		Map<String, FileStatus> byName = new HashMap<String, FileStatus>();
+		for (FileStatus status : statuses)
+			byName.put(status.getPath().getName(), status);
+		for (FileStatus status : statuses) {
+			String name = status.getPath().getName();
+			if (name.endsWith(MANIFEST_SUFFIX)) {
+				if (status.getModificationTime() < oldest
+						&& !byName.containsKey(name.substring(0, name.length()
+								- MANIFEST_SUFFIX.length())))
+					delete(hadoopFileSystem, status.getPath(), deleted);
+			} else if (status.isDir()) {
+				FileStatus manifest = byName.get(name + MANIFEST_SUFFIX);
+				long lastModified = manifest == null ? status.getModificationTime()
+						: Math.max(status.getModificationTime(),
+								manifest.getModificationTime());
+				if (lastModified < oldest) {
+					delete(hadoopFileSystem, status.getPath(), deleted);
+					if (manifest != null)
+						delete(hadoopFileSystem, manifest.getPath(), deleted);
+				}
+			}
+		}
+	}
+
+	private static void delete(FileSystem hadoopFileSystem, Path path,
+			List<Path> deleted) throws IOException {
+		if (hadoopFileSystem.delete(path, true))
+			deleted.add(path);
+	}
+
+	private static void readManifestSafe(FileSystem hadoopFileSystem,
+			Path manifest, Map<String, TransferredFile> transferredFiles)
+			throws IOException {
+		try {
+			readManifest(hadoopFileSystem, manifest, transferredFiles);
+		} catch (ChecksumException e) {
+			logger.warn(warn("Read transfer checkpoint manifest", e,
+					"Will transfer all files again", "manifest", manifest));
+			transferredFiles.clear();
+		}
+	}
+
+	private static void readManifest(FileSystem hadoopFileSystem, Path manifest,
+			Map<String, TransferredFile> transferredFiles) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				hadoopFileSystem.open(manifest), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null)
+				readLine(line, transferredFiles);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void readLine(String line,
+			Map<String, TransferredFile> transferredFiles) {
+		String[] columns = line.split(SEPARATOR, 4);
+		if (columns.length != 4)
+			return;
+		try {
+			transferredFiles.put(columns[3], new TransferredFile(
+					Long.parseLong(columns[0]), Long.parseLong(columns[1]),
+					Long.parseLong(columns[2])));
+		} catch (NumberFormatException e) {
+			// Line was not completely written. File will be transferred again.
+		}
+	}
+
+	private static class TransferredFile {
+
+		private final long length;
+		private final long lastModified;
+		private final long remoteLastModified;
+
+		public TransferredFile(long length, long lastModified,
+				long remoteLastModified) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.remoteLastModified = remoteLastModified;
+		}
+
+		public boolean isSameAs(File localFile) {
+			return localFile.length() == length
+					&& localFile.lastModified() == lastModified;
+		}
+
+		public boolean isSameAs(FileStatus remoteStatus) {
+			return remoteStatus != null && remoteStatus.getLen() == length
+					&& remoteStatus.getModificationTime() == remoteLastModified;
+		}
+	}
+}
@@ -16,6 +16,8 @@ package com.splunk.shuttl.archiver.filesystem.transaction;
 
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
+import java.util.Arrays;
+
 import org.apache.log4j.Logger;
 
 /**
@@ -36,13 +38,16 @@ public class TransactionExecuter {
 
 	/**
 	 * Execute a transaction in the right order. Makes sure that clean is always
-	 * called last, even if any other step throws exception.
+	 * called last, even if any other step throws exception. The transaction is
+	 * not committed if the thread is interrupted while it's prepared, which is
+	 * how an in-flight transfer is aborted.
 	 */
 	public static void executeTransaction(Transaction transaction) {
 		try {
 			logger.info(will("Prepare transaction", "transaction", transaction));
 			transaction.prepare();
 			logger.info(done("Preparing transaction", "transaction", transaction));
+			throwIfInterrupted();
 			logger.info(will("Commit transaction", "transaction", transaction));
 			transaction.commit();
 			logger.info(done("Commit transaction", "transaction", transaction));
@@ -54,4 +59,71 @@ public class TransactionExecuter {
 			transaction.clean();
 		}
 	}
+
+	/**
+	 * Execute transactions as one unit. Every transaction is prepared, in the
+	 * given order, before any of them is committed. Nothing is committed if any
+	 * preparation fails. All transactions are cleaned last, even if any other
+	 * step throws exception.<br/>
+	 * <br/>
+	 * Since the transactions are prepared in order, a transaction can prepare
+	 * its data inside the temporary location of a transaction before it, to get
+	 * it committed together with that transaction.
+	 */
+	public void execute(Transaction... transactions) {
+		TransactionExecuter.executeTransactions(transactions);
+	}
+
+	/**
+	 * Execute transactions as one unit.
+	 * 
+	 * @see #execute(Transaction...)
+	 */
+	public static void executeTransactions(Transaction... transactions) {
+		try {
+			for (Transaction transaction : transactions) {
+				logger.info(will("Prepare transaction", "transaction", transaction));
+				transaction.prepare();
+			}
+			logger.info(done("Preparing transactions", "transactions",
+					transactions.length));
+			throwIfInterrupted();
+			for (Transaction transaction : transactions) {
+				logger.info(will("Commit transaction", "transaction", transaction));
+				transaction.commit();
+			}
+			logger.info(done("Commit transactions", "transactions",
+					transactions.length));
+		} catch (RuntimeException e) {
+			logger.error(did("Executed transactions", e,
+					"Transactions to prepare and commit", "transactions",
+					Arrays.toString(transactions)));
+			throw e;
+		} finally {
+			cleanTransactions(transactions);
+		}
+	}
+
+	private static void throwIfInterrupted() {
+		if (Thread.currentThread().isInterrupted())
+			throw new TransactionException(
+					"Interrupted before committing the transaction");
+	}
+
+	private static void cleanTransactions(Transaction... transactions) {
+		RuntimeException cleanException = null;
+		for (Transaction transaction : transactions) {
+			try {
+				transaction.clean();
+			} catch (RuntimeException e) {
+				logger.warn(warn("Cleaned transaction", e,
+						"Will clean the rest of the transactions", "transaction",
+						transaction));
+				if (cleanException == null)
+					cleanException = e;
+			}
+		}
+		if (cleanException != null)
+			throw cleanException;
+	}
 }
@@ -0,0 +1,58 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.transaction.bucket;
+
+import java.io.IOException;
+
+import com.splunk.shuttl.archiver.filesystem.transaction.AbstractTransaction;
+import com.splunk.shuttl.archiver.filesystem.transaction.HasFileStructure;
+import com.splunk.shuttl.archiver.filesystem.transaction.TransactionalFileSystem;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Puts a bucket that is a single file, by streaming the file's content to the
+ * temp path instead of copying an existing local file.
+ */
+public class PutBucketStreamTransaction extends AbstractTransaction<Bucket> {
+
+	private final TransfersBuckets transfersBuckets;
+	private final String fileName;
+	private final WritesBucketStream writesBucketStream;
+
+	private PutBucketStreamTransaction(TransfersBuckets transfersBuckets,
+			HasFileStructure hasFileStructure,
+			BucketTransactionCleaner transactionCleaner, Bucket data,
+			String fileName, WritesBucketStream writesBucketStream, String temp,
+			String dst) {
+		super(hasFileStructure, transactionCleaner, data, temp, dst);
+		this.transfersBuckets = transfersBuckets;
+		this.fileName = fileName;
+		this.writesBucketStream = writesBucketStream;
+	}
+
+	@Override
+	protected void doTransferData(Bucket data, String temp, String dst)
+			throws IOException {
+		transfersBuckets.putStream(data, fileName, writesBucketStream, temp, dst);
+	}
+
+	public static PutBucketStreamTransaction create(TransactionalFileSystem fs,
+			Bucket src, String fileName, WritesBucketStream writesBucketStream,
+			String temp, String dst) {
+		return new PutBucketStreamTransaction(fs.getBucketTransferer(), fs,
+				fs.getBucketTransactionCleaner(), src, fileName, writesBucketStream,
+				temp, dst);
+	}
+}
@@ -0,0 +1,32 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.transaction.bucket;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the content of a bucket that is represented by a single file, when
+ * streaming the bucket with {@link TransfersBuckets#getStream}.
+ */
+public interface ReadsBucketStream {
+
+	/**
+	 * Reads the bucket file's content from the stream and writes the result to
+	 * the temp directory, without closing the stream.
+	 */
+	void readFrom(InputStream in, File temp) throws IOException;
+}
@@ -14,6 +14,9 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.filesystem.transaction.bucket;
 
+import java.io.File;
+import java.io.IOException;
+
 import com.splunk.shuttl.archiver.filesystem.transaction.TransfersData;
 import com.splunk.shuttl.archiver.model.Bucket;
 
@@ -21,4 +24,61 @@ import com.splunk.shuttl.archiver.model.Bucket;
  * Transfers buckets from and to somewhere.
  */
 public interface TransfersBuckets extends TransfersData<Bucket> {
+
+	/**
+	 * @return true if buckets can be put with
+	 *         {@link #putStream(Bucket, String, WritesBucketStream, String, String)}
+	 */
+	boolean canPutStream();
+
+	/**
+	 * Puts a bucket that consists of a single file, without the file existing
+	 * on the local file system. The file's content is written by the
+	 * {@link WritesBucketStream} directly to the temp path.
+	 * 
+	 * @param bucket
+	 *          - The bucket that the streamed file represents.
+	 * @param fileName
+	 *          - Name of the file in the temp path.
+	 * @param writesBucketStream
+	 *          - Writes the file's content.
+	 * @param temp
+	 *          - Path to the temporary transfer location.
+	 * @param dst
+	 *          - Path to the final destination.
+	 * @throws UnsupportedOperationException
+	 *           if {@link #canPutStream()} is false.
+	 */
+	void putStream(Bucket bucket, String fileName,
+			WritesBucketStream writesBucketStream, String temp, String dst)
+			throws IOException;
+
+	/**
+	 * @return true if buckets can be got with
+	 *         {@link #getStream(Bucket, String, ReadsBucketStream, File, File)}
+	 */
+	boolean canGetStream();
+
+	/**
+	 * Gets a bucket that consists of a single file, without storing the file on
+	 * the local file system. The file's content is read by the
+	 * {@link ReadsBucketStream} while it's being transferred, which writes its
+	 * result to the temp directory.
+	 * 
+	 * @param remoteBucket
+	 *          - The bucket that the streamed file is in.
+	 * @param fileName
+	 *          - Name of the file in the remote bucket.
+	 * @param readsBucketStream
+	 *          - Reads the file's content.
+	 * @param temp
+	 *          - Temporary transfer location.
+	 * @param dst
+	 *          - Final destination.
+	 * @throws UnsupportedOperationException
+	 *           if {@link #canGetStream()} is false.
+	 */
+	void getStream(Bucket remoteBucket, String fileName,
+			ReadsBucketStream readsBucketStream, File temp, File dst)
+			throws IOException;
 }
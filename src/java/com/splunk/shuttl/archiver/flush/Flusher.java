@@ -17,6 +17,7 @@ package com.splunk.shuttl.archiver.flush;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -25,9 +26,7 @@ import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.FileNotDirectoryException;
 import com.splunk.shuttl.archiver.model.IllegalIndexException;
 import com.splunk.shuttl.archiver.model.LocalBucket;
-import com.splunk.shuttl.archiver.thaw.BucketFilter;
 import com.splunk.shuttl.archiver.thaw.SplunkIndexesLayer;
-import com.splunk.shuttl.archiver.util.IllegalRegexGroupException;
 
 /**
  * Removes aka flushes, buckets in an index for a time range.
@@ -35,7 +34,7 @@ import com.splunk.shuttl.archiver.util.IllegalRegexGroupException;
 public class Flusher {
 
 	private final SplunkIndexesLayer splunkIndexesLayer;
-	private ArrayList<Bucket> flushedBuckets;
+	private List<Bucket> flushedBuckets;
 	private ArchivedIndexesLister indexesLister;
 
 	/**
@@ -46,7 +45,8 @@ public class Flusher {
 			ArchivedIndexesLister indexesLister) {
 		this.splunkIndexesLayer = splunkIndexesLayer;
 		this.indexesLister = indexesLister;
-		this.flushedBuckets = new ArrayList<Bucket>();
+		this.flushedBuckets = Collections
+				.synchronizedList(new ArrayList<Bucket>());
 	}
 
 	/**
@@ -76,29 +76,21 @@ public class Flusher {
 	private void doFlush(String index, Date earliest, Date latest)
 			throws FileNotDirectoryException, IOException {
 		File thawLocation = splunkIndexesLayer.getThawLocation(index);
-		List<LocalBucket> buckets = ThawedBuckets.getBucketsFromThawLocation(index,
-				thawLocation);
-		List<LocalBucket> bucketsToFlush = filterByTimeRange(earliest, latest,
-				buckets);
-		for (LocalBucket b : bucketsToFlush) {
-			b.deleteBucket();
-			flushedBuckets.add(b);
-		}
+		List<LocalBucket> bucketsToFlush = ThawedBuckets
+				.filterBucketsInThawLocation(index, thawLocation, earliest, latest);
+		for (LocalBucket b : bucketsToFlush)
+			flushBucket(b);
 	}
 
-	private List<LocalBucket> filterByTimeRange(Date earliest, Date latest,
-			List<LocalBucket> buckets) {
-		List<LocalBucket> filtered = new ArrayList<LocalBucket>();
-		for (LocalBucket b : buckets) {
-			try {
-				if (BucketFilter.isBucketWithinTimeRange(b, earliest, latest)) {
-					filtered.add(b);
-				}
-			} catch (IllegalRegexGroupException e) {
-				// Do nothing.
-			}
-		}
-		return filtered;
+	/**
+	 * Flushes a thawed bucket, regardless of its time range.
+	 * 
+	 * @throws IOException
+	 *           if the bucket could not be deleted.
+	 */
+	public void flushBucket(LocalBucket bucket) throws IOException {
+		bucket.deleteBucket();
+		flushedBuckets.add(bucket);
 	}
 
 	/**
@@ -0,0 +1,306 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.flush;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Thaw and last access times of thawed buckets, kept in one properties file
+ * per index, so that they survive restarts. Every thaw and access is appended
+ * to the index file, and the file is only rewritten when buckets are
+ * forgotten or the appended times outnumber the buckets. Also keeps the bytes
+ * of the buckets that are being thawed, which are only kept in memory.
+ */
+public class ThawAccessLog {
+
+	private static final Logger logger = Logger.getLogger(ThawAccessLog.class);
+
+	private static final String FILE_EXTENSION = ".properties";
+	private static final int MIN_APPENDS_BEFORE_REWRITE = 100;
+
+	private static final ConcurrentMap<String, ThawAccessLog> sharedInstances = new ConcurrentHashMap<String, ThawAccessLog>();
+
+	private final File directory;
+	private final Map<String, Properties> indexes;
+	private final Map<String, Map<String, Long>> thawingBytes;
+	private final Map<String, Integer> appends;
+	private final ConcurrentMap<String, Object> locks;
+
+	/**
+	 * @param directory
+	 *          to keep the index files in.
+	 */
+	public ThawAccessLog(File directory) {
+		this.directory = directory;
+		this.indexes = new HashMap<String, Properties>();
+		this.thawingBytes = new HashMap<String, Map<String, Long>>();
+		this.appends = new HashMap<String, Integer>();
+		this.locks = new ConcurrentHashMap<String, Object>();
+	}
+
+	/**
+	 * Records that the bucket was thawed, which also counts as an access.
+	 */
+	public synchronized void thawed(String index, String bucketName, long time) {
+		put(index, bucketName, time, time);
+	}
+
+	/**
+	 * Records that a thawed bucket was accessed.
+	 */
+	public synchronized void accessed(String index, String bucketName, long time) {
+		Long thawTime = getThawTime(index, bucketName);
+		put(index, bucketName, thawTime == null ? time : thawTime, time);
+	}
+
+	/**
+	 * @return time the bucket was thawed, or null if it isn't known.
+	 */
+	public synchronized Long getThawTime(String index, String bucketName) {
+		long[] times = getTimes(index, bucketName);
+		return times == null ? null : times[0];
+	}
+
+	/**
+	 * @return time the bucket was last accessed, or null if it isn't known.
+	 */
+	public synchronized Long getLastAccess(String index, String bucketName) {
+		long[] times = getTimes(index, bucketName);
+		return times == null ? null : times[1];
+	}
+
+	/**
+	 * Forgets the buckets of the index that aren't among the bucket names, such
+	 * as buckets that have been flushed.
+	 */
+	public synchronized void retain(String index, Collection<String> bucketNames) {
+		Properties properties = getProperties(index);
+		if (properties.keySet().retainAll(new HashSet<String>(bucketNames)))
+			store(index, properties);
+	}
+
+	/**
+	 * Adds the bytes of a bucket that is being thawed.
+	 */
+	public synchronized void thawing(String index, String bucketName, long bytes) {
+		Map<String, Long> buckets = thawingBytes.get(index);
+		if (buckets == null) {
+			buckets = new HashMap<String, Long>();
+			thawingBytes.put(index, buckets);
+		}
+		buckets.put(bucketName, bytes);
+	}
+
+	/**
+	 * Removes the bytes of a bucket that is no longer being thawed.
+	 */
+	public synchronized void doneThawing(String index, String bucketName) {
+		Map<String, Long> buckets = thawingBytes.get(index);
+		if (buckets != null)
+			buckets.remove(bucketName);
+	}
+
+	/**
+	 * @return bytes of the buckets of the index that are being thawed.
+	 */
+	public synchronized long getThawingBytes(String index) {
+		long bytes = 0;
+		Map<String, Long> buckets = thawingBytes.get(index);
+		if (buckets != null)
+			for (long b : buckets.values())
+				bytes += b;
+		return bytes;
+	}
+
+	/**
+	 * @return names of the buckets of the index that are being thawed.
+	 */
+	public synchronized Set<String> getThawingBuckets(String index) {
+		Map<String, Long> buckets = thawingBytes.get(index);
+		return buckets == null ? new HashSet<String>() : new HashSet<String>(
+				buckets.keySet());
+	}
+
+	/**
+	 * @return lock to hold while changing the thawed buckets of the index, so
+	 *         that thaws to different indexes don't wait for each other.
+	 */
+	public Object getLock(String index) {
+		Object lock = locks.get(index);
+		if (lock == null) {
+			locks.putIfAbsent(index, new Object());
+			lock = locks.get(index);
+		}
+		return lock;
+	}
+
+	private long[] getTimes(String index, String bucketName) {
+		String value = getProperties(index).getProperty(bucketName);
+		if (value == null)
+			return null;
+		String[] times = value.split(",");
+		try {
+			return new long[] { Long.parseLong(times[0]), Long.parseLong(times[1]) };
+		} catch (RuntimeException e) {
+			logger.warn(warn("Read thaw times of bucket", e,
+					"will treat the times as unknown", "index", index, "bucket_name",
+					bucketName, "value", value));
+			return null;
+		}
+	}
+
+	private void put(String index, String bucketName, long thawTime,
+			long lastAccess) {
+		Properties properties = getProperties(index);
+		String value = thawTime + "," + lastAccess;
+		properties.setProperty(bucketName, value);
+		Integer appended = appends.get(index);
+		int count = appended == null ? 0 : appended;
+		if (count >= Math.max(MIN_APPENDS_BEFORE_REWRITE, properties.size())
+				|| !append(index, bucketName, value))
+			store(index, properties);
+		else
+			appends.put(index, count + 1);
+	}
+
+	/**
+	 * Appends the bucket's times to the index file. Loading the file keeps the
+	 * last times of each bucket.
+	 * 
+	 * @return true if the times were appended.
+	 */
+	private boolean append(String index, String bucketName, String value) {
+		File file = getFile(index);
+		OutputStream out = null;
+		try {
+			directory.mkdirs();
+			out = new FileOutputStream(file, true);
+			out.write(toLine(bucketName, value));
+			out.close();
+			return true;
+		} catch (IOException e) {
+			logger.warn(warn("Appended thaw access times", e,
+					"will rewrite the file instead", "file", file));
+			return false;
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * @return the properties file line of the bucket's times, escaped like
+	 *         {@link Properties#store(OutputStream, String)} escapes them.
+	 */
+	private static byte[] toLine(String bucketName, String value)
+			throws IOException {
+		Properties entry = new Properties();
+		entry.setProperty(bucketName, value);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		entry.store(bytes, null);
+		String stored = bytes.toString("ISO-8859-1");
+		StringBuilder line = new StringBuilder();
+		for (String l : stored.split("\n"))
+			if (!l.startsWith("#"))
+				line.append(l).append('\n');
+		return line.toString().getBytes("ISO-8859-1");
+	}
+
+	private Properties getProperties(String index) {
+		Properties properties = indexes.get(index);
+		if (properties == null) {
+			properties = load(index);
+			indexes.put(index, properties);
+		}
+		return properties;
+	}
+
+	private Properties load(String index) {
+		Properties properties = new Properties();
+		File file = getFile(index);
+		if (file.exists()) {
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				properties.load(in);
+			} catch (IOException e) {
+				logger.warn(warn("Loaded thaw access times", e,
+						"will treat the times as unknown", "file", file));
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Writes to a temporary file that replaces the index file, so that a crash
+	 * doesn't leave a partially written file.
+	 */
+	private void store(String index, Properties properties) {
+		appends.put(index, 0);
+		File file = getFile(index);
+		File temp = new File(directory, file.getName() + ".tmp");
+		OutputStream out = null;
+		try {
+			directory.mkdirs();
+			out = new FileOutputStream(temp);
+			properties.store(out, null);
+			out.close();
+			if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+				throw new IOException("Could not rename " + temp + " to " + file);
+		} catch (IOException e) {
+			logger.warn(warn("Stored thaw access times", e,
+					"times are kept in memory until next store", "file", file));
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private File getFile(String index) {
+		return new File(directory, index + FILE_EXTENSION);
+	}
+
+	/**
+	 * @return access log that is shared by everyone using the directory.
+	 */
+	public static ThawAccessLog getSharedInstance(File directory) {
+		String key = directory.getAbsolutePath();
+		ThawAccessLog accessLog = sharedInstances.get(key);
+		if (accessLog == null) {
+			sharedInstances.putIfAbsent(key, new ThawAccessLog(directory));
+			accessLog = sharedInstances.get(key);
+		}
+		return accessLog;
+	}
+}
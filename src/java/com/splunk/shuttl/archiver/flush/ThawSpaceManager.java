@@ -0,0 +1,249 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.flush;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.model.IllegalIndexException;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.archiver.thaw.SplunkIndexesLayer;
+
+/**
+ * Keeps the thawed buckets of each index within a byte quota. Before a bucket
+ * is transferred, the least recently used thawed buckets of its index are
+ * flushed with the {@link Flusher} until the bucket fits, so that the thaw
+ * directory doesn't fill up. The quota is in thawed bytes on disk, and
+ * archived buckets are counted with the size they are estimated to get when
+ * thawed. Thaw and access times are kept in a {@link ThawAccessLog}. Buckets
+ * thawed before there was a log, or by anything else than Shuttl, are treated
+ * as last accessed when their directories were last modified.
+ */
+public class ThawSpaceManager {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawSpaceManager.class);
+
+	private final SplunkIndexesLayer splunkIndexesLayer;
+	private final Flusher flusher;
+	private final ThawAccessLog accessLog;
+	private final Long quota;
+	private final ThawedBucketSizes thawedBucketSizes;
+
+	/**
+	 * @param flusher
+	 *          to flush the evicted buckets with.
+	 * @param accessLog
+	 *          with the thaw and access times of thawed buckets.
+	 * @param quota
+	 *          bytes of thawed buckets to keep per index. Null for no quota, in
+	 *          which case nothing is evicted, but access is still logged.
+	 * @param thawedBucketSizes
+	 *          to get the sizes of thawed buckets from.
+	 */
+	public ThawSpaceManager(SplunkIndexesLayer splunkIndexesLayer,
+			Flusher flusher, ThawAccessLog accessLog, Long quota,
+			ThawedBucketSizes thawedBucketSizes) {
+		this.splunkIndexesLayer = splunkIndexesLayer;
+		this.flusher = flusher;
+		this.accessLog = accessLog;
+		this.quota = quota;
+		this.thawedBucketSizes = thawedBucketSizes;
+	}
+
+	/**
+	 * @return bytes of thawed buckets to keep per index, or null if there is no
+	 *         quota.
+	 */
+	public Long getQuota() {
+		return quota;
+	}
+
+	/**
+	 * @return estimated bytes of an archived bucket of the format once it's
+	 *         thawed, which is what the bucket counts as in the quota.
+	 */
+	public long getThawedBytes(BucketFormat format, long archivedBytes) {
+		return thawedBucketSizes.getThawedBytes(format, archivedBytes);
+	}
+
+	/**
+	 * Evicts least recently used buckets of the bucket's index until the bucket
+	 * fits within the quota, and holds the bucket's estimated thawed bytes until
+	 * {@link #thawed(Bucket, LocalBucket)} or {@link #failed(Bucket)} is called.
+	 * Buckets without a size only evict buckets when the index is already over
+	 * its quota. Only thaws to the same index wait for each other.
+	 * 
+	 * @return the evicted buckets.
+	 * @throws ThawQuotaExceededException
+	 *           if the bucket doesn't fit even with every thawed bucket
+	 *           evicted, because it's bigger than the quota or other buckets
+	 *           are being thawed.
+	 */
+	public List<LocalBucket> makeRoom(Bucket bucket) throws IOException,
+			IllegalIndexException, ThawQuotaExceededException {
+		if (quota == null)
+			return Collections.emptyList();
+		String index = bucket.getIndex();
+		long bytes = thawedBucketSizes.getThawedBytes(bucket);
+		synchronized (accessLog.getLock(index)) {
+			List<LocalBucket> thawedBuckets = getLeastRecentlyUsedFirst(index);
+			long usedBytes = getBytes(thawedBuckets)
+					+ accessLog.getThawingBytes(index);
+			List<LocalBucket> evictedBuckets = new ArrayList<LocalBucket>();
+			Iterator<LocalBucket> leastRecentlyUsed = thawedBuckets.iterator();
+			while (usedBytes + bytes > quota && leastRecentlyUsed.hasNext()) {
+				LocalBucket evict = leastRecentlyUsed.next();
+				long evictedBytes = getSize(evict);
+				evict(evict);
+				usedBytes -= evictedBytes;
+				evictedBuckets.add(evict);
+			}
+			if (usedBytes + bytes > quota)
+				throw new ThawQuotaExceededException(bucket, "Bucket of " + bytes
+						+ " thawed bytes does not fit in the thaw quota of " + quota
+						+ " bytes, with " + usedBytes + " bytes being thawed");
+			accessLog.thawing(index, bucket.getName(), bytes);
+			return evictedBuckets;
+		}
+	}
+
+	private void evict(LocalBucket bucket) throws IOException {
+		logger.info(will("Evict least recently used thawed bucket", "bucket",
+				bucket, "last_access", getLastAccess(bucket), "thaw_time",
+				accessLog.getThawTime(bucket.getIndex(), bucket.getName())));
+		flusher.flushBucket(bucket);
+		thawedBucketSizes.forget(bucket.getDirectory());
+	}
+
+	/**
+	 * Logs the bucket's thaw, and releases its held bytes, after which the
+	 * thawed bucket is counted with its size on disk.
+	 * 
+	 * @param thawedBucket
+	 *          the bucket in the thaw directory.
+	 */
+	public void thawed(Bucket bucket, LocalBucket thawedBucket) {
+		thawedBucketSizes.thawed(bucket, thawedBucket.getDirectory());
+		synchronized (accessLog.getLock(bucket.getIndex())) {
+			accessLog.doneThawing(bucket.getIndex(), bucket.getName());
+			accessLog.thawed(bucket.getIndex(), bucket.getName(),
+					System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Releases the bytes of a bucket that couldn't be thawed.
+	 */
+	public void failed(Bucket bucket) {
+		accessLog.doneThawing(bucket.getIndex(), bucket.getName());
+	}
+
+	/**
+	 * Logs that an already thawed bucket was asked for, which makes it the last
+	 * to be evicted.
+	 */
+	public void accessed(Bucket bucket) {
+		accessLog.accessed(bucket.getIndex(), bucket.getName(),
+				System.currentTimeMillis());
+	}
+
+	/**
+	 * @return bytes of the thawed buckets of the index, and of the buckets that
+	 *         are being thawed to it.
+	 */
+	public long getUsedBytes(String index) throws IllegalIndexException {
+		synchronized (accessLog.getLock(index)) {
+			return getBytes(getThawedBuckets(index))
+					+ accessLog.getThawingBytes(index);
+		}
+	}
+
+	/**
+	 * Buckets that are being thawed are left out, even when they have been
+	 * moved to the thaw directory already, since their bytes are held until
+	 * they are thawed and they can't be evicted before then.
+	 */
+	private List<LocalBucket> getThawedBuckets(String index)
+			throws IllegalIndexException {
+		Set<String> thawingBuckets = accessLog.getThawingBuckets(index);
+		List<LocalBucket> thawedBuckets = new ArrayList<LocalBucket>();
+		File[] directories = splunkIndexesLayer.getThawLocation(index)
+				.listFiles();
+		if (directories != null)
+			for (File directory : directories)
+				if (directory.isDirectory()
+						&& !thawingBuckets.contains(directory.getName()))
+					thawedBuckets.add(BucketFactory
+							.createBucketWithIndexDirectoryAndSize(index, directory,
+									BucketFormat.SPLUNK_BUCKET,
+									thawedBucketSizes.getSize(directory)));
+		return thawedBuckets;
+	}
+
+	/**
+	 * Also forgets the access times of buckets that are no longer thawed.
+	 */
+	private List<LocalBucket> getLeastRecentlyUsedFirst(String index)
+			throws IllegalIndexException {
+		List<LocalBucket> thawedBuckets = getThawedBuckets(index);
+		List<String> bucketNames = new ArrayList<String>(
+				accessLog.getThawingBuckets(index));
+		for (LocalBucket b : thawedBuckets)
+			bucketNames.add(b.getName());
+		accessLog.retain(index, bucketNames);
+		Collections.sort(thawedBuckets, new Comparator<LocalBucket>() {
+
+			@Override
+			public int compare(LocalBucket b1, LocalBucket b2) {
+				long access1 = getLastAccess(b1);
+				long access2 = getLastAccess(b2);
+				return access1 < access2 ? -1 : (access1 == access2 ? 0 : 1);
+			}
+		});
+		return thawedBuckets;
+	}
+
+	private long getLastAccess(LocalBucket bucket) {
+		Long lastAccess = accessLog.getLastAccess(bucket.getIndex(),
+				bucket.getName());
+		return lastAccess == null ? bucket.getDirectory().lastModified()
+				: lastAccess;
+	}
+
+	private static long getSize(LocalBucket bucket) {
+		return bucket.getSize() == null ? 0 : bucket.getSize();
+	}
+
+	private static long getBytes(List<LocalBucket> buckets) {
+		long bytes = 0;
+		for (LocalBucket b : buckets)
+			bytes += getSize(b);
+		return bytes;
+	}
+}
@@ -0,0 +1,72 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.flush;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import javax.management.InstanceNotFoundException;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.listers.ArchivedIndexesLister;
+import com.splunk.shuttl.archiver.thaw.SplunkIndexesLayer;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiver;
+
+/**
+ * Factory for getting {@link ThawSpaceManager}s with the configured thaw
+ * quota.
+ */
+public class ThawSpaceManagerFactory {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawSpaceManagerFactory.class);
+
+	public static ThawSpaceManager create(ArchiveConfiguration configuration,
+			SplunkIndexesLayer splunkIndexesLayer,
+			LocalFileSystemPaths localFileSystemPaths,
+			ArchiveFileSystem archiveFileSystem) {
+		return create(configuration, splunkIndexesLayer, localFileSystemPaths,
+				archiveFileSystem, getConfiguredQuota());
+	}
+
+	public static ThawSpaceManager create(ArchiveConfiguration configuration,
+			SplunkIndexesLayer splunkIndexesLayer,
+			LocalFileSystemPaths localFileSystemPaths,
+			ArchiveFileSystem archiveFileSystem, Long quota) {
+		Flusher flusher = new Flusher(splunkIndexesLayer,
+				new ArchivedIndexesLister(new PathResolver(configuration),
+						archiveFileSystem));
+		return new ThawSpaceManager(splunkIndexesLayer, flusher,
+				ThawAccessLog.getSharedInstance(localFileSystemPaths
+						.getThawAccessDirectory()), quota,
+				ThawedBucketSizes.getSharedInstance(localFileSystemPaths
+						.getThawedBytesDirectory()));
+	}
+
+	private static Long getConfiguredQuota() {
+		try {
+			Long quota = ShuttlArchiver.getMBeanProxy().getThawQuota();
+			return quota == null || quota < 0 ? null : quota;
+		} catch (InstanceNotFoundException e) {
+			logger.debug(happened("No archiver configuration is registered",
+					"thaw_quota", "none"));
+			return null;
+		}
+	}
+}
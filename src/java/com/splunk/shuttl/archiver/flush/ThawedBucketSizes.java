@@ -0,0 +1,282 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.flush;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Sizes of thawed buckets on disk. The size of a thawed bucket directory is
+ * kept for as long as the bucket isn't modified, so that the thawed buckets of
+ * an index don't have to be walked every time a bucket is thawed. Also
+ * learns how much bigger the buckets of each format get when they are thawed,
+ * so that an archived bucket's size can be estimated in thawed bytes. The
+ * learned sizes are kept in a file, so that they survive restarts, and formats
+ * that haven't been thawed yet are estimated with {@link #DEFAULT_EXPANSION}.
+ */
+public class ThawedBucketSizes {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawedBucketSizes.class);
+
+	/**
+	 * Times an archived bucket of a format is estimated to grow when it's
+	 * thawed, until a bucket of the format has been thawed. Formats that are
+	 * compressed or need to be indexed when they are thawed are estimated on the
+	 * large side, since thawing too much fills the disk.
+	 */
+	public static final Map<BucketFormat, Double> DEFAULT_EXPANSION;
+	static {
+		Map<BucketFormat, Double> expansion = new EnumMap<BucketFormat, Double>(
+				BucketFormat.class);
+		expansion.put(BucketFormat.SPLUNK_BUCKET, 1.0);
+		expansion.put(BucketFormat.SPLUNK_BUCKET_TGZ, 3.0);
+		expansion.put(BucketFormat.SPLUNK_BUCKET_RAWDATA, 4.0);
+		expansion.put(BucketFormat.CSV, 2.0);
+		expansion.put(BucketFormat.UNKNOWN, 4.0);
+		DEFAULT_EXPANSION = Collections.unmodifiableMap(expansion);
+	}
+
+	static final String FILE_NAME = "thawed-bytes.properties";
+
+	/**
+	 * Milliseconds a bucket has to be left unmodified before its size is kept,
+	 * since a recently modified bucket may still be being imported, and last
+	 * modified times can be as coarse as seconds.
+	 */
+	static final long SETTLED_MILLIS = 60 * 1000;
+
+	static final String RAWDATA_DIRECTORY_NAME = "rawdata";
+
+	private static final ConcurrentMap<String, ThawedBucketSizes> sharedInstances = new ConcurrentHashMap<String, ThawedBucketSizes>();
+
+	private final ConcurrentMap<String, long[]> sizes;
+	private final Map<BucketFormat, long[]> thawedBytesByFormat;
+	private final File file;
+
+	/**
+	 * Sizes that only learn in memory.
+	 */
+	public ThawedBucketSizes() {
+		this(null);
+	}
+
+	/**
+	 * @param directory
+	 *          to keep the learned sizes of each format in. Null to only keep
+	 *          them in memory.
+	 */
+	public ThawedBucketSizes(File directory) {
+		this.sizes = new ConcurrentHashMap<String, long[]>();
+		this.thawedBytesByFormat = new EnumMap<BucketFormat, long[]>(
+				BucketFormat.class);
+		this.file = directory == null ? null : new File(directory, FILE_NAME);
+		load();
+	}
+
+	/**
+	 * @return bytes of the thawed bucket directory, from memory if the bucket
+	 *         had settled and hasn't been modified since its size was last
+	 *         walked.
+	 */
+	public long getSize(File directory) {
+		String key = directory.getAbsolutePath();
+		long lastModified = getLastModified(directory);
+		long[] cached = sizes.get(key);
+		if (cached != null && cached[0] == lastModified)
+			return cached[1];
+		long size = directory.exists() ? FileUtils.sizeOfDirectory(directory) : 0;
+		if (System.currentTimeMillis() - lastModified >= SETTLED_MILLIS)
+			sizes.put(key, new long[] { lastModified, size });
+		else
+			sizes.remove(key);
+		return size;
+	}
+
+	/**
+	 * A bucket's journal is written to its rawdata directory and the rest of
+	 * the bucket to the bucket directory, so the latest of their last modified
+	 * times changes when files are added to or removed from the bucket.
+	 */
+	private static long getLastModified(File directory) {
+		return Math.max(directory.lastModified(), new File(directory,
+				RAWDATA_DIRECTORY_NAME).lastModified());
+	}
+
+	/**
+	 * Forgets the size of a directory that was flushed.
+	 */
+	public void forget(File directory) {
+		sizes.remove(directory.getAbsolutePath());
+	}
+
+	/**
+	 * Records the size an archived bucket got when it was thawed to the
+	 * directory.
+	 * 
+	 * @return bytes of the thawed bucket.
+	 */
+	public long thawed(Bucket archivedBucket, File directory) {
+		forget(directory);
+		long thawedBytes = getSize(directory);
+		Long archivedBytes = archivedBucket.getSize();
+		if (archivedBytes != null && archivedBytes > 0)
+			synchronized (thawedBytesByFormat) {
+				long[] bytes = thawedBytesByFormat.get(archivedBucket.getFormat());
+				if (bytes == null) {
+					bytes = new long[2];
+					thawedBytesByFormat.put(archivedBucket.getFormat(), bytes);
+				}
+				bytes[0] += archivedBytes;
+				bytes[1] += thawedBytes;
+				store();
+			}
+		return thawedBytes;
+	}
+
+	/**
+	 * @return estimated bytes of the archived bucket once it's thawed. Zero if
+	 *         the bucket doesn't have a size.
+	 */
+	public long getThawedBytes(Bucket archivedBucket) {
+		Long archivedBytes = archivedBucket.getSize();
+		return archivedBytes == null ? 0 : getThawedBytes(
+				archivedBucket.getFormat(), archivedBytes);
+	}
+
+	/**
+	 * @return estimated bytes of an archived bucket of the format once it's
+	 *         thawed, which is scaled with the {@link #DEFAULT_EXPANSION} of the
+	 *         format until a bucket of the format has been thawed.
+	 */
+	public long getThawedBytes(BucketFormat format, long archivedBytes) {
+		synchronized (thawedBytesByFormat) {
+			long[] bytes = thawedBytesByFormat.get(format);
+			if (bytes == null || bytes[0] == 0)
+				return getDefaultThawedBytes(format, archivedBytes);
+			return (long) Math.ceil(archivedBytes * ((double) bytes[1] / bytes[0]));
+		}
+	}
+
+	/**
+	 * @return bytes of an archived bucket of the format scaled with the
+	 *         {@link #DEFAULT_EXPANSION} of the format.
+	 */
+	public static long getDefaultThawedBytes(BucketFormat format,
+			long archivedBytes) {
+		Double expansion = format == null ? null : DEFAULT_EXPANSION.get(format);
+		if (expansion == null)
+			expansion = DEFAULT_EXPANSION.get(BucketFormat.UNKNOWN);
+		return (long) Math.ceil(archivedBytes * expansion);
+	}
+
+	private void load() {
+		if (file == null || !file.exists())
+			return;
+		Properties properties = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			properties.load(in);
+		} catch (IOException e) {
+			logger.warn(warn("Loaded thawed bytes of the bucket formats", e,
+					"will estimate with the default expansion", "file", file));
+			return;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		for (BucketFormat format : BucketFormat.values()) {
+			long archived = getLong(properties, format + ".archived");
+			long thawed = getLong(properties, format + ".thawed");
+			if (archived > 0 && thawed > 0)
+				thawedBytesByFormat.put(format, new long[] { archived, thawed });
+		}
+	}
+
+	private long getLong(Properties properties, String key) {
+		try {
+			String value = properties.getProperty(key);
+			return value == null ? 0 : Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Writes to a temporary file that replaces the file, so that a crash doesn't
+	 * leave a partially written file. Called while holding the lock of the
+	 * learned sizes.
+	 */
+	private void store() {
+		if (file == null)
+			return;
+		Properties properties = new Properties();
+		for (Map.Entry<BucketFormat, long[]> entry : thawedBytesByFormat
+				.entrySet()) {
+			properties.setProperty(entry.getKey() + ".archived",
+					Long.toString(entry.getValue()[0]));
+			properties.setProperty(entry.getKey() + ".thawed",
+					Long.toString(entry.getValue()[1]));
+		}
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		OutputStream out = null;
+		try {
+			file.getParentFile().mkdirs();
+			out = new FileOutputStream(temp);
+			properties.store(out, null);
+			out.close();
+			if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+				throw new IOException("Could not rename " + temp + " to " + file);
+		} catch (IOException e) {
+			logger.warn(warn("Stored thawed bytes of the bucket formats", e,
+					"sizes are kept in memory until next store", "file", file));
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * @return sizes shared by every {@link ThawSpaceManager} using the directory,
+	 *         so that the sizes are walked and learned once.
+	 */
+	public static ThawedBucketSizes getSharedInstance(File directory) {
+		String key = directory.getAbsolutePath();
+		ThawedBucketSizes thawedBucketSizes = sharedInstances.get(key);
+		if (thawedBucketSizes == null) {
+			sharedInstances.putIfAbsent(key, new ThawedBucketSizes(directory));
+			thawedBucketSizes = sharedInstances.get(key);
+		}
+		return thawedBucketSizes;
+	}
+}
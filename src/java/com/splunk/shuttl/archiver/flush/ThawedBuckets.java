@@ -16,14 +16,29 @@ package com.splunk.shuttl.archiver.flush;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.model.BucketName;
 import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.archiver.thaw.BucketTimeIndex;
+import com.splunk.shuttl.archiver.thaw.BucketTimeIndexCache;
+import com.splunk.shuttl.archiver.util.IllegalRegexGroupException;
 
 public class ThawedBuckets {
 
+	/**
+	 * Time indexes of the bucket directories are kept by thaw location, for as
+	 * long as the thaw location has the same buckets. The buckets aren't kept,
+	 * since their sizes change while they are being thawed.
+	 */
+	private static final BucketTimeIndexCache<File> TIME_INDEXES = new BucketTimeIndexCache<File>();
+
+	private static final ThawedBucketSizes SIZES = new ThawedBucketSizes();
+
 	public static List<LocalBucket> getBucketsFromThawLocation(String index,
 			File thawLocation) {
 		List<LocalBucket> buckets = new ArrayList<LocalBucket>();
@@ -36,4 +51,84 @@ public class ThawedBuckets {
 		return buckets;
 	}
 
+	/**
+	 * Filters the buckets in the thaw location by time range with a time index
+	 * of the bucket directories, which is kept in memory until buckets are added
+	 * to or removed from the thaw location. The sizes of the buckets are got
+	 * from {@link ThawedBucketSizes}.
+	 * 
+	 * @return buckets in the thaw location within the time range.
+	 */
+	public static List<LocalBucket> filterBucketsInThawLocation(String index,
+			File thawLocation, Date earliest, Date latest) {
+		List<LocalBucket> buckets = new ArrayList<LocalBucket>();
+		for (File directory : getTimeIndexForThawLocation(index, thawLocation)
+				.filter(earliest, latest))
+			buckets.add(BucketFactory.createBucketWithIndexDirectoryAndSize(index,
+					directory, BucketFormat.SPLUNK_BUCKET, SIZES.getSize(directory)));
+		return buckets;
+	}
+
+	private static BucketTimeIndex<File> getTimeIndexForThawLocation(
+			String index, File thawLocation) {
+		String key = index + ":" + thawLocation.getAbsolutePath();
+		Stamp stamp = new Stamp(thawLocation);
+		BucketTimeIndex<File> timeIndex = TIME_INDEXES.get(key, stamp);
+		if (timeIndex == null) {
+			timeIndex = createTimeIndex(thawLocation);
+			TIME_INDEXES.put(key, stamp, timeIndex);
+		}
+		return timeIndex;
+	}
+
+	/**
+	 * Directories with names that don't have times are left out, like
+	 * {@link BucketTimeIndex#create} does.
+	 */
+	private static BucketTimeIndex<File> createTimeIndex(File thawLocation) {
+		BucketTimeIndex.Builder<File> builder = new BucketTimeIndex.Builder<File>();
+		File[] files = thawLocation.listFiles();
+		if (files != null)
+			for (File f : files)
+				if (f.isDirectory())
+					try {
+						BucketName name = new BucketName(f.getName());
+						builder.add(f, name.getEarliest() * 1000,
+								name.getLatest() * 1000);
+					} catch (IllegalRegexGroupException e) {
+						// Do nothing.
+					}
+		return builder.build();
+	}
+
+	/**
+	 * The sorted names are part of the stamp, since the last modified time may
+	 * not change when a bucket is replaced by another within its resolution.
+	 */
+	private static class Stamp {
+
+		private final String[] names;
+		private final long lastModified;
+
+		Stamp(File thawLocation) {
+			this.names = thawLocation.list();
+			if (names != null)
+				Arrays.sort(names);
+			this.lastModified = thawLocation.lastModified();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Stamp))
+				return false;
+			Stamp other = (Stamp) obj;
+			return lastModified == other.lastModified
+					&& Arrays.equals(names, other.names);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(names) * 31 + (int) lastModified;
+		}
+	}
 }
@@ -25,6 +25,8 @@ import org.apache.log4j.Logger;
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.archive.UnknownBucketFormatException;
 import com.splunk.shuttl.archiver.importexport.csv.CsvExporter;
+import com.splunk.shuttl.archiver.importexport.rawdata.RawdataExporter;
+import com.splunk.shuttl.archiver.importexport.tgz.StreamingTgzExporter;
 import com.splunk.shuttl.archiver.importexport.tgz.TgzFormatExporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.LocalBucket;
@@ -44,6 +46,7 @@ public class BucketExportController {
 	private final static Logger logger = Logger
 			.getLogger(BucketExportController.class);
 	private Map<BucketFormat, BucketExporter> formatChangers;
+	private Map<BucketFormat, BucketStreamExporter> streamExporters;
 
 	/**
 	 * @param bucketToCsvFileExporter
@@ -52,7 +55,31 @@ public class BucketExportController {
 	 *          for creating a {@link Bucket} from the .csv file.
 	 */
 	public BucketExportController(Map<BucketFormat, BucketExporter> formatChangers) {
+		this(formatChangers, new HashMap<BucketFormat, BucketStreamExporter>());
+	}
+
+	/**
+	 * @param streamExporters
+	 *          for the formats that can be exported as a stream.
+	 */
+	public BucketExportController(
+			Map<BucketFormat, BucketExporter> formatChangers,
+			Map<BucketFormat, BucketStreamExporter> streamExporters) {
 		this.formatChangers = formatChangers;
+		this.streamExporters = streamExporters;
+	}
+
+	/**
+	 * @return {@link BucketStreamExporter} for exporting the bucket to the format
+	 *         as a stream, or null if the bucket has to be exported with
+	 *         {@link #exportBucket(LocalBucket, BucketFormat)}.
+	 */
+	public BucketStreamExporter getStreamExporter(LocalBucket bucket,
+			BucketFormat newFormat) {
+		if (bucket.getFormat().equals(BucketFormat.SPLUNK_BUCKET))
+			return streamExporters.get(newFormat);
+		else
+			return null;
 	}
 
 	/**
@@ -108,4 +135,31 @@ public class BucketExportController {
 		return new BucketExportController(formatChangers);
 	}
 
+	/**
+	 * @return an instance of the {@link BucketExportController} that can also
+	 *         export to {@link BucketFormat#SPLUNK_BUCKET_TGZ} as a stream.
+	 */
+	public static BucketExportController create(CsvExporter csvExporter,
+			TgzFormatExporter tgzFormatExporter,
+			StreamingTgzExporter streamingTgzExporter) {
+		BucketExportController controller = create(csvExporter, tgzFormatExporter);
+		controller.streamExporters.put(BucketFormat.SPLUNK_BUCKET_TGZ,
+				streamingTgzExporter);
+		return controller;
+	}
+
+	/**
+	 * @return an instance of the {@link BucketExportController} that can also
+	 *         export to {@link BucketFormat#SPLUNK_BUCKET_RAWDATA}.
+	 */
+	public static BucketExportController create(CsvExporter csvExporter,
+			TgzFormatExporter tgzFormatExporter,
+			StreamingTgzExporter streamingTgzExporter, RawdataExporter rawdataExporter) {
+		BucketExportController controller = create(csvExporter,
+				tgzFormatExporter, streamingTgzExporter);
+		controller.formatChangers.put(BucketFormat.SPLUNK_BUCKET_RAWDATA,
+				rawdataExporter);
+		return controller;
+	}
+
 }
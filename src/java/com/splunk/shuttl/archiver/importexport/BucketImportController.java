@@ -19,6 +19,8 @@ import java.util.Map;
 
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.importexport.csv.CsvImporter;
+import com.splunk.shuttl.archiver.importexport.rawdata.RawdataImporter;
+import com.splunk.shuttl.archiver.importexport.tgz.StreamingTgzImporter;
 import com.splunk.shuttl.archiver.importexport.tgz.TgzImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.LocalBucket;
@@ -30,13 +32,27 @@ import com.splunk.shuttl.archiver.model.LocalBucket;
 public class BucketImportController {
 
 	private final Map<BucketFormat, BucketImporter> importers;
+	private final Map<BucketFormat, BucketStreamImporter> streamImporters;
 
 	/**
 	 * @param importers
 	 *          to import buckets from CSV to SPLUNK_BUCKET.
 	 */
 	public BucketImportController(Map<BucketFormat, BucketImporter> importers) {
+		this(importers, new HashMap<BucketFormat, BucketStreamImporter>());
+	}
+
+	/**
+	 * @param importers
+	 *          to import buckets from CSV to SPLUNK_BUCKET.
+	 * @param streamImporters
+	 *          to import buckets while they are being transferred, for formats
+	 *          that are a single file.
+	 */
+	public BucketImportController(Map<BucketFormat, BucketImporter> importers,
+			Map<BucketFormat, BucketStreamImporter> streamImporters) {
 		this.importers = importers;
+		this.streamImporters = streamImporters;
 	}
 
 	/**
@@ -54,6 +70,15 @@ public class BucketImportController {
 			throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * @return a {@link BucketStreamImporter} that imports buckets in the format
+	 *         while they are being transferred, or null if the format cannot be
+	 *         imported from a stream.
+	 */
+	public BucketStreamImporter getStreamImporter(BucketFormat format) {
+		return streamImporters.get(format);
+	}
+
 	/**
 	 * Convenience method for creating an instance.
 	 */
@@ -61,8 +86,13 @@ public class BucketImportController {
 		Map<BucketFormat, BucketImporter> importers = new HashMap<BucketFormat, BucketImporter>();
 		importers.put(BucketFormat.CSV, CsvImporter.create());
 		importers.put(BucketFormat.SPLUNK_BUCKET_TGZ, TgzImporter.create());
+		importers.put(BucketFormat.SPLUNK_BUCKET_RAWDATA, RawdataImporter.create());
+
+		Map<BucketFormat, BucketStreamImporter> streamImporters = new HashMap<BucketFormat, BucketStreamImporter>();
+		streamImporters.put(BucketFormat.SPLUNK_BUCKET_TGZ,
+				new StreamingTgzImporter());
 
-		return new BucketImportController(importers);
+		return new BucketImportController(importers, streamImporters);
 	}
 
 }
@@ -0,0 +1,40 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+
+/**
+ * Exports a {@link BucketFormat#SPLUNK_BUCKET} to a format that is a single
+ * file, by writing the file's content to a stream instead of to the local file
+ * system. Complements a {@link BucketExporter} for the same format.
+ */
+public interface BucketStreamExporter {
+
+	/**
+	 * @return name of the file that the exported bucket consists of.
+	 */
+	String getExportFileName(LocalBucket bucket);
+
+	/**
+	 * Writes the bucket in the exported format to the stream. Does not close the
+	 * stream.
+	 */
+	void exportBucket(LocalBucket bucket, OutputStream out) throws IOException;
+}
@@ -0,0 +1,43 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Imports a bucket that is in a format of a single file to
+ * {@link BucketFormat#SPLUNK_BUCKET}, by reading the file's content from a
+ * stream instead of from the local file system. Complements a
+ * {@link BucketImporter} for the same format.
+ */
+public interface BucketStreamImporter {
+
+	/**
+	 * @return name of the file that the archived bucket consists of.
+	 */
+	String getImportFileName(Bucket bucket);
+
+	/**
+	 * Reads the bucket file's content from the stream and writes the bucket in
+	 * {@link BucketFormat#SPLUNK_BUCKET} to the bucket directory. Does not close
+	 * the stream.
+	 */
+	void importBucket(InputStream in, File bucketDirectory) throws IOException;
+}
@@ -72,12 +72,19 @@ public class ShellExecutor {
 		return kvs;
 	}
 
+	/**
+	 * Destroys the process if the thread is interrupted, so that it doesn't
+	 * keep running after its caller has given up, and keeps the thread
+	 * interrupted.
+	 */
 	private int waitForProcessToExit() {
 		try {
 			return process.waitFor();
 		} catch (InterruptedException e) {
-			logger.debug(did("Waited for csv export process to finish.", e,
-					"It to finish."));
+			logger.debug(did("Waited for process to finish.", e,
+					"It to finish.", "will", "destroy the process"));
+			process.destroy();
+			Thread.currentThread().interrupt();
 			return 3;
 		}
 	}
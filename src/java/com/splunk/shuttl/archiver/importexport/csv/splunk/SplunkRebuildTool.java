@@ -0,0 +1,40 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.csv.splunk;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splunk's rebuild command, which rebuilds the index files of a bucket from its
+ * rawdata journal.
+ */
+public class SplunkRebuildTool extends SplunkTool {
+
+	@Override
+	public String getToolName() {
+		return "rebuild";
+	}
+
+	/**
+	 * @return command for rebuilding a bucket, which is a command of the splunk
+	 *         executable rather than a tool run with "splunk cmd".
+	 */
+	@Override
+	public List<String> getExecutableCommand() {
+		return Arrays.asList(SplunkEnvironment.getSplunkHome() + "/bin/splunk",
+				getToolName());
+	}
+}
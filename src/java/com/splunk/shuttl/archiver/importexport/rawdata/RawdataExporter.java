@@ -0,0 +1,101 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.rawdata;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.BucketExporter;
+import com.splunk.shuttl.archiver.importexport.GetsBucketsExportFile;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+
+/**
+ * Exports a bucket to {@link BucketFormat#SPLUNK_BUCKET_RAWDATA}, by copying
+ * the rawdata directory and the metadata files of the bucket. The index files,
+ * which are most of a bucket's bytes, are left out, since Splunk can rebuild
+ * them from the rawdata journal.
+ */
+public class RawdataExporter implements BucketExporter {
+
+	private static final Logger logger = Logger.getLogger(RawdataExporter.class);
+
+	static final String RAWDATA_DIRECTORY_NAME = "rawdata";
+
+	private final GetsBucketsExportFile getsBucketsExportFile;
+
+	public RawdataExporter(GetsBucketsExportFile getsBucketsExportFile) {
+		this.getsBucketsExportFile = getsBucketsExportFile;
+	}
+
+	@Override
+	public LocalBucket exportBucket(LocalBucket bucket) {
+		File exportDirectory = getsBucketsExportFile.getExportFile(bucket,
+				"rawdata");
+		try {
+			FileUtils.deleteDirectory(exportDirectory);
+			FileUtils.copyDirectory(bucket.getDirectory(), exportDirectory,
+					new RawdataAndMetadataFilter(bucket.getDirectory()), true);
+			return new LocalBucket(exportDirectory, bucket.getIndex(),
+					bucket.getName(), BucketFormat.SPLUNK_BUCKET_RAWDATA, null);
+		} catch (IOException e) {
+			logger.error(did("Tried exporting bucket to rawdata", e,
+					"To copy the rawdata and metadata of the bucket", "bucket", bucket,
+					"export_directory", exportDirectory));
+			FileUtils.deleteQuietly(exportDirectory);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Accepts everything in the rawdata directory, and the files directly in
+	 * the bucket that are not index files.
+	 */
+	private static class RawdataAndMetadataFilter implements FileFilter {
+
+		private final File bucketDirectory;
+
+		public RawdataAndMetadataFilter(File bucketDirectory) {
+			this.bucketDirectory = bucketDirectory.getAbsoluteFile();
+		}
+
+		@Override
+		public boolean accept(File file) {
+			File absoluteFile = file.getAbsoluteFile();
+			if (!absoluteFile.getParentFile().equals(bucketDirectory))
+				return true;
+			else if (file.isDirectory())
+				return file.getName().equals(RAWDATA_DIRECTORY_NAME);
+			else
+				return !isIndexFile(file.getName());
+		}
+
+		private boolean isIndexFile(String name) {
+			return name.endsWith(".tsidx") || name.endsWith(".lex")
+					|| name.equals("bloomfilter");
+		}
+	}
+
+	public static RawdataExporter create(LocalFileSystemPaths localFileSystemPaths) {
+		return new RawdataExporter(new GetsBucketsExportFile(localFileSystemPaths));
+	}
+}
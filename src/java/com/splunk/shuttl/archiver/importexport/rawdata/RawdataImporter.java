@@ -0,0 +1,85 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.rawdata;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.BucketImporter;
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.archiver.importexport.csv.splunk.SplunkRebuildTool;
+import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.archiver.util.UtilsList;
+
+/**
+ * Imports a {@link BucketFormat#SPLUNK_BUCKET_RAWDATA} bucket where it is, by
+ * running Splunk's rebuild on it.
+ */
+public class RawdataImporter implements BucketImporter {
+
+	public static class RebuildFailedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public RebuildFailedException(String message) {
+			super(message);
+		}
+	}
+
+	private final SplunkRebuildTool splunkRebuildTool;
+	private final ShellExecutor shellExecutor;
+	private final BucketFactory bucketFactory;
+
+	public RawdataImporter(SplunkRebuildTool splunkRebuildTool,
+			ShellExecutor shellExecutor, BucketFactory bucketFactory) {
+		this.splunkRebuildTool = splunkRebuildTool;
+		this.shellExecutor = shellExecutor;
+		this.bucketFactory = bucketFactory;
+	}
+
+	/**
+	 * @return the bucket in {@link BucketFormat#SPLUNK_BUCKET}, in the same
+	 *         directory.
+	 * @throws IllegalArgumentException
+	 *           if the bucket is not in {@link BucketFormat#SPLUNK_BUCKET_RAWDATA}
+	 * @throws RebuildFailedException
+	 *           if the rebuild failed.
+	 */
+	@Override
+	public LocalBucket importBucket(LocalBucket bucket) {
+		if (!bucket.getFormat().equals(BucketFormat.SPLUNK_BUCKET_RAWDATA))
+			throw new IllegalArgumentException("Bucket not in rawdata format");
+		int exit = shellExecutor.executeCommand(
+				splunkRebuildTool.getEnvironment(), createRebuildCommand(bucket));
+		if (exit != 0)
+			throw new RebuildFailedException("Rebuild exited with " + exit
+					+ " for bucket: " + bucket);
+		return bucketFactory.createWithIndexDirectoryAndFormat(bucket.getIndex(),
+				bucket.getDirectory(), BucketFormat.SPLUNK_BUCKET);
+	}
+
+	private List<String> createRebuildCommand(LocalBucket bucket) {
+		List<String> arguments = Arrays.asList(bucket.getDirectory()
+				.getAbsolutePath());
+		return UtilsList.join(splunkRebuildTool.getExecutableCommand(), arguments);
+	}
+
+	public static RawdataImporter create() {
+		return new RawdataImporter(new SplunkRebuildTool(),
+				ShellExecutor.getInstance(), new BucketFactory());
+	}
+}
@@ -0,0 +1,50 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.BucketStreamExporter;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+
+/**
+ * Exports a bucket to {@link BucketFormat#SPLUNK_BUCKET_TGZ} in the JVM,
+ * writing the tar and gzip stream directly, instead of creating a tgz file with
+ * {@link CreatesBucketTgz} first. The stream has the same content as the tgz
+ * file that the {@link TgzFormatExporter} would create.
+ */
+public class StreamingTgzExporter implements BucketStreamExporter {
+
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	@Override
+	public String getExportFileName(LocalBucket bucket) {
+		return bucket.getName()
+				+ BucketFormat.extensionOfFormat(BucketFormat.SPLUNK_BUCKET_TGZ);
+	}
+
+	@Override
+	public void exportBucket(LocalBucket bucket, OutputStream out)
+			throws IOException {
+		GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+		TarWriter tarWriter = new TarWriter(gzip);
+		tarWriter.writeDirectory(bucket.getDirectory());
+		tarWriter.finish();
+		gzip.finish();
+	}
+}
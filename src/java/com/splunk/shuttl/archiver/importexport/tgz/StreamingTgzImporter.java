@@ -0,0 +1,47 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.BucketStreamImporter;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Imports a {@link BucketFormat#SPLUNK_BUCKET_TGZ} bucket in the JVM, while its
+ * tgz file is being read, instead of extracting a local tgz file with the
+ * {@link TgzImporter}. The tgz file never has to be on the local file system.
+ */
+public class StreamingTgzImporter implements BucketStreamImporter {
+
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	@Override
+	public String getImportFileName(Bucket bucket) {
+		return bucket.getName()
+				+ BucketFormat.extensionOfFormat(BucketFormat.SPLUNK_BUCKET_TGZ);
+	}
+
+	@Override
+	public void importBucket(InputStream in, File bucketDirectory)
+			throws IOException {
+		GZIPInputStream gzip = new GZIPInputStream(in, GZIP_BUFFER_SIZE);
+		new TarReader(gzip).extractStrippingTopDirectory(bucketDirectory);
+	}
+}
@@ -0,0 +1,244 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads a tar archive from an {@link InputStream} and extracts it while it's
+ * being read, so the archive itself never has to be stored. Reads the ustar
+ * format written by {@link TarWriter} and by GNU tar, including GNU long names
+ * and pax path headers. Links and special files are skipped.
+ */
+public class TarReader {
+
+	private static final int BLOCK_SIZE = TarWriter.BLOCK_SIZE;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final InputStream in;
+	private final byte[] buffer;
+
+	public TarReader(InputStream in) {
+		this.in = in;
+		this.buffer = new byte[64 * 1024];
+	}
+
+	/**
+	 * Extracts every entry in the archive to the directory, without the top
+	 * directory of the entries' paths. An archive written with
+	 * {@link TarWriter#writeDirectory(File)} is extracted so that the directory
+	 * gets the written directory's content. Does not close the stream.
+	 * 
+	 * @throws IOException
+	 *           if the archive is corrupt or has an entry outside of the top
+	 *           directory.
+	 */
+	public void extractStrippingTopDirectory(File directory) throws IOException {
+		directory.mkdirs();
+		String longName = null;
+		byte[] header = new byte[BLOCK_SIZE];
+		while (readHeader(header)) {
+			char type = (char) header[156];
+			long size = getSize(header);
+			String name = longName != null ? longName : getName(header);
+			longName = null;
+			if (type == 'L')
+				longName = readLongName(size);
+			else if (type == 'x')
+				longName = readPaxPath(size);
+			else if (type == '0' || type == '\0' || type == '7')
+				extractFile(size, getDestination(directory, name));
+			else if (type == '5')
+				getDestination(directory, name).mkdirs();
+			else
+				skipData(size);
+		}
+	}
+
+	private boolean readHeader(byte[] header) throws IOException {
+		readBlock(header);
+		if (isZeroBlock(header))
+			return false;
+		verifyChecksum(header);
+		return true;
+	}
+
+	private void readBlock(byte[] block) throws IOException {
+		try {
+			IOUtils.readFully(in, block);
+		} catch (EOFException e) {
+			throw new IOException("Tar archive ended in the middle of a block", e);
+		}
+	}
+
+	private boolean isZeroBlock(byte[] header) {
+		for (byte b : header)
+			if (b != 0)
+				return false;
+		return true;
+	}
+
+	private void verifyChecksum(byte[] header) throws IOException {
+		long expected = parseOctal(header, 148, 8);
+		long checksum = 0;
+		for (int i = 0; i < header.length; i++)
+			checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+		if (checksum != expected)
+			throw new IOException("Tar header checksum mismatch. Expected: "
+					+ expected + ", was: " + checksum);
+	}
+
+	private long getSize(byte[] header) {
+		if ((header[124] & 0x80) == 0)
+			return parseOctal(header, 124, 12);
+		long size = 0;
+		for (int i = 125; i < 136; i++)
+			size = (size << 8) | (header[i] & 0xff);
+		return size;
+	}
+
+	private long parseOctal(byte[] header, int offset, int length) {
+		long value = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int b = header[i];
+			if (b == 0)
+				break;
+			if (b >= '0' && b <= '7')
+				value = (value << 3) + (b - '0');
+		}
+		return value;
+	}
+
+	private String getName(byte[] header) {
+		String name = getString(header, 0, 100);
+		if (isUstar(header)) {
+			String prefix = getString(header, 345, 155);
+			if (!prefix.isEmpty())
+				return prefix + "/" + name;
+		}
+		return name;
+	}
+
+	private boolean isUstar(byte[] header) {
+		return getString(header, 257, 5).equals("ustar");
+	}
+
+	private String getString(byte[] bytes, int offset, int length) {
+		int end = offset;
+		while (end < offset + length && bytes[end] != 0)
+			end++;
+		return new String(bytes, offset, end - offset, UTF8);
+	}
+
+	private String readLongName(long size) throws IOException {
+		byte[] data = readData(size);
+		return getString(data, 0, data.length);
+	}
+
+	private String readPaxPath(long size) throws IOException {
+		String records = new String(readData(size), UTF8);
+		String path = null;
+		int position = 0;
+		while (position < records.length()) {
+			int space = records.indexOf(' ', position);
+			if (space < 0)
+				break;
+			int length = Integer.parseInt(records.substring(position, space));
+			String record = records.substring(space + 1, position + length - 1);
+			if (record.startsWith("path="))
+				path = record.substring("path=".length());
+			position += length;
+		}
+		return path;
+	}
+
+	private byte[] readData(long size) throws IOException {
+		byte[] data = new byte[(int) size];
+		readBlockData(data);
+		skipPadding(size);
+		return data;
+	}
+
+	private void readBlockData(byte[] data) throws IOException {
+		try {
+			IOUtils.readFully(in, data);
+		} catch (EOFException e) {
+			throw new IOException("Tar archive ended in the middle of an entry", e);
+		}
+	}
+
+	private File getDestination(File directory, String name) throws IOException {
+		String relativePath = stripTopDirectory(name);
+		File destination = new File(directory, relativePath);
+		if (!isInside(directory, destination))
+			throw new IOException("Tar entry is outside of the top directory: "
+					+ name);
+		return destination;
+	}
+
+	private String stripTopDirectory(String name) {
+		int slash = name.indexOf('/');
+		return slash < 0 ? "" : name.substring(slash + 1);
+	}
+
+	private boolean isInside(File directory, File destination)
+			throws IOException {
+		String directoryPath = directory.getCanonicalPath();
+		String destinationPath = destination.getCanonicalPath();
+		return destinationPath.equals(directoryPath)
+				|| destinationPath.startsWith(directoryPath + File.separator);
+	}
+
+	private void extractFile(long size, File file) throws IOException {
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			copy(out, size);
+		} finally {
+			out.close();
+		}
+		skipPadding(size);
+	}
+
+	private void copy(OutputStream out, long size) throws IOException {
+		long remaining = size;
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (read == -1)
+				throw new IOException("Tar archive ended in the middle of an entry");
+			out.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+
+	private void skipData(long size) throws IOException {
+		IOUtils.skipFully(in, size);
+		skipPadding(size);
+	}
+
+	private void skipPadding(long size) throws IOException {
+		int remainder = (int) (size % BLOCK_SIZE);
+		if (remainder != 0)
+			IOUtils.skipFully(in, BLOCK_SIZE - remainder);
+	}
+}
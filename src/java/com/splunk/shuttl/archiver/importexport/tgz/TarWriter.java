@@ -0,0 +1,181 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Writes directories as a tar archive (ustar format) to an
+ * {@link OutputStream}, reading every file only once. The archive is
+ * equivalent to running "tar -C parent -c directoryName". Sizes that don't fit
+ * the ustar header are written with the GNU base-256 extension.
+ */
+public class TarWriter {
+
+	static final int BLOCK_SIZE = 512;
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final long MAX_OCTAL_SIZE = 077777777777L;
+	private static final int NAME_LENGTH = 100;
+	private static final int PREFIX_LENGTH = 155;
+
+	private final OutputStream out;
+	private final byte[] buffer;
+
+	public TarWriter(OutputStream out) {
+		this.out = out;
+		this.buffer = new byte[64 * 1024];
+	}
+
+	/**
+	 * Writes the directory and everything in it, with paths starting with the
+	 * directory's name.
+	 */
+	public void writeDirectory(File directory) throws IOException {
+		writeEntries(directory, directory.getName());
+	}
+
+	private void writeEntries(File file, String entryName) throws IOException {
+		if (file.isDirectory()) {
+			writeHeader(entryName + "/", 0, file.lastModified(), '5', 0755);
+			File[] children = file.listFiles();
+			if (children == null)
+				throw new IOException("Could not list directory: " + file);
+			Arrays.sort(children);
+			for (File child : children)
+				writeEntries(child, entryName + "/" + child.getName());
+		} else {
+			writeFile(file, entryName);
+		}
+	}
+
+	private void writeFile(File file, String entryName) throws IOException {
+		long size = file.length();
+		writeHeader(entryName, size, file.lastModified(), '0', 0644);
+		InputStream in = new FileInputStream(file);
+		try {
+			long written = copy(in, size);
+			if (written != size)
+				throw new IOException("File changed size while writing tar entry: "
+						+ file + ", expected: " + size + ", was: " + written);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		pad(size);
+	}
+
+	private long copy(InputStream in, long size) throws IOException {
+		long written = 0;
+		int read;
+		while (written < size
+				&& (read = in.read(buffer, 0,
+						(int) Math.min(buffer.length, size - written))) != -1) {
+			out.write(buffer, 0, read);
+			written += read;
+		}
+		return written;
+	}
+
+	private void pad(long size) throws IOException {
+		int remainder = (int) (size % BLOCK_SIZE);
+		if (remainder != 0)
+			out.write(new byte[BLOCK_SIZE - remainder]);
+	}
+
+	private void writeHeader(String entryName, long size, long lastModified,
+			char type, int mode) throws IOException {
+		byte[] header = new byte[BLOCK_SIZE];
+		putName(header, entryName);
+		putOctal(header, 100, 8, mode);
+		putOctal(header, 108, 8, 0);
+		putOctal(header, 116, 8, 0);
+		putSize(header, size);
+		putOctal(header, 136, 12, lastModified / 1000);
+		header[156] = (byte) type;
+		putString(header, 257, 6, "ustar");
+		putString(header, 263, 2, "00");
+		putChecksum(header);
+		out.write(header);
+	}
+
+	private void putName(byte[] header, String entryName) throws IOException {
+		byte[] name = entryName.getBytes(ASCII);
+		if (name.length <= NAME_LENGTH) {
+			System.arraycopy(name, 0, header, 0, name.length);
+		} else {
+			int split = findPrefixSplit(entryName);
+			putString(header, 345, PREFIX_LENGTH, entryName.substring(0, split));
+			putString(header, 0, NAME_LENGTH, entryName.substring(split + 1));
+		}
+	}
+
+	private int findPrefixSplit(String entryName) throws IOException {
+		int split = entryName.lastIndexOf('/', Math.min(PREFIX_LENGTH,
+				entryName.length() - 2));
+		if (split < 0 || entryName.length() - split - 1 > NAME_LENGTH)
+			throw new IOException("Path is too long for a tar entry: " + entryName);
+		return split;
+	}
+
+	private void putSize(byte[] header, long size) {
+		if (size <= MAX_OCTAL_SIZE) {
+			putOctal(header, 124, 12, size);
+		} else {
+			header[124] = (byte) 0x80;
+			for (int i = 135; i > 124; i--) {
+				header[i] = (byte) size;
+				size >>>= 8;
+			}
+		}
+	}
+
+	private void putOctal(byte[] header, int offset, int length, long value) {
+		String octal = Long.toOctalString(value);
+		StringBuilder padded = new StringBuilder();
+		for (int i = octal.length(); i < length - 1; i++)
+			padded.append('0');
+		padded.append(octal);
+		putString(header, offset, length - 1, padded.toString());
+	}
+
+	private void putString(byte[] header, int offset, int length, String value) {
+		byte[] bytes = value.getBytes(ASCII);
+		System.arraycopy(bytes, 0, header, offset, Math.min(length, bytes.length));
+	}
+
+	private void putChecksum(byte[] header) {
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		long checksum = 0;
+		for (byte b : header)
+			checksum += b & 0xff;
+		putOctal(header, 148, 7, checksum);
+		header[154] = 0;
+	}
+
+	/**
+	 * Writes the end of archive marker. Does not close the underlying stream.
+	 */
+	public void finish() throws IOException {
+		out.write(new byte[BLOCK_SIZE * 2]);
+		out.flush();
+	}
+}
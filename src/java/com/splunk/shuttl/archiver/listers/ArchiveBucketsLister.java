@@ -18,7 +18,10 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
@@ -26,8 +29,10 @@ import org.apache.log4j.Logger;
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor.Outcome;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.RemoteBucket;
+import com.splunk.shuttl.archiver.util.UtilsIterator.LazyIterator;
 
 /**
  * Lists {@link Bucket}s in an {@link ArchiveFileSystem}.
@@ -39,6 +44,7 @@ public class ArchiveBucketsLister {
 	private final ArchivedIndexesLister indexesLister;
 	private final PathResolver pathResolver;
 	private final ArchiveFileSystem archiveFileSystem;
+	private final ArchiveListingExecutor listingExecutor;
 
 	/**
 	 * 
@@ -51,24 +57,95 @@ public class ArchiveBucketsLister {
 	 */
 	public ArchiveBucketsLister(ArchiveFileSystem archiveFileSystem,
 			ArchivedIndexesLister indexesLister, PathResolver pathResolver) {
+		this(archiveFileSystem, indexesLister, pathResolver,
+				ArchiveListingExecutor.createSequential());
+	}
+
+	/**
+	 * @param listingExecutor
+	 *          for listing the indexes' buckets concurrently.
+	 */
+	public ArchiveBucketsLister(ArchiveFileSystem archiveFileSystem,
+			ArchivedIndexesLister indexesLister, PathResolver pathResolver,
+			ArchiveListingExecutor listingExecutor) {
 		this.archiveFileSystem = archiveFileSystem;
 		this.indexesLister = indexesLister;
 		this.pathResolver = pathResolver;
+		this.listingExecutor = listingExecutor;
 	}
 
 	/**
 	 * List buckets in an {@link ArchiveFileSystem}.<br/>
 	 * Note: Buckets returned will have {@link BucketFormat} = null;
 	 * 
+	 * The indexes are listed concurrently, and the buckets are returned in the
+	 * order of the indexes.
+	 * 
 	 * @return list of buckets with null {@link BucketFormat}.
 	 */
 	public List<Bucket> listBuckets() {
-		List<Bucket> buckets = new ArrayList<Bucket>();
+		List<Callable<List<Bucket>>> calls = new ArrayList<Callable<List<Bucket>>>();
 		for (String index : indexesLister.listIndexes())
-			buckets.addAll(listBucketsInIndex(index));
+			calls.add(new ListBucketsInIndex(index));
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for (Outcome<List<Bucket>> outcome : listingExecutor.callAll(calls))
+			if (outcome.isFailure())
+				throw asRuntimeException(outcome.getFailure());
+			else
+				buckets.addAll(outcome.getValue());
 		return buckets;
 	}
 
+	/**
+	 * @return indexes that buckets are listed from.
+	 */
+	public List<String> listIndexes() {
+		return indexesLister.listIndexes();
+	}
+
+	/**
+	 * Lists the buckets of each index when the iteration gets to the index, so
+	 * that only the buckets of one index are kept in memory.<br/>
+	 * Note: Buckets returned will have {@link BucketFormat} = null;
+	 * 
+	 * @return buckets in all indexes, in the order of the indexes.
+	 */
+	public Iterator<Bucket> iterateBuckets() {
+		final Iterator<String> indexes = indexesLister.listIndexes().iterator();
+		return new LazyIterator<Bucket>() {
+
+			private Iterator<Bucket> bucketsInIndex = Collections
+					.<Bucket> emptyList().iterator();
+
+			@Override
+			protected Bucket computeNext() {
+				while (!bucketsInIndex.hasNext() && indexes.hasNext())
+					bucketsInIndex = listBucketsInIndex(indexes.next()).iterator();
+				return bucketsInIndex.hasNext() ? bucketsInIndex.next() : null;
+			}
+		};
+	}
+
+	private RuntimeException asRuntimeException(Exception e) {
+		if (e instanceof RuntimeException)
+			return (RuntimeException) e;
+		return new RuntimeException(e);
+	}
+
+	private class ListBucketsInIndex implements Callable<List<Bucket>> {
+
+		private final String index;
+
+		public ListBucketsInIndex(String index) {
+			this.index = index;
+		}
+
+		@Override
+		public List<Bucket> call() {
+			return listBucketsInIndex(index);
+		}
+	}
+
 	/**
 	 * Lists {@link Bucket}s for an index that's been archived in an
 	 * {@link ArchiveFileSystem}<br/>
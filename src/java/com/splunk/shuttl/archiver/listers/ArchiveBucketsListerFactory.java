@@ -35,7 +35,8 @@ public class ArchiveBucketsListerFactory {
 		ArchivedIndexesLister indexesLister = new ArchivedIndexesLister(
 				pathResolver, archiveFileSystem);
 		return new ArchiveBucketsLister(archiveFileSystem, indexesLister,
-				pathResolver);
+				pathResolver, ArchiveListingExecutor.getSharedInstance(config
+						.getListingConcurrency()));
 	}
 
 }
@@ -0,0 +1,224 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
+import com.splunk.shuttl.archiver.filesystem.ListsPathsRecursively;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.RecursivePathIterator;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatChooser;
+
+/**
+ * Lists the {@link Bucket}s of an index with their formats resolved, from one
+ * recursive walk of the index. Listing the buckets with the
+ * {@link ArchiveBucketsLister} and then the formats of each bucket makes one
+ * call to the archive per bucket.<br/>
+ * <br/>
+ * The walk uses the bulk listing of {@link ListsPathsRecursively} file systems,
+ * and the buckets are created while iterating. On file systems without a bulk
+ * listing the walk lists the formats of every bucket in the index, also those
+ * that are filtered out afterwards, so it is only created for file systems with
+ * one.
+ */
+public class ArchiveBucketsWalker {
+
+	private final static Logger logger = Logger
+			.getLogger(ArchiveBucketsWalker.class);
+
+	/**
+	 * Format directories are two levels below the buckets home:
+	 * index/bucket/format
+	 */
+	private static final int FORMATS_DEPTH = 2;
+
+	private final ArchiveFileSystem archiveFileSystem;
+	private final ArchivedIndexesLister indexesLister;
+	private final PathResolver pathResolver;
+	private final BucketFormatChooser bucketFormatChooser;
+
+	public ArchiveBucketsWalker(ArchiveFileSystem archiveFileSystem,
+			ArchivedIndexesLister indexesLister, PathResolver pathResolver,
+			BucketFormatChooser bucketFormatChooser) {
+		this.archiveFileSystem = archiveFileSystem;
+		this.indexesLister = indexesLister;
+		this.pathResolver = pathResolver;
+		this.bucketFormatChooser = bucketFormatChooser;
+	}
+
+	/**
+	 * @return buckets in all indexes, with chosen formats. The indexes are walked
+	 *         one at a time, while iterating.
+	 */
+	public Iterator<Bucket> walkBuckets() {
+		return new BucketsInIndexes(indexesLister.listIndexes().iterator());
+	}
+
+	/**
+	 * @return buckets in the index, with chosen formats.
+	 */
+	public Iterator<Bucket> walkBucketsInIndex(String index) {
+		String bucketsHome = pathResolver.getBucketsHome(index);
+		try {
+			return new BucketsInIndex(index,
+					RecursivePathIterator.listPathsRecursively(archiveFileSystem,
+							bucketsHome, FORMATS_DEPTH));
+		} catch (IOException e) {
+			logger.debug(did("Walked buckets at bucketsHome in archive file system",
+					"Got IOException", "To list buckets with their formats",
+					"buckets_home", bucketsHome, "exception", e));
+			throw new RuntimeException(e);
+		}
+	}
+
+	private class BucketsInIndexes implements Iterator<Bucket> {
+
+		private final Iterator<String> indexes;
+		private Iterator<Bucket> buckets;
+
+		public BucketsInIndexes(Iterator<String> indexes) {
+			this.indexes = indexes;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while ((buckets == null || !buckets.hasNext()) && indexes.hasNext())
+				buckets = walkBucketsInIndex(indexes.next());
+			return buckets != null && buckets.hasNext();
+		}
+
+		@Override
+		public Bucket next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return buckets.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Groups the format paths by bucket. Paths with the same parent come after
+	 * each other in the walk.
+	 */
+	private class BucketsInIndex implements Iterator<Bucket> {
+
+		private final String index;
+		private final Iterator<String> formatPaths;
+		private String nextFormatPath;
+
+		public BucketsInIndex(String index, Iterator<String> formatPaths) {
+			this.index = index;
+			this.formatPaths = formatPaths;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextFormatPath != null || formatPaths.hasNext();
+		}
+
+		@Override
+		public Bucket next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (nextFormatPath == null)
+				nextFormatPath = formatPaths.next();
+			String formatsHome = FilenameUtils
+					.getFullPathNoEndSeparator(nextFormatPath);
+			List<BucketFormat> formats = new ArrayList<BucketFormat>();
+			do {
+				addFormat(formats, nextFormatPath);
+				nextFormatPath = formatPaths.hasNext() ? formatPaths.next() : null;
+			} while (nextFormatPath != null
+					&& formatsHome.equals(FilenameUtils
+							.getFullPathNoEndSeparator(nextFormatPath)));
+			return createBucket(index, FilenameUtils.getName(formatsHome), formats);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private void addFormat(List<BucketFormat> formats, String formatPath) {
+		String formatName = FilenameUtils.getName(formatPath);
+		try {
+			formats.add(BucketFormat.valueOf(formatName));
+		} catch (IllegalArgumentException e) {
+			logger.warn(warn("Walked formats of bucket", "Unknown format",
+					"Will skip the path", "path", formatPath));
+		}
+	}
+
+	private Bucket createBucket(String index, String bucketName,
+			List<BucketFormat> formats) {
+		BucketFormat chosenFormat = bucketFormatChooser.chooseBucketFormat(formats);
+		return new RemoteBucket(pathResolver.resolveArchivedBucketPath(index,
+				bucketName, chosenFormat), index, bucketName, chosenFormat);
+	}
+
+	/**
+	 * @return true if the file system lists paths in bulk, which makes walking
+	 *         cheaper than listing the formats of the buckets in a time range.
+	 */
+	public static boolean canWalkInBulk(ArchiveFileSystem archiveFileSystem) {
+		return archiveFileSystem instanceof ListsPathsRecursively
+				&& ((ListsPathsRecursively) archiveFileSystem).isBulkListing();
+	}
+
+	/**
+	 * @return instance configured with the configuration, or null if the
+	 *         configured file system can't walk in bulk.
+	 * @see #canWalkInBulk(ArchiveFileSystem)
+	 */
+	public static ArchiveBucketsWalker createForBulkListing(
+			ArchiveConfiguration config) {
+		ArchiveFileSystem archiveFileSystem = ArchiveFileSystemFactory
+				.getWithConfiguration(config);
+		if (!canWalkInBulk(archiveFileSystem))
+			return null;
+		return create(config, archiveFileSystem);
+	}
+
+	/**
+	 * @return instance that walks the file system.
+	 */
+	public static ArchiveBucketsWalker create(ArchiveConfiguration config,
+			ArchiveFileSystem archiveFileSystem) {
+		PathResolver pathResolver = new PathResolver(config);
+		return new ArchiveBucketsWalker(archiveFileSystem,
+				new ArchivedIndexesLister(pathResolver, archiveFileSystem),
+				pathResolver, new BucketFormatChooser(config));
+	}
+}
@@ -0,0 +1,201 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes list calls to the archive concurrently, with a bounded number of calls
+ * in flight. Calls to archives like s3 take tens of milliseconds each, which
+ * adds up when there is one call per bucket.<br/>
+ * <br/>
+ * The outcome of each call is returned in the same order as the calls, and a
+ * failing call does not affect the other calls.
+ */
+public class ArchiveListingExecutor {
+
+	private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+	private final ExecutorService executor;
+	private final int maxInFlight;
+
+	/**
+	 * @param executor
+	 *          that runs the calls, or null to run them one at a time in the
+	 *          calling thread.
+	 * @param maxInFlight
+	 *          number of calls the executor runs at the same time.
+	 */
+	public ArchiveListingExecutor(ExecutorService executor, int maxInFlight) {
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * The outcome of a list call. Either a value or the exception that the call
+	 * threw.
+	 */
+	public static class Outcome<T> {
+
+		private final T value;
+		private final Exception failure;
+
+		private Outcome(T value, Exception failure) {
+			this.value = value;
+			this.failure = failure;
+		}
+
+		public boolean isFailure() {
+			return failure != null;
+		}
+
+		/**
+		 * @return value of the call, or null if the call failed.
+		 */
+		public T getValue() {
+			return value;
+		}
+
+		/**
+		 * @return exception of the failed call, or null if the call succeeded.
+		 */
+		public Exception getFailure() {
+			return failure;
+		}
+	}
+
+	/**
+	 * Runs all the calls and waits for them to finish.
+	 * 
+	 * @return outcomes of the calls, in the same order as the calls.
+	 */
+	public <T> List<Outcome<T>> callAll(List<? extends Callable<T>> calls) {
+		if (executor == null)
+			return callAllInThisThread(calls);
+		else
+			return waitForAll(invokeAll(calls));
+	}
+
+	private <T> List<Outcome<T>> callAllInThisThread(
+			List<? extends Callable<T>> calls) {
+		List<Outcome<T>> outcomes = new ArrayList<Outcome<T>>(calls.size());
+		for (Callable<T> call : calls)
+			try {
+				outcomes.add(new Outcome<T>(call.call(), null));
+			} catch (Exception e) {
+				outcomes.add(new Outcome<T>(null, e));
+			}
+		return outcomes;
+	}
+
+	private <T> List<Future<T>> invokeAll(List<? extends Callable<T>> calls) {
+		try {
+			return executor.invokeAll(calls);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private <T> List<Outcome<T>> waitForAll(List<Future<T>> futures) {
+		List<Outcome<T>> outcomes = new ArrayList<Outcome<T>>(futures.size());
+		for (Future<T> future : futures)
+			outcomes.add(getOutcome(future));
+		return outcomes;
+	}
+
+	private <T> Outcome<T> getOutcome(Future<T> future) {
+		try {
+			return new Outcome<T>(future.get(), null);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error)
+				throw (Error) cause;
+			return new Outcome<T>(null, (Exception) cause);
+		}
+	}
+
+	/**
+	 * @return number of calls that are made at the same time.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	private static class ListingThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "shuttl-archive-lister-"
+					+ threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * @return executor that makes one call at a time, in the calling thread.
+	 */
+	public static ArchiveListingExecutor createSequential() {
+		return new ArchiveListingExecutor(null, 1);
+	}
+
+	private static ArchiveListingExecutor sharedInstance;
+
+	/**
+	 * The executor is shared so that the limit is for all listings in this JVM,
+	 * and not per listing.
+	 * 
+	 * @param maxInFlight
+	 *          calls at the same time. null or less than 2 lists one call at a
+	 *          time.
+	 */
+	public static synchronized ArchiveListingExecutor getSharedInstance(
+			Integer maxInFlight) {
+		if (maxInFlight == null || maxInFlight < 2)
+			return createSequential();
+		if (sharedInstance == null
+				|| sharedInstance.getMaxInFlight() != maxInFlight)
+			sharedInstance = new ArchiveListingExecutor(
+					createThreadPool(maxInFlight), maxInFlight);
+		return sharedInstance;
+	}
+
+	/**
+	 * Idle threads time out, so that a replaced executor goes away on its own.
+	 */
+	private static ExecutorService createThreadPool(int threads) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+				IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ListingThreadFactory());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
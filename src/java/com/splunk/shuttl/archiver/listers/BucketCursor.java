@@ -0,0 +1,124 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Position in a paged listing of buckets. Paged listings are ordered by index
+ * name and then by bucket name, so that the order is the same for every page
+ * no matter what order the archive lists in. The cursor is the last bucket of
+ * a page, and the next page starts after it.
+ */
+public class BucketCursor {
+
+	private static final char SEPARATOR = '/';
+
+	/**
+	 * Orders buckets by name. The buckets of an index are listed in this order.
+	 */
+	public static final Comparator<Bucket> BUCKET_NAME_ORDER = new Comparator<Bucket>() {
+
+		@Override
+		public int compare(Bucket b1, Bucket b2) {
+			return b1.getName().compareTo(b2.getName());
+		}
+	};
+
+	private final String index;
+	private final String bucketName;
+
+	public BucketCursor(String index, String bucketName) {
+		this.index = index;
+		this.bucketName = bucketName;
+	}
+
+	public String getIndex() {
+		return index;
+	}
+
+	public String getBucketName() {
+		return bucketName;
+	}
+
+	/**
+	 * @return true if the index has buckets that come after the cursor.
+	 */
+	public boolean isBeforeOrInIndex(String index) {
+		return this.index.compareTo(index) <= 0;
+	}
+
+	/**
+	 * @return true if the bucket comes after the cursor.
+	 */
+	public boolean isBefore(String index, String bucketName) {
+		int indexOrder = this.index.compareTo(index);
+		return indexOrder < 0 || indexOrder == 0
+				&& this.bucketName.compareTo(bucketName) < 0;
+	}
+
+	/**
+	 * The buckets before the cursor are left out before the rest are sorted.
+	 * 
+	 * @return the buckets that come after the cursor, in paged listing order.
+	 *         All buckets if the cursor is null.
+	 */
+	public static <T extends Bucket> List<T> sortedAfter(List<T> buckets,
+			BucketCursor cursor) {
+		List<T> bucketsAfter = new ArrayList<T>();
+		for (T bucket : buckets)
+			if (cursor == null || cursor.isBefore(bucket.getIndex(), bucket.getName()))
+				bucketsAfter.add(bucket);
+		Collections.sort(bucketsAfter, BUCKET_NAME_ORDER);
+		return bucketsAfter;
+	}
+
+	/**
+	 * @return cursor of a page that ends with the bucket.
+	 */
+	public static BucketCursor after(Bucket bucket) {
+		return new BucketCursor(bucket.getIndex(), bucket.getName());
+	}
+
+	/**
+	 * @return cursor in the form of {@link #toString()}, or null if the cursor
+	 *         is null.
+	 * @throws IllegalArgumentException
+	 *           if the cursor is not a cursor.
+	 */
+	public static BucketCursor parse(String cursor) {
+		if (cursor == null)
+			return null;
+		int separator = cursor.indexOf(SEPARATOR);
+		if (separator < 1 || separator == cursor.length() - 1)
+			throw new IllegalArgumentException("Not a bucket cursor: " + cursor);
+		return new BucketCursor(cursor.substring(0, separator),
+				cursor.substring(separator + 1));
+	}
+
+	/**
+	 * @return index and bucket name, which is what clients pass back to get the
+	 *         next page.
+	 */
+	@Override
+	public String toString() {
+		return index + SEPARATOR + bucketName;
+	}
+}
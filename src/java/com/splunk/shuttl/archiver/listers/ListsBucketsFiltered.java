@@ -14,57 +14,243 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.listers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.CatalogedBucket;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.thaw.BucketFilter;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+import com.splunk.shuttl.archiver.util.UtilsIterator;
+import com.splunk.shuttl.archiver.util.UtilsIterator.LazyIterator;
 
 /**
- * Lists buckets in the archive, filtered by time range.
+ * Lists buckets in the archive, filtered by time range. Answers from the
+ * {@link ArchiveCatalog} when it is complete, without calling the archive.
+ * Otherwise the buckets are listed by name and filtered before their formats
+ * are resolved. The archive is only walked with an {@link ArchiveBucketsWalker}
+ * if there is one, which is when the archive lists the formats of all buckets
+ * in bulk.
  */
 public class ListsBucketsFiltered {
 
+	private static final Comparator<CatalogedBucket> CATALOGED_BUCKET_NAME_ORDER = new Comparator<CatalogedBucket>() {
+
+		@Override
+		public int compare(CatalogedBucket b1, CatalogedBucket b2) {
+			return b1.getName().compareTo(b2.getName());
+		}
+	};
+
 	private final ArchiveBucketsLister bucketsLister;
 	private final BucketFilter bucketFilter;
 	private final BucketFormatResolver bucketFormatResolver;
+	private final ArchiveCatalog archiveCatalog;
+	private final ArchiveBucketsWalker bucketsWalker;
 
 	public ListsBucketsFiltered(ArchiveBucketsLister bucketsLister,
 			BucketFilter bucketFilter, BucketFormatResolver bucketFormatResolver) {
+		this(bucketsLister, bucketFilter, bucketFormatResolver, null);
+	}
+
+	/**
+	 * @param archiveCatalog
+	 *          to list buckets from when it is complete. May be null.
+	 */
+	public ListsBucketsFiltered(ArchiveBucketsLister bucketsLister,
+			BucketFilter bucketFilter, BucketFormatResolver bucketFormatResolver,
+			ArchiveCatalog archiveCatalog) {
+		this(bucketsLister, bucketFilter, bucketFormatResolver, archiveCatalog,
+				null);
+	}
+
+	/**
+	 * @param bucketsWalker
+	 *          to list buckets with their formats in one walk per index. May be
+	 *          null, which lists the formats of each bucket separately.
+	 */
+	public ListsBucketsFiltered(ArchiveBucketsLister bucketsLister,
+			BucketFilter bucketFilter, BucketFormatResolver bucketFormatResolver,
+			ArchiveCatalog archiveCatalog, ArchiveBucketsWalker bucketsWalker) {
+		this.bucketsWalker = bucketsWalker;
 		this.bucketsLister = bucketsLister;
 		this.bucketFilter = bucketFilter;
 		this.bucketFormatResolver = bucketFormatResolver;
+		this.archiveCatalog = archiveCatalog;
 	}
 
 	/**
 	 * @return all archived buckets filtered by earliest and latest time.
 	 * 
-	 * @see ListsBucketsFiltered#listFilteredBucketsAtIndex(String, Date, Date)
+	 * @see ListsBucketsFiltered#iterateFilteredBuckets(Date, Date)
 	 */
 	public List<Bucket> listFilteredBuckets(Date earliestTime, Date latestTime) {
-		List<Bucket> allBuckets = bucketsLister.listBuckets();
-		return filterBucketsAndGiveThemFormats(allBuckets, earliestTime, latestTime);
+		return UtilsIterator.toList(iterateFilteredBuckets(earliestTime,
+				latestTime));
 	}
 
 	/**
 	 * @return buckets that are archived in the specified index, filtered by
 	 *         earliest and latest time.
 	 * 
-	 * @see ListsBucketsFiltered#listFilteredBuckets(Date, Date)
+	 * @see ListsBucketsFiltered#iterateFilteredBucketsAtIndex(String, Date, Date)
 	 */
 	public List<Bucket> listFilteredBucketsAtIndex(String index,
 			Date earliestTime, Date latestTime) {
-		List<Bucket> bucketsInIndex = bucketsLister.listBucketsInIndex(index);
-		return filterBucketsAndGiveThemFormats(bucketsInIndex, earliestTime,
-				latestTime);
+		return UtilsIterator.toList(iterateFilteredBucketsAtIndex(index,
+				earliestTime, latestTime));
 	}
 
-	private List<Bucket> filterBucketsAndGiveThemFormats(
-			List<Bucket> bucketsToFilter, Date earliestTime, Date latestTime) {
+	/**
+	 * The buckets are listed, filtered and given formats while they are
+	 * iterated. Buckets are filtered before their formats are listed, so no
+	 * archive calls are made for buckets outside of the time range. With an
+	 * {@link ArchiveBucketsWalker}, the formats come with the bulk listing of the
+	 * index instead, and the buckets are filtered after it.
+	 * 
+	 * @return all archived buckets filtered by earliest and latest time.
+	 */
+	public Iterator<Bucket> iterateFilteredBuckets(final Date earliestTime,
+			final Date latestTime) {
+		if (isCatalogComplete()) {
+			final Iterator<String> indexes = archiveCatalog.listIndexes().iterator();
+			return new LazyIterator<Bucket>() {
+
+				private Iterator<Bucket> bucketsInIndex = Collections
+						.<Bucket> emptyList().iterator();
+
+				@Override
+				protected Bucket computeNext() {
+					while (!bucketsInIndex.hasNext() && indexes.hasNext())
+						bucketsInIndex = filterCatalogedBuckets(indexes.next(),
+								earliestTime, latestTime);
+					return bucketsInIndex.hasNext() ? bucketsInIndex.next() : null;
+				}
+			};
+		}
+		if (bucketsWalker != null)
+			return bucketFilter.filterBucketsByTimeRange(
+					bucketsWalker.walkBuckets(), earliestTime, latestTime);
+		return filterBucketsAndGiveThemFormats(bucketsLister.iterateBuckets(),
+				earliestTime, latestTime);
+	}
+
+	/**
+	 * @return buckets that are archived in the specified index, filtered by
+	 *         earliest and latest time.
+	 * @see ListsBucketsFiltered#iterateFilteredBuckets(Date, Date)
+	 */
+	public Iterator<Bucket> iterateFilteredBucketsAtIndex(String index,
+			Date earliestTime, Date latestTime) {
+		if (isCatalogComplete())
+			return filterCatalogedBuckets(index, earliestTime, latestTime);
+		if (bucketsWalker != null)
+			return bucketFilter.filterBucketsByTimeRange(
+					bucketsWalker.walkBucketsInIndex(index), earliestTime, latestTime);
+		return filterBucketsAndGiveThemFormats(bucketsLister
+				.listBucketsInIndex(index).iterator(), earliestTime, latestTime);
+	}
+
+	/**
+	 * Lists a page of buckets in paged listing order, which is by index and
+	 * then by bucket name. The buckets of an index are listed by name, filtered
+	 * and sorted before their formats are resolved, so that a page only
+	 * resolves the formats of the buckets it iterates. The archive is not
+	 * walked in bulk, since the walk would be repeated for every page. Indexes
+	 * before the cursor are not listed at all.
+	 * 
+	 * @param index
+	 *          to list buckets from. All indexes if null.
+	 * @param cursor
+	 *          to list the buckets after. From the first bucket if null.
+	 * @return buckets after the cursor, filtered by earliest and latest time.
+	 */
+	public Iterator<Bucket> iterateFilteredBucketsAfter(String index,
+			final Date earliestTime, final Date latestTime,
+			final BucketCursor cursor) {
+		List<String> indexes = index != null ? Arrays.asList(index)
+				: new ArrayList<String>(listIndexes());
+		Collections.sort(indexes);
+		final Iterator<String> indexesAfterCursor = indexes.iterator();
+		return new LazyIterator<Bucket>() {
+
+			private Iterator<Bucket> bucketsInIndex = Collections
+					.<Bucket> emptyList().iterator();
+
+			@Override
+			protected Bucket computeNext() {
+				while (!bucketsInIndex.hasNext() && indexesAfterCursor.hasNext()) {
+					String index = indexesAfterCursor.next();
+					if (cursor == null || cursor.isBeforeOrInIndex(index))
+						bucketsInIndex = sortedBucketsAfter(index, earliestTime,
+								latestTime, cursor);
+				}
+				return bucketsInIndex.hasNext() ? bucketsInIndex.next() : null;
+			}
+		};
+	}
+
+	private List<String> listIndexes() {
+		if (isCatalogComplete())
+			return archiveCatalog.listIndexes();
+		else
+			return bucketsLister.listIndexes();
+	}
+
+	private Iterator<Bucket> sortedBucketsAfter(String index,
+			Date earliestTime, Date latestTime, BucketCursor cursor) {
+		if (isCatalogComplete())
+			return resolveCatalogedBuckets(sortedCatalogedBucketsAfter(index,
+					earliestTime, latestTime, cursor).iterator());
 		List<Bucket> filteredBuckets = bucketFilter.filterBucketsByTimeRange(
+				bucketsLister.listBucketsInIndex(index), earliestTime, latestTime);
+		return bucketFormatResolver.resolveBucketsFormats(BucketCursor
+				.sortedAfter(filteredBuckets, cursor).iterator());
+	}
+
+	private List<CatalogedBucket> sortedCatalogedBucketsAfter(String index,
+			Date earliestTime, Date latestTime, BucketCursor cursor) {
+		List<CatalogedBucket> bucketsAfter = new ArrayList<CatalogedBucket>();
+		for (CatalogedBucket bucket : archiveCatalog.getTimeIndex(index).filter(
+				earliestTime, latestTime))
+			if (cursor == null || cursor.isBefore(bucket.getIndex(), bucket.getName()))
+				bucketsAfter.add(bucket);
+		Collections.sort(bucketsAfter, CATALOGED_BUCKET_NAME_ORDER);
+		return bucketsAfter;
+	}
+
+	private Iterator<Bucket> filterBucketsAndGiveThemFormats(
+			Iterator<Bucket> bucketsToFilter, Date earliestTime, Date latestTime) {
+		Iterator<Bucket> filteredBuckets = bucketFilter.filterBucketsByTimeRange(
 				bucketsToFilter, earliestTime, latestTime);
 		return bucketFormatResolver.resolveBucketsFormats(filteredBuckets);
 	}
 
+	private boolean isCatalogComplete() {
+		return archiveCatalog != null && archiveCatalog.isComplete();
+	}
+
+	private Iterator<Bucket> filterCatalogedBuckets(String index,
+			Date earliestTime, Date latestTime) {
+		return resolveCatalogedBuckets(archiveCatalog.getTimeIndex(index)
+				.filter(earliestTime, latestTime).iterator());
+	}
+
+	private Iterator<Bucket> resolveCatalogedBuckets(
+			final Iterator<CatalogedBucket> catalogedBuckets) {
+		return new LazyIterator<Bucket>() {
+
+			@Override
+			protected Bucket computeNext() {
+				return catalogedBuckets.hasNext() ? bucketFormatResolver
+						.resolveCatalogedBucket(catalogedBuckets.next()) : null;
+			}
+		};
+	}
 }
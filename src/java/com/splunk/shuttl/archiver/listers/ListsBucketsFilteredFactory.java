@@ -15,6 +15,8 @@
 package com.splunk.shuttl.archiver.listers;
 
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalogRebuilder;
 import com.splunk.shuttl.archiver.thaw.BucketFilter;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolverFactory;
@@ -29,13 +31,28 @@ public class ListsBucketsFilteredFactory {
 	 *         config.
 	 */
 	public static ListsBucketsFiltered create(ArchiveConfiguration config) {
+		return create(config, null);
+	}
+
+	/**
+	 * @return instance that lists from the archive catalog when it is complete.
+	 *         Otherwise the buckets are filtered before their formats are
+	 *         listed concurrently, unless the archive can be walked in bulk. A
+	 *         stale catalog is rebuilt in the background.
+	 */
+	public static ListsBucketsFiltered create(ArchiveConfiguration config,
+			ArchiveCatalog archiveCatalog) {
+		if (archiveCatalog != null)
+			ArchiveCatalogRebuilder.rebuildInBackgroundIfStale(config,
+					archiveCatalog);
 		ArchiveBucketsLister bucketsLister = ArchiveBucketsListerFactory
 				.create(config);
 		BucketFilter bucketFilter = new BucketFilter();
 		BucketFormatResolver bucketFormatResolver = BucketFormatResolverFactory
 				.create(config);
 		return new ListsBucketsFiltered(bucketsLister, bucketFilter,
-				bucketFormatResolver);
+				bucketFormatResolver, archiveCatalog,
+				ArchiveBucketsWalker.createForBulkListing(config));
 	}
 
 }
@@ -17,6 +17,7 @@ package com.splunk.shuttl.archiver.metastore;
 import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.transaction.Transaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
 import com.splunk.shuttl.archiver.metastore.MetadataStore.CouldNotReadMetadataException;
 import com.splunk.shuttl.archiver.model.Bucket;
@@ -71,6 +72,17 @@ public class ArchiveBucketSize {
 		metadataStore.put(bucket, getSizeMetadataFileName(), "" + bucket.getSize());
 	}
 
+	/**
+	 * @param bucket
+	 *          to persist bucket size for.
+	 * @return transaction that persists the bucket size, when it's executed
+	 *         together with the bucket's transaction.
+	 */
+	public Transaction getPersistBucketSizeTransaction(Bucket bucket) {
+		return metadataStore.getPutTransaction(bucket, getSizeMetadataFileName(),
+				"" + bucket.getSize());
+	}
+
 	/**
 	 * Instance with path resolver and archive file system.
 	 * 
@@ -80,7 +92,9 @@ public class ArchiveBucketSize {
 			ArchiveFileSystem archiveFileSystem,
 			LocalFileSystemPaths localFileSystemPaths) {
 		return new ArchiveBucketSize(new MetadataStore(pathResolver,
-				new FlatFileStorage(localFileSystemPaths), archiveFileSystem,
-				new TransactionExecuter(), localFileSystemPaths));
+				MetadataStorageFactory.create(localFileSystemPaths), archiveFileSystem,
+				new TransactionExecuter(), localFileSystemPaths, MetadataManifest.create(
+						pathResolver, archiveFileSystem, localFileSystemPaths),
+				MetadataCache.getSharedInstance()));
 	}
 }
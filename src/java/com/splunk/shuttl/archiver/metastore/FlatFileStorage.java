@@ -25,7 +25,11 @@ import org.apache.log4j.Logger;
 import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 import com.splunk.shuttl.archiver.model.Bucket;
 
-public class FlatFileStorage {
+/**
+ * {@link MetadataStorage} with one file per bucket and metadata file name, in a
+ * directory that is unique for the bucket.
+ */
+public class FlatFileStorage implements MetadataStorage {
 
 	private static final Logger logger = Logger.getLogger(FlatFileStorage.class);
 	private LocalFileSystemPaths localFileSystemPaths;
@@ -34,6 +38,20 @@ public class FlatFileStorage {
 		this.localFileSystemPaths = localFileSystemPaths;
 	}
 
+	@Override
+	public String read(Bucket bucket, String fileName) {
+		try {
+			return readFlatFile(getFlatFile(bucket, fileName));
+		} catch (FlatFileReadException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void write(Bucket bucket, String fileName, String data) {
+		writeFlatFile(bucket, fileName, data);
+	}
+
 	/**
 	 * @return a {@link File} that's unique for the bucket and its filename.
 	 */
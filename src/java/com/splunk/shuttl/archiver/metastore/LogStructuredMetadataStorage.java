@@ -0,0 +1,326 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * {@link MetadataStorage} that appends all metadata to a single log file,
+ * instead of writing one file per bucket and metadata file name. Every write
+ * appends a line {@code key\tdata}, where the key identifies the bucket and
+ * the file name. An index in memory has the position of the latest data of
+ * every key, and the data is read through a memory mapping of the log. The
+ * index is built by reading the log when it's opened.<br/>
+ * <br/>
+ * Every write is appended to the log with one write call, and isn't forced
+ * to disk, so it's left to the operating system when the data reaches the
+ * disk. Data that has been written since the log was last mapped is read from
+ * memory, and the log is mapped again after {@link #REMAP_BATCH_SIZE} writes.
+ * A line that was torn by a crash is cut off when the log is opened, which
+ * only loses metadata that is also in the archive. When the log is larger than
+ * the minimum compaction size and more than half of it is overwritten data,
+ * the latest data of every key is written to a new log that replaces the old
+ * one.
+ */
+public class LogStructuredMetadataStorage implements MetadataStorage {
+
+	private static final Logger logger = Logger
+			.getLogger(LogStructuredMetadataStorage.class);
+
+	public static final long DEFAULT_MIN_COMPACTION_BYTES = 1024 * 1024;
+
+	static final String LOG_FILE_NAME = "metadata.log";
+	static final int REMAP_BATCH_SIZE = 1024;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte SEPARATOR = '\t';
+	private static final byte NEW_LINE = '\n';
+
+	private final File logFile;
+	private final long minCompactionBytes;
+	private final Map<String, Record> records = new HashMap<String, Record>();
+	private final Map<String, String> unmapped = new HashMap<String, String>();
+	private RandomAccessFile log;
+	private MappedByteBuffer mapping;
+	private long size;
+	private long liveBytes;
+
+	/**
+	 * Opens the log file, which is created if it doesn't exist.
+	 */
+	public LogStructuredMetadataStorage(File logFile, long minCompactionBytes) {
+		this.logFile = logFile;
+		this.minCompactionBytes = minCompactionBytes;
+		try {
+			open();
+		} catch (IOException e) {
+			logger.error(did("Opened metadata log", e, "To open the log", "log",
+					logFile));
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void open() throws IOException {
+		records.clear();
+		unmapped.clear();
+		liveBytes = 0;
+		log = new RandomAccessFile(logFile, "rw");
+		size = log.length();
+		mapping = map();
+
+		int lineStart = 0;
+		int separator = -1;
+		for (int i = 0; i < size; i++) {
+			byte b = mapping.get(i);
+			if (b == SEPARATOR && separator < 0) {
+				separator = i;
+			} else if (b == NEW_LINE) {
+				if (separator > lineStart)
+					putRecord(decode(mapping, lineStart, separator - lineStart),
+							new Record(separator + 1, i - separator - 1, i + 1 - lineStart));
+				lineStart = i + 1;
+				separator = -1;
+			}
+		}
+		if (lineStart < size)
+			cutOffTornLine(lineStart);
+	}
+
+	private void cutOffTornLine(long lineStart) throws IOException {
+		logger.warn(happened("Metadata log ended with a partly written line, "
+				+ "which is cut off", "log", logFile, "size", size, "new_size",
+				lineStart));
+		log.setLength(lineStart);
+		size = lineStart;
+		mapping = map();
+	}
+
+	private MappedByteBuffer map() throws IOException {
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Metadata log is too large to be mapped. Size: "
+					+ size);
+		return log.getChannel().map(MapMode.READ_ONLY, 0, size);
+	}
+
+	private void putRecord(String key, Record record) {
+		Record overwritten = records.put(key, record);
+		liveBytes += record.length;
+		if (overwritten != null)
+			liveBytes -= overwritten.length;
+	}
+
+	@Override
+	public synchronized String read(Bucket bucket, String fileName) {
+		String key = getKey(bucket, fileName);
+		String data = unmapped.get(key);
+		if (data != null)
+			return data;
+		Record record = records.get(key);
+		if (record == null)
+			return null;
+		try {
+			return readData(record);
+		} catch (IOException e) {
+			logger.warn(warn("Read metadata from the metadata log", e,
+					"Metadata will be read from the archive", "log", logFile, "key",
+					key));
+			return null;
+		}
+	}
+
+	private String readData(Record record) throws IOException {
+		if (mapping == null)
+			mapping = map();
+		return decode(mapping, (int) record.dataPosition, record.dataLength);
+	}
+
+	/**
+	 * Only the first line of the data is stored, which is what's read from a
+	 * {@link FlatFileStorage} as well.
+	 */
+	@Override
+	public synchronized void write(Bucket bucket, String fileName, String data) {
+		String key = getKey(bucket, fileName);
+		String firstLine = getFirstLine(data);
+		try {
+			append(key, firstLine);
+		} catch (IOException e) {
+			logger.error(did("Appended metadata to the metadata log", e,
+					"To append the metadata", "log", logFile, "key", key));
+			throw new RuntimeException(e);
+		}
+		compactIfMostlyOverwritten();
+	}
+
+	private String getKey(Bucket bucket, String fileName) {
+		String key = bucket.getIndex() + "/" + bucket.getName() + "/"
+				+ bucket.getFormat() + "/" + fileName;
+		if (key.indexOf(SEPARATOR) >= 0 || key.indexOf(NEW_LINE) >= 0)
+			throw new IllegalArgumentException("Metadata key cannot contain tabs "
+					+ "or new lines. Key: " + key);
+		return key;
+	}
+
+	private static String getFirstLine(String data) {
+		int end = data.indexOf(NEW_LINE);
+		if (end < 0)
+			return data;
+		if (end > 0 && data.charAt(end - 1) == '\r')
+			end--;
+		return data.substring(0, end);
+	}
+
+	private void append(String key, String data) throws IOException {
+		byte[] keyBytes = key.getBytes(UTF_8);
+		byte[] dataBytes = data.getBytes(UTF_8);
+		log.seek(size);
+		log.write(toLine(keyBytes, dataBytes));
+
+		int length = keyBytes.length + dataBytes.length + 2;
+		putRecord(key, new Record(size + keyBytes.length + 1, dataBytes.length,
+				length));
+		size += length;
+
+		unmapped.put(key, data);
+		if (unmapped.size() >= REMAP_BATCH_SIZE) {
+			unmapped.clear();
+			mapping = null;
+		}
+	}
+
+	private static byte[] toLine(byte[] key, byte[] data) {
+		byte[] line = new byte[key.length + data.length + 2];
+		System.arraycopy(key, 0, line, 0, key.length);
+		line[key.length] = SEPARATOR;
+		System.arraycopy(data, 0, line, key.length + 1, data.length);
+		line[line.length - 1] = NEW_LINE;
+		return line;
+	}
+
+	private void compactIfMostlyOverwritten() {
+		if (size >= minCompactionBytes && liveBytes * 2 < size)
+			try {
+				compact();
+			} catch (IOException e) {
+				logger.warn(warn("Compacted the metadata log", e,
+						"Log will be compacted after the next write", "log", logFile));
+			}
+	}
+
+	private void compact() throws IOException {
+		logger.info(will("Compact metadata log", "log", logFile, "size", size,
+				"live_bytes", liveBytes));
+		File compacted = new File(logFile.getPath() + ".compacting");
+		writeLatestData(compacted);
+		log.close();
+		mapping = null;
+		try {
+			if (!compacted.renameTo(logFile))
+				throw new IOException("Could not replace the metadata log with "
+						+ "the compacted log: " + compacted);
+		} finally {
+			FileUtils.deleteQuietly(compacted);
+			open();
+		}
+		logger.info(done("Compacted metadata log", "log", logFile, "size", size));
+	}
+
+	private void writeLatestData(File compacted) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(
+				compacted));
+		try {
+			for (String key : records.keySet())
+				out.write(toLine(key.getBytes(UTF_8), readLatestData(key)
+						.getBytes(UTF_8)));
+		} finally {
+			out.close();
+		}
+	}
+
+	private String readLatestData(String key) throws IOException {
+		String data = unmapped.get(key);
+		return data != null ? data : readData(records.get(key));
+	}
+
+	private static String decode(ByteBuffer buffer, int position, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(position);
+		slice.limit(position + length);
+		return UTF_8.decode(slice).toString();
+	}
+
+	/**
+	 * Closes the log. It can't be read or written to after it's closed.
+	 */
+	public synchronized void close() throws IOException {
+		mapping = null;
+		log.close();
+	}
+
+	/**
+	 * Position and length of data in the log, and the length of its line.
+	 */
+	private static class Record {
+
+		private final long dataPosition;
+		private final int dataLength;
+		private final int length;
+
+		public Record(long dataPosition, int dataLength, int length) {
+			this.dataPosition = dataPosition;
+			this.dataLength = dataLength;
+			this.length = length;
+		}
+	}
+
+	private static final Map<File, LogStructuredMetadataStorage> sharedInstances = new HashMap<File, LogStructuredMetadataStorage>();
+
+	/**
+	 * There can only be one writer of the log, so there is one instance per log
+	 * file in the JVM.
+	 * 
+	 * @return instance with the log in the metadata storage directory.
+	 */
+	public static synchronized LogStructuredMetadataStorage getSharedInstance(
+			LocalFileSystemPaths localFileSystemPaths) {
+		File logFile = new File(localFileSystemPaths.getMetadataStorageDirectory(),
+				LOG_FILE_NAME).getAbsoluteFile();
+		LogStructuredMetadataStorage instance = sharedInstances.get(logFile);
+		if (instance == null) {
+			instance = new LogStructuredMetadataStorage(logFile,
+					DEFAULT_MIN_COMPACTION_BYTES);
+			sharedInstances.put(logFile, instance);
+		}
+		return instance;
+	}
+}
@@ -0,0 +1,183 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.splunk.shuttl.server.mbeans.util.RegistersMBeans;
+
+/**
+ * Bounded, least recently used cache of bucket metadata, in front of the
+ * {@link MetadataStore}. Metadata that could not be read is cached as missing
+ * for a limited time, so that buckets without the metadata don't cost a read
+ * from the archive every time, but are read again after they could have been
+ * given the metadata.
+ */
+public class MetadataCache implements MetadataCacheMBean {
+
+	public static final int DEFAULT_MAX_SIZE = 100000;
+	public static final long DEFAULT_MISSING_TTL_MILLIS = 5 * 60 * 1000;
+
+	private final int maxSize;
+	private final long missingTtlMillis;
+	private final Clock clock;
+	private final Map<String, CachedMetadata> entries;
+
+	private long hits;
+	private long negativeHits;
+	private long misses;
+	private long evictions;
+
+	public MetadataCache(int maxSize, long missingTtlMillis, Clock clock) {
+		this.maxSize = maxSize;
+		this.missingTtlMillis = missingTtlMillis;
+		this.clock = clock;
+		this.entries = new LinkedHashMap<String, CachedMetadata>(16, 0.75f,
+				true) {
+
+			private static final long serialVersionUID = 0L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CachedMetadata> eldest) {
+				boolean isFull = size() > MetadataCache.this.maxSize;
+				if (isFull)
+					evictions++;
+				return isFull;
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 *          unique for the metadata in the archive, i.e. its path.
+	 * @return cached metadata for the key, or null if nothing is
+	 *         cached or the metadata was cached as missing too long ago.
+	 */
+	public synchronized CachedMetadata get(String key) {
+		CachedMetadata cached = entries.get(key);
+		if (cached != null && cached.isMissing()
+				&& clock.currentTimeMillis() >= cached.expires) {
+			entries.remove(key);
+			cached = null;
+		}
+
+		if (cached == null)
+			misses++;
+		else if (cached.isMissing())
+			negativeHits++;
+		else
+			hits++;
+		return cached;
+	}
+
+	/**
+	 * Caches metadata that has been read or put.
+	 */
+	public synchronized void put(String key, String data) {
+		entries.put(key, new CachedMetadata(data,
+				Long.MAX_VALUE));
+	}
+
+	/**
+	 * Caches that the metadata could not be read, until the missing time to live
+	 * has passed.
+	 */
+	public synchronized void putMissing(String key) {
+		entries.put(key, new CachedMetadata(null,
+				clock.currentTimeMillis() + missingTtlMillis));
+	}
+
+	@Override
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	@Override
+	public synchronized long getNegativeHits() {
+		return negativeHits;
+	}
+
+	@Override
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	@Override
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Cached metadata, or that the metadata is missing.
+	 */
+	public static class CachedMetadata {
+
+		private final String data;
+		private final long expires;
+
+		private CachedMetadata(String data, long expires) {
+			this.data = data;
+			this.expires = expires;
+		}
+
+		/**
+		 * @return the metadata, or null if it's missing.
+		 */
+		public String getData() {
+			return data;
+		}
+
+		public boolean isMissing() {
+			return data == null;
+		}
+	}
+
+	/**
+	 * Source of time, for testability.
+	 */
+	public static class Clock {
+
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	}
+
+	private static MetadataCache sharedInstance;
+
+	/**
+	 * @return the server wide cache, with the default bounds and registered as
+	 *         an MBean.
+	 */
+	public static synchronized MetadataCache getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new MetadataCache(DEFAULT_MAX_SIZE,
+					DEFAULT_MISSING_TTL_MILLIS, new Clock());
+			RegistersMBeans.create().registerMBean(OBJECT_NAME, sharedInstance);
+		}
+		return sharedInstance;
+	}
+}
@@ -0,0 +1,55 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+/**
+ * JMX view of the {@link MetadataCache}, for monitoring how much of the bucket
+ * metadata is read without going to the archive.
+ */
+public interface MetadataCacheMBean {
+
+	public static final String OBJECT_NAME = "com.splunk.shuttl.mbeans:type=MetadataCache";
+
+	/**
+	 * @return number of reads that got cached metadata.
+	 */
+	public long getHits();
+
+	/**
+	 * @return number of reads that got a cached answer that the metadata is
+	 *         missing.
+	 */
+	public long getNegativeHits();
+
+	/**
+	 * @return number of reads that had nothing cached.
+	 */
+	public long getMisses();
+
+	/**
+	 * @return number of entries that were evicted to keep the cache bounded.
+	 */
+	public long getEvictions();
+
+	/**
+	 * @return number of cached entries.
+	 */
+	public int getSize();
+
+	/**
+	 * @return max number of cached entries.
+	 */
+	public int getMaxSize();
+}
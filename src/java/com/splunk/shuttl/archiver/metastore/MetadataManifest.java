@@ -0,0 +1,569 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.DeletesPaths;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.transaction.Transaction;
+import com.splunk.shuttl.archiver.filesystem.transaction.TransactionException;
+import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
+import com.splunk.shuttl.archiver.filesystem.transaction.file.GetFileTransaction;
+import com.splunk.shuttl.archiver.filesystem.transaction.file.PutFileTransaction;
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Metadata for all the buckets in an index, stored together on the archive
+ * file system so that it can be read in bulk instead of one file per bucket
+ * and metadata file name.<br/>
+ * <br/>
+ * Recorded metadata is not put in the bucket's own metadata file. When the
+ * bucket is committed, the metadata is appended to a local pending file of
+ * the index. The pending lines are uploaded in the background as a small delta
+ * file, when there are enough of them or when the oldest has waited for the
+ * flush delay. Once the index has as many delta files as the compaction
+ * threshold, the deltas are merged into a manifest file in the background and
+ * deleted. The manifest files are merged as well when there are as many of
+ * them. Deltas that couldn't be uploaded, also by an earlier run, are kept
+ * locally and uploaded by the next flush of the index.<br/>
+ * <br/>
+ * Delta and manifest files are named with the time they were written and read
+ * in that order. A merged file is committed before anything is deleted, so a
+ * file that is deleted while it's read is read again from the newer file.
+ * Metadata that is not in the manifest, because it was archived before there
+ * was a manifest or couldn't be recorded, is read from the bucket's own
+ * metadata file.
+ */
+public class MetadataManifest {
+
+	private static final Logger logger = Logger
+			.getLogger(MetadataManifest.class);
+
+	public static final int DEFAULT_DELTA_LINES = 64;
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 16;
+	public static final long DEFAULT_FLUSH_DELAY_MILLIS = 60 * 1000;
+
+	static final String MANIFEST_PREFIX = "manifest-";
+	static final String DELTA_PREFIX = "delta-";
+	static final String PENDING_FILE_NAME = "pending";
+	static final String DELTAS_DIRECTORY_NAME = "deltas";
+	private static final String ENCODING = "UTF-8";
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * Pending files and delta directories are shared by all instances, so
+	 * they're locked by path.
+	 */
+	private static final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * Delayed flushes that are scheduled, by pending file, so that there is at
+	 * most one per index.
+	 */
+	private static final Set<String> scheduledFlushes = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private static ScheduledExecutorService flushExecutor;
+
+	private final PathResolver pathResolver;
+	private final ArchiveFileSystem archiveFileSystem;
+	private final TransactionExecuter transactionExecuter;
+	private final LocalFileSystemPaths localFileSystemPaths;
+	private final int deltaLines;
+	private final int compactionThreshold;
+	private final long flushDelayMillis;
+
+	/**
+	 * Manifests are read once per instance, by index.
+	 */
+	private final Map<String, Map<String, String>> manifests = new HashMap<String, Map<String, String>>();
+
+	/**
+	 * @param deltaLines
+	 *          pending lines that are uploaded together as a delta file.
+	 * @param compactionThreshold
+	 *          delta files, or manifest files, of an index that are merged.
+	 * @param flushDelayMillis
+	 *          that pending lines wait at most before they are uploaded.
+	 */
+	public MetadataManifest(PathResolver pathResolver,
+			ArchiveFileSystem archiveFileSystem,
+			TransactionExecuter transactionExecuter,
+			LocalFileSystemPaths localFileSystemPaths, int deltaLines,
+			int compactionThreshold, long flushDelayMillis) {
+		this.pathResolver = pathResolver;
+		this.archiveFileSystem = archiveFileSystem;
+		this.transactionExecuter = transactionExecuter;
+		this.localFileSystemPaths = localFileSystemPaths;
+		this.deltaLines = deltaLines;
+		this.compactionThreshold = compactionThreshold;
+		this.flushDelayMillis = flushDelayMillis;
+	}
+
+	/**
+	 * @return true if the metadata can be recorded in the manifest instead of
+	 *         being put in the bucket's own metadata file. Metadata with new
+	 *         lines or tabs can't be in the manifest, and the manifest can only
+	 *         be compacted on archive file systems that delete paths.
+	 */
+	public boolean canRecord(String data) {
+		return archiveFileSystem instanceof DeletesPaths && !data.contains("\n")
+				&& !data.contains(SEPARATOR);
+	}
+
+	/**
+	 * @return transaction that records the metadata in the manifest of the
+	 *         bucket's index when it's committed, which is after the bucket's
+	 *         transaction when they are executed together. Nothing is recorded
+	 *         if the bucket isn't committed.
+	 * @see #canRecord(String)
+	 */
+	public Transaction getRecordingTransaction(final Bucket bucket,
+			final String fileName, final String data) {
+		return new Transaction() {
+
+			@Override
+			public void prepare() {
+			}
+
+			@Override
+			public void commit() {
+				try {
+					record(bucket, fileName, data);
+				} catch (IOException e) {
+					throw new TransactionException(e);
+				}
+			}
+
+			@Override
+			public void clean() {
+			}
+
+			@Override
+			public String toString() {
+				return "Record metadata in manifest [bucket=" + bucket
+						+ ", file_name=" + fileName + "]";
+			}
+		};
+	}
+
+	/**
+	 * Appends committed metadata to the pending file of the bucket's index.
+	 * The pending lines are uploaded in the background, right away when there
+	 * are enough of them and otherwise after the flush delay.
+	 */
+	public void record(Bucket bucket, String fileName, String data)
+			throws IOException {
+		String index = bucket.getIndex();
+		File pending = getPendingFile(index);
+		int pendingLines;
+		synchronized (getLock(pending)) {
+			FileUtils.writeLines(pending, ENCODING, Collections
+					.singletonList(toLine(bucket.getName(), bucket.getFormat()
+							.toString(), fileName, data)), true);
+			pendingLines = FileUtils.readLines(pending, ENCODING).size();
+		}
+		if (pendingLines >= deltaLines)
+			scheduleFlush(index, 0);
+		else if (scheduledFlushes.add(pending.getAbsolutePath()))
+			scheduleFlush(index, flushDelayMillis);
+	}
+
+	private void scheduleFlush(final String index, long delayMillis) {
+		getFlushExecutor().schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				scheduledFlushes.remove(getPendingFile(index).getAbsolutePath());
+				try {
+					flush(index);
+				} catch (RuntimeException e) {
+					logger.warn(warn("Flushed metadata manifest", e,
+							"Pending metadata is uploaded by the next flush", "index",
+							index));
+				}
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private static synchronized ScheduledExecutorService getFlushExecutor() {
+		if (flushExecutor == null)
+			flushExecutor = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "shuttl-metadata-manifest");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		return flushExecutor;
+	}
+
+	/**
+	 * Uploads the pending lines of the index as a delta file, together with
+	 * deltas that couldn't be uploaded before, and compacts the index's
+	 * manifest when it has enough delta files. A delta that can't be uploaded
+	 * is kept locally and another flush is scheduled.
+	 */
+	void flush(String index) {
+		File pending = getPendingFile(index);
+		File deltas = getDeltasDirectory(index);
+		synchronized (getLock(pending)) {
+			if (pending.exists())
+				moveToDeltas(pending, deltas);
+		}
+		synchronized (getLock(deltas)) {
+			if (uploadDeltas(index, deltas) > 0)
+				compactIfNeeded(index);
+		}
+	}
+
+	private void moveToDeltas(File pending, File deltas) {
+		File delta = new File(deltas, newFileName(DELTA_PREFIX,
+				System.currentTimeMillis()));
+		try {
+			FileUtils.moveFile(pending, delta);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return number of deltas that were uploaded.
+	 */
+	private int uploadDeltas(String index, File deltas) {
+		String[] names = deltas.list();
+		if (names == null)
+			return 0;
+		Arrays.sort(names);
+		int uploaded = 0;
+		for (String name : names) {
+			try {
+				putFile(index, new File(deltas, name));
+				uploaded++;
+			} catch (TransactionException e) {
+				logger.warn(warn("Uploaded metadata manifest delta", e,
+						"Delta is kept locally and uploaded by the next flush", "index",
+						index, "delta", name));
+				scheduleFlush(index, flushDelayMillis);
+				break;
+			}
+		}
+		return uploaded;
+	}
+
+	private File getPendingFile(String index) {
+		return new File(
+				localFileSystemPaths.getMetadataManifestTransfersDirectory(index),
+				PENDING_FILE_NAME);
+	}
+
+	private File getDeltasDirectory(String index) {
+		File deltas = new File(
+				localFileSystemPaths.getMetadataManifestTransfersDirectory(index),
+				DELTAS_DIRECTORY_NAME);
+		deltas.mkdirs();
+		return deltas;
+	}
+
+	private static Object getLock(File file) {
+		String path = file.getAbsolutePath();
+		locks.putIfAbsent(path, new Object());
+		return locks.get(path);
+	}
+
+	private static String toLine(String bucketName, String format,
+			String fileName, String data) {
+		return getKey(bucketName, format, fileName) + SEPARATOR + data;
+	}
+
+	private static String getKey(String bucketName, String format,
+			String fileName) {
+		return bucketName + SEPARATOR + format + SEPARATOR + fileName;
+	}
+
+	/**
+	 * @return metadata for the bucket and file name in the manifest of the
+	 *         bucket's index, or null if it is not in the manifest. The whole
+	 *         manifest of the index is read the first time.
+	 */
+	public String read(Bucket bucket, String fileName) {
+		return getManifest(bucket.getIndex()).get(
+				getKey(bucket.getName(), bucket.getFormat().toString(), fileName));
+	}
+
+	private synchronized Map<String, String> getManifest(String index) {
+		Map<String, String> manifest = manifests.get(index);
+		if (manifest == null) {
+			manifest = readManifest(index);
+			manifests.put(index, manifest);
+		}
+		return manifest;
+	}
+
+	private Map<String, String> readManifest(String index) {
+		try {
+			return readManifestFiles(index, listManifestFiles(index));
+		} catch (IOException e) {
+			logger.warn(warn("Read the metadata manifest", e,
+					"Metadata will be read per bucket", "index", index));
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * A manifest file that can't be read has been merged into a newer one
+	 * after it was listed, so the files are listed and read again. Files that
+	 * still can't be read are skipped.
+	 */
+	private Map<String, String> readManifestFiles(String index,
+			List<String> manifestFiles) throws IOException {
+		try {
+			return readLines(index, manifestFiles, false);
+		} catch (IOException e) {
+			logger.debug(happened("Metadata manifest file disappeared while "
+					+ "reading. Reading the manifest again.", "index", index,
+					"exception", e));
+			manifestFiles.clear();
+			manifestFiles.addAll(listManifestFiles(index));
+			return readLines(index, manifestFiles, true);
+		}
+	}
+
+	private Map<String, String> readLines(String index, List<String> files,
+			boolean skipUnreadable) throws IOException {
+		Map<String, String> manifest = new HashMap<String, String>();
+		for (String file : files)
+			try {
+				putLines(manifest, readRemoteLines(index, file));
+			} catch (IOException e) {
+				if (!skipUnreadable)
+					throw e;
+				logger.warn(warn("Read metadata manifest file", e,
+						"Metadata in the file will be read per bucket", "index", index,
+						"path", file));
+			}
+		return manifest;
+	}
+
+	/**
+	 * @return delta and manifest files sorted by the time they were written,
+	 *         so that newer files are read after older ones.
+	 */
+	private List<String> listManifestFiles(String index) throws IOException {
+		List<String> manifestFiles = new ArrayList<String>();
+		for (String path : archiveFileSystem.listPath(pathResolver
+				.getMetadataManifestHome(index)))
+			if (isManifestFile(path) || isDeltaFile(path))
+				manifestFiles.add(path);
+		Collections.sort(manifestFiles, new Comparator<String>() {
+
+			@Override
+			public int compare(String path1, String path2) {
+				long time1 = getWrittenTime(path1);
+				long time2 = getWrittenTime(path2);
+				return time1 < time2 ? -1 : time1 > time2 ? 1 : path1
+						.compareTo(path2);
+			}
+		});
+		return manifestFiles;
+	}
+
+	private static boolean isManifestFile(String path) {
+		return FilenameUtils.getName(path).startsWith(MANIFEST_PREFIX);
+	}
+
+	private static boolean isDeltaFile(String path) {
+		return FilenameUtils.getName(path).startsWith(DELTA_PREFIX);
+	}
+
+	/**
+	 * @return time in the name of a delta or manifest file, or 0 if it has
+	 *         none.
+	 */
+	static long getWrittenTime(String path) {
+		String name = FilenameUtils.getName(path);
+		int timeStart = name.indexOf('-') + 1;
+		int timeEnd = name.indexOf('-', timeStart);
+		try {
+			return Long.parseLong(name.substring(timeStart,
+					timeEnd < 0 ? name.length() : timeEnd));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static String newFileName(String prefix, long time) {
+		return prefix + time + "-" + UUID.randomUUID();
+	}
+
+	private void putLines(Map<String, String> manifest, List<String> lines) {
+		for (String line : lines) {
+			int dataStart = line.lastIndexOf(SEPARATOR);
+			if (dataStart > 0)
+				manifest.put(line.substring(0, dataStart),
+						line.substring(dataStart + 1));
+		}
+	}
+
+	private List<String> readRemoteLines(String index, String path)
+			throws IOException {
+		File transfersDirectory = localFileSystemPaths
+				.getMetadataManifestTransfersDirectory(index);
+		String name = FilenameUtils.getName(path);
+		File file = new File(transfersDirectory, name);
+		File temp = new File(transfersDirectory, name + ".temp");
+		FileUtils.deleteQuietly(file);
+		try {
+			transactionExecuter.execute(GetFileTransaction.create(
+					archiveFileSystem, path, temp.getAbsolutePath(),
+					file.getAbsolutePath()));
+			return FileUtils.readLines(file, ENCODING);
+		} catch (TransactionException e) {
+			throw new IOException(e);
+		} finally {
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	/**
+	 * Merges the delta files of the index into a manifest file once there are
+	 * as many of them as the compaction threshold, and the manifest files as
+	 * well once there are as many of those. Only the merged files are read, so
+	 * the transfer is bounded by the deltas until the manifest files are
+	 * merged. Failures are logged, since the files are merged by a later
+	 * flush.
+	 */
+	private void compactIfNeeded(String index) {
+		try {
+			List<String> files = listManifestFiles(index);
+			List<String> deltaFiles = new ArrayList<String>();
+			int manifestFiles = 0;
+			for (String file : files)
+				if (isDeltaFile(file))
+					deltaFiles.add(file);
+				else
+					manifestFiles++;
+			if (deltaFiles.size() < compactionThreshold)
+				return;
+			compact(index, manifestFiles + 1 >= compactionThreshold ? files
+					: deltaFiles);
+		} catch (IOException e) {
+			logger.warn(warn("Compacted metadata manifest", e,
+					"Files are merged by a later flush", "index", index));
+		} catch (TransactionException e) {
+			logger.warn(warn("Compacted metadata manifest", e,
+					"Files are merged by a later flush", "index", index));
+		}
+	}
+
+	/**
+	 * Merges the files into a new manifest file, which is committed before the
+	 * merged files are deleted.
+	 */
+	private void compact(String index, List<String> files) throws IOException {
+		logger.info(will("Compact metadata manifest", "index", index,
+				"merged_files", files.size()));
+		Map<String, String> manifest = readManifestFiles(index, files);
+		String name = newFileName(MANIFEST_PREFIX, Math.max(
+				System.currentTimeMillis(), getNewestWrittenTime(files) + 1));
+		File manifestFile = new File(
+				localFileSystemPaths.getMetadataManifestTransfersDirectory(index),
+				name);
+		List<String> lines = new ArrayList<String>();
+		for (Map.Entry<String, String> entry : manifest.entrySet())
+			lines.add(entry.getKey() + SEPARATOR + entry.getValue());
+		FileUtils.writeLines(manifestFile, ENCODING, lines);
+		try {
+			putFile(index, manifestFile);
+		} finally {
+			FileUtils.deleteQuietly(manifestFile);
+		}
+		deleteMergedFiles(index, files);
+		logger.info(done("Compacted metadata manifest", "index", index));
+	}
+
+	/**
+	 * The merged manifest is named with a time after the newest merged file,
+	 * even if the clock of the host that wrote it was ahead.
+	 */
+	private long getNewestWrittenTime(List<String> files) {
+		return files.isEmpty() ? 0 : getWrittenTime(files.get(files.size() - 1));
+	}
+
+	/**
+	 * Puts a local file in the index's manifest home with the same name. The
+	 * local file is deleted once it's committed.
+	 */
+	private void putFile(String index, File file) {
+		String name = file.getName();
+		transactionExecuter.execute(PutFileTransaction.create(archiveFileSystem,
+				file.getAbsolutePath(),
+				pathResolver.resolveTempPathForMetadataManifest(index, name),
+				pathResolver.getMetadataManifestHome(index) + PathResolver.SEPARATOR
+						+ name));
+		FileUtils.deleteQuietly(file);
+	}
+
+	private void deleteMergedFiles(String index, List<String> merged) {
+		for (String path : merged)
+			try {
+				((DeletesPaths) archiveFileSystem).deletePath(path);
+			} catch (RuntimeException e) {
+				logger.warn(warn("Deleted merged metadata manifest file", e,
+						"File is read again until the next compaction", "index",
+						index, "path", path));
+			}
+	}
+
+	/**
+	 * Instance with the default delta size, compaction threshold and flush
+	 * delay.
+	 */
+	public static MetadataManifest create(PathResolver pathResolver,
+			ArchiveFileSystem archiveFileSystem,
+			LocalFileSystemPaths localFileSystemPaths) {
+		return new MetadataManifest(pathResolver, archiveFileSystem,
+				new TransactionExecuter(), localFileSystemPaths, DEFAULT_DELTA_LINES,
+				DEFAULT_COMPACTION_THRESHOLD, DEFAULT_FLUSH_DELAY_MILLIS);
+	}
+}
@@ -0,0 +1,37 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+
+/**
+ * Local storage of bucket metadata, so that metadata that has been put or read
+ * from the archive doesn't have to be read from the archive again. Used by the
+ * {@link MetadataStore}.
+ */
+public interface MetadataStorage {
+
+	/**
+	 * @return the first line of the metadata stored for the bucket and file
+	 *         name, or null if there is none or it couldn't be read.
+	 */
+	String read(Bucket bucket, String fileName);
+
+	/**
+	 * Stores the metadata for the bucket and file name, replacing any metadata
+	 * that was stored before.
+	 */
+	void write(Bucket bucket, String fileName, String data);
+}
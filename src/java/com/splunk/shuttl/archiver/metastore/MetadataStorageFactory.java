@@ -0,0 +1,71 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import javax.management.InstanceNotFoundException;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiver;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiverMBean;
+
+/**
+ * Creates the {@link MetadataStorage} that is configured in the
+ * {@link ShuttlArchiverMBean}. The {@link FlatFileStorage} is the default.
+ */
+public class MetadataStorageFactory {
+
+	private static final Logger logger = Logger
+			.getLogger(MetadataStorageFactory.class);
+
+	public static final String FLAT_FILE_STORAGE = "flatfile";
+	public static final String LOG_STRUCTURED_STORAGE = "log";
+
+	/**
+	 * @return the configured metadata storage, or the default when there is no
+	 *         configuration.
+	 */
+	public static MetadataStorage create(LocalFileSystemPaths localFileSystemPaths) {
+		return create(localFileSystemPaths, getConfiguredStorage());
+	}
+
+	/**
+	 * @param storage
+	 *          name of the storage. Can be null, for the default storage.
+	 */
+	public static MetadataStorage create(
+			LocalFileSystemPaths localFileSystemPaths, String storage) {
+		if (LOG_STRUCTURED_STORAGE.equals(storage))
+			return LogStructuredMetadataStorage
+					.getSharedInstance(localFileSystemPaths);
+		if (storage != null && !FLAT_FILE_STORAGE.equals(storage))
+			logger.warn(happened("Unknown metadata storage is configured",
+					"metadata_storage", storage, "will_use", FLAT_FILE_STORAGE));
+		return new FlatFileStorage(localFileSystemPaths);
+	}
+
+	private static String getConfiguredStorage() {
+		try {
+			return ShuttlArchiver.getMBeanProxy().getMetadataStorage();
+		} catch (InstanceNotFoundException e) {
+			logger.debug(happened("No archiver configuration is registered",
+					"will_use", FLAT_FILE_STORAGE));
+			return null;
+		}
+	}
+}
@@ -17,6 +17,8 @@ package com.splunk.shuttl.archiver.metastore;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
@@ -31,31 +33,67 @@ import com.splunk.shuttl.archiver.filesystem.transaction.TransactionException;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
 import com.splunk.shuttl.archiver.filesystem.transaction.file.GetFileTransaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.file.PutFileTransaction;
-import com.splunk.shuttl.archiver.metastore.FlatFileStorage.FlatFileReadException;
 import com.splunk.shuttl.archiver.model.Bucket;
 
 /**
- * Puts and gets metadata that's unique for a bucket.
+ * Puts and gets metadata that's unique for a bucket. Metadata is recorded in
+ * the {@link MetadataManifest} of the bucket's index when it's committed, when
+ * there is a manifest that can record it, and is otherwise put in the bucket's
+ * own metadata file. Metadata that is not in the manifest is read from the
+ * bucket's own metadata file, which is how buckets archived before there was
+ * a manifest are read.
+ * Reads and puts go through the {@link MetadataCache}, when there is one. A
+ * copy of all put metadata, and of metadata read from the manifest or the
+ * archive, is kept in the local {@link MetadataStorage}.
  */
 public class MetadataStore {
 
 	private static final Logger logger = Logger.getLogger(MetadataStore.class);
 
 	private final PathResolver pathResolver;
-	private final FlatFileStorage flatFileStorage;
+	private final MetadataStorage metadataStorage;
 	private final ArchiveFileSystem archiveFileSystem;
 	private final TransactionExecuter transactionExecuter;
 	private final LocalFileSystemPaths localFileSystemPaths;
+	private final MetadataManifest metadataManifest;
+	private final MetadataCache metadataCache;
 
 	public MetadataStore(PathResolver pathResolver,
-			FlatFileStorage flatFileStorage, ArchiveFileSystem archiveFileSystem,
+			MetadataStorage metadataStorage, ArchiveFileSystem archiveFileSystem,
 			TransactionExecuter transactionExecuter,
 			LocalFileSystemPaths localFileSystemPaths) {
+		this(pathResolver, metadataStorage, archiveFileSystem,
+				transactionExecuter, localFileSystemPaths, null);
+	}
+
+	public MetadataStore(PathResolver pathResolver,
+			MetadataStorage metadataStorage, ArchiveFileSystem archiveFileSystem,
+			TransactionExecuter transactionExecuter,
+			LocalFileSystemPaths localFileSystemPaths,
+			MetadataManifest metadataManifest) {
+		this(pathResolver, metadataStorage, archiveFileSystem,
+				transactionExecuter, localFileSystemPaths, metadataManifest, null);
+	}
+
+	/**
+	 * @param metadataManifest
+	 *          to record put metadata in and read metadata in bulk with. Can be
+	 *          null, to only read one file per bucket and metadata file name.
+	 * @param metadataCache
+	 *          to cache read and put metadata in. Can be null, to not cache.
+	 */
+	public MetadataStore(PathResolver pathResolver,
+			MetadataStorage metadataStorage, ArchiveFileSystem archiveFileSystem,
+			TransactionExecuter transactionExecuter,
+			LocalFileSystemPaths localFileSystemPaths,
+			MetadataManifest metadataManifest, MetadataCache metadataCache) {
 		this.pathResolver = pathResolver;
-		this.flatFileStorage = flatFileStorage;
+		this.metadataStorage = metadataStorage;
 		this.archiveFileSystem = archiveFileSystem;
 		this.transactionExecuter = transactionExecuter;
 		this.localFileSystemPaths = localFileSystemPaths;
+		this.metadataManifest = metadataManifest;
+		this.metadataCache = metadataCache;
 	}
 
 	/**
@@ -63,8 +101,7 @@ public class MetadataStore {
 	 */
 	public void put(Bucket bucket, String fileName, String data) {
 		try {
-			transactionExecuter.execute(putBucketSizeTransaction(bucket, fileName,
-					data));
+			transactionExecuter.execute(getPutTransaction(bucket, fileName, data));
 		} catch (TransactionException e) {
 			logger.error(did("Tried to transactionally transfer"
 					+ " the bucketSize metadata to the archive.", e,
@@ -73,10 +110,25 @@ public class MetadataStore {
 		}
 	}
 
-	private Transaction putBucketSizeTransaction(Bucket bucket, String fileName,
+	/**
+	 * @return transaction that puts metadata for a bucket with a filename as
+	 *         identifier, when it's executed. It's prepared in the bucket's
+	 *         temporary location, so it can be executed together with the
+	 *         bucket's transaction and committed with it. Metadata that the
+	 *         manifest records is recorded when the transaction is committed,
+	 *         instead of being put.
+	 */
+	public Transaction getPutTransaction(Bucket bucket, String fileName,
 			String data) {
-		flatFileStorage.writeFlatFile(bucket, fileName, data);
-		File fileWithBucketSize = flatFileStorage.getFlatFile(bucket, fileName);
+		metadataStorage.write(bucket, fileName, data);
+		if (metadataCache != null)
+			metadataCache.put(getCacheKey(bucket, fileName), data);
+		if (metadataManifest != null && metadataManifest.canRecord(data))
+			return metadataManifest.getRecordingTransaction(bucket, fileName, data);
+
+		File fileWithBucketSize = new File(
+				localFileSystemPaths.getMetadataTransfersDirectory(bucket), fileName);
+		writeFile(fileWithBucketSize, data);
 		String temp = pathResolver.resolveTempPathForBucketMetadata(bucket,
 				fileWithBucketSize);
 		String bucketSizeFilePath = pathResolver.resolvePathForBucketMetadata(
@@ -87,45 +139,92 @@ public class MetadataStore {
 	}
 
 	/**
-	 * Read metadata stored with bucket and filename identifiers.
+	 * Read metadata stored with bucket and filename identifiers. Metadata is
+	 * read from the cache first, then from the local file system, the manifest
+	 * and last from the bucket's own metadata file.
 	 */
 	public String read(Bucket bucket, String fileName) {
-		File metadataFile = flatFileStorage.getFlatFile(bucket, fileName);
-		getRemoteFileIfNeeded(bucket, metadataFile);
+		if (metadataCache == null)
+			return readUncached(bucket, fileName);
+
+		String cacheKey = getCacheKey(bucket, fileName);
+		MetadataCache.CachedMetadata cached = metadataCache.get(cacheKey);
+		if (cached != null)
+			if (cached.isMissing())
+				throw new CouldNotReadMetadataException();
+			else
+				return cached.getData();
+
+		try {
+			String data = readUncached(bucket, fileName);
+			metadataCache.put(cacheKey, data);
+			return data;
+		} catch (CouldNotReadMetadataException e) {
+			metadataCache.putMissing(cacheKey);
+			throw e;
+		}
+	}
+
+	/**
+	 * The cache is shared, so the key is the bucket's archive path, which is
+	 * unique for the archive, cluster and server.
+	 */
+	private String getCacheKey(Bucket bucket, String fileName) {
+		return pathResolver.resolveArchivePath(bucket) + PathResolver.SEPARATOR
+				+ fileName;
+	}
+
+	private String readUncached(Bucket bucket, String fileName) {
+		String data = metadataStorage.read(bucket, fileName);
+		if (data != null)
+			return data;
+		if (metadataManifest != null)
+			data = metadataManifest.read(bucket, fileName);
+		if (data == null)
+			data = readRemoteFile(bucket, fileName);
 
-		String data = readLocalMetadataFile(metadataFile);
 		if (data == null)
 			throw new CouldNotReadMetadataException();
-		else
-			return data;
+		metadataStorage.write(bucket, fileName, data);
+		return data;
 	}
 
-	private void getRemoteFileIfNeeded(Bucket bucket, File metadataFile) {
-		if (!metadataFile.exists() || readLocalMetadataFile(metadataFile) == null) {
+	private String readRemoteFile(Bucket bucket, String fileName) {
+		File metadataTransfersDir = localFileSystemPaths
+				.getMetadataTransfersDirectory(bucket);
+		File metadataFile = new File(metadataTransfersDir, fileName);
+		File temp = new File(metadataTransfersDir, fileName + ".temp");
+		String remotePathForMetadata = pathResolver.resolvePathForBucketMetadata(
+				bucket, metadataFile);
+
+		Transaction getBucketSizeTransaction = GetFileTransaction.create(
+				archiveFileSystem, remotePathForMetadata, temp.getAbsolutePath(),
+				metadataFile.getAbsolutePath());
+
+		FileUtils.deleteQuietly(metadataFile);
+		try {
+			executeTransaction(bucket, metadataFile, getBucketSizeTransaction);
+			return readFirstLine(metadataFile);
+		} finally {
 			FileUtils.deleteQuietly(metadataFile);
-			getRemoteFile(bucket, metadataFile);
 		}
 	}
 
-	private String readLocalMetadataFile(File metadata) {
+	private String readFirstLine(File file) {
 		try {
-			return flatFileStorage.readFlatFile(metadata);
-		} catch (FlatFileReadException e) {
+			List<String> lines = FileUtils.readLines(file);
+			return lines.isEmpty() ? null : lines.get(0);
+		} catch (IOException e) {
 			return null;
 		}
 	}
 
-	private void getRemoteFile(Bucket bucket, File metadataFile) {
-		String remotePathForMetadata = pathResolver.resolvePathForBucketMetadata(
-				bucket, metadataFile);
-		File metadataTransfersDir = localFileSystemPaths
-				.getMetadataTransfersDirectory(bucket);
-
-		Transaction getBucketSizeTransaction = GetFileTransaction.create(
-				archiveFileSystem, remotePathForMetadata,
-				metadataTransfersDir.getAbsolutePath(), metadataFile.getAbsolutePath());
-
-		executeTransaction(bucket, metadataFile, getBucketSizeTransaction);
+	private void writeFile(File file, String data) {
+		try {
+			FileUtils.write(file, data);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	private void executeTransaction(Bucket bucket, File metadataFile,
@@ -148,8 +247,12 @@ public class MetadataStore {
 	public static MetadataStore create(ArchiveConfiguration config,
 			ArchiveFileSystem archiveFileSystem,
 			LocalFileSystemPaths localFileSystemPaths) {
-		return new MetadataStore(new PathResolver(config), new FlatFileStorage(
-				localFileSystemPaths), archiveFileSystem, new TransactionExecuter(),
-				localFileSystemPaths);
+		PathResolver pathResolver = new PathResolver(config);
+		return new MetadataStore(pathResolver,
+				MetadataStorageFactory.create(localFileSystemPaths),
+				archiveFileSystem, new TransactionExecuter(),
+				localFileSystemPaths, MetadataManifest.create(pathResolver,
+						archiveFileSystem, localFileSystemPaths),
+				MetadataCache.getSharedInstance());
 	}
 }
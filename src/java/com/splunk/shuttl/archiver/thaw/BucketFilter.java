@@ -19,11 +19,13 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.UtilsIterator.LazyIterator;
 
 /**
  * Used for filter buckets.
@@ -49,6 +51,30 @@ public class BucketFilter {
 		return BucketFilter.filterBuckets(buckets, earliest, latest);
 	}
 
+	/**
+	 * Filters the buckets while they are iterated.
+	 * 
+	 * @return iterator over the buckets that are within the time range.
+	 * @see BucketFilter#filterBucketsByTimeRange(List, Date, Date)
+	 */
+	public Iterator<Bucket> filterBucketsByTimeRange(
+			final Iterator<Bucket> buckets, final Date earliest, final Date latest) {
+		if (earliest.after(latest))
+			return emptyListWithLogWarning(earliest, latest).iterator();
+		return new LazyIterator<Bucket>() {
+
+			@Override
+			protected Bucket computeNext() {
+				while (buckets.hasNext()) {
+					Bucket bucket = buckets.next();
+					if (isBucketWithinTimeRange(bucket, earliest, latest))
+						return bucket;
+				}
+				return null;
+			}
+		};
+	}
+
 	public static List<Bucket> filterBuckets(List<? extends Bucket> buckets,
 			Date earliest,
 			Date latest) {
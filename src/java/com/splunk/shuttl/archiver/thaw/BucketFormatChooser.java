@@ -16,8 +16,11 @@ package com.splunk.shuttl.archiver.thaw;
 
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -26,7 +29,11 @@ import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 
 /**
- * Selects a {@link BucketFormat} given a {@link Set} of {@link BucketFormat}s
+ * Selects a {@link BucketFormat} given a {@link Set} of {@link BucketFormat}s.
+ * A configured format priority always wins. Without one, the format with the
+ * lowest expected thaw time in the {@link ThawCostModel} is chosen, when the
+ * archived sizes of the formats are known. Otherwise the formats are chosen in
+ * the {@link #DEFAULT_PRIORITY}.
  */
 public class BucketFormatChooser {
 
@@ -35,13 +42,37 @@ public class BucketFormatChooser {
 
 	public static final BucketFormat DEFAULT_FORMAT_WHEN_NO_PRIORITIZING = BucketFormat.SPLUNK_BUCKET;
 
+	/**
+	 * Formats in the order they are chosen when none of the available formats
+	 * are prioritized in the configuration. The formats that are fastest to thaw
+	 * come first. A splunk bucket is ready as it is, a tgz has to be unpacked,
+	 * a rawdata bucket has to be rebuilt by Splunk and a csv has to be indexed
+	 * again.
+	 */
+	public static final List<BucketFormat> DEFAULT_PRIORITY = Collections
+			.unmodifiableList(Arrays.asList(DEFAULT_FORMAT_WHEN_NO_PRIORITIZING,
+					BucketFormat.SPLUNK_BUCKET_TGZ, BucketFormat.SPLUNK_BUCKET_RAWDATA,
+					BucketFormat.CSV));
+
 	private final ArchiveConfiguration configuration;
+	private final ThawCostModel thawCostModel;
 
 	/**
 	 * @param configuration
 	 */
 	public BucketFormatChooser(ArchiveConfiguration configuration) {
+		this(configuration, null);
+	}
+
+	/**
+	 * @param thawCostModel
+	 *          to choose the format that's expected to thaw fastest. Can be
+	 *          null, to only choose by priority.
+	 */
+	public BucketFormatChooser(ArchiveConfiguration configuration,
+			ThawCostModel thawCostModel) {
 		this.configuration = configuration;
+		this.thawCostModel = thawCostModel;
 	}
 
 	/**
@@ -50,12 +81,26 @@ public class BucketFormatChooser {
 	 *         then defaults.
 	 */
 	public BucketFormat chooseBucketFormat(List<BucketFormat> formats) {
+		return chooseBucketFormat(formats,
+				Collections.<BucketFormat, Long> emptyMap());
+	}
+
+	/**
+	 * @param archivedSizes
+	 *          of the formats, for choosing the format with the lowest expected
+	 *          thaw time. Sizes may be missing or null if unknown.
+	 * @return the bucket format of choice. Primarily based on configuration,
+	 *         then on expected thaw time and then defaults.
+	 */
+	public BucketFormat chooseBucketFormat(List<BucketFormat> formats,
+			Map<BucketFormat, Long> archivedSizes) {
 		if (formats.isEmpty())
 			return unknownBucketFormatWithLogWarning();
 		else if (formats.size() == 1)
 			return formats.iterator().next();
 		else
-			return chooseFormatBasedOnPrioritizingOrDefaults(formats);
+			return chooseFormatBasedOnPrioritizingOrDefaults(formats,
+					archivedSizes);
 	}
 
 	private BucketFormat unknownBucketFormatWithLogWarning() {
@@ -67,10 +112,13 @@ public class BucketFormatChooser {
 	}
 
 	private BucketFormat chooseFormatBasedOnPrioritizingOrDefaults(
-			List<BucketFormat> availableFormats) {
+			List<BucketFormat> availableFormats,
+			Map<BucketFormat, Long> archivedSizes) {
 		BucketFormat chosenFormat = null;
 		if (existsPrioritizedFormats())
 			chosenFormat = chooseFromPrioritizedFormat(availableFormats);
+		if (chosenFormat == null && thawCostModel != null)
+			chosenFormat = chooseCheapestFormat(availableFormats, archivedSizes);
 		if (chosenFormat == null)
 			chosenFormat = chooseFromDefaultsAndAvailableFormats(availableFormats);
 		return chosenFormat;
@@ -89,11 +137,36 @@ public class BucketFormatChooser {
 		return null;
 	}
 
+	/**
+	 * @return the format with the lowest expected thaw time, or null if no
+	 *         format has an expected thaw time.
+	 */
+	private BucketFormat chooseCheapestFormat(
+			List<BucketFormat> availableFormats,
+			Map<BucketFormat, Long> archivedSizes) {
+		BucketFormat cheapestFormat = null;
+		double lowestSeconds = Double.MAX_VALUE;
+		for (BucketFormat format : availableFormats) {
+			Long size = archivedSizes.get(format);
+			if (size == null)
+				continue;
+			Double seconds = thawCostModel.getExpectedSeconds(format, size);
+			if (seconds != null && seconds < lowestSeconds) {
+				cheapestFormat = format;
+				lowestSeconds = seconds;
+			}
+		}
+		if (cheapestFormat != null)
+			logger.debug(happened("Chose format with lowest expected thaw time",
+					"format", cheapestFormat, "expected_seconds", lowestSeconds));
+		return cheapestFormat;
+	}
+
 	private BucketFormat chooseFromDefaultsAndAvailableFormats(
 			List<BucketFormat> availableFormats) {
-		if (availableFormats.contains(DEFAULT_FORMAT_WHEN_NO_PRIORITIZING))
-			return DEFAULT_FORMAT_WHEN_NO_PRIORITIZING;
-		else
-			return availableFormats.get(0);
+		for (BucketFormat format : DEFAULT_PRIORITY)
+			if (availableFormats.contains(format))
+				return format;
+		return availableFormats.get(0);
 	}
 }
@@ -19,16 +19,25 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.catalog.CatalogedBucket;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor;
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor.Outcome;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.RemoteBucket;
+import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
+import com.splunk.shuttl.archiver.util.UtilsIterator.LazyIterator;
 
 /**
  * Uses {@link ArchiveFileSystem} and {@link PathResolver} to list available
@@ -42,6 +51,7 @@ public class BucketFormatResolver {
 	private final PathResolver pathResolver;
 	private final ArchiveFileSystem archiveFileSystem;
 	private final BucketFormatChooser bucketFormatChooser;
+	private final ArchiveListingExecutor listingExecutor;
 
 	/**
 	 * @param pathResolver
@@ -54,25 +64,116 @@ public class BucketFormatResolver {
 	public BucketFormatResolver(PathResolver pathResolver,
 			ArchiveFileSystem archiveFileSystem,
 			BucketFormatChooser bucketFormatChooser) {
+		this(pathResolver, archiveFileSystem, bucketFormatChooser,
+				ArchiveListingExecutor.createSequential());
+	}
+
+	/**
+	 * @param listingExecutor
+	 *          for listing the formats of many buckets concurrently.
+	 */
+	public BucketFormatResolver(PathResolver pathResolver,
+			ArchiveFileSystem archiveFileSystem,
+			BucketFormatChooser bucketFormatChooser,
+			ArchiveListingExecutor listingExecutor) {
 		this.pathResolver = pathResolver;
 		this.archiveFileSystem = archiveFileSystem;
 		this.bucketFormatChooser = bucketFormatChooser;
+		this.listingExecutor = listingExecutor;
 	}
 
 	/**
+	 * Buckets whose formats can't be listed are resolved as if they had no
+	 * formats.
+	 * 
 	 * @param buckets
 	 *          without {@link BucketFormat} set.
 	 * @return buckets with {@link BucketFormat} set.
 	 */
 	public List<Bucket> resolveBucketsFormats(List<Bucket> buckets) {
-		List<Bucket> bucketsWithFormat = new ArrayList<Bucket>();
+		return resolveBucketsFormats(buckets, null);
+	}
+
+	/**
+	 * Lists the formats of the buckets concurrently.
+	 * 
+	 * @param buckets
+	 *          without {@link BucketFormat} set.
+	 * @param failedBuckets
+	 *          gets the buckets whose formats couldn't be listed, which are then
+	 *          left out of the result. If null, those buckets are resolved as if
+	 *          they had no formats.
+	 * @return buckets with {@link BucketFormat} set, in the same order.
+	 */
+	public List<Bucket> resolveBucketsFormats(List<Bucket> buckets,
+			List<FailedBucket> failedBuckets) {
+		List<Callable<List<BucketFormat>>> calls = new ArrayList<Callable<List<BucketFormat>>>();
 		for (Bucket bucket : buckets)
-			bucketsWithFormat.add(getBucketWithResolvedFormat(bucket));
+			calls.add(new ListAvailableFormats(bucket));
+		List<Outcome<List<BucketFormat>>> outcomes = listingExecutor
+				.callAll(calls);
+
+		List<Bucket> bucketsWithFormat = new ArrayList<Bucket>();
+		for (int i = 0; i < buckets.size(); i++) {
+			Bucket bucket = buckets.get(i);
+			Outcome<List<BucketFormat>> outcome = outcomes.get(i);
+			if (!outcome.isFailure())
+				bucketsWithFormat.add(getBucketWithResolvedFormat(bucket,
+						outcome.getValue()));
+			else if (failedBuckets != null)
+				failedBuckets.add(new FailedBucket(bucket, outcome.getFailure()));
+			else
+				bucketsWithFormat.add(getBucketWithResolvedFormat(bucket,
+						new ArrayList<BucketFormat>()));
+		}
 		return bucketsWithFormat;
 	}
 
-	private Bucket getBucketWithResolvedFormat(Bucket bucket) {
-		List<BucketFormat> availableFormats = getAvailableFormatsForBucket(bucket);
+	/**
+	 * Resolves the formats while the buckets are iterated. The formats are
+	 * listed concurrently for as many buckets as there can be list calls in
+	 * flight.
+	 * 
+	 * @see BucketFormatResolver#resolveBucketsFormats(List)
+	 */
+	public Iterator<Bucket> resolveBucketsFormats(final Iterator<Bucket> buckets) {
+		return new LazyIterator<Bucket>() {
+
+			private Iterator<Bucket> resolvedBatch = Collections
+					.<Bucket> emptyList().iterator();
+
+			@Override
+			protected Bucket computeNext() {
+				if (!resolvedBatch.hasNext())
+					resolvedBatch = resolveBucketsFormats(nextBatch(buckets)).iterator();
+				return resolvedBatch.hasNext() ? resolvedBatch.next() : null;
+			}
+		};
+	}
+
+	private List<Bucket> nextBatch(Iterator<Bucket> buckets) {
+		List<Bucket> batch = new ArrayList<Bucket>();
+		while (batch.size() < listingExecutor.getMaxInFlight() && buckets.hasNext())
+			batch.add(buckets.next());
+		return batch;
+	}
+
+	private class ListAvailableFormats implements Callable<List<BucketFormat>> {
+
+		private final Bucket bucket;
+
+		public ListAvailableFormats(Bucket bucket) {
+			this.bucket = bucket;
+		}
+
+		@Override
+		public List<BucketFormat> call() throws IOException {
+			return listAvailableFormats(bucket);
+		}
+	}
+
+	private Bucket getBucketWithResolvedFormat(Bucket bucket,
+			List<BucketFormat> availableFormats) {
 		BucketFormat chosenFormat = bucketFormatChooser
 				.chooseBucketFormat(availableFormats);
 		String pathToBucketWithChosenBucket = pathResolver
@@ -82,23 +183,64 @@ public class BucketFormatResolver {
 				pathToBucketWithChosenBucket);
 	}
 
-	private List<BucketFormat> getAvailableFormatsForBucket(Bucket bucket) {
+	/**
+	 * @return the formats that the bucket is archived in. No formats if they
+	 *         couldn't be listed.
+	 */
+	public List<BucketFormat> getAvailableFormatsForBucket(Bucket bucket) {
+		try {
+			return listAvailableFormats(bucket);
+		} catch (IOException e) {
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * @return the formats that the bucket is archived in.
+	 * @throws IOException
+	 *           if the formats couldn't be listed.
+	 */
+	public List<BucketFormat> listAvailableFormats(Bucket bucket)
+			throws IOException {
 		String formatsHomeForBucket = pathResolver.getFormatsHome(
 				bucket.getIndex(), bucket.getName());
-		List<String> archivedFormats = listArchivedFormatsWithErrorHandling(
+		List<String> archivedFormats = listArchivedFormatsWithLogging(
 				formatsHomeForBucket, bucket);
 		return getBucketFormats(archivedFormats);
 	}
 
-	private List<String> listArchivedFormatsWithErrorHandling(
-			String formatsHomeForBucket, Bucket bucket) {
+	/**
+	 * @return bucket with the format chosen among the cataloged formats, and its
+	 *         cataloged size. Does not list anything in the archive.
+	 */
+	public Bucket resolveCatalogedBucket(CatalogedBucket catalogedBucket) {
+		BucketFormat chosenFormat = bucketFormatChooser.chooseBucketFormat(
+				catalogedBucket.getFormats(), getFormatSizes(catalogedBucket));
+		String pathToBucketWithChosenFormat = pathResolver
+				.resolveArchivedBucketPath(catalogedBucket.getIndex(),
+						catalogedBucket.getName(), chosenFormat);
+		return new RemoteBucket(pathToBucketWithChosenFormat,
+				catalogedBucket.getIndex(), catalogedBucket.getName(), chosenFormat,
+				catalogedBucket.getSize(chosenFormat));
+	}
+
+	private Map<BucketFormat, Long> getFormatSizes(
+			CatalogedBucket catalogedBucket) {
+		Map<BucketFormat, Long> formatSizes = new HashMap<BucketFormat, Long>();
+		for (BucketFormat format : catalogedBucket.getFormats())
+			formatSizes.put(format, catalogedBucket.getSize(format));
+		return formatSizes;
+	}
+
+	private List<String> listArchivedFormatsWithLogging(
+			String formatsHomeForBucket, Bucket bucket) throws IOException {
 		try {
 			return archiveFileSystem.listPath(formatsHomeForBucket);
 		} catch (IOException e) {
 			logger.warn(warn("Listed formats home for a bucket", e,
 					"Will not list any formats for bucket", "formats_home",
 					formatsHomeForBucket, "bucket", bucket, "exception", e));
-			return Collections.emptyList();
+			throw e;
 		}
 	}
 
@@ -14,16 +14,27 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.thaw;
 
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import javax.management.InstanceNotFoundException;
+
+import org.apache.log4j.Logger;
+
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiver;
 
 /**
  * Factory for creating {@link BucketFormatResolver}s.
  */
 public class BucketFormatResolverFactory {
 
+	private static final Logger logger = Logger
+			.getLogger(BucketFormatResolverFactory.class);
+
 	/**
 	 * @return instance configured with specified config.
 	 */
@@ -31,9 +42,24 @@ public class BucketFormatResolverFactory {
 		ArchiveFileSystem archiveFileSystem = ArchiveFileSystemFactory
 				.getWithConfiguration(config);
 		PathResolver pathResolver = new PathResolver(config);
-		BucketFormatChooser bucketFormatChooser = new BucketFormatChooser(config);
+		ThawCostModel thawCostModel = ThawCostModel.getSharedInstance(config
+				.getBackendName());
+		thawCostModel.setImportRatePrior(getConfiguredImportRatePrior());
+		BucketFormatChooser bucketFormatChooser = new BucketFormatChooser(config,
+				thawCostModel);
 		return new BucketFormatResolver(pathResolver, archiveFileSystem,
-				bucketFormatChooser);
+				bucketFormatChooser,
+				ArchiveListingExecutor.getSharedInstance(config
+						.getListingConcurrency()));
 	}
 
+	private static Long getConfiguredImportRatePrior() {
+		try {
+			return ShuttlArchiver.getMBeanProxy().getThawImportRatePrior();
+		} catch (InstanceNotFoundException e) {
+			logger.debug(happened("No archiver configuration is registered",
+					"thaw_import_rate_prior", "none"));
+			return null;
+		}
+	}
 }
@@ -14,8 +14,11 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.thaw;
 
+import java.util.Iterator;
+
 import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.UtilsIterator.LazyIterator;
 
 /**
  * Resolves sizes for buckets that has been thawed.
@@ -34,12 +37,30 @@ public class BucketSizeResolver {
 
 	/**
 	 * @param bucket
-	 *          that needs size to be resolved from the archive.
+	 *          that needs size to be resolved from the archive. Returned as is
+	 *          if its size is already known, i.e. from the archive catalog.
 	 */
 	public Bucket resolveBucketSize(Bucket bucket) {
+		if (bucket.getSize() != null)
+			return bucket;
 		Long size = archiveBucketSize.readBucketSize(bucket);
 		return new Bucket(bucket.getPath(), bucket.getIndex(), bucket.getName(),
 				bucket.getFormat(), size);
 	}
 
+	/**
+	 * Resolves the sizes while the buckets are iterated.
+	 * 
+	 * @see BucketSizeResolver#resolveBucketSize(Bucket)
+	 */
+	public Iterator<Bucket> resolveBucketsSizes(final Iterator<Bucket> buckets) {
+		return new LazyIterator<Bucket>() {
+
+			@Override
+			protected Bucket computeNext() {
+				return buckets.hasNext() ? resolveBucketSize(buckets.next()) : null;
+			}
+		};
+	}
+
 }
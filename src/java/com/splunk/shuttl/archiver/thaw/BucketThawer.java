@@ -17,20 +17,36 @@ package com.splunk.shuttl.archiver.thaw;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker.SharedLockBucketHandler;
+import com.splunk.shuttl.archiver.flush.ThawSpaceManager;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.LocalBucket;
 
 /**
  * Interacts with the archive to thaw buckets within the users needs, which is
- * currently only a time range.
+ * currently only a time range. Buckets are thawed concurrently with a
+ * {@link ThawExecutor}, so the thawed, skipped and failed buckets are
+ * collected in synchronized lists.<br/>
+ * <br/>
+ * A thaw can be cancelled from another thread. Buckets that haven't started
+ * are not thawed, and the threads that are transferring buckets are
+ * interrupted, which aborts their transactions before they are committed.<br/>
+ * <br/>
+ * With a {@link ThawSpaceManager}, room is made for each bucket in its index's
+ * thaw quota before it's transferred.
  */
 public class BucketThawer {
 
@@ -42,8 +58,16 @@ public class BucketThawer {
 	private final List<Bucket> skippedBuckets;
 	private final List<FailedBucket> failedBuckets;
 	private final BucketLocker thawBucketLocker;
+	private final ThawLocationProvider thawLocationProvider;
+	private final ThawExecutor thawExecutor;
+	private final ThawSpaceManager thawSpaceManager;
+
+	private final Set<Thread> thawingThreads;
 
 	private LocalBucketStorage localBuckets;
+	private BucketCursor nextCursor;
+	private ThawListener thawListener;
+	private volatile boolean cancelled;
 
 	public static class FailedBucket {
 
@@ -70,14 +94,57 @@ public class BucketThawer {
 	public BucketThawer(ListsBucketsFiltered listsBucketsFiltered,
 			GetsBucketsFromArchive getsBucketsFromArchive,
 			LocalBucketStorage localBuckets, BucketLocker thawBucketLocker) {
+		this(listsBucketsFiltered, getsBucketsFromArchive, localBuckets,
+				thawBucketLocker, null, ThawExecutor.createSequential());
+	}
+
+	/**
+	 * @param thawLocationProvider
+	 *          for getting the volume a bucket is thawed to. Can be null, to
+	 *          count every index as its own volume.
+	 * @param thawExecutor
+	 *          to thaw the buckets with.
+	 */
+	public BucketThawer(ListsBucketsFiltered listsBucketsFiltered,
+			GetsBucketsFromArchive getsBucketsFromArchive,
+			LocalBucketStorage localBuckets, BucketLocker thawBucketLocker,
+			ThawLocationProvider thawLocationProvider, ThawExecutor thawExecutor) {
+		this(listsBucketsFiltered, getsBucketsFromArchive, localBuckets,
+				thawBucketLocker, thawLocationProvider, thawExecutor, null);
+	}
+
+	/**
+	 * @param thawSpaceManager
+	 *          to evict thawed buckets with, to make room for the thawed
+	 *          buckets. Can be null, to not evict anything.
+	 */
+	public BucketThawer(ListsBucketsFiltered listsBucketsFiltered,
+			GetsBucketsFromArchive getsBucketsFromArchive,
+			LocalBucketStorage localBuckets, BucketLocker thawBucketLocker,
+			ThawLocationProvider thawLocationProvider, ThawExecutor thawExecutor,
+			ThawSpaceManager thawSpaceManager) {
 		this.listsBucketsFiltered = listsBucketsFiltered;
 		this.getsBucketsFromArchive = getsBucketsFromArchive;
 		this.localBuckets = localBuckets;
 		this.thawBucketLocker = thawBucketLocker;
+		this.thawLocationProvider = thawLocationProvider;
+		this.thawExecutor = thawExecutor;
+		this.thawSpaceManager = thawSpaceManager;
+
+		this.successfulThawedBuckets = Collections
+				.synchronizedList(new ArrayList<LocalBucket>());
+		this.skippedBuckets = Collections.synchronizedList(new ArrayList<Bucket>());
+		this.failedBuckets = Collections
+				.synchronizedList(new ArrayList<FailedBucket>());
+		this.thawingThreads = new HashSet<Thread>();
+	}
 
-		this.successfulThawedBuckets = new ArrayList<LocalBucket>();
-		this.skippedBuckets = new ArrayList<Bucket>();
-		this.failedBuckets = new ArrayList<FailedBucket>();
+	/**
+	 * @param thawListener
+	 *          to tell what happens to each bucket. Can be null.
+	 */
+	public void setThawListener(ThawListener thawListener) {
+		this.thawListener = thawListener;
 	}
 
 	/**
@@ -91,20 +158,191 @@ public class BucketThawer {
 	 *          to filter buckets.
 	 */
 	public void thawBuckets(String index, Date earliestTime, Date latestTime) {
-		List<Bucket> bucketsToThaw = getFilteredBuckets(index, earliestTime,
-				latestTime);
+		thawBuckets(getFilteredBuckets(index, earliestTime, latestTime));
+	}
+
+	/**
+	 * Thaws the buckets, i.e. the buckets of a {@link ThawPlan}.
+	 */
+	public void thawBuckets(List<Bucket> bucketsToThaw) {
+		for (Bucket bucket : bucketsToThaw)
+			if (thawListener != null)
+				thawListener.bucketQueued(bucket);
+		List<Future<?>> thaws = new ArrayList<Future<?>>();
 		for (Bucket bucket : bucketsToThaw)
+			thaws.add(submitThaw(bucket));
+		thawExecutor.waitForAll(thaws);
+	}
+
+	/**
+	 * Logs that already thawed buckets were asked for, so that they are the
+	 * last to be evicted.
+	 */
+	public void accessedBuckets(List<Bucket> thawedBuckets) {
+		if (thawSpaceManager != null)
+			for (Bucket bucket : thawedBuckets)
+				thawSpaceManager.accessed(bucket);
+	}
+
+	/**
+	 * Thaws a page of buckets, in the order of paged listings.
+	 * 
+	 * @param cursor
+	 *          to thaw the buckets after. From the first bucket if null.
+	 * @param limit
+	 *          of buckets to thaw, skip or fail. No limit if null.
+	 * @see BucketThawer#getNextCursor()
+	 */
+	public void thawBuckets(String index, Date earliestTime, Date latestTime,
+			BucketCursor cursor, Integer limit) {
+		Iterator<Bucket> bucketsToThaw = listsBucketsFiltered
+				.iterateFilteredBucketsAfter(index, earliestTime, latestTime, cursor);
+		List<Future<?>> thaws = new ArrayList<Future<?>>();
+		int handledBuckets = 0;
+		while ((limit == null || handledBuckets < limit)
+				&& bucketsToThaw.hasNext() && !cancelled) {
+			Bucket bucket = bucketsToThaw.next();
+			if (thawListener != null)
+				thawListener.bucketQueued(bucket);
+			thaws.add(submitThaw(bucket));
+			handledBuckets++;
+			if (limit != null && handledBuckets == limit
+					&& bucketsToThaw.hasNext())
+				nextCursor = BucketCursor.after(bucket);
+		}
+		thawExecutor.waitForAll(thaws);
+	}
+
+	private Future<?> submitThaw(final Bucket bucket) {
+		return thawExecutor.submit(getVolume(bucket), new Runnable() {
+
+			@Override
+			public void run() {
+				if (startThawing())
+					try {
+						thawBucket(bucket);
+					} finally {
+						stopThawing();
+					}
+				else
+					cancelled(bucket);
+			}
+		});
+	}
+
+	/**
+	 * @return false if the thaw is cancelled.
+	 */
+	private boolean startThawing() {
+		synchronized (thawingThreads) {
+			if (cancelled)
+				return false;
+			thawingThreads.add(Thread.currentThread());
+			return true;
+		}
+	}
+
+	/**
+	 * Clears the interrupt of a cancelled thaw, since the thread can be reused
+	 * for other thaws.
+	 */
+	private void stopThawing() {
+		synchronized (thawingThreads) {
+			thawingThreads.remove(Thread.currentThread());
+			if (cancelled)
+				Thread.interrupted();
+		}
+	}
+
+	/**
+	 * Cancels the thaw. Buckets that haven't started are not thawed, and
+	 * in-flight transfers and imports are interrupted. Buckets that are already
+	 * thawed stay thawed.<br/>
+	 * <br/>
+	 * Rate limited transfers stop within a read. Transfers without a rate limit
+	 * copy a whole file at a time, so they stop after the files that are being
+	 * copied, which for a bucket transferred as a single file, like a tgz, is
+	 * the whole bucket. Import processes are destroyed.
+	 */
+	public void cancel() {
+		synchronized (thawingThreads) {
+			if (!cancelled)
+				logger.info(will("Cancel thaw", "in_flight_thaws",
+						thawingThreads.size()));
+			cancelled = true;
+			for (Thread thread : thawingThreads)
+				thread.interrupt();
+		}
+	}
+
+	/**
+	 * @return true if the thaw was cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * The volume is the directory that the bucket is thawed to, which is
+	 * unique for the index.
+	 */
+	private String getVolume(Bucket bucket) {
+		if (thawLocationProvider != null)
 			try {
-				if (!localBuckets.hasBucket(bucket)) {
-					thawBucketLocker.callBucketHandlerUnderSharedLock(bucket,
-							new ThawBucketFromArchive());
-				} else {
-					skippedBuckets.add(bucket);
-				}
+				return thawLocationProvider.getLocationInThawForBucket(bucket)
+						.getParentFile().getAbsolutePath();
 			} catch (Exception e) {
-				logExceptionFromCheckingIfBucketWasThawed(bucket, e);
-				failedBuckets.add(new FailedBucket(bucket, e));
+				logger.debug(happened("Could not get thaw location of bucket, "
+						+ "using its index as volume", "bucket", bucket));
 			}
+		return String.valueOf(bucket.getIndex());
+	}
+
+	private void thawBucket(Bucket bucket) {
+		try {
+			if (!localBuckets.hasBucket(bucket)) {
+				thawBucketLocker.callBucketHandlerUnderSharedLock(bucket,
+						new ThawBucketFromArchive());
+			} else {
+				skipped(bucket);
+			}
+		} catch (Exception e) {
+			logExceptionFromCheckingIfBucketWasThawed(bucket, e);
+			failed(bucket, e);
+		}
+	}
+
+	private void thawed(Bucket bucket, LocalBucket thawedBucket) {
+		successfulThawedBuckets.add(thawedBucket);
+		if (thawListener != null)
+			thawListener.bucketThawed(bucket, thawedBucket);
+	}
+
+	private void skipped(Bucket bucket) {
+		if (thawSpaceManager != null)
+			thawSpaceManager.accessed(bucket);
+		skippedBuckets.add(bucket);
+		if (thawListener != null)
+			thawListener.bucketSkipped(bucket);
+	}
+
+	/**
+	 * A bucket that fails because the thaw was cancelled is cancelled, and not
+	 * failed.
+	 */
+	private void failed(Bucket bucket, Exception e) {
+		if (cancelled) {
+			cancelled(bucket);
+		} else {
+			failedBuckets.add(new FailedBucket(bucket, e));
+			if (thawListener != null)
+				thawListener.bucketFailed(bucket, e);
+		}
+	}
+
+	private void cancelled(Bucket bucket) {
+		if (thawListener != null)
+			thawListener.bucketCancelled(bucket);
 	}
 
 	private List<Bucket> getFilteredBuckets(String index, Date earliestTime,
@@ -137,22 +375,56 @@ public class BucketThawer {
 
 		@Override
 		public void bucketWasLocked(Bucket bucket) {
-			BucketThawer.this.skippedBuckets.add(bucket);
+			BucketThawer.this.skipped(bucket);
 		}
 
 	}
 
 	private void thawBucketFromArchive(Bucket bucket) {
+		if (thawListener != null)
+			thawListener.bucketThawing(bucket);
+		if (!makeRoom(bucket))
+			return;
+		boolean isThawed = false;
 		try {
 			LocalBucket thawedBucket = getsBucketsFromArchive
 					.getBucketFromArchive(bucket);
-			successfulThawedBuckets.add(thawedBucket);
+			isThawed = true;
+			if (thawSpaceManager != null)
+				thawSpaceManager.thawed(bucket, thawedBucket);
+			thawed(bucket, thawedBucket);
 		} catch (ThawTransferFailException e) {
 			logTransferException(bucket, e);
-			failedBuckets.add(new FailedBucket(bucket, e));
+			failed(bucket, e);
 		} catch (ImportThawedBucketFailException e) {
 			logImportException(bucket, e);
-			failedBuckets.add(new FailedBucket(bucket, e));
+			failed(bucket, e);
+		} finally {
+			if (!isThawed && thawSpaceManager != null)
+				thawSpaceManager.failed(bucket);
+		}
+	}
+
+	/**
+	 * Evicts thawed buckets before the transfer, so that the thaw directory
+	 * doesn't fill up during the transfer.
+	 * 
+	 * @return true if there is room for the bucket.
+	 */
+	private boolean makeRoom(Bucket bucket) {
+		if (thawSpaceManager == null)
+			return true;
+		try {
+			List<LocalBucket> evictedBuckets = thawSpaceManager.makeRoom(bucket);
+			if (!evictedBuckets.isEmpty())
+				logger.info(done("Evicting thawed buckets to make room for bucket",
+						"bucket", bucket, "evicted_buckets", evictedBuckets.size()));
+			return true;
+		} catch (Exception e) {
+			logger.error(did("Tried making room for bucket in thaw quota", e,
+					"bucket to fit in the quota", "bucket", bucket, "exception", e));
+			failed(bucket, e);
+			return false;
 		}
 	}
 
@@ -188,4 +460,19 @@ public class BucketThawer {
 		return skippedBuckets;
 	}
 
+	/**
+	 * @return provider of the thaw locations, or null if there is none.
+	 */
+	ThawLocationProvider getThawLocationProvider() {
+		return thawLocationProvider;
+	}
+
+	/**
+	 * @return cursor to thaw the next page of buckets from, or null if no
+	 *         buckets were left after the limit.
+	 */
+	public BucketCursor getNextCursor() {
+		return nextCursor;
+	}
+
 }
@@ -16,11 +16,14 @@ package com.splunk.shuttl.archiver.thaw;
 
 import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
 import com.splunk.shuttl.archiver.copy.IndexStoragePaths;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferBudget;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
+import com.splunk.shuttl.archiver.flush.ThawSpaceManagerFactory;
 import com.splunk.shuttl.archiver.importexport.BucketImportController;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFilteredFactory;
@@ -50,7 +53,8 @@ public class BucketThawerFactory {
 			SplunkIndexesLayer splunkIndexesLayer,
 			LocalFileSystemPaths localFileSystemPaths) {
 		ArchiveFileSystem archiveFileSystem = ArchiveFileSystemFactory
-				.getWithConfiguration(configuration);
+				.getWithConfigurationAndTransferBudget(configuration,
+						TransferBudget.THAW);
 		return create(configuration, splunkIndexesLayer, localFileSystemPaths,
 				archiveFileSystem);
 	}
@@ -65,17 +69,21 @@ public class BucketThawerFactory {
 		ThawBucketTransferer thawBucketTransferer = getThawBucketTransferer(
 				archiveFileSystem, thawLocationProvider);
 		ListsBucketsFiltered listsBucketsFiltered = ListsBucketsFilteredFactory
-				.create(configuration);
+				.create(configuration, ArchiveCatalog.create(localFileSystemPaths));
 		PathResolver pathResolver = new PathResolver(configuration);
 		BucketSizeResolver bucketSizeResolver = new BucketSizeResolver(
 				ArchiveBucketSize.create(pathResolver, archiveFileSystem,
 						localFileSystemPaths));
 		GetsBucketsFromArchive getsBucketsFromArchive = new GetsBucketsFromArchive(
 				thawBucketTransferer, BucketImportController.create(),
-				bucketSizeResolver);
+				bucketSizeResolver, ThawCostModel.getSharedInstance(configuration
+						.getBackendName()));
 		return new BucketThawer(listsBucketsFiltered, getsBucketsFromArchive,
 				new LocalBucketStorage(new IndexStoragePaths(splunkIndexesLayer)),
-				new ThawBucketLocker(localFileSystemPaths));
+				new ThawBucketLocker(localFileSystemPaths), thawLocationProvider,
+				ThawExecutor.create(configuration), ThawSpaceManagerFactory.create(
+						configuration, splunkIndexesLayer, localFileSystemPaths,
+						archiveFileSystem));
 	}
 
 	private static ThawBucketTransferer getThawBucketTransferer(
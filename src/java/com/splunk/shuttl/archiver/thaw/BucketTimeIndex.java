@@ -0,0 +1,218 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.util.IllegalRegexGroupException;
+
+/**
+ * In-memory time index over the buckets of an index, for filtering them by
+ * time range like {@link BucketFilter} without looking at every bucket.<br/>
+ * <br/>
+ * The earliest and latest times are kept in primitive arrays sorted by earliest
+ * time. The arrays are laid out as an implicit binary search tree, where each
+ * node also has the max latest time of its subtree, which makes it an interval
+ * tree. A time range query is O(log n + k) and doesn't create any objects per
+ * bucket. The index is immutable and can be shared between threads.
+ * 
+ * @param <T>
+ *          bucket type that is indexed.
+ */
+public class BucketTimeIndex<T> {
+
+	private final Object[] items;
+	private final long[] earliest;
+	private final long[] latest;
+	private final long[] maxLatest;
+	private final int[] positions;
+
+	private BucketTimeIndex(Object[] items, long[] earliest, long[] latest,
+			int[] positions) {
+		this.items = items;
+		this.earliest = earliest;
+		this.latest = latest;
+		this.positions = positions;
+		this.maxLatest = new long[items.length];
+		computeMaxLatest(0, items.length);
+	}
+
+	private long computeMaxLatest(int lo, int hi) {
+		if (lo >= hi)
+			return Long.MIN_VALUE;
+		int mid = (lo + hi) >>> 1;
+		long max = Math.max(latest[mid],
+				Math.max(computeMaxLatest(lo, mid), computeMaxLatest(mid + 1, hi)));
+		maxLatest[mid] = max;
+		return max;
+	}
+
+	/**
+	 * @return number of indexed buckets.
+	 */
+	public int size() {
+		return items.length;
+	}
+
+	/**
+	 * Filters the buckets with the same conditions as
+	 * {@link BucketFilter#isBucketWithinTimeRange(Bucket, Date, Date)}.
+	 * 
+	 * @return buckets within the time range, in the order they were added to
+	 *         the index.
+	 */
+	public List<T> filter(Date earliestTime, Date latestTime) {
+		if (earliestTime.after(latestTime))
+			return new ArrayList<T>();
+		Hits hits = new Hits();
+		collect(0, items.length, earliestTime.getTime(), latestTime.getTime(),
+				hits);
+		return hits.toItems();
+	}
+
+	private void collect(int lo, int hi, long from, long to, Hits hits) {
+		if (lo >= hi)
+			return;
+		int mid = (lo + hi) >>> 1;
+		if (maxLatest[mid] < from)
+			return;
+		collect(lo, mid, from, to, hits);
+		if (earliest[mid] > to)
+			return;
+		if (latest[mid] >= from)
+			hits.add(positions[mid]);
+		collect(mid + 1, hi, from, to, hits);
+	}
+
+	/**
+	 * Positions of the buckets that matched a query.
+	 */
+	private class Hits {
+
+		private int[] positions = new int[16];
+		private int count = 0;
+
+		void add(int position) {
+			if (count == positions.length)
+				positions = Arrays.copyOf(positions, count * 2);
+			positions[count++] = position;
+		}
+
+		@SuppressWarnings("unchecked")
+		List<T> toItems() {
+			Arrays.sort(positions, 0, count);
+			List<T> result = new ArrayList<T>(count);
+			for (int i = 0; i < count; i++)
+				result.add((T) items[positions[i]]);
+			return result;
+		}
+	}
+
+	/**
+	 * @return index of the buckets. Buckets with names that doesn't have times
+	 *         are left out, since they can't be within any time range.
+	 */
+	public static <T extends Bucket> BucketTimeIndex<T> create(
+			Collection<T> buckets) {
+		Builder<T> builder = new Builder<T>(buckets.size());
+		for (T bucket : buckets)
+			try {
+				builder.add(bucket, bucket.getEarliest().getTime(), bucket
+						.getLatest().getTime());
+			} catch (IllegalRegexGroupException e) {
+				// Do nothing.
+			}
+		return builder.build();
+	}
+
+	/**
+	 * Builds a {@link BucketTimeIndex} from items with their times.
+	 */
+	public static class Builder<T> {
+
+		private final List<T> items;
+		private long[] earliest;
+		private long[] latest;
+
+		public Builder() {
+			this(16);
+		}
+
+		public Builder(int expectedSize) {
+			int capacity = Math.max(expectedSize, 1);
+			this.items = new ArrayList<T>(capacity);
+			this.earliest = new long[capacity];
+			this.latest = new long[capacity];
+		}
+
+		/**
+		 * @param earliestMillis
+		 *          earliest time of the item in milliseconds.
+		 * @param latestMillis
+		 *          latest time of the item in milliseconds.
+		 */
+		public Builder<T> add(T item, long earliestMillis, long latestMillis) {
+			int position = items.size();
+			if (position == earliest.length) {
+				earliest = Arrays.copyOf(earliest, position * 2);
+				latest = Arrays.copyOf(latest, position * 2);
+			}
+			items.add(item);
+			earliest[position] = earliestMillis;
+			latest[position] = latestMillis;
+			return this;
+		}
+
+		public BucketTimeIndex<T> build() {
+			int size = items.size();
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++)
+				order[i] = i;
+			mergeSortByEarliest(order, new int[size], 0, size);
+
+			long[] sortedEarliest = new long[size];
+			long[] sortedLatest = new long[size];
+			for (int i = 0; i < size; i++) {
+				sortedEarliest[i] = earliest[order[i]];
+				sortedLatest[i] = latest[order[i]];
+			}
+			return new BucketTimeIndex<T>(items.toArray(), sortedEarliest,
+					sortedLatest, order);
+		}
+
+		private void mergeSortByEarliest(int[] order, int[] buffer, int lo, int hi) {
+			if (hi - lo < 2)
+				return;
+			int mid = (lo + hi) >>> 1;
+			mergeSortByEarliest(order, buffer, lo, mid);
+			mergeSortByEarliest(order, buffer, mid, hi);
+			if (earliest[order[mid - 1]] <= earliest[order[mid]])
+				return;
+			System.arraycopy(order, lo, buffer, lo, hi - lo);
+			int left = lo, right = mid;
+			for (int i = lo; i < hi; i++)
+				if (right >= hi
+						|| (left < mid && earliest[buffer[left]] <= earliest[buffer[right]]))
+					order[i] = buffer[left++];
+				else
+					order[i] = buffer[right++];
+		}
+	}
+}
@@ -0,0 +1,59 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a {@link BucketTimeIndex} per key, such as an index's catalog file or
+ * thaw directory, for as long as the key's stamp stays the same. The stamp is
+ * something that changes when the buckets change, like a file's length and
+ * last modified time, and is compared with equals.
+ */
+public class BucketTimeIndexCache<T> {
+
+	private final ConcurrentMap<String, StampedTimeIndex<T>> timeIndexes = new ConcurrentHashMap<String, StampedTimeIndex<T>>();
+
+	private static class StampedTimeIndex<T> {
+
+		final Object stamp;
+		final BucketTimeIndex<T> timeIndex;
+
+		StampedTimeIndex(Object stamp, BucketTimeIndex<T> timeIndex) {
+			this.stamp = stamp;
+			this.timeIndex = timeIndex;
+		}
+	}
+
+	/**
+	 * @return cached time index for the key, or null if there is none for the
+	 *         stamp.
+	 */
+	public BucketTimeIndex<T> get(String key, Object stamp) {
+		StampedTimeIndex<T> stamped = timeIndexes.get(key);
+		if (stamped != null && stamped.stamp.equals(stamp))
+			return stamped.timeIndex;
+		return null;
+	}
+
+	public void put(String key, Object stamp, BucketTimeIndex<T> timeIndex) {
+		timeIndexes.put(key, new StampedTimeIndex<T>(stamp, timeIndex));
+	}
+
+	public void invalidate(String key) {
+		timeIndexes.remove(key);
+	}
+}
@@ -18,7 +18,9 @@ import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import org.apache.log4j.Logger;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.importexport.BucketImportController;
+import com.splunk.shuttl.archiver.importexport.BucketStreamImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.BucketFactory;
 import com.splunk.shuttl.archiver.model.LocalBucket;
@@ -34,6 +36,7 @@ public class GetsBucketsFromArchive {
 	private final ThawBucketTransferer thawBucketTransferer;
 	private final BucketImportController bucketImportController;
 	private final BucketSizeResolver bucketSizeResolver;
+	private final ThawCostModel thawCostModel;
 
 	/**
 	 * @param thawBucketTransferer
@@ -43,9 +46,22 @@ public class GetsBucketsFromArchive {
 	public GetsBucketsFromArchive(ThawBucketTransferer thawBucketTransferer,
 			BucketImportController bucketImportController,
 			BucketSizeResolver bucketSizeResolver) {
+		this(thawBucketTransferer, bucketImportController, bucketSizeResolver,
+				null);
+	}
+
+	/**
+	 * @param thawCostModel
+	 *          to record how long the buckets take to transfer and import, per
+	 *          format. Can be null.
+	 */
+	public GetsBucketsFromArchive(ThawBucketTransferer thawBucketTransferer,
+			BucketImportController bucketImportController,
+			BucketSizeResolver bucketSizeResolver, ThawCostModel thawCostModel) {
 		this.thawBucketTransferer = thawBucketTransferer;
 		this.bucketImportController = bucketImportController;
 		this.bucketSizeResolver = bucketSizeResolver;
+		this.thawCostModel = thawCostModel;
 	}
 
 	/**
@@ -58,15 +74,44 @@ public class GetsBucketsFromArchive {
 	public LocalBucket getBucketFromArchive(Bucket bucket)
 			throws ThawTransferFailException, ImportThawedBucketFailException {
 		logger.info(will("Attempting to thaw bucket", "bucket", bucket));
-		LocalBucket thawedBucket = getTransferedBucket(bucket);
-		LocalBucket importedBucket = importThawedBucket(thawedBucket);
-		Bucket bucketWithSize = bucketSizeResolver.resolveBucketSize(thawedBucket);
+		long startedMillis = System.currentTimeMillis();
+		BucketStreamImporter streamImporter = bucketImportController
+				.getStreamImporter(bucket.getFormat());
+		LocalBucket importedBucket;
+		long transferMillis;
+		boolean streamed = streamImporter != null
+				&& thawBucketTransferer.canStreamBuckets();
+		if (streamed) {
+			importedBucket = getStreamImportedBucket(bucket, streamImporter);
+			transferMillis = System.currentTimeMillis() - startedMillis;
+		} else {
+			LocalBucket transferedBucket = getTransferedBucket(bucket);
+			transferMillis = System.currentTimeMillis() - startedMillis;
+			importedBucket = importThawedBucket(transferedBucket);
+		}
+		long thawMillis = System.currentTimeMillis() - startedMillis;
+		Bucket bucketWithSize = bucketSizeResolver.resolveBucketSize(bucket);
+		if (thawCostModel != null && bucketWithSize.getSize() != null)
+			recordCosts(bucket.getFormat(), bucketWithSize.getSize(), streamed,
+					transferMillis, thawMillis - transferMillis);
 		logger.info(done("Thawed bucket", "bucket", importedBucket));
 		return BucketFactory.createBucketWithIndexDirectoryAndSize(
 				importedBucket.getIndex(), importedBucket.getDirectory(),
 				importedBucket.getFormat(), bucketWithSize.getSize());
 	}
 
+	/**
+	 * The size is the archived size of the format when the bucket is listed from
+	 * the archive catalog, which is what the cost model expects.
+	 */
+	private void recordCosts(BucketFormat format, long size, boolean streamed,
+			long transferMillis, long importMillis) {
+		if (streamed)
+			thawCostModel.recordStreamedImport(format, size, transferMillis);
+		else
+			thawCostModel.recordThaw(format, size, transferMillis, importMillis);
+	}
+
 	private LocalBucket getTransferedBucket(Bucket bucket)
 			throws ThawTransferFailException {
 		try {
@@ -78,6 +123,18 @@ public class GetsBucketsFromArchive {
 		}
 	}
 
+	private LocalBucket getStreamImportedBucket(Bucket bucket,
+			BucketStreamImporter streamImporter) throws ThawTransferFailException {
+		try {
+			return thawBucketTransferer.streamBucketToThaw(bucket, streamImporter);
+		} catch (Exception e) {
+			logger.error(did("Tried to thaw bucket by streaming it", e,
+					"Place the imported bucket in thaw", "bucket", bucket, "exception",
+					e));
+			throw new ThawTransferFailException(bucket);
+		}
+	}
+
 	private LocalBucket importThawedBucket(LocalBucket thawedBucket)
 			throws ImportThawedBucketFailException {
 		try {
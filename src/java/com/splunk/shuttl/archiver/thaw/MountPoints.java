@@ -0,0 +1,94 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+
+/**
+ * Resolves the mount points of directories with {@code df -P}, so that thaw
+ * directories on the same file system can share its free space. Mount points
+ * are cached by directory. A directory whose mount point can't be resolved is
+ * its own mount point.
+ */
+public class MountPoints {
+
+	private static final Logger logger = Logger.getLogger(MountPoints.class);
+
+	private final Map<String, String> mountPoints = new HashMap<String, String>();
+
+	/**
+	 * @param directory
+	 *          that exists.
+	 * @return mount point of the file system the directory is on, or the
+	 *         directory's path if it can't be resolved.
+	 */
+	public synchronized String getMountPoint(File directory) {
+		String path = directory.getAbsolutePath();
+		String mountPoint = mountPoints.get(path);
+		if (mountPoint == null) {
+			mountPoint = resolveMountPoint(path);
+			mountPoints.put(path, mountPoint);
+		}
+		return mountPoint;
+	}
+
+	private String resolveMountPoint(String path) {
+		try {
+			ShellExecutor shellExecutor = ShellExecutor.getInstance();
+			int exitCode = shellExecutor.executeCommand(
+					Collections.<String, String> emptyMap(),
+					Arrays.asList("df", "-P", path));
+			String mountPoint = exitCode == 0 ? parseMountPoint(shellExecutor
+					.getStdOut()) : null;
+			if (mountPoint != null)
+				return mountPoint;
+		} catch (RuntimeException e) {
+			logger.debug(did("Resolved mount point with df", e,
+					"the mount point of the directory", "directory", path));
+		}
+		return path;
+	}
+
+	/**
+	 * The mount point is the last column of the second line, and may contain
+	 * spaces.
+	 */
+	static String parseMountPoint(List<String> dfOutput) {
+		if (dfOutput.size() < 2)
+			return null;
+		String[] columns = dfOutput.get(1).trim().split("\\s+", 6);
+		return columns.length < 6 ? null : columns[5];
+	}
+
+	private static final MountPoints sharedInstance = new MountPoints();
+
+	/**
+	 * @return mount points cached for every thaw plan in this JVM.
+	 */
+	public static MountPoints getSharedInstance() {
+		return sharedInstance;
+	}
+}
@@ -16,11 +16,16 @@ package com.splunk.shuttl.archiver.thaw;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.transaction.Transaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.GetBucketStreamTransaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.GetBucketTransaction;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.ReadsBucketStream;
+import com.splunk.shuttl.archiver.importexport.BucketStreamImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.BucketFactory;
 import com.splunk.shuttl.archiver.model.LocalBucket;
@@ -60,4 +65,40 @@ public class ThawBucketTransferer {
 		return bucketFactory.createWithIndexDirectoryAndSize(bucket.getIndex(),
 				dst, bucket.getFormat(), bucket.getSize());
 	}
+
+	/**
+	 * @return true if the archive file system can stream buckets, so that they
+	 *         can be imported while they are being transferred.
+	 */
+	public boolean canStreamBuckets() {
+		return archiveFileSystem.getBucketTransferer().canGetStream();
+	}
+
+	/**
+	 * Transfers an archived bucket that is a single file to the thaw directory
+	 * of the bucket's index, importing it while it's being transferred. The
+	 * archived file is never stored on local disk.
+	 * 
+	 * @return the transferred bucket, in {@link BucketFormat#SPLUNK_BUCKET}.
+	 */
+	public LocalBucket streamBucketToThaw(Bucket bucket,
+			final BucketStreamImporter bucketStreamImporter) throws IOException {
+		File temp = thawLocationProvider.getThawTransferLocation(bucket);
+		File dst = thawLocationProvider.getLocationInThawForBucket(bucket);
+		Transaction getBucketTransaction = GetBucketStreamTransaction.create(
+				archiveFileSystem, bucket,
+				bucketStreamImporter.getImportFileName(bucket),
+				new ReadsBucketStream() {
+
+					@Override
+					public void readFrom(InputStream in, File directory)
+							throws IOException {
+						bucketStreamImporter.importBucket(in, directory);
+					}
+				}, temp.getAbsolutePath(), dst.getAbsolutePath());
+		transactionExecuter.execute(getBucketTransaction);
+
+		return bucketFactory.createWithIndexDirectoryAndSize(bucket.getIndex(),
+				dst, BucketFormat.SPLUNK_BUCKET, bucket.getSize());
+	}
 }
@@ -0,0 +1,179 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+
+/**
+ * Expected time to thaw a bucket in a format, from the transfer and import
+ * rates measured when buckets are thawed. The rates are in archived bytes per
+ * second, and are kept per format since a compressed tgz transfers faster
+ * than a splunk bucket but has to be unpacked, and a csv has to be indexed
+ * again. The whole thaws are recorded in a {@link ThawThroughput}, which is
+ * what thaw plans estimate with.<br/>
+ * <br/>
+ * A format that hasn't been transferred is expected to transfer as fast as
+ * any format that has. A format that hasn't been imported is expected to
+ * import at the import rate prior, or, without a prior, to take as long to
+ * import as to transfer. That way formats that have never been thawed can
+ * still be chosen, and get measured. When a format's import is part of the
+ * transfer because it's streamed, there is no separate import.
+ */
+public class ThawCostModel {
+
+	private final ThawThroughput thawThroughput;
+	private final ThawThroughput transferRate;
+	private final Map<BucketFormat, ThawThroughput> transferRates;
+	private final Map<BucketFormat, ThawThroughput> importRates;
+	private final Set<BucketFormat> streamedFormats;
+	private Long importRatePrior;
+
+	public ThawCostModel() {
+		this(new ThawThroughput());
+	}
+
+	/**
+	 * @param thawThroughput
+	 *          to record the whole thaws in.
+	 */
+	public ThawCostModel(ThawThroughput thawThroughput) {
+		this.thawThroughput = thawThroughput;
+		this.transferRate = new ThawThroughput();
+		this.transferRates = new HashMap<BucketFormat, ThawThroughput>();
+		this.importRates = new HashMap<BucketFormat, ThawThroughput>();
+		this.streamedFormats = new HashSet<BucketFormat>();
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *          expected import rate of formats that haven't been imported yet.
+	 *          null, 0 or less to expect the import to take as long as the
+	 *          transfer.
+	 */
+	public synchronized void setImportRatePrior(Long bytesPerSecond) {
+		this.importRatePrior = bytesPerSecond == null || bytesPerSecond <= 0 ? null
+				: bytesPerSecond;
+	}
+
+	/**
+	 * @param bytes
+	 *          archived bytes of the bucket.
+	 * @param transferMillis
+	 *          it took to transfer the bucket to thaw.
+	 * @param importMillis
+	 *          it took to import the transferred bucket to a splunk bucket.
+	 */
+	public synchronized void recordThaw(BucketFormat format, long bytes,
+			long transferMillis, long importMillis) {
+		thawThroughput.record(bytes, transferMillis + importMillis);
+		transferRate.record(bytes, transferMillis);
+		getRate(transferRates, format).record(bytes, transferMillis);
+		if (format != BucketFormat.SPLUNK_BUCKET)
+			getRate(importRates, format).record(bytes, importMillis);
+	}
+
+	/**
+	 * @param millis
+	 *          it took to both transfer and import the bucket, since it was
+	 *          imported while it was streamed.
+	 */
+	public synchronized void recordStreamedImport(BucketFormat format,
+			long bytes, long millis) {
+		thawThroughput.record(bytes, millis);
+		streamedFormats.add(format);
+		getRate(transferRates, format).record(bytes, millis);
+	}
+
+	private ThawThroughput getRate(Map<BucketFormat, ThawThroughput> rates,
+			BucketFormat format) {
+		ThawThroughput rate = rates.get(format);
+		if (rate == null) {
+			rate = new ThawThroughput();
+			rates.put(format, rate);
+		}
+		return rate;
+	}
+
+	/**
+	 * @param archivedSize
+	 *          of the bucket in the format.
+	 * @return expected seconds to thaw the bucket in the format, or null if it
+	 *         can't be expected yet.
+	 */
+	public synchronized Double getExpectedSeconds(BucketFormat format,
+			long archivedSize) {
+		Long transferBytesPerSecond = getTransferBytesPerSecond(format);
+		if (transferBytesPerSecond == null)
+			return null;
+		double seconds = (double) archivedSize / transferBytesPerSecond;
+		if (needsImport(format))
+			seconds += (double) archivedSize
+					/ getImportBytesPerSecond(format, transferBytesPerSecond);
+		return seconds;
+	}
+
+	private Long getTransferBytesPerSecond(BucketFormat format) {
+		Long bytesPerSecond = getBytesPerSecond(transferRates, format);
+		if (bytesPerSecond == null && !streamedFormats.contains(format))
+			bytesPerSecond = transferRate.getBytesPerSecond();
+		return bytesPerSecond == null || bytesPerSecond == 0 ? null
+				: bytesPerSecond;
+	}
+
+	private long getImportBytesPerSecond(BucketFormat format,
+			long transferBytesPerSecond) {
+		Long bytesPerSecond = getBytesPerSecond(importRates, format);
+		if (bytesPerSecond != null)
+			return bytesPerSecond;
+		else if (importRatePrior != null)
+			return importRatePrior;
+		else
+			return transferBytesPerSecond;
+	}
+
+	private Long getBytesPerSecond(Map<BucketFormat, ThawThroughput> rates,
+			BucketFormat format) {
+		ThawThroughput rate = rates.get(format);
+		Long bytesPerSecond = rate == null ? null : rate.getBytesPerSecond();
+		return bytesPerSecond == null || bytesPerSecond == 0 ? null
+				: bytesPerSecond;
+	}
+
+	private boolean needsImport(BucketFormat format) {
+		return format != BucketFormat.SPLUNK_BUCKET
+				&& !streamedFormats.contains(format);
+	}
+
+	private static final Map<String, ThawCostModel> sharedInstances = new HashMap<String, ThawCostModel>();
+
+	/**
+	 * @return the model of every thaw from the backend in this JVM. It records
+	 *         the whole thaws in the backend's shared {@link ThawThroughput}.
+	 */
+	public static synchronized ThawCostModel getSharedInstance(
+			String backendName) {
+		ThawCostModel model = sharedInstances.get(backendName);
+		if (model == null) {
+			model = new ThawCostModel(ThawThroughput.getSharedInstance(backendName));
+			sharedInstances.put(backendName, model);
+		}
+		return model;
+	}
+}
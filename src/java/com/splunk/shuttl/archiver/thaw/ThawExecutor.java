@@ -0,0 +1,273 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+
+/**
+ * Runs bucket thaws concurrently, with a bounded number of threads. The number
+ * of buckets that are thawed to the same volume at the same time is limited
+ * as well, so that one disk isn't written to by every thread while the other
+ * disks are idle. Thaws wait in a queue per volume, and are handed to the
+ * threads when a thaw to their volume is done, so that thaws to a busy volume
+ * never hold threads that thaws to other volumes could use.
+ */
+public class ThawExecutor {
+
+	private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+	public static final int DEFAULT_CONCURRENCY_PER_VOLUME = 4;
+
+	private static final Map<String, Integer> DEFAULT_CONCURRENCY_PER_BACKEND = new HashMap<String, Integer>();
+	static {
+		DEFAULT_CONCURRENCY_PER_BACKEND.put("local", 2);
+		DEFAULT_CONCURRENCY_PER_BACKEND.put("hdfs", 8);
+		DEFAULT_CONCURRENCY_PER_BACKEND.put("s3", 4);
+		DEFAULT_CONCURRENCY_PER_BACKEND.put("s3n", 4);
+		DEFAULT_CONCURRENCY_PER_BACKEND.put("glacier", 4);
+	}
+
+	private final ExecutorService executor;
+	private final int concurrency;
+	private final int permitsPerVolume;
+	private final ConcurrentMap<String, VolumeQueue> volumeQueues;
+
+	/**
+	 * @param executor
+	 *          that runs the thaws, or null to run them one at a time in the
+	 *          calling thread.
+	 * @param concurrency
+	 *          number of thaws the executor runs at the same time.
+	 * @param permitsPerVolume
+	 *          number of thaws to the same volume at the same time.
+	 */
+	public ThawExecutor(ExecutorService executor, int concurrency,
+			int permitsPerVolume) {
+		this.executor = executor;
+		this.concurrency = concurrency;
+		this.permitsPerVolume = permitsPerVolume;
+		this.volumeQueues = new ConcurrentHashMap<String, VolumeQueue>();
+	}
+
+	/**
+	 * Runs the thaw when there is a thread for it and fewer than the permitted
+	 * number of thaws to its volume are running. The thaw is expected to handle
+	 * its own exceptions.
+	 * 
+	 * @return future that is done when the thaw is done.
+	 */
+	public Future<?> submit(String volume, Runnable thaw) {
+		FutureTask<?> task = new FutureTask<Object>(thaw, null);
+		if (executor == null)
+			task.run();
+		else
+			getVolumeQueue(volume).submit(task);
+		return task;
+	}
+
+	private VolumeQueue getVolumeQueue(String volume) {
+		VolumeQueue queue = volumeQueues.get(volume);
+		if (queue == null) {
+			volumeQueues.putIfAbsent(volume, new VolumeQueue());
+			queue = volumeQueues.get(volume);
+		}
+		return queue;
+	}
+
+	/**
+	 * Waits for all the submitted thaws to be done, also when some of them
+	 * failed.
+	 * 
+	 * @throws RuntimeException
+	 *           with the first failure, once every thaw is done.
+	 */
+	public void waitForAll(List<Future<?>> futures) {
+		Throwable failure = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = e.getCause();
+			}
+		}
+		if (failure != null)
+			throw new RuntimeException(failure);
+	}
+
+	/**
+	 * @return number of thaws that are run at the same time.
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public int getPermitsPerVolume() {
+		return permitsPerVolume;
+	}
+
+	/**
+	 * Thaws to a volume that wait for one of the volume's permits. A thaw is
+	 * only handed to the executor when it has a permit, and the thread that
+	 * finishes a thaw hands the next waiting thaw to the executor.
+	 */
+	private class VolumeQueue {
+
+		private final Queue<Runnable> waiting = new LinkedList<Runnable>();
+		private int running;
+
+		public void submit(final FutureTask<?> task) {
+			Runnable thaw = new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						done();
+					}
+				}
+			};
+			synchronized (this) {
+				if (running >= permitsPerVolume) {
+					waiting.add(thaw);
+					return;
+				}
+				running++;
+			}
+			execute(thaw);
+		}
+
+		private void done() {
+			Runnable next;
+			synchronized (this) {
+				next = waiting.poll();
+				if (next == null) {
+					running--;
+					return;
+				}
+			}
+			execute(next);
+		}
+
+		/**
+		 * A thaw that a shut down executor rejects is run in the calling
+		 * thread, so that no thaw is left waiting.
+		 */
+		private void execute(Runnable thaw) {
+			try {
+				executor.execute(thaw);
+			} catch (RejectedExecutionException e) {
+				thaw.run();
+			}
+		}
+	}
+
+	private static class ThawThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "shuttl-bucket-thawer-"
+					+ threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * @return executor that thaws one bucket at a time, in the calling thread.
+	 */
+	public static ThawExecutor createSequential() {
+		return new ThawExecutor(null, 1, 1);
+	}
+
+	/**
+	 * @return executor with the configured concurrency, or the default
+	 *         concurrency of the configured backend.
+	 */
+	public static ThawExecutor create(ArchiveConfiguration config) {
+		Integer concurrency = config.getThawConcurrency();
+		if (concurrency == null)
+			concurrency = getDefaultConcurrency(config.getBackendName());
+		Integer perVolume = config.getThawConcurrencyPerVolume();
+		if (perVolume == null || perVolume < 1)
+			perVolume = DEFAULT_CONCURRENCY_PER_VOLUME;
+		return getSharedInstance(concurrency, perVolume);
+	}
+
+	/**
+	 * @return default number of buckets to thaw at the same time from the
+	 *         backend. 1 for unknown backends.
+	 */
+	public static int getDefaultConcurrency(String backendName) {
+		Integer concurrency = DEFAULT_CONCURRENCY_PER_BACKEND.get(backendName);
+		return concurrency == null ? 1 : concurrency;
+	}
+
+	private static ThawExecutor sharedInstance;
+
+	/**
+	 * The executor is shared so that the limits are for all thaws in this JVM,
+	 * and not per thaw request.
+	 * 
+	 * @param concurrency
+	 *          thaws at the same time. Less than 2 thaws one bucket at a time.
+	 */
+	public static synchronized ThawExecutor getSharedInstance(int concurrency,
+			int permitsPerVolume) {
+		if (concurrency < 2)
+			return createSequential();
+		if (sharedInstance == null
+				|| sharedInstance.getConcurrency() != concurrency
+				|| sharedInstance.getPermitsPerVolume() != permitsPerVolume)
+			sharedInstance = new ThawExecutor(createThreadPool(concurrency),
+					concurrency, permitsPerVolume);
+		return sharedInstance;
+	}
+
+	/**
+	 * Idle threads time out, so that a replaced executor goes away on its own.
+	 */
+	private static ExecutorService createThreadPool(int threads) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+				IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThawThreadFactory());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
@@ -0,0 +1,350 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.listers.BucketCursor;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
+
+/**
+ * A thaw that runs in the background, so that clients can poll its progress
+ * instead of waiting for every bucket to be thawed. Keeps the state of each
+ * bucket and counts the bytes that are transferred.<br/>
+ * <br/>
+ * The bytes of a bucket that is being transferred are the bytes in its
+ * transfer location, so that the count is the same for every archive file
+ * system.
+ */
+public class ThawJob implements ThawListener {
+
+	private static final Logger logger = Logger.getLogger(ThawJob.class);
+
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED, REFUSED;
+
+		public boolean isFinished() {
+			return this != QUEUED && this != RUNNING;
+		}
+	}
+
+	public enum BucketState {
+		QUEUED, THAWING, THAWED, SKIPPED, FAILED, CANCELLED, EXCLUDED
+	}
+
+	/**
+	 * State of a bucket in the job.
+	 */
+	public static class BucketProgress {
+
+		public final Bucket bucket;
+		public final BucketState state;
+		public final long bytes;
+		public final String reason;
+
+		public BucketProgress(Bucket bucket, BucketState state, long bytes,
+				String reason) {
+			this.bucket = bucket;
+			this.state = state;
+			this.bytes = bytes;
+			this.reason = reason;
+		}
+	}
+
+	private final String id;
+	private final BucketThawer bucketThawer;
+	private final ThawLocationProvider thawLocationProvider;
+	private final Map<String, BucketProgress> buckets;
+
+	private volatile State state;
+	private volatile long startedMillis;
+	private volatile long finishedMillis;
+	private volatile boolean cancelled;
+	private volatile ThawPlan plan;
+	private volatile String failureReason;
+
+	/**
+	 * Only counts the bytes of thawed buckets if the thawer has no
+	 * {@link ThawLocationProvider}, since the transfers can't be found.
+	 */
+	public ThawJob(String id, BucketThawer bucketThawer) {
+		this.id = id;
+		this.bucketThawer = bucketThawer;
+		this.thawLocationProvider = bucketThawer.getThawLocationProvider();
+		this.buckets = new LinkedHashMap<String, BucketProgress>();
+		this.state = State.QUEUED;
+		bucketThawer.setThawListener(this);
+	}
+
+	/**
+	 * Thaws the buckets of the plan with the job's {@link BucketThawer}. Does
+	 * nothing if the job was cancelled before it started, or if the plan is
+	 * refused. The plan is released when the job has finished.
+	 */
+	public void thaw(ThawPlan plan) {
+		try {
+			thawPlan(plan);
+		} finally {
+			plan.release();
+		}
+	}
+
+	private void thawPlan(ThawPlan plan) {
+		this.plan = plan;
+		addPlannedBuckets(plan);
+		synchronized (this) {
+			if (cancelled) {
+				finish(State.CANCELLED);
+				return;
+			}
+			if (plan.isRefused()) {
+				finish(State.REFUSED);
+				return;
+			}
+			state = State.RUNNING;
+			startedMillis = System.currentTimeMillis();
+		}
+		logger.info(will("Run thaw job", "job_id", id, "buckets", plan
+				.getBucketsToThaw().size(), "bytes", plan.getBytes()));
+		try {
+			bucketThawer.accessedBuckets(plan.getThawedBuckets());
+			bucketThawer.thawBuckets(plan.getBucketsToThaw());
+			finish(cancelled ? State.CANCELLED : State.DONE);
+		} catch (RuntimeException e) {
+			logger.error(did("Ran thaw job", e, "to thaw the buckets", "job_id", id));
+			failureReason = getReason(e);
+			finish(cancelled ? State.CANCELLED : State.FAILED);
+			throw e;
+		}
+		logger.info(done("Running thaw job", "job_id", id, "state", state));
+	}
+
+	/**
+	 * Fails a job that couldn't get to thaw, for example because it couldn't
+	 * be planned. A job that was cancelled before it failed is cancelled.
+	 */
+	public synchronized void fail(Exception exception) {
+		if (state.isFinished())
+			return;
+		logger.error(did("Ran thaw job", exception, "to plan the thaw", "job_id",
+				id));
+		failureReason = getReason(exception);
+		finish(cancelled ? State.CANCELLED : State.FAILED);
+	}
+
+	private static String getReason(Exception exception) {
+		String message = exception.getMessage();
+		return exception.getClass().getSimpleName()
+				+ (message == null ? "" : ": " + message);
+	}
+
+	private void addPlannedBuckets(ThawPlan plan) {
+		for (Bucket bucket : plan.getThawedBuckets())
+			bucketSkipped(bucket);
+		for (FailedBucket failedBucket : plan.getFailedBuckets())
+			bucketFailed(failedBucket.bucket, failedBucket.exception);
+		for (Bucket bucket : plan.getExcludedBuckets())
+			setBucketState(bucket, BucketState.EXCLUDED, 0, null);
+	}
+
+	/**
+	 * Buckets that never got to start are cancelled.
+	 */
+	private synchronized void finish(State finalState) {
+		for (BucketProgress progress : new ArrayList<BucketProgress>(
+				buckets.values()))
+			if (progress.state == BucketState.QUEUED)
+				setBucketState(progress.bucket, BucketState.CANCELLED, 0, null);
+		finishedMillis = System.currentTimeMillis();
+		state = finalState;
+	}
+
+	/**
+	 * Cancels the job. A running job stops its in-flight transfers, and a
+	 * queued job won't thaw anything.
+	 */
+	public void cancel() {
+		synchronized (this) {
+			if (state.isFinished())
+				return;
+			cancelled = true;
+		}
+		logger.info(happened("Cancelled thaw job", "job_id", id));
+		bucketThawer.cancel();
+	}
+
+	@Override
+	public void bucketQueued(Bucket bucket) {
+		setBucketState(bucket, BucketState.QUEUED, 0, null);
+	}
+
+	@Override
+	public void bucketThawing(Bucket bucket) {
+		setBucketState(bucket, BucketState.THAWING, 0, null);
+	}
+
+	@Override
+	public void bucketThawed(Bucket bucket, LocalBucket thawedBucket) {
+		setBucketState(bucket, BucketState.THAWED, sizeOf(thawedBucket), null);
+	}
+
+	@Override
+	public void bucketSkipped(Bucket bucket) {
+		setBucketState(bucket, BucketState.SKIPPED, 0, null);
+	}
+
+	@Override
+	public void bucketFailed(Bucket bucket, Exception exception) {
+		setBucketState(bucket, BucketState.FAILED, 0, exception.getClass()
+				.getSimpleName());
+	}
+
+	@Override
+	public void bucketCancelled(Bucket bucket) {
+		setBucketState(bucket, BucketState.CANCELLED, 0, null);
+	}
+
+	private synchronized void setBucketState(Bucket bucket, BucketState state,
+			long bytes, String reason) {
+		buckets.put(getKey(bucket),
+				new BucketProgress(bucket, state, bytes, reason));
+	}
+
+	private String getKey(Bucket bucket) {
+		return bucket.getIndex() + "/" + bucket.getName();
+	}
+
+	private long sizeOf(LocalBucket thawedBucket) {
+		Long size = thawedBucket.getSize();
+		return size == null ? 0 : size;
+	}
+
+	/**
+	 * @return the buckets of the job, in the order they were queued. Buckets
+	 *         that are being thawed have the bytes transferred so far.
+	 */
+	public List<BucketProgress> getBuckets() {
+		List<BucketProgress> progresses;
+		synchronized (this) {
+			progresses = new ArrayList<BucketProgress>(buckets.values());
+		}
+		List<BucketProgress> withTransfers = new ArrayList<BucketProgress>();
+		for (BucketProgress progress : progresses)
+			if (progress.state == BucketState.THAWING)
+				withTransfers.add(new BucketProgress(progress.bucket,
+						progress.state, getBytesInTransfer(progress.bucket), null));
+			else
+				withTransfers.add(progress);
+		return withTransfers;
+	}
+
+	private long getBytesInTransfer(Bucket bucket) {
+		if (thawLocationProvider == null)
+			return 0;
+		try {
+			File transferLocation = thawLocationProvider.getThawTransferPath(bucket);
+			if (transferLocation.exists())
+				return FileUtils.sizeOf(transferLocation);
+		} catch (RuntimeException e) {
+			// The transfer is moved or cleaned while it's measured.
+		}
+		return 0;
+	}
+
+	/**
+	 * @return bytes of the thawed buckets and of the buckets being thawed.
+	 */
+	public long getBytesTransferred() {
+		long bytes = 0;
+		for (BucketProgress progress : getBuckets())
+			bytes += progress.bytes;
+		return bytes;
+	}
+
+	/**
+	 * @return average bytes transferred per second since the job started.
+	 */
+	public long getBytesPerSecond() {
+		if (startedMillis == 0)
+			return 0;
+		long end = finishedMillis == 0 ? System.currentTimeMillis()
+				: finishedMillis;
+		long millis = Math.max(1, end - startedMillis);
+		return getBytesTransferred() * 1000 / millis;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return when the job started, or null if it's queued.
+	 */
+	public Date getStarted() {
+		return startedMillis == 0 ? null : new Date(startedMillis);
+	}
+
+	/**
+	 * @return when the job finished, or null if it hasn't.
+	 */
+	public Date getFinished() {
+		return finishedMillis == 0 ? null : new Date(finishedMillis);
+	}
+
+	/**
+	 * @return why the job failed, or null if it hasn't.
+	 */
+	public String getFailureReason() {
+		return failureReason;
+	}
+
+	/**
+	 * @return the plan of the job, or null if it hasn't been planned yet.
+	 */
+	public ThawPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * @see ThawPlan#getNextCursor()
+	 */
+	public BucketCursor getNextCursor() {
+		return plan == null ? null : plan.getNextCursor();
+	}
+
+	/**
+	 * @return job for the thawer, with a new random id.
+	 */
+	public static ThawJob create(BucketThawer bucketThawer) {
+		return new ThawJob(UUID.randomUUID().toString(), bucketThawer);
+	}
+}
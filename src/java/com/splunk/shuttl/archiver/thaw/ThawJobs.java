@@ -0,0 +1,74 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the thaw jobs, so that their progress can be polled. Only the most
+ * recently added finished jobs are kept, so that the jobs don't grow without
+ * bounds. Running and queued jobs are always kept.
+ */
+public class ThawJobs {
+
+	public static final int DEFAULT_MAX_FINISHED_JOBS = 100;
+
+	private final int maxFinishedJobs;
+	private final Map<String, ThawJob> jobs;
+
+	public ThawJobs(int maxFinishedJobs) {
+		this.maxFinishedJobs = maxFinishedJobs;
+		this.jobs = new LinkedHashMap<String, ThawJob>();
+	}
+
+	public synchronized void add(ThawJob job) {
+		jobs.put(job.getId(), job);
+		removeOldFinishedJobs();
+	}
+
+	private void removeOldFinishedJobs() {
+		int finishedJobs = 0;
+		for (ThawJob job : jobs.values())
+			if (job.getState().isFinished())
+				finishedJobs++;
+		Iterator<ThawJob> oldestFirst = jobs.values().iterator();
+		while (finishedJobs > maxFinishedJobs && oldestFirst.hasNext())
+			if (oldestFirst.next().getState().isFinished()) {
+				oldestFirst.remove();
+				finishedJobs--;
+			}
+	}
+
+	/**
+	 * @return the job with the id, or null if there is no such job.
+	 */
+	public synchronized ThawJob get(String id) {
+		return jobs.get(id);
+	}
+
+	public synchronized void remove(ThawJob job) {
+		jobs.remove(job.getId());
+	}
+
+	private static ThawJobs sharedInstance;
+
+	public static synchronized ThawJobs getSharedInstance() {
+		if (sharedInstance == null)
+			sharedInstance = new ThawJobs(DEFAULT_MAX_FINISHED_JOBS);
+		return sharedInstance;
+	}
+}
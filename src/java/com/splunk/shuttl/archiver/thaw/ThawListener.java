@@ -0,0 +1,50 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+
+/**
+ * Gets told what happens to each bucket that a {@link BucketThawer} thaws. The
+ * methods are called from the threads that thaw the buckets, so they have to
+ * be thread safe.
+ */
+public interface ThawListener {
+
+	/**
+	 * The bucket is going to be thawed, when there is a thread for it.
+	 */
+	void bucketQueued(Bucket bucket);
+
+	/**
+	 * The bucket is being transferred to thaw.
+	 */
+	void bucketThawing(Bucket bucket);
+
+	void bucketThawed(Bucket bucket, LocalBucket thawedBucket);
+
+	/**
+	 * The bucket was already thawed, or is being thawed by someone else.
+	 */
+	void bucketSkipped(Bucket bucket);
+
+	void bucketFailed(Bucket bucket, Exception exception);
+
+	/**
+	 * The thaw was cancelled before the bucket was thawed.
+	 */
+	void bucketCancelled(Bucket bucket);
+}
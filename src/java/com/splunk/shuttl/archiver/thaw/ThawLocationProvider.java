@@ -68,6 +68,16 @@ public class ThawLocationProvider {
 		return file;
 	}
 
+	/**
+	 * Path of the bucket's transfer location, for looking at an ongoing
+	 * transfer. Unlike {@link #getThawTransferLocation(Bucket)}, it neither
+	 * deletes nor creates anything.
+	 */
+	public File getThawTransferPath(Bucket bucket) {
+		return new File(localFileSystemPaths.getThawTransfersPath(bucket),
+				bucket.getName());
+	}
+
 	private void deleteFile(File file) {
 		boolean wasDeleted = file.delete();
 		if (!wasDeleted)
@@ -0,0 +1,368 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
+
+/**
+ * Buckets to thaw, with their size and an estimate of how long they will take
+ * to thaw. Made by a {@link ThawPlanner}. Buckets that don't fit in the free
+ * space of their thaw directory's file system, minus the reserved space and
+ * the bytes that other thaws have planned, are excluded. With a thaw quota,
+ * buckets are also excluded when they don't fit in their index's quota, and
+ * the thawed buckets that will be evicted to make room count as free space. A
+ * plan that isn't trimmed is refused if any bucket is excluded.<br/>
+ * <br/>
+ * A plan that is thawed reserves its bytes in the {@link ThawReservations}
+ * while it's planned, and has to be {@link #release() released} when the
+ * thaw has finished.
+ */
+public class ThawPlan {
+
+	/**
+	 * The free space of a file system, which is shared by the thaw directories
+	 * on it.
+	 */
+	public static class Space {
+
+		public final String mountPoint;
+		public final long usableSpace;
+		public final long reservedSpace;
+		private final ThawReservations reservations;
+		private final boolean reserving;
+		private long plannedBytes;
+
+		/**
+		 * @param reservations
+		 *          of the bytes that other thaws have planned.
+		 * @param reserving
+		 *          to reserve the planned bytes, for a plan that is thawed.
+		 */
+		public Space(String mountPoint, long usableSpace, long reservedSpace,
+				ThawReservations reservations, boolean reserving) {
+			this.mountPoint = mountPoint;
+			this.usableSpace = usableSpace;
+			this.reservedSpace = reservedSpace;
+			this.reservations = reservations;
+			this.reserving = reserving;
+		}
+
+		/**
+		 * @param bytes
+		 *          to plan, which are negative when evictions free more than
+		 *          they take.
+		 * @return true if the bytes fit, in which case they are planned.
+		 */
+		boolean plan(long bytes) {
+			long availableBytes = usableSpace - reservedSpace;
+			if (reserving) {
+				if (!reservations.tryReserve(mountPoint, bytes, availableBytes))
+					return false;
+			} else if (bytes > 0
+					&& reservations.getReservedBytes(mountPoint) + plannedBytes
+							+ bytes > availableBytes) {
+				return false;
+			}
+			plannedBytes += bytes;
+			return true;
+		}
+
+		private void release() {
+			if (reserving)
+				reservations.release(mountPoint, plannedBytes);
+		}
+	}
+
+	/**
+	 * A thaw directory, which is unique for an index.
+	 */
+	public static class Volume {
+
+		public final File directory;
+		public final Space space;
+		public final Long quota;
+		public final long usedBytes;
+		private long plannedBytes;
+
+		public Volume(File directory, Space space) {
+			this(directory, space, null, 0);
+		}
+
+		/**
+		 * @param quota
+		 *          bytes of thawed buckets to keep in the directory. Null for no
+		 *          quota.
+		 * @param usedBytes
+		 *          of the buckets that are thawed or being thawed to the
+		 *          directory, which are evicted to fit the quota.
+		 */
+		public Volume(File directory, Space space, Long quota, long usedBytes) {
+			this.directory = directory;
+			this.space = space;
+			this.quota = quota;
+			this.usedBytes = usedBytes;
+		}
+
+		/**
+		 * @return true if the bytes fit, in which case they are planned.
+		 */
+		boolean plan(long bytes) {
+			long planned = plannedBytes + bytes;
+			if (quota != null && planned > quota)
+				return false;
+			long evictedBytes = getEvictedBytes(planned)
+					- getEvictedBytes(plannedBytes);
+			if (!space.plan(bytes - evictedBytes))
+				return false;
+			plannedBytes = planned;
+			return true;
+		}
+
+		private long getEvictedBytes(long planned) {
+			if (quota == null)
+				return 0;
+			return Math.min(usedBytes, Math.max(0, usedBytes + planned - quota));
+		}
+
+		/**
+		 * @return bytes of thawed buckets that will be evicted to make room for
+		 *         the planned buckets.
+		 */
+		public long getEvictedBytes() {
+			return getEvictedBytes(plannedBytes);
+		}
+
+		/**
+		 * @return bytes of the planned buckets that are thawed to the directory.
+		 */
+		public long getPlannedBytes() {
+			return plannedBytes;
+		}
+	}
+
+	private final boolean trim;
+	private final List<Bucket> buckets = new ArrayList<Bucket>();
+	private final List<Bucket> excludedBuckets = new ArrayList<Bucket>();
+	private final List<Bucket> thawedBuckets = new ArrayList<Bucket>();
+	private final List<FailedBucket> failedBuckets = new ArrayList<FailedBucket>();
+	private final Map<String, Volume> volumes = new LinkedHashMap<String, Volume>();
+	private final Map<String, Space> spaces = new LinkedHashMap<String, Space>();
+	private final Map<BucketFormat, Long> bytesPerFormat = new LinkedHashMap<BucketFormat, Long>();
+
+	private long bytes;
+	private int bucketsWithUnknownSize;
+	private Long bytesPerSecond;
+	private int concurrentThaws;
+	private BucketCursor nextCursor;
+	private boolean released;
+
+	/**
+	 * @param trim
+	 *          to thaw the buckets that fit, instead of refusing the plan.
+	 */
+	ThawPlan(boolean trim) {
+		this.trim = trim;
+	}
+
+	void addBucket(Bucket bucket) {
+		buckets.add(bucket);
+		if (bucket.getSize() == null)
+			bucketsWithUnknownSize++;
+		else
+			addBytes(bucket.getFormat(), bucket.getSize());
+	}
+
+	private void addBytes(BucketFormat format, long size) {
+		bytes += size;
+		Long formatBytes = bytesPerFormat.get(format);
+		bytesPerFormat.put(format, formatBytes == null ? size : formatBytes
+				+ size);
+	}
+
+	void addExcludedBucket(Bucket bucket) {
+		excludedBuckets.add(bucket);
+	}
+
+	void addThawedBucket(Bucket bucket) {
+		thawedBuckets.add(bucket);
+	}
+
+	void addFailedBucket(FailedBucket failedBucket) {
+		failedBuckets.add(failedBucket);
+	}
+
+	Volume getVolume(String directory) {
+		return volumes.get(directory);
+	}
+
+	void addVolume(String directory, Volume volume) {
+		volumes.put(directory, volume);
+	}
+
+	Space getSpace(String mountPoint) {
+		return spaces.get(mountPoint);
+	}
+
+	void addSpace(Space space) {
+		spaces.put(space.mountPoint, space);
+	}
+
+	/**
+	 * Releases the bytes the plan reserved, when the thaw has finished or
+	 * won't happen. Can be called more than once.
+	 */
+	public synchronized void release() {
+		if (released)
+			return;
+		released = true;
+		for (Space space : spaces.values())
+			space.release();
+	}
+
+	void setThroughput(Long bytesPerSecond, int concurrentThaws) {
+		this.bytesPerSecond = bytesPerSecond;
+		this.concurrentThaws = concurrentThaws;
+	}
+
+	void setNextCursor(BucketCursor nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return true if buckets are excluded and the plan isn't trimmed.
+	 */
+	public boolean isRefused() {
+		return !trim && !excludedBuckets.isEmpty();
+	}
+
+	/**
+	 * @return the buckets that fit in their thaw directories, with sizes.
+	 */
+	public List<Bucket> getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * @return the buckets to thaw, which are none if the plan is refused.
+	 */
+	public List<Bucket> getBucketsToThaw() {
+		return isRefused() ? Collections.<Bucket> emptyList() : buckets;
+	}
+
+	/**
+	 * @return buckets that don't fit in their thaw directories.
+	 */
+	public List<Bucket> getExcludedBuckets() {
+		return excludedBuckets;
+	}
+
+	/**
+	 * @return buckets that are already thawed, and don't need to be thawed.
+	 */
+	public List<Bucket> getThawedBuckets() {
+		return thawedBuckets;
+	}
+
+	/**
+	 * @return buckets that couldn't be planned.
+	 */
+	public List<FailedBucket> getFailedBuckets() {
+		return failedBuckets;
+	}
+
+	public Collection<Volume> getVolumes() {
+		return volumes.values();
+	}
+
+	/**
+	 * @return the file systems of the thaw directories.
+	 */
+	public Collection<Space> getSpaces() {
+		return spaces.values();
+	}
+
+	/**
+	 * @return bytes of the buckets in the plan with known sizes.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return bytes of thawed buckets that will be evicted to make room for the
+	 *         buckets in the plan.
+	 */
+	public long getEvictedBytes() {
+		long evictedBytes = 0;
+		for (Volume volume : volumes.values())
+			evictedBytes += volume.getEvictedBytes();
+		return evictedBytes;
+	}
+
+	/**
+	 * @return bytes of the buckets in the plan, per format they are thawed
+	 *         from.
+	 */
+	public Map<BucketFormat, Long> getBytesPerFormat() {
+		return bytesPerFormat;
+	}
+
+	/**
+	 * @return number of buckets in the plan whose sizes aren't known. They
+	 *         don't count towards the bytes, and are planned in the free space
+	 *         as large as the largest bucket with a known size.
+	 */
+	public int getBucketsWithUnknownSize() {
+		return bucketsWithUnknownSize;
+	}
+
+	/**
+	 * @return observed bytes per second of thawing one bucket, or null if no
+	 *         bucket has been thawed since Shuttl started.
+	 */
+	public Long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @return estimated seconds to thaw the buckets, with as many buckets at a
+	 *         time as the thaw executor runs. Null if there is no observed
+	 *         throughput.
+	 */
+	public Long getEstimatedSeconds() {
+		if (bytesPerSecond == null || bytesPerSecond == 0)
+			return null;
+		int parallelThaws = Math.max(1, Math.min(concurrentThaws, buckets.size()));
+		return bytes / (bytesPerSecond * parallelThaws);
+	}
+
+	/**
+	 * @see BucketThawer#getNextCursor()
+	 */
+	public BucketCursor getNextCursor() {
+		return nextCursor;
+	}
+}
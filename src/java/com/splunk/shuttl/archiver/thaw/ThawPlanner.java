@@ -0,0 +1,297 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.flush.ThawSpaceManager;
+import com.splunk.shuttl.archiver.flush.ThawedBucketSizes;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
+import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.IllegalIndexException;
+import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
+import com.splunk.shuttl.archiver.thaw.ThawPlan.Space;
+import com.splunk.shuttl.archiver.thaw.ThawPlan.Volume;
+
+/**
+ * Plans thaws before anything is transferred, so that a thaw can't fill the
+ * volume that Splunk writes its hot buckets to. Lists the buckets in the
+ * formats they would be thawed from, resolves their sizes and checks them
+ * against the free space of the file systems of their thaw directories, minus
+ * what other thaws have reserved. The time the thaw will take is estimated
+ * from the observed {@link ThawThroughput}. With a {@link ThawSpaceManager}
+ * that has a quota, the buckets are also planned against their index's quota.
+ */
+public class ThawPlanner {
+
+	private static final Logger logger = Logger.getLogger(ThawPlanner.class);
+
+	private final ListsBucketsFiltered listsBucketsFiltered;
+	private final BucketSizeResolver bucketSizeResolver;
+	private final LocalBucketStorage localBuckets;
+	private final ThawLocationProvider thawLocationProvider;
+	private final ThawThroughput thawThroughput;
+	private final ThawExecutor thawExecutor;
+	private final long reservedSpace;
+	private final ThawSpaceManager thawSpaceManager;
+	private final ThawReservations thawReservations;
+	private final MountPoints mountPoints;
+
+	/**
+	 * @param thawThroughput
+	 *          to estimate the thaw time with.
+	 * @param thawExecutor
+	 *          that will thaw the buckets, for how many buckets are thawed at
+	 *          the same time.
+	 * @param reservedSpace
+	 *          bytes to leave free in every thaw directory's volume.
+	 */
+	public ThawPlanner(ListsBucketsFiltered listsBucketsFiltered,
+			BucketSizeResolver bucketSizeResolver, LocalBucketStorage localBuckets,
+			ThawLocationProvider thawLocationProvider,
+			ThawThroughput thawThroughput, ThawExecutor thawExecutor,
+			long reservedSpace) {
+		this(listsBucketsFiltered, bucketSizeResolver, localBuckets,
+				thawLocationProvider, thawThroughput, thawExecutor, reservedSpace, null);
+	}
+
+	/**
+	 * @param thawSpaceManager
+	 *          with the thaw quota. Can be null, for no quota.
+	 */
+	public ThawPlanner(ListsBucketsFiltered listsBucketsFiltered,
+			BucketSizeResolver bucketSizeResolver, LocalBucketStorage localBuckets,
+			ThawLocationProvider thawLocationProvider,
+			ThawThroughput thawThroughput, ThawExecutor thawExecutor,
+			long reservedSpace, ThawSpaceManager thawSpaceManager) {
+		this(listsBucketsFiltered, bucketSizeResolver, localBuckets,
+				thawLocationProvider, thawThroughput, thawExecutor, reservedSpace,
+				thawSpaceManager, ThawReservations.getSharedInstance(), MountPoints
+						.getSharedInstance());
+	}
+
+	/**
+	 * @param thawReservations
+	 *          of the bytes that running thaws have planned.
+	 * @param mountPoints
+	 *          to group the thaw directories by file system with.
+	 */
+	public ThawPlanner(ListsBucketsFiltered listsBucketsFiltered,
+			BucketSizeResolver bucketSizeResolver, LocalBucketStorage localBuckets,
+			ThawLocationProvider thawLocationProvider,
+			ThawThroughput thawThroughput, ThawExecutor thawExecutor,
+			long reservedSpace, ThawSpaceManager thawSpaceManager,
+			ThawReservations thawReservations, MountPoints mountPoints) {
+		this.listsBucketsFiltered = listsBucketsFiltered;
+		this.bucketSizeResolver = bucketSizeResolver;
+		this.localBuckets = localBuckets;
+		this.thawLocationProvider = thawLocationProvider;
+		this.thawThroughput = thawThroughput;
+		this.thawExecutor = thawExecutor;
+		this.reservedSpace = reservedSpace;
+		this.thawSpaceManager = thawSpaceManager;
+		this.thawReservations = thawReservations;
+		this.mountPoints = mountPoints;
+	}
+
+	/**
+	 * Plans a page of buckets, in the order of paged listings, without
+	 * reserving anything. Buckets are planned in order until their thaw
+	 * directory's file system is full, so a trimmed plan thaws the first buckets
+	 * that fit.
+	 * 
+	 * @param cursor
+	 *          to plan the buckets after. From the first bucket if null.
+	 * @param limit
+	 *          of buckets to plan. No limit if null.
+	 * @param trim
+	 *          to thaw the buckets that fit, instead of refusing the plan when
+	 *          some don't.
+	 */
+	public ThawPlan plan(String index, Date earliestTime, Date latestTime,
+			BucketCursor cursor, Integer limit, boolean trim) {
+		return plan(index, earliestTime, latestTime, cursor, limit, trim, false);
+	}
+
+	/**
+	 * Plans a page of buckets like {@link #plan}, for thawing them. The planned
+	 * bytes are reserved, so that other thaws don't plan the same space, until
+	 * the plan is {@link ThawPlan#release() released}. A refused plan is
+	 * released right away.
+	 */
+	public ThawPlan planThaw(String index, Date earliestTime, Date latestTime,
+			BucketCursor cursor, Integer limit, boolean trim) {
+		ThawPlan plan = plan(index, earliestTime, latestTime, cursor, limit, trim,
+				true);
+		if (plan.isRefused())
+			plan.release();
+		return plan;
+	}
+
+	private ThawPlan plan(String index, Date earliestTime, Date latestTime,
+			BucketCursor cursor, Integer limit, boolean trim, boolean reserving) {
+		ThawPlan plan = new ThawPlan(trim);
+		Iterator<Bucket> buckets = listsBucketsFiltered
+				.iterateFilteredBucketsAfter(index, earliestTime, latestTime, cursor);
+		List<Bucket> sizedBuckets = new ArrayList<Bucket>();
+		int handledBuckets = 0;
+		while ((limit == null || handledBuckets < limit) && buckets.hasNext()) {
+			Bucket bucket = buckets.next();
+			Bucket bucketWithSize = resolveBucketToThaw(plan, bucket);
+			if (bucketWithSize != null)
+				sizedBuckets.add(bucketWithSize);
+			handledBuckets++;
+			if (limit != null && handledBuckets == limit && buckets.hasNext())
+				plan.setNextCursor(BucketCursor.after(bucket));
+		}
+		Long estimatedSize = getLargestSize(sizedBuckets);
+		for (Bucket bucket : sizedBuckets)
+			planBucket(plan, bucket, estimatedSize, reserving);
+		plan.setThroughput(thawThroughput.getBytesPerSecond(),
+				getConcurrentThaws(plan));
+		logger.info(done("Planning thaw", "index", index, "buckets", plan
+				.getBuckets().size(), "bytes", plan.getBytes(), "evicted_bytes",
+				plan.getEvictedBytes(), "excluded_buckets", plan.getExcludedBuckets()
+						.size(), "refused", plan.isRefused()));
+		return plan;
+	}
+
+	/**
+	 * @return the bucket with its size, or null if it doesn't have to be thawed
+	 *         or failed.
+	 */
+	private Bucket resolveBucketToThaw(ThawPlan plan, Bucket bucket) {
+		try {
+			if (localBuckets.hasBucket(bucket)) {
+				plan.addThawedBucket(bucket);
+				return null;
+			}
+			return bucketSizeResolver.resolveBucketSize(bucket);
+		} catch (Exception e) {
+			logger.error(did("Planned thawing bucket", e, "to get its size",
+					"bucket", bucket));
+			plan.addFailedBucket(new FailedBucket(bucket, e));
+			return null;
+		}
+	}
+
+	/**
+	 * @return size of the largest bucket, for planning the buckets whose sizes
+	 *         are unknown. Null if no size is known.
+	 */
+	private Long getLargestSize(List<Bucket> buckets) {
+		Long largestSize = null;
+		for (Bucket bucket : buckets)
+			if (bucket.getSize() != null
+					&& (largestSize == null || bucket.getSize() > largestSize))
+				largestSize = bucket.getSize();
+		return largestSize;
+	}
+
+	/**
+	 * A bucket whose size is unknown is planned as large as the largest bucket,
+	 * and doesn't fit when no bucket's size is known. Buckets are planned with
+	 * the size they are estimated to get when thawed.
+	 */
+	private void planBucket(ThawPlan plan, Bucket bucket, Long estimatedSize,
+			boolean reserving) {
+		try {
+			Volume volume = getVolume(plan, bucket, reserving);
+			Long size = bucket.getSize() == null ? estimatedSize : bucket.getSize();
+			if (size != null)
+				size = getThawedBytes(bucket.getFormat(), size);
+			if (size != null && volume.plan(size))
+				plan.addBucket(bucket);
+			else
+				plan.addExcludedBucket(bucket);
+		} catch (Exception e) {
+			logger.error(did("Planned thawing bucket", e, "to get its thaw location",
+					"bucket", bucket));
+			plan.addFailedBucket(new FailedBucket(bucket, e));
+		}
+	}
+
+	private long getThawedBytes(BucketFormat format, long archivedBytes) {
+		if (thawSpaceManager == null)
+			return ThawedBucketSizes.getDefaultThawedBytes(format, archivedBytes);
+		else
+			return thawSpaceManager.getThawedBytes(format, archivedBytes);
+	}
+
+	private Volume getVolume(ThawPlan plan, Bucket bucket, boolean reserving)
+			throws IOException, IllegalIndexException {
+		File directory = thawLocationProvider.getLocationInThawForBucket(bucket)
+				.getParentFile();
+		String path = directory.getAbsolutePath();
+		Volume volume = plan.getVolume(path);
+		if (volume == null) {
+			volume = createVolume(plan, directory, bucket.getIndex(), reserving);
+			plan.addVolume(path, volume);
+		}
+		return volume;
+	}
+
+	private Volume createVolume(ThawPlan plan, File directory, String index,
+			boolean reserving) throws IllegalIndexException {
+		Space space = getSpace(plan, directory, reserving);
+		if (thawSpaceManager == null || thawSpaceManager.getQuota() == null)
+			return new Volume(directory, space);
+		else
+			return new Volume(directory, space, thawSpaceManager.getQuota(),
+					thawSpaceManager.getUsedBytes(index));
+	}
+
+	private Space getSpace(ThawPlan plan, File directory, boolean reserving) {
+		File existing = getClosestExistingDirectory(directory);
+		String mountPoint = existing == null ? directory.getAbsolutePath()
+				: mountPoints.getMountPoint(existing);
+		Space space = plan.getSpace(mountPoint);
+		if (space == null) {
+			space = new Space(mountPoint, existing == null ? 0
+					: existing.getUsableSpace(), reservedSpace, thawReservations,
+					reserving);
+			plan.addSpace(space);
+		}
+		return space;
+	}
+
+	/**
+	 * The space is of the closest existing directory, since the thaw directory
+	 * is created when the first bucket is thawed.
+	 */
+	private File getClosestExistingDirectory(File directory) {
+		File existing = directory;
+		while (existing != null && !existing.exists())
+			existing = existing.getParentFile();
+		return existing;
+	}
+
+	private int getConcurrentThaws(ThawPlan plan) {
+		int concurrentToVolumes = plan.getVolumes().size()
+				* thawExecutor.getPermitsPerVolume();
+		return Math.min(thawExecutor.getConcurrency(), concurrentToVolumes);
+	}
+}
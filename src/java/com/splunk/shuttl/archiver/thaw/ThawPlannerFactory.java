@@ -0,0 +1,89 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import javax.management.InstanceNotFoundException;
+
+import org.apache.log4j.Logger;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.copy.IndexStoragePaths;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.flush.ThawSpaceManagerFactory;
+import com.splunk.shuttl.archiver.listers.ListsBucketsFilteredFactory;
+import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiver;
+
+/**
+ * Factory for getting {@link ThawPlanner}s, that plan thaws for the
+ * {@link BucketThawer}s of the {@link BucketThawerFactory}.
+ */
+public class ThawPlannerFactory {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawPlannerFactory.class);
+
+	/**
+	 * 10 GB.
+	 */
+	public static final long DEFAULT_RESERVED_SPACE = 10L * 1024 * 1024 * 1024;
+
+	/**
+	 * Default {@link ThawPlanner} as configured with .conf files.
+	 */
+	public static ThawPlanner createDefaultPlanner() {
+		ArchiveConfiguration config = ArchiveConfiguration.getSharedInstance();
+		return create(config, SplunkIndexedLayerFactory.create(),
+				LocalFileSystemPaths.create(),
+				ArchiveFileSystemFactory.getWithConfiguration(config),
+				getConfiguredReservedSpace());
+	}
+
+	public static ThawPlanner create(ArchiveConfiguration configuration,
+			SplunkIndexesLayer splunkIndexesLayer,
+			LocalFileSystemPaths localFileSystemPaths,
+			ArchiveFileSystem archiveFileSystem, long reservedSpace) {
+		BucketSizeResolver bucketSizeResolver = new BucketSizeResolver(
+				ArchiveBucketSize.create(new PathResolver(configuration),
+						archiveFileSystem, localFileSystemPaths));
+		return new ThawPlanner(ListsBucketsFilteredFactory.create(configuration,
+				ArchiveCatalog.create(localFileSystemPaths)), bucketSizeResolver,
+				new LocalBucketStorage(new IndexStoragePaths(splunkIndexesLayer)),
+				new ThawLocationProvider(splunkIndexesLayer, localFileSystemPaths),
+				ThawThroughput.getSharedInstance(configuration.getBackendName()),
+				ThawExecutor.create(configuration), reservedSpace,
+				ThawSpaceManagerFactory.create(configuration, splunkIndexesLayer,
+						localFileSystemPaths, archiveFileSystem));
+	}
+
+	private static long getConfiguredReservedSpace() {
+		try {
+			Long reservedSpace = ShuttlArchiver.getMBeanProxy()
+					.getThawReservedSpace();
+			return reservedSpace == null || reservedSpace < 0 ? DEFAULT_RESERVED_SPACE
+					: reservedSpace;
+		} catch (InstanceNotFoundException e) {
+			logger.debug(happened("No archiver configuration is registered",
+					"will_use_reserved_space", DEFAULT_RESERVED_SPACE));
+			return DEFAULT_RESERVED_SPACE;
+		}
+	}
+}
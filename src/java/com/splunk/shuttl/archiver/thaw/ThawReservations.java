@@ -0,0 +1,72 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bytes that thaws have planned and not finished yet, per file system, so
+ * that concurrent thaws don't plan the same free space. The bytes are
+ * reserved until the whole thaw has finished, so the buckets a running thaw
+ * has already written count twice, which only makes plans more conservative.
+ */
+public class ThawReservations {
+
+	private final Map<String, Long> reservedBytes = new HashMap<String, Long>();
+
+	/**
+	 * @return bytes reserved on the file system.
+	 */
+	public synchronized long getReservedBytes(String fileSystem) {
+		Long bytes = reservedBytes.get(fileSystem);
+		return bytes == null ? 0 : bytes;
+	}
+
+	/**
+	 * Reserves the bytes if all the reserved bytes of the file system, with
+	 * these, are at most the available bytes.
+	 * 
+	 * @return true if the bytes were reserved.
+	 */
+	public synchronized boolean tryReserve(String fileSystem, long bytes,
+			long availableBytes) {
+		long reserved = getReservedBytes(fileSystem) + bytes;
+		if (bytes > 0 && reserved > availableBytes)
+			return false;
+		put(fileSystem, reserved);
+		return true;
+	}
+
+	public synchronized void release(String fileSystem, long bytes) {
+		put(fileSystem, getReservedBytes(fileSystem) - bytes);
+	}
+
+	private void put(String fileSystem, long bytes) {
+		if (bytes == 0)
+			reservedBytes.remove(fileSystem);
+		else
+			reservedBytes.put(fileSystem, bytes);
+	}
+
+	private static final ThawReservations sharedInstance = new ThawReservations();
+
+	/**
+	 * @return the reservations of every thaw in this JVM.
+	 */
+	public static ThawReservations getSharedInstance() {
+		return sharedInstance;
+	}
+}
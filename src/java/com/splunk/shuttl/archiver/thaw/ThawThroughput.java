@@ -0,0 +1,74 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Observed throughput of thawing single buckets from a backend, for estimating
+ * how long thaws will take. Recent thaws weigh more than old ones, so that the
+ * estimate follows changes in the network and the backend.
+ */
+public class ThawThroughput {
+
+	/**
+	 * Weight of the newest observation in the moving average.
+	 */
+	private static final double NEW_OBSERVATION_WEIGHT = 0.2;
+
+	private Double bytesPerSecond;
+
+	/**
+	 * @param bytes
+	 *          of a thawed bucket.
+	 * @param millis
+	 *          it took to thaw the bucket.
+	 */
+	public synchronized void record(long bytes, long millis) {
+		if (bytes <= 0 || millis <= 0)
+			return;
+		double observed = bytes * 1000.0 / millis;
+		if (bytesPerSecond == null)
+			bytesPerSecond = observed;
+		else
+			bytesPerSecond = NEW_OBSERVATION_WEIGHT * observed
+					+ (1 - NEW_OBSERVATION_WEIGHT) * bytesPerSecond;
+	}
+
+	/**
+	 * @return bytes per second of thawing one bucket, or null if no bucket has
+	 *         been thawed yet.
+	 */
+	public synchronized Long getBytesPerSecond() {
+		return bytesPerSecond == null ? null : Math.round(bytesPerSecond);
+	}
+
+	private static final Map<String, ThawThroughput> sharedInstances = new HashMap<String, ThawThroughput>();
+
+	/**
+	 * @return the throughput observed by every thaw from the backend in this
+	 *         JVM.
+	 */
+	public static synchronized ThawThroughput getSharedInstance(
+			String backendName) {
+		ThawThroughput throughput = sharedInstances.get(backendName);
+		if (throughput == null) {
+			throughput = new ThawThroughput();
+			sharedInstances.put(backendName, throughput);
+		}
+		return throughput;
+	}
+}
@@ -16,6 +16,8 @@ package com.splunk.shuttl.archiver.util;
 
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,13 +27,18 @@ import com.splunk.shuttl.archiver.model.BucketName;
 
 /**
  * Takes a regex with groups (.*) and a value, and returns the value for a regex
- * at a specific group index. @see {@link BucketName}
+ * at a specific group index. @see {@link BucketName}<br/>
+ * The regex is compiled once per regex and matched once per value, since bucket
+ * names are asked for their times over and over.
  */
 public class GroupRegex {
 
 	private static final Logger logger = Logger.getLogger(GroupRegex.class);
+	private static final ConcurrentMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+
 	private final String regex;
 	private final String value;
+	private String[] groups;
 
 	public GroupRegex(String regex, String value) {
 		this.regex = regex;
@@ -51,14 +58,13 @@ public class GroupRegex {
 	}
 
 	private String getRegexGroup(int groupIndex) {
-		Pattern legalPattern = Pattern.compile(regex);
-		Matcher matcher = legalPattern.matcher(value);
-		matcher.find();
-		return matcher.group(groupIndex);
+		return groups[groupIndex];
 	}
 
 	private void throwExceptionIfNotValidRegex(int groupIndex) {
-		if (!Pattern.matches(regex, value)) {
+		if (groups == null)
+			groups = matchGroups();
+		if (groups.length == 0) {
 			logger.debug(did("Verified legal bucket name",
 					"Bucket name was not legal. Throwing IllegalBucketNameException",
 					"Bucket name to be legal", "bucket_name", value,
@@ -66,4 +72,26 @@ public class GroupRegex {
 			throw new IllegalRegexGroupException();
 		}
 	}
+
+	/**
+	 * @return the matched groups, or an empty array if the value didn't match.
+	 */
+	private String[] matchGroups() {
+		Matcher matcher = getPattern(regex).matcher(value);
+		if (!matcher.matches())
+			return new String[0];
+		String[] matched = new String[matcher.groupCount() + 1];
+		for (int i = 0; i < matched.length; i++)
+			matched[i] = matcher.group(i);
+		return matched;
+	}
+
+	private static Pattern getPattern(String regex) {
+		Pattern pattern = patterns.get(regex);
+		if (pattern == null) {
+			pattern = Pattern.compile(regex);
+			patterns.put(regex, pattern);
+		}
+		return pattern;
+	}
 }
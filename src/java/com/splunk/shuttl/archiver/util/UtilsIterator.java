@@ -0,0 +1,74 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Utils for {@link Iterator}
+ */
+public class UtilsIterator {
+
+	/**
+	 * Iterator that computes its elements when they are asked for. Can't iterate
+	 * over null elements, since null means that there are no more elements.
+	 */
+	public static abstract class LazyIterator<T> implements Iterator<T> {
+
+		private T next;
+		private boolean isDone;
+
+		/**
+		 * @return the next element, or null if there are no more elements.
+		 */
+		protected abstract T computeNext();
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !isDone) {
+				next = computeNext();
+				isDone = next == null;
+			}
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			T element = next;
+			next = null;
+			return element;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * @return the rest of the elements of the iterator.
+	 */
+	public static <T> List<T> toList(Iterator<T> iterator) {
+		List<T> list = new ArrayList<T>();
+		while (iterator.hasNext())
+			list.add(iterator.next());
+		return list;
+	}
+}
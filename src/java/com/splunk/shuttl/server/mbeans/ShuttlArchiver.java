@@ -19,6 +19,8 @@ import java.util.List;
 
 import javax.management.InstanceNotFoundException;
 
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferBudget;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferBudgets;
 import com.splunk.shuttl.server.mbeans.util.MBeanUtils;
 import com.splunk.shuttl.server.model.ArchiverConf;
 
@@ -121,6 +123,189 @@ public class ShuttlArchiver extends MBeanBase<ArchiverConf> implements
 		conf.setArchivePath(archivePath);
 	}
 
+	@Override
+	public Integer getArchivingThreads() {
+		return conf.getArchivingThreads();
+	}
+
+	@Override
+	public void setArchivingThreads(Integer archivingThreads) {
+		conf.setArchivingThreads(archivingThreads);
+	}
+
+	@Override
+	public Integer getArchivingQueueSize() {
+		return conf.getArchivingQueueSize();
+	}
+
+	@Override
+	public void setArchivingQueueSize(Integer archivingQueueSize) {
+		conf.setArchivingQueueSize(archivingQueueSize);
+	}
+
+	@Override
+	public Integer getFormatCopyConcurrency() {
+		return conf.getFormatCopyConcurrency();
+	}
+
+	@Override
+	public void setFormatCopyConcurrency(Integer formatCopyConcurrency) {
+		conf.setFormatCopyConcurrency(formatCopyConcurrency);
+	}
+
+	@Override
+	public Integer getFileTransferStreams() {
+		return conf.getFileTransferStreams();
+	}
+
+	@Override
+	public void setFileTransferStreams(Integer fileTransferStreams) {
+		conf.setFileTransferStreams(fileTransferStreams);
+	}
+
+	@Override
+	public Integer getListingConcurrency() {
+		return conf.getListingConcurrency();
+	}
+
+	@Override
+	public void setListingConcurrency(Integer listingConcurrency) {
+		conf.setListingConcurrency(listingConcurrency);
+	}
+
+	@Override
+	public String getMetadataStorage() {
+		return conf.getMetadataStorage();
+	}
+
+	@Override
+	public void setMetadataStorage(String metadataStorage) {
+		conf.setMetadataStorage(metadataStorage);
+	}
+
+	@Override
+	public Integer getThawConcurrency() {
+		return conf.getThawConcurrency();
+	}
+
+	@Override
+	public void setThawConcurrency(Integer thawConcurrency) {
+		conf.setThawConcurrency(thawConcurrency);
+	}
+
+	@Override
+	public Integer getThawConcurrencyPerVolume() {
+		return conf.getThawConcurrencyPerVolume();
+	}
+
+	@Override
+	public void setThawConcurrencyPerVolume(Integer thawConcurrencyPerVolume) {
+		conf.setThawConcurrencyPerVolume(thawConcurrencyPerVolume);
+	}
+
+	@Override
+	public Long getThawReservedSpace() {
+		return conf.getThawReservedSpace();
+	}
+
+	@Override
+	public void setThawReservedSpace(Long bytes) {
+		conf.setThawReservedSpace(bytes);
+	}
+
+	@Override
+	public Long getThawQuota() {
+		return conf.getThawQuota();
+	}
+
+	@Override
+	public void setThawQuota(Long bytes) {
+		conf.setThawQuota(bytes);
+	}
+
+	@Override
+	public Long getThawImportRatePrior() {
+		return conf.getThawImportRatePrior();
+	}
+
+	@Override
+	public void setThawImportRatePrior(Long bytesPerSecond) {
+		conf.setThawImportRatePrior(bytesPerSecond);
+	}
+
+	@Override
+	public Long getCatalogMaxAge() {
+		return conf.getCatalogMaxAge();
+	}
+
+	@Override
+	public void setCatalogMaxAge(Long seconds) {
+		conf.setCatalogMaxAge(seconds);
+	}
+
+	@Override
+	public Long getArchiveBandwidthLimit() {
+		return conf.getArchiveBandwidthLimit();
+	}
+
+	/**
+	 * Also changes the limit of the archiving transfers that are running.
+	 */
+	@Override
+	public void setArchiveBandwidthLimit(Long bytesPerSecond) {
+		conf.setArchiveBandwidthLimit(bytesPerSecond);
+		TransferBudgets.getSharedInstance().setBytesPerSecond(
+				TransferBudget.ARCHIVE, bytesPerSecond);
+	}
+
+	@Override
+	public Long getColdCopyBandwidthLimit() {
+		return conf.getColdCopyBandwidthLimit();
+	}
+
+	/**
+	 * Also changes the limit of the cold copy transfers that are running.
+	 */
+	@Override
+	public void setColdCopyBandwidthLimit(Long bytesPerSecond) {
+		conf.setColdCopyBandwidthLimit(bytesPerSecond);
+		TransferBudgets.getSharedInstance().setBytesPerSecond(
+				TransferBudget.COLD_COPY, bytesPerSecond);
+	}
+
+	@Override
+	public Long getThawBandwidthLimit() {
+		return conf.getThawBandwidthLimit();
+	}
+
+	/**
+	 * Also changes the limit of the thaw transfers that are running.
+	 */
+	@Override
+	public void setThawBandwidthLimit(Long bytesPerSecond) {
+		conf.setThawBandwidthLimit(bytesPerSecond);
+		TransferBudgets.getSharedInstance().setBytesPerSecond(TransferBudget.THAW,
+				bytesPerSecond);
+	}
+
+	@Override
+	public long getArchiveBytesPerSecond() {
+		return TransferBudgets.getSharedInstance().getObservedBytesPerSecond(
+				TransferBudget.ARCHIVE);
+	}
+
+	@Override
+	public long getColdCopyBytesPerSecond() {
+		return TransferBudgets.getSharedInstance().getObservedBytesPerSecond(
+				TransferBudget.COLD_COPY);
+	}
+
+	@Override
+	public long getThawBytesPerSecond() {
+		return TransferBudgets.getSharedInstance().getObservedBytesPerSecond(
+				TransferBudget.THAW);
+	}
+
 	@Override
 	protected ArchiverConf getConfObject() {
 		return this.conf;
@@ -52,4 +52,70 @@ public interface ShuttlArchiverMBean {
 
 	public void setArchivePath(String archivePath);
 
+	public Integer getArchivingThreads();
+
+	public void setArchivingThreads(Integer archivingThreads);
+
+	public Integer getArchivingQueueSize();
+
+	public void setArchivingQueueSize(Integer archivingQueueSize);
+
+	public Integer getFormatCopyConcurrency();
+
+	public void setFormatCopyConcurrency(Integer formatCopyConcurrency);
+
+	public Integer getFileTransferStreams();
+
+	public void setFileTransferStreams(Integer fileTransferStreams);
+
+	public Integer getListingConcurrency();
+
+	public void setListingConcurrency(Integer listingConcurrency);
+
+	public String getMetadataStorage();
+
+	public void setMetadataStorage(String metadataStorage);
+
+	public Integer getThawConcurrency();
+
+	public void setThawConcurrency(Integer thawConcurrency);
+
+	public Integer getThawConcurrencyPerVolume();
+
+	public void setThawConcurrencyPerVolume(Integer thawConcurrencyPerVolume);
+
+	public Long getThawReservedSpace();
+
+	public void setThawReservedSpace(Long bytes);
+
+	public Long getThawQuota();
+
+	public void setThawQuota(Long bytes);
+
+	public Long getThawImportRatePrior();
+
+	public void setThawImportRatePrior(Long bytesPerSecond);
+
+	public Long getCatalogMaxAge();
+
+	public void setCatalogMaxAge(Long seconds);
+
+	public Long getArchiveBandwidthLimit();
+
+	public void setArchiveBandwidthLimit(Long bytesPerSecond);
+
+	public Long getColdCopyBandwidthLimit();
+
+	public void setColdCopyBandwidthLimit(Long bytesPerSecond);
+
+	public Long getThawBandwidthLimit();
+
+	public void setThawBandwidthLimit(Long bytesPerSecond);
+
+	public long getArchiveBytesPerSecond();
+
+	public long getColdCopyBytesPerSecond();
+
+	public long getThawBytesPerSecond();
+
 }
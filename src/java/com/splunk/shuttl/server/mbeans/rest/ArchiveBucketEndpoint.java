@@ -27,6 +27,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
@@ -35,6 +36,7 @@ import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.archive.BucketShuttler;
 import com.splunk.shuttl.archiver.archive.BucketShuttlerFactory;
+import com.splunk.shuttl.archiver.archive.JobClass;
 import com.splunk.shuttl.archiver.archive.recovery.ArchiveBucketLocker;
 import com.splunk.shuttl.archiver.model.BucketFactory;
 import com.splunk.shuttl.archiver.model.FileNotDirectoryException;
@@ -49,7 +51,7 @@ public class ArchiveBucketEndpoint {
 
 	@POST
 	@Produces(MediaType.TEXT_PLAIN)
-	public void archiveBucket(@FormParam("path") String path,
+	public Response archiveBucket(@FormParam("path") String path,
 			@FormParam("index") String index) {
 		try {
 			ArchiveConfiguration config = ArchiveConfiguration.getSharedInstance();
@@ -60,12 +62,13 @@ public class ArchiveBucketEndpoint {
 				} catch (IOException e) {
 					logDeleteException(path, index, e);
 				}
+				return Response.noContent().build();
 			} else {
-				ShuttlBucketEndpointHelper.shuttlBucket(path, index,
+				return ShuttlBucketEndpointHelper.shuttlBucket(path, index,
 						new BucketArchiverProvider(),
 						ConfigProviderForBothNormalAndReplicatedBuckets.create(config),
 						new RenamesReplicatedBucketAsNormalBucket(),
-						new ArchiveBucketLocker());
+						new ArchiveBucketLocker(), JobClass.ARCHIVE);
 			}
 		} catch (Throwable t) {
 			logger.error(did("Tried archiving bucket", t, "to archive the bucket",
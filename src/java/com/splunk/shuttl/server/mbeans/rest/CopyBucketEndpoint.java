@@ -22,6 +22,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.log4j.Logger;
 
@@ -29,7 +30,9 @@ import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
 import com.splunk.shuttl.archiver.archive.BucketShuttler;
 import com.splunk.shuttl.archiver.archive.BucketShuttlerFactory;
+import com.splunk.shuttl.archiver.archive.JobClass;
 import com.splunk.shuttl.archiver.copy.CopyBucketLocker;
+import com.splunk.shuttl.archiver.copy.CopyBucketReceipts;
 import com.splunk.shuttl.archiver.model.LocalBucket;
 import com.splunk.shuttl.server.mbeans.rest.ShuttlBucketEndpoint.BucketModifier;
 import com.splunk.shuttl.server.mbeans.rest.ShuttlBucketEndpoint.ConfigProvider;
@@ -43,22 +46,47 @@ public class CopyBucketEndpoint {
 
 	@POST
 	@Produces(MediaType.TEXT_PLAIN)
-	public void copyBucket(@FormParam("path") String path,
+	public Response copyBucket(@FormParam("path") String path,
 			@FormParam("index") String index) {
 		logger.info(did("Call copyBucket endpoint", "nothing yet", "", "path",
 				path, "index", index));
 
-		ShuttlBucketEndpointHelper.shuttlBucket(path, index,
+		return ShuttlBucketEndpointHelper.shuttlBucket(path, index,
 				new BucketCopierProvider(), new NormalSharedConfigProvider(),
 				new NoOpBucketModifier(),
-				new CopyBucketLocker(LocalFileSystemPaths.create()));
+				new CopyBucketLocker(LocalFileSystemPaths.create()),
+				JobClass.COLD_COPY);
 	}
 
 	private static class BucketCopierProvider implements ShuttlProvider {
 
 		@Override
 		public BucketShuttler createWithConfig(ArchiveConfiguration config) {
-			return BucketShuttlerFactory.createCopierWithConfig(config);
+			return new CreatesReceiptAfterCopy(
+					BucketShuttlerFactory.createCopierWithConfig(config),
+					new CopyBucketReceipts(LocalFileSystemPaths.create()));
+		}
+	}
+
+	/**
+	 * The copy is done asynchronously, so the receipt is created when the copy
+	 * has actually finished, rather than when the endpoint responds.
+	 */
+	private static class CreatesReceiptAfterCopy implements BucketShuttler {
+
+		private final BucketShuttler copier;
+		private final CopyBucketReceipts receipts;
+
+		public CreatesReceiptAfterCopy(BucketShuttler copier,
+				CopyBucketReceipts receipts) {
+			this.copier = copier;
+			this.receipts = receipts;
+		}
+
+		@Override
+		public void shuttlBucket(LocalBucket bucket) {
+			copier.shuttlBucket(bucket);
+			receipts.createReceipt(bucket);
 		}
 	}
 
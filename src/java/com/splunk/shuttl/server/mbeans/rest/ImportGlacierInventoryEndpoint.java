@@ -0,0 +1,71 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static com.splunk.shuttl.ShuttlConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.util.ajax.JSON;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.filesystem.glacier.AWSCredentialsImpl;
+import com.splunk.shuttl.archiver.filesystem.glacier.GlacierArchiveIdIndex;
+import com.splunk.shuttl.archiver.filesystem.glacier.GlacierInventoryImporter;
+
+/**
+ * Endpoint for importing the archive ids of a glacier vault inventory, which is
+ * posted as the request body.
+ */
+@Path(ENDPOINT_ARCHIVER + ENDPOINT_GLACIER_INVENTORY_IMPORT)
+public class ImportGlacierInventoryEndpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(ImportGlacierInventoryEndpoint.class);
+
+	/**
+	 * @return number of imported archive ids.
+	 */
+	@POST
+	@Produces(MediaType.APPLICATION_JSON)
+	public String importInventory(InputStream inventory) {
+		logger.info(happened("Received REST request to import glacier inventory",
+				"endpoint", ENDPOINT_GLACIER_INVENTORY_IMPORT));
+
+		String vault = AWSCredentialsImpl.create().getGlacierVault();
+		GlacierArchiveIdIndex archiveIdIndex = GlacierArchiveIdIndex
+				.getSharedInstance(LocalFileSystemPaths.create(), vault);
+		try {
+			long imported = new GlacierInventoryImporter(archiveIdIndex)
+					.importInventory(inventory);
+			return JSON.getDefault().toJSON(
+					Collections.singletonMap("imported_archive_ids", imported));
+		} catch (IOException e) {
+			logger.error(did("Imported glacier inventory", e,
+					"To import the inventory", "vault", vault));
+			throw new ShuttlRestException("Could not import glacier inventory: "
+					+ e.getMessage());
+		}
+	}
+}
@@ -19,23 +19,28 @@ import static com.splunk.shuttl.ShuttlConstants.*;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.util.Date;
-import java.util.List;
+import java.util.Iterator;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.log4j.Logger;
 import org.eclipse.jetty.util.ajax.JSON;
 
 import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
 import com.splunk.shuttl.archiver.listers.ArchivedIndexesLister;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFilteredFactory;
 import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
@@ -69,46 +74,48 @@ public class ListBucketsEndpoint {
 		return JSON.getDefault().toJSON(indexesLister.listIndexes());
 	}
 
+	/**
+	 * Lists buckets ordered by index and bucket name. The buckets are written
+	 * to the response while they are listed.
+	 * 
+	 * @param limit
+	 *          of buckets in the response. All buckets if not set. When the
+	 *          limit is reached, the response has a "next_cursor".
+	 * @param cursor
+	 *          the "next_cursor" of the previous page, to list the next page.
+	 * @param acceptEncoding
+	 *          gzips the response if it accepts gzip.
+	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	@Path(ENDPOINT_LIST_BUCKETS)
-	public String listBucketsForIndex(@QueryParam("index") String index,
-			@QueryParam("from") String from, @QueryParam("to") String to) {
+	public Response listBucketsForIndex(@QueryParam("index") String index,
+			@QueryParam("from") String from, @QueryParam("to") String to,
+			@QueryParam("limit") Integer limit,
+			@QueryParam("cursor") String cursor,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
 		logger.info(happened("Received REST request to list buckets", "endpoint",
-				ENDPOINT_LIST_BUCKETS, "index", index, "from", from, "to", to));
+				ENDPOINT_LIST_BUCKETS, "index", index, "from", from, "to", to,
+				"limit", limit, "cursor", cursor));
 
 		Date fromDate = RestUtil.getValidFromDate(from);
 		Date toDate = RestUtil.getValidToDate(to);
+		Integer validLimit = RestUtil.getValidLimit(limit);
+		BucketCursor bucketCursor = RestUtil.getValidCursor(cursor);
 
-		List<Bucket> filteredBucketsAtIndex = getFilteredBucketsAtIndex(index,
-				fromDate, toDate);
+		Iterator<Bucket> filteredBucketsAtIndex = getListsBucketsFiltered()
+				.iterateFilteredBucketsAfter(index, fromDate, toDate, bucketCursor);
+		Iterator<Bucket> bucketsWithSize = getBucketSizeResolver()
+				.resolveBucketsSizes(filteredBucketsAtIndex);
 
-		List<Bucket> buckets = filteredBucketsAtIndex;
-		List<Bucket> bucketsWithSize = new java.util.ArrayList<Bucket>();
-		for (Bucket b : buckets)
-			bucketsWithSize.add(getBucketWithSize(b));
-
-		return RestUtil.respondWithBuckets(bucketsWithSize);
-	}
-
-	private List<Bucket> getFilteredBucketsAtIndex(String index, Date fromDate,
-			Date toDate) {
-		ListsBucketsFiltered listsBucketsFiltered = getListsBucketsFiltered();
-		if (index == null)
-			return listsBucketsFiltered.listFilteredBuckets(fromDate, toDate);
-		else
-			return listsBucketsFiltered.listFilteredBucketsAtIndex(index, fromDate,
-					toDate);
+		return RestUtil.streamBuckets(acceptEncoding, bucketsWithSize,
+				validLimit);
 	}
 
 	private ListsBucketsFiltered getListsBucketsFiltered() {
-		return ListsBucketsFilteredFactory.create(ArchiveConfiguration
-				.getSharedInstance());
-	}
-
-	private static Bucket getBucketWithSize(Bucket bucket) {
-		BucketSizeResolver bucketSizeResolver = getBucketSizeResolver();
-		return bucketSizeResolver.resolveBucketSize(bucket);
+		return ListsBucketsFilteredFactory.create(
+				ArchiveConfiguration.getSharedInstance(),
+				ArchiveCatalog.create(LocalFileSystemPaths.create()));
 	}
 
 	private static BucketSizeResolver getBucketSizeResolver() {
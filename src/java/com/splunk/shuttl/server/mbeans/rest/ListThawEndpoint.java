@@ -17,59 +17,115 @@ package com.splunk.shuttl.server.mbeans.rest;
 import static com.splunk.shuttl.ShuttlConstants.*;
 import static java.util.Arrays.*;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import com.splunk.shuttl.archiver.flush.ThawedBuckets;
 import com.splunk.shuttl.archiver.listers.ArchivedIndexesListerFactory;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.IllegalIndexException;
 import com.splunk.shuttl.archiver.model.LocalBucket;
-import com.splunk.shuttl.archiver.thaw.BucketFilter;
-import com.splunk.shuttl.archiver.thaw.SplunkIndexesLayer;
 import com.splunk.shuttl.archiver.thaw.SplunkIndexedLayerFactory;
+import com.splunk.shuttl.archiver.thaw.SplunkIndexesLayer;
+import com.splunk.shuttl.archiver.util.UtilsIterator.LazyIterator;
 
 @Path(ENDPOINT_ARCHIVER + ENDPOINT_THAW_LIST)
 public class ListThawEndpoint {
 
+	/**
+	 * Lists thawed buckets ordered by index and bucket name.
+	 * 
+	 * @param limit
+	 *          of buckets in the response. All buckets if not set. When the
+	 *          limit is reached, the response has a "next_cursor".
+	 * @param cursor
+	 *          the "next_cursor" of the previous page, to list the next page.
+	 * @param acceptEncoding
+	 *          gzips the response if it accepts gzip.
+	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String listThawedBuckets(@QueryParam("index") String index,
-			@QueryParam("from") String from, @QueryParam("to") String to) {
+	public Response listThawedBuckets(@QueryParam("index") String index,
+			@QueryParam("from") String from, @QueryParam("to") String to,
+			@QueryParam("limit") Integer limit,
+			@QueryParam("cursor") String cursor,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
 
 		Date earliest = RestUtil.getValidFromDate(from);
 		Date latest = RestUtil.getValidToDate(to);
+		Integer validLimit = RestUtil.getValidLimit(limit);
+		BucketCursor bucketCursor = RestUtil.getValidCursor(cursor);
 		List<String> indexes;
 		if (index == null)
-			indexes = ArchivedIndexesListerFactory.create().listIndexes();
+			indexes = new ArrayList<String>(ArchivedIndexesListerFactory.create()
+					.listIndexes());
 		else
 			indexes = asList(index);
+		Collections.sort(indexes);
 
 		try {
-			List<Bucket> filteredBuckets = filteredBucketsInThaw(indexes, earliest,
-					latest);
-			return RestUtil.respondWithBuckets(filteredBuckets);
+			Map<String, File> thawLocations = getThawLocations(indexes);
+			return RestUtil.streamBuckets(acceptEncoding,
+					filteredBucketsInThaw(thawLocations, earliest, latest, bucketCursor),
+					validLimit);
 		} catch (IllegalIndexException e) {
-			return RestUtil.respondWithIndexError(index);
+			return Response.ok(RestUtil.respondWithIndexError(index),
+					MediaType.APPLICATION_JSON_TYPE).build();
 		}
 	}
 
-	private List<Bucket> filteredBucketsInThaw(List<String> indexes,
-			Date earliest, Date latest) throws IllegalIndexException {
+	/**
+	 * Gets the thaw locations before the response is written, so that an
+	 * illegal index can be responded with an error.
+	 */
+	private Map<String, File> getThawLocations(List<String> indexes)
+			throws IllegalIndexException {
 		SplunkIndexesLayer splunkIndexesLayer = SplunkIndexedLayerFactory.create();
-		List<Bucket> filteredBuckets = new java.util.ArrayList<Bucket>();
-		for (String index : indexes) {
-			List<LocalBucket> buckets = ThawedBuckets.getBucketsFromThawLocation(
-					index, splunkIndexesLayer.getThawLocation(index));
-			filteredBuckets.addAll(BucketFilter.filterBuckets(buckets, earliest,
-					latest));
-		}
-		return filteredBuckets;
+		Map<String, File> thawLocations = new LinkedHashMap<String, File>();
+		for (String index : indexes)
+			thawLocations.put(index, splunkIndexesLayer.getThawLocation(index));
+		return thawLocations;
+	}
+
+	private Iterator<Bucket> filteredBucketsInThaw(
+			Map<String, File> thawLocations, final Date earliest,
+			final Date latest, final BucketCursor cursor) {
+		final Iterator<Entry<String, File>> thawLocationsOfIndexes = thawLocations
+				.entrySet().iterator();
+		return new LazyIterator<Bucket>() {
+
+			private Iterator<LocalBucket> bucketsInIndex = Collections
+					.<LocalBucket> emptyList().iterator();
+
+			@Override
+			protected Bucket computeNext() {
+				while (!bucketsInIndex.hasNext() && thawLocationsOfIndexes.hasNext()) {
+					Entry<String, File> thawLocation = thawLocationsOfIndexes.next();
+					if (cursor == null || cursor.isBeforeOrInIndex(thawLocation.getKey()))
+						bucketsInIndex = BucketCursor.sortedAfter(
+								ThawedBuckets.filterBucketsInThawLocation(
+										thawLocation.getKey(), thawLocation.getValue(), earliest,
+										latest), cursor).iterator();
+				}
+				return bucketsInIndex.hasNext() ? bucketsInIndex.next() : null;
+			}
+		};
 	}
 }
@@ -0,0 +1,57 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static com.splunk.shuttl.ShuttlConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.util.Map;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.util.ajax.JSON;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalogRebuilder;
+
+/**
+ * Endpoint for rebuilding the local archive catalog from the archive.
+ */
+@Path(ENDPOINT_ARCHIVER + ENDPOINT_CATALOG_REBUILD)
+public class RebuildCatalogEndpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(RebuildCatalogEndpoint.class);
+
+	/**
+	 * @return number of cataloged buckets for each index.
+	 */
+	@POST
+	@Produces(MediaType.APPLICATION_JSON)
+	public String rebuildCatalog() {
+		logger.info(happened("Received REST request to rebuild archive catalog",
+				"endpoint", ENDPOINT_CATALOG_REBUILD));
+
+		Map<String, Integer> bucketsPerIndex = ArchiveCatalogRebuilder.create(
+				ArchiveConfiguration.getSharedInstance(),
+				LocalFileSystemPaths.create()).rebuild();
+		return JSON.getDefault().toJSON(bucketsPerIndex);
+	}
+}
@@ -16,18 +16,33 @@ package com.splunk.shuttl.server.mbeans.rest;
 
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
 import com.splunk.shuttl.archiver.thaw.StringDateConverter;
+import com.splunk.shuttl.archiver.thaw.ThawPlan;
+import com.splunk.shuttl.archiver.thaw.ThawPlan.Volume;
+import com.splunk.shuttl.server.mbeans.rest.StreamedJsonResponse.WritesJson;
 import com.splunk.shuttl.server.model.BucketBean;
 
 public class RestUtil {
@@ -54,20 +69,212 @@ public class RestUtil {
 	 * @return JSON response with buckets and their total size.
 	 */
 	public static String respondWithBuckets(List<Bucket> buckets) {
-		List<BucketBean> beans = new ArrayList<BucketBean>();
-		long totalBucketsSize = 0;
+		return respondWithBuckets(buckets.iterator());
+	}
 
-		for (Bucket bucket : buckets) {
-			beans.add(getBucketBean(bucket));
-			totalBucketsSize += bucket.getSize() == null ? 0 : bucket.getSize();
+	/**
+	 * Writes each bucket to the response while iterating, without keeping the
+	 * buckets in memory.
+	 * 
+	 * @return JSON response with buckets and their total size.
+	 */
+	public static String respondWithBuckets(Iterator<Bucket> buckets) {
+		try {
+			StringWriter writer = new StringWriter();
+			JsonGenerator json = new ObjectMapper().getJsonFactory()
+					.createJsonGenerator(writer);
+			json.writeStartObject();
+			writeBuckets(json, buckets, null);
+			json.writeEndObject();
+			json.close();
+			return writer.toString();
+		} catch (IOException e) {
+			logger.error(did("attempted to write buckets as JSON", e, null));
+			throw new RuntimeException(e);
 		}
+	}
+
+	/**
+	 * @return streamed JSON response with a page of buckets, their total size
+	 *         and the cursor of the next page.
+	 * @see RestUtil#writeBuckets(JsonGenerator, Iterator, Integer)
+	 */
+	public static Response streamBuckets(String acceptEncoding,
+			final Iterator<Bucket> buckets, final Integer limit) {
+		return StreamedJsonResponse.create(acceptEncoding, new WritesJson() {
 
-		Map<String, Object> response = new HashMap<String, Object>();
-		response.put("buckets_TOTAL_SIZE",
+			@Override
+			public void writeJson(JsonGenerator json) throws IOException {
+				json.writeStartObject();
+				writeBuckets(json, buckets, limit);
+				json.writeEndObject();
+			}
+		});
+	}
+
+	/**
+	 * Writes the buckets as they are iterated, with the fields "buckets" and
+	 * "buckets_TOTAL_SIZE". When the limit is reached and there are more
+	 * buckets, the cursor to list the next page from is written as
+	 * "next_cursor". If listing the buckets fails after the response has been
+	 * started, the failure is written as "error", with the cursor after the
+	 * last written bucket as "next_cursor", so that the page isn't mistaken for
+	 * a complete one.
+	 * 
+	 * @param limit
+	 *          of buckets to write. No limit if null.
+	 */
+	public static void writeBuckets(JsonGenerator json, Iterator<Bucket> buckets,
+			Integer limit) throws IOException {
+		json.writeArrayFieldStart("buckets");
+		long totalBucketsSize = 0;
+		int writtenBuckets = 0;
+		Bucket lastBucket = null;
+		boolean hasMoreBuckets = false;
+		RuntimeException failure = null;
+		try {
+			while ((limit == null || writtenBuckets < limit) && buckets.hasNext()) {
+				lastBucket = buckets.next();
+				json.writeObject(getBucketBean(lastBucket));
+				totalBucketsSize += lastBucket.getSize() == null ? 0 : lastBucket
+						.getSize();
+				writtenBuckets++;
+			}
+			hasMoreBuckets = limit != null && buckets.hasNext();
+		} catch (RuntimeException e) {
+			logger.error(did("Listed buckets while writing them", e,
+					"all buckets to be listed", "written_buckets", writtenBuckets,
+					"last_bucket", lastBucket));
+			failure = e;
+		}
+		json.writeEndArray();
+		json.writeStringField("buckets_TOTAL_SIZE",
 				FileUtils.byteCountToDisplaySize(totalBucketsSize));
-		response.put("buckets", beans);
+		if (failure != null)
+			json.writeStringField("error", String.valueOf(failure.getMessage()));
+		if ((hasMoreBuckets || failure != null) && lastBucket != null)
+			writeNextCursor(json, BucketCursor.after(lastBucket));
+	}
 
-		return RestUtil.writeMapAsJson(response);
+	/**
+	 * Writes the cursor as "next_cursor", unless it's null.
+	 */
+	public static void writeNextCursor(JsonGenerator json, BucketCursor cursor)
+			throws IOException {
+		if (cursor != null)
+			json.writeStringField("next_cursor", cursor.toString());
+	}
+
+	/**
+	 * Writes a summary of the plan as the field "plan", obeying the following
+	 * schema: { "bytes": { "type":"integer" }, "evicted_bytes": {
+	 * "type":"integer" }, "bytes_per_format": { "type":"object" },
+	 * "buckets_with_unknown_size": { "type":"integer" }, "bytes_per_second": {
+	 * "type":"integer", "optional":true }, "estimated_seconds": {
+	 * "type":"integer", "optional":true }, "refused": { "type":"boolean" },
+	 * "volumes": { "type":"array", "items": { "type":"object", "properties": {
+	 * "directory": { "type":"string" }, "mount_point": { "type":"string" },
+	 * "usable_space": { "type":"integer" }, "reserved_space": {
+	 * "type":"integer" }, "planned_bytes": { "type":"integer" }, "quota": {
+	 * "type":"integer", "optional":true }, "used_bytes": { "type":"integer",
+	 * "optional":true }, "evicted_bytes": { "type":"integer", "optional":true }
+	 * } } } }. The usable and reserved space are of the directory's file
+	 * system, which it shares with the other directories on the same mount
+	 * point. The quota, the bytes used of it and the bytes evicted to fit in it
+	 * are only there when there is a thaw quota.
+	 */
+	public static void writeThawPlanSummary(JsonGenerator json, ThawPlan plan)
+			throws IOException {
+		json.writeObjectFieldStart("plan");
+		json.writeNumberField("bytes", plan.getBytes());
+		json.writeNumberField("evicted_bytes", plan.getEvictedBytes());
+		json.writeObjectFieldStart("bytes_per_format");
+		for (Entry<BucketFormat, Long> formatBytes : plan.getBytesPerFormat()
+				.entrySet())
+			json.writeNumberField(String.valueOf(formatBytes.getKey()),
+					formatBytes.getValue());
+		json.writeEndObject();
+		json.writeNumberField("buckets_with_unknown_size",
+				plan.getBucketsWithUnknownSize());
+		if (plan.getBytesPerSecond() != null)
+			json.writeNumberField("bytes_per_second", plan.getBytesPerSecond());
+		if (plan.getEstimatedSeconds() != null)
+			json.writeNumberField("estimated_seconds", plan.getEstimatedSeconds());
+		json.writeBooleanField("refused", plan.isRefused());
+		json.writeArrayFieldStart("volumes");
+		for (Volume volume : plan.getVolumes()) {
+			json.writeStartObject();
+			json.writeStringField("directory", volume.directory.getAbsolutePath());
+			json.writeStringField("mount_point", volume.space.mountPoint);
+			json.writeNumberField("usable_space", volume.space.usableSpace);
+			json.writeNumberField("reserved_space", volume.space.reservedSpace);
+			json.writeNumberField("planned_bytes", volume.getPlannedBytes());
+			if (volume.quota != null) {
+				json.writeNumberField("quota", volume.quota);
+				json.writeNumberField("used_bytes", volume.usedBytes);
+				json.writeNumberField("evicted_bytes", volume.getEvictedBytes());
+			}
+			json.writeEndObject();
+		}
+		json.writeEndArray();
+		json.writeEndObject();
+	}
+
+	/**
+	 * Writes the buckets as an array field of bucket beans.
+	 */
+	public static void writeBucketArray(JsonGenerator json, String field,
+			List<Bucket> buckets) throws IOException {
+		json.writeArrayFieldStart(field);
+		for (Bucket bucket : buckets)
+			json.writeObject(getBucketBean(bucket));
+		json.writeEndArray();
+	}
+
+	/**
+	 * Writes the failed buckets as an array field of objects with the
+	 * "bucket" and the "reason" it failed.
+	 */
+	public static void writeFailedBuckets(JsonGenerator json, String field,
+			List<FailedBucket> failedBuckets) throws IOException {
+		json.writeArrayFieldStart(field);
+		for (FailedBucket failedBucket : failedBuckets) {
+			json.writeStartObject();
+			json.writeObjectField("bucket", getBucketBean(failedBucket.bucket));
+			json.writeStringField("reason", failedBucket.exception.getClass()
+					.getSimpleName());
+			json.writeEndObject();
+		}
+		json.writeEndArray();
+	}
+
+	/**
+	 * @return the limit of a paged request, or null if there's no limit.
+	 * @throws WebApplicationException
+	 *           with status 400 if the limit is less than 1.
+	 */
+	public static Integer getValidLimit(Integer limit) {
+		if (limit != null && limit < 1)
+			throw badRequest("limit must be at least 1, was: " + limit);
+		return limit;
+	}
+
+	/**
+	 * @return the cursor of a paged request, or null if it's the first page.
+	 * @throws WebApplicationException
+	 *           with status 400 if the cursor is not a cursor.
+	 */
+	public static BucketCursor getValidCursor(String cursor) {
+		try {
+			return BucketCursor.parse(cursor);
+		} catch (IllegalArgumentException e) {
+			throw badRequest(e.getMessage());
+		}
+	}
+
+	private static WebApplicationException badRequest(String message) {
+		return new WebApplicationException(Response.status(Status.BAD_REQUEST)
+				.entity(message).type(MediaType.TEXT_PLAIN).build());
 	}
 
 	private static BucketBean getBucketBean(Bucket bucket) {
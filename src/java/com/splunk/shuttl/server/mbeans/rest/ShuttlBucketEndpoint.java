@@ -17,13 +17,16 @@ package com.splunk.shuttl.server.mbeans.rest;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
 import java.io.File;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.log4j.Logger;
 
 import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
 import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.archive.BucketShuttler;
+import com.splunk.shuttl.archiver.archive.BucketShuttlerExecutor;
 import com.splunk.shuttl.archiver.archive.BucketShuttlerRunner;
+import com.splunk.shuttl.archiver.archive.JobClass;
 import com.splunk.shuttl.archiver.bucketlock.BucketLock;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
 import com.splunk.shuttl.archiver.model.BucketFactory;
@@ -51,21 +54,35 @@ public class ShuttlBucketEndpoint {
 	private BucketModifier bucketModifier;
 	private BucketFactory bucketFactory;
 	private BucketLocker bucketLocker;
+	private BucketShuttlerExecutor shuttlerExecutor;
+	private JobClass jobClass;
 
 	public ShuttlBucketEndpoint(ShuttlProvider shuttlProvider,
 			ConfigProvider configProvider, BucketModifier bucketModifier,
-			BucketFactory bucketFactory, BucketLocker bucketLocker) {
+			BucketFactory bucketFactory, BucketLocker bucketLocker,
+			BucketShuttlerExecutor shuttlerExecutor, JobClass jobClass) {
 		this.shuttlProvider = shuttlProvider;
 		this.configProvider = configProvider;
 		this.bucketModifier = bucketModifier;
 		this.bucketFactory = bucketFactory;
 		this.bucketLocker = bucketLocker;
+		this.shuttlerExecutor = shuttlerExecutor;
+		this.jobClass = jobClass;
 	}
 
-	public void shuttlBucket(String path, String index) {
+	/**
+	 * Locks the bucket and queues it for shuttling.
+	 * 
+	 * @return job id of the queued shuttling.
+	 * @throws RejectedExecutionException
+	 *           if the shuttling queue is full.
+	 */
+	public String shuttlBucket(String path, String index) {
 		verifyPathAndIndex(path, index);
 		try {
-			createAndRunBucketShuttling(path, index);
+			return createAndQueueBucketShuttling(path, index);
+		} catch (RejectedExecutionException e) {
+			throw e;
 		} catch (Throwable e) {
 			logger.error(did("Tried archiving a bucket", e, "To archive the bucket",
 					"index", index, "bucket_path", path));
@@ -84,19 +101,28 @@ public class ShuttlBucketEndpoint {
 		}
 	}
 
-	private void createAndRunBucketShuttling(String path, String index) {
+	private String createAndQueueBucketShuttling(String path, String index) {
 		LocalBucket bucket = createBucket(path, index);
 		BucketLock bucketLock = createBucketLock(bucket);
 		BucketShuttler bucketShuttler = createShuttler(bucket);
 		bucket = bucketModifier.modifyLocalBucket(bucket);
 
-		runShuttlerOnASeparateThread(bucket, bucketLock, bucketShuttler);
+		return queueShuttler(bucket, bucketLock, bucketShuttler);
 	}
 
-	private void runShuttlerOnASeparateThread(LocalBucket bucket,
-			BucketLock bucketLock, BucketShuttler bucketShuttler) {
-		Runnable r = new BucketShuttlerRunner(bucketShuttler, bucket, bucketLock);
-		new Thread(r).run();
+	private String queueShuttler(LocalBucket bucket, BucketLock bucketLock,
+			BucketShuttler bucketShuttler) {
+		BucketShuttlerRunner runner = new BucketShuttlerRunner(bucketShuttler,
+				bucket, bucketLock);
+		try {
+			String jobId = shuttlerExecutor.submit(jobClass, runner);
+			logger.info(done("Queued bucket for shuttling", "job_id", jobId,
+					"job_class", jobClass, "bucket", bucket));
+			return jobId;
+		} catch (RejectedExecutionException e) {
+			bucketLock.closeLock();
+			throw e;
+		}
 	}
 
 	private BucketShuttler createShuttler(LocalBucket bucket) {
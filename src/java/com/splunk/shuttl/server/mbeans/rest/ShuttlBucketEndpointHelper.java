@@ -14,6 +14,14 @@
 // limitations under the License.
 package com.splunk.shuttl.server.mbeans.rest;
 
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import com.splunk.shuttl.archiver.archive.BucketShuttlerExecutor;
+import com.splunk.shuttl.archiver.archive.JobClass;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
 import com.splunk.shuttl.archiver.model.BucketFactory;
 import com.splunk.shuttl.server.mbeans.rest.ShuttlBucketEndpoint.BucketModifier;
@@ -22,14 +30,28 @@ import com.splunk.shuttl.server.mbeans.rest.ShuttlBucketEndpoint.ShuttlProvider;
 
 public class ShuttlBucketEndpointHelper {
 
-	public static void shuttlBucket(String path, String index,
+	/**
+	 * @return 202 Accepted response with the job id as entity when the bucket
+	 *         was queued, or 503 Service Unavailable when the shuttling queue is
+	 *         full.
+	 */
+	public static Response shuttlBucket(String path, String index,
 			ShuttlProvider shuttlProvider, ConfigProvider configProvider,
-			BucketModifier bucketModifier, BucketLocker bucketLocker) {
+			BucketModifier bucketModifier, BucketLocker bucketLocker,
+			JobClass jobClass) {
 		BucketFactory bucketFactory = new BucketFactory();
 		ShuttlBucketEndpoint shuttlBucketEndpoint = new ShuttlBucketEndpoint(
 				shuttlProvider, configProvider, bucketModifier, bucketFactory,
-				bucketLocker);
+				bucketLocker, BucketShuttlerExecutor.getSharedInstance(), jobClass);
 
-		shuttlBucketEndpoint.shuttlBucket(path, index);
+		try {
+			String jobId = shuttlBucketEndpoint.shuttlBucket(path, index);
+			return Response.status(Status.ACCEPTED).entity(jobId)
+					.type(MediaType.TEXT_PLAIN).build();
+		} catch (RejectedExecutionException e) {
+			return Response.status(Status.SERVICE_UNAVAILABLE)
+					.entity("Shuttling queue is full").type(MediaType.TEXT_PLAIN)
+					.build();
+		}
 	}
 }
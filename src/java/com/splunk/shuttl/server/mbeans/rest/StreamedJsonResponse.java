@@ -0,0 +1,113 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * JSON response that is written to the client while it is generated, instead
+ * of being built as a string before anything is sent. The response is gzipped
+ * when the client accepts gzip encoding, and varies on Accept-Encoding so that
+ * caches don't serve a gzipped response to a client that doesn't accept it.
+ */
+public class StreamedJsonResponse {
+
+	private static final String GZIP = "gzip";
+
+	/**
+	 * Writes the JSON of a response.
+	 */
+	public interface WritesJson {
+
+		void writeJson(JsonGenerator json) throws IOException;
+	}
+
+	/**
+	 * @param acceptEncoding
+	 *          header of the request. May be null.
+	 * @param writesJson
+	 *          called when the response is written.
+	 * @return response that writes the JSON to the client.
+	 */
+	public static Response create(String acceptEncoding,
+			final WritesJson writesJson) {
+		final boolean gzip = acceptsGzip(acceptEncoding);
+		StreamingOutput output = new StreamingOutput() {
+
+			@Override
+			public void write(OutputStream out) throws IOException {
+				writeJson(gzip ? new GZIPOutputStream(out) : out, writesJson);
+			}
+		};
+		ResponseBuilder response = Response.ok(output,
+				MediaType.APPLICATION_JSON_TYPE);
+		response.header("Vary", "Accept-Encoding");
+		if (gzip)
+			response.header("Content-Encoding", GZIP);
+		return response.build();
+	}
+
+	/**
+	 * Closing the generator closes the stream, which finishes a gzip stream.
+	 */
+	static void writeJson(OutputStream out, WritesJson writesJson)
+			throws IOException {
+		JsonGenerator json = new ObjectMapper().getJsonFactory()
+				.createJsonGenerator(out, JsonEncoding.UTF8);
+		try {
+			writesJson.writeJson(json);
+		} finally {
+			json.close();
+		}
+	}
+
+	/**
+	 * @return true if the Accept-Encoding header accepts gzip.
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null)
+			return false;
+		for (String encoding : acceptEncoding.split(",")) {
+			String[] parameters = encoding.trim().split(";");
+			if (parameters[0].trim().equalsIgnoreCase(GZIP))
+				return !isQualityZero(parameters);
+		}
+		return false;
+	}
+
+	private static boolean isQualityZero(String[] parameters) {
+		for (int i = 1; i < parameters.length; i++) {
+			String parameter = parameters[i].trim().replace(" ", "");
+			if (parameter.startsWith("q="))
+				try {
+					return Double.parseDouble(parameter.substring(2)) == 0;
+				} catch (NumberFormatException e) {
+					return false;
+				}
+		}
+		return false;
+	}
+}
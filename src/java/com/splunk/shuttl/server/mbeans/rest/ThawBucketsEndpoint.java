@@ -17,25 +17,42 @@ package com.splunk.shuttl.server.mbeans.rest;
 import static com.splunk.shuttl.ShuttlConstants.*;
 import static com.splunk.shuttl.archiver.LogFormatter.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonGenerator;
 
+import com.splunk.shuttl.archiver.archive.BucketShuttlerExecutor;
+import com.splunk.shuttl.archiver.archive.JobClass;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.thaw.BucketThawer;
 import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
 import com.splunk.shuttl.archiver.thaw.BucketThawerFactory;
 import com.splunk.shuttl.archiver.thaw.StringDateConverter;
+import com.splunk.shuttl.archiver.thaw.ThawPlan;
+import com.splunk.shuttl.archiver.thaw.ThawPlanner;
+import com.splunk.shuttl.archiver.thaw.ThawPlannerFactory;
+import com.splunk.shuttl.server.mbeans.rest.StreamedJsonResponse.WritesJson;
 import com.splunk.shuttl.server.model.BucketBean;
 
 /**
@@ -47,6 +64,18 @@ public class ThawBucketsEndpoint {
 	private static final Logger logger = Logger
 			.getLogger(ThawBucketsEndpoint.class);
 
+	/**
+	 * Status of a thaw that's refused since its buckets don't fit in the free
+	 * space.
+	 */
+	private static final int INSUFFICIENT_STORAGE = 507;
+
+	/**
+	 * Seconds a thaw waits for a worker before the request is answered with
+	 * status 503, instead of holding the request while every worker is busy.
+	 */
+	private static final int THAW_START_TIMEOUT_SECONDS = 30;
+
 	/**
 	 * Thaws a range of buckets in either a specific index or all indexes on the
 	 * archiving fs.
@@ -60,15 +89,34 @@ public class ThawBucketsEndpoint {
 	 * @param to
 	 *          End date of thawing interval (on the form yyyy-MM-dd). Defaults to
 	 *          9999-12-31.
+	 * @param limit
+	 *          Number of buckets to thaw, ordered by index and bucket name.
+	 *          Thaws all buckets if not set. When the limit is reached, the
+	 *          response has a "next_cursor".
+	 * @param cursor
+	 *          The "next_cursor" of the previous response, to thaw the next page
+	 *          of buckets.
+	 * @param trim
+	 *          to thaw the buckets that fit in the free space of their thaw
+	 *          directories, instead of refusing the thaw with status 507 if some
+	 *          don't.
+	 * @param acceptEncoding
+	 *          gzips the response if it accepts gzip.
 	 * @return
 	 */
 	@POST
 	@Produces(MediaType.APPLICATION_JSON)
-	public String thawBuckets(@FormParam("index") String index,
-			@FormParam("from") String from, @FormParam("to") String to) {
+	public Response thawBuckets(@FormParam("index") String index,
+			@FormParam("from") String from, @FormParam("to") String to,
+			@FormParam("limit") Integer limit, @FormParam("cursor") String cursor,
+			@FormParam("trim") Boolean trim,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
 
 		logger.info(happened("Received REST request to thaw buckets", "endpoint",
-				ENDPOINT_BUCKET_THAW, "index", index, "from", from, "to", to));
+				ENDPOINT_BUCKET_THAW, "index", index, "from", from, "to", to,
+				"limit", limit, "cursor", cursor, "trim", trim));
+		Integer validLimit = RestUtil.getValidLimit(limit);
+		BucketCursor bucketCursor = RestUtil.getValidCursor(cursor);
 
 		if (from == null) {
 			logger.info("No from time provided - defaulting to 0001-01-01");
@@ -90,9 +138,73 @@ public class ThawBucketsEndpoint {
 		// thaw
 		logMetricsAtEndpoint(ENDPOINT_BUCKET_THAW);
 		BucketThawer bucketThawer = BucketThawerFactory.createDefaultThawer();
-		bucketThawer.thawBuckets(index, fromDate, toDate);
+		ThawPlanner thawPlanner = ThawPlannerFactory.createDefaultPlanner();
+		ThawPlan plan = thawAsPrioritizedJob(bucketThawer, thawPlanner, index,
+				fromDate, toDate, bucketCursor, validLimit, Boolean.TRUE.equals(trim));
 
-		return convertThawInfoToJSON(bucketThawer);
+		if (plan.isRefused())
+			return Response.fromResponse(streamRefusedPlan(acceptEncoding, plan))
+					.status(INSUFFICIENT_STORAGE).build();
+		return streamThawInfo(acceptEncoding, bucketThawer, plan);
+	}
+
+	/**
+	 * Plans and thaws on the shared executor, so that the thaw goes ahead of
+	 * queued archiving and cold copying, and waits for it to finish. Nothing is
+	 * thawed if the plan is refused, or if no worker starts the thaw within
+	 * {@link #THAW_START_TIMEOUT_SECONDS}, which is answered with status 503 and
+	 * a Retry-After header. The plan's reserved bytes are released when the thaw
+	 * has finished.
+	 */
+	private ThawPlan thawAsPrioritizedJob(final BucketThawer bucketThawer,
+			final ThawPlanner thawPlanner, final String index,
+			final Date fromDate, final Date toDate, final BucketCursor cursor,
+			final Integer limit, final boolean trim) {
+		try {
+			return BucketShuttlerExecutor.getSharedInstance().submitAndWait(
+					JobClass.THAW, new Callable<ThawPlan>() {
+
+						@Override
+						public ThawPlan call() {
+							ThawPlan plan = thawPlanner.planThaw(index, fromDate, toDate,
+									cursor, limit, trim);
+							try {
+								if (!plan.isRefused())
+									bucketThawer.accessedBuckets(plan.getThawedBuckets());
+								bucketThawer.thawBuckets(plan.getBucketsToThaw());
+								return plan;
+							} finally {
+								plan.release();
+							}
+						}
+					}, THAW_START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			throw new WebApplicationException(Response
+					.status(Status.SERVICE_UNAVAILABLE)
+					.header("Retry-After", THAW_START_TIMEOUT_SECONDS)
+					.entity("All workers are busy. Retry, or thaw with "
+							+ ENDPOINT_THAW_JOBS + " to queue the thaw")
+					.type(MediaType.TEXT_PLAIN).build());
+		} catch (RejectedExecutionException e) {
+			throw new WebApplicationException(Response
+					.status(Status.SERVICE_UNAVAILABLE).entity("Thawing queue is full")
+					.type(MediaType.TEXT_PLAIN).build());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ShuttlRestException("Interrupted while waiting for thaw");
+		} catch (ExecutionException e) {
+			throw rethrowCause(e);
+		}
+	}
+
+	private RuntimeException rethrowCause(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RuntimeException)
+			throw (RuntimeException) cause;
+		else if (cause instanceof Error)
+			throw (Error) cause;
+		else
+			throw new RuntimeException(cause);
 	}
 
 	private void logMetricsAtEndpoint(String endpoint) {
@@ -103,30 +215,59 @@ public class ThawBucketsEndpoint {
 	}
 
 	/**
-	 * Converts a list of ThawInfo objects into a JSON object obeying the
-	 * following schema: { "thawed": { "type":"array", "items": {
+	 * Writes the thawed and failed buckets as a JSON object obeying the
+	 * following schema: { "buckets": { "type":"array", "items": {
 	 * "type":"BucketBean" } } "failed": { "type":"array", "items": {
 	 * "type":"object", "properties": { "bucket": { "type":"BucketBean" }
-	 * "reason": { "type":"string" } } } }
+	 * "reason": { "type":"string" } } } } "excluded": { "type":"array",
+	 * "items": { "type":"BucketBean" } } "plan": { "type":"object" }
+	 * "next_cursor": { "type":"string", "optional":true } }. The excluded
+	 * buckets didn't fit in the free space of their thaw directories.
 	 * 
-	 * @param thawInfos
-	 * @return JSON object conforming to the above schema (as a string).
+	 * @return streamed response with JSON conforming to the above schema.
+	 * @see RestUtil#writeThawPlanSummary(JsonGenerator, ThawPlan)
 	 */
-	private String convertThawInfoToJSON(BucketThawer bucketThawer) {
-		List<BucketBean> thawedBucketBeans = new ArrayList<BucketBean>();
-		List<Map<String, Object>> failedBucketBeans = new ArrayList<Map<String, Object>>();
-
-		for (Bucket bucket : bucketThawer.getThawedBuckets())
-			thawedBucketBeans.add(BucketBean.createBeanFromBucket(bucket));
-
-		for (FailedBucket failedBucket : bucketThawer.getFailedBuckets()) {
-			Map<String, Object> temp = new HashMap<String, Object>();
-			temp.put("bucket", BucketBean.createBeanFromBucket(failedBucket.bucket));
-			temp.put("reason", failedBucket.exception.getClass().getSimpleName());
-			failedBucketBeans.add(temp);
-		}
+	private Response streamThawInfo(String acceptEncoding,
+			final BucketThawer bucketThawer, final ThawPlan plan) {
+		return StreamedJsonResponse.create(acceptEncoding, new WritesJson() {
+
+			@Override
+			public void writeJson(JsonGenerator json) throws IOException {
+				json.writeStartObject();
+				json.writeArrayFieldStart("buckets");
+				for (Bucket bucket : bucketThawer.getThawedBuckets())
+					json.writeObject(BucketBean.createBeanFromBucket(bucket));
+				json.writeEndArray();
+
+				List<FailedBucket> failedBuckets = new ArrayList<FailedBucket>(
+						plan.getFailedBuckets());
+				failedBuckets.addAll(bucketThawer.getFailedBuckets());
+				RestUtil.writeFailedBuckets(json, "failed", failedBuckets);
+				RestUtil.writeBucketArray(json, "excluded",
+						plan.getExcludedBuckets());
+				RestUtil.writeThawPlanSummary(json, plan);
+				RestUtil.writeNextCursor(json, plan.getNextCursor());
+				json.writeEndObject();
+			}
+		});
+	}
+
+	/**
+	 * Writes the plan summary and the buckets that didn't fit.
+	 */
+	private Response streamRefusedPlan(String acceptEncoding,
+			final ThawPlan plan) {
+		return StreamedJsonResponse.create(acceptEncoding, new WritesJson() {
 
-		return RestUtil.writeBucketAction(thawedBucketBeans, failedBucketBeans);
+			@Override
+			public void writeJson(JsonGenerator json) throws IOException {
+				json.writeStartObject();
+				RestUtil.writeBucketArray(json, "excluded",
+						plan.getExcludedBuckets());
+				RestUtil.writeThawPlanSummary(json, plan);
+				json.writeEndObject();
+			}
+		});
 	}
 
 }
@@ -0,0 +1,232 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static com.splunk.shuttl.ShuttlConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.ws.rs.FormParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonGenerator;
+
+import com.splunk.shuttl.archiver.archive.BucketShuttlerExecutor;
+import com.splunk.shuttl.archiver.archive.JobClass;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
+import com.splunk.shuttl.archiver.thaw.BucketThawerFactory;
+import com.splunk.shuttl.archiver.thaw.ThawJob;
+import com.splunk.shuttl.archiver.thaw.ThawJob.BucketProgress;
+import com.splunk.shuttl.archiver.thaw.ThawJobs;
+import com.splunk.shuttl.archiver.thaw.ThawPlan;
+import com.splunk.shuttl.archiver.thaw.ThawPlanner;
+import com.splunk.shuttl.archiver.thaw.ThawPlannerFactory;
+import com.splunk.shuttl.server.mbeans.rest.StreamedJsonResponse.WritesJson;
+import com.splunk.shuttl.server.model.BucketBean;
+
+/**
+ * Endpoint for thawing buckets in the background. A thaw is submitted as a
+ * job, whose progress is polled with its id, instead of holding the request
+ * open until every bucket is thawed.
+ */
+@Path(ENDPOINT_ARCHIVER + ENDPOINT_THAW_JOBS)
+public class ThawJobsEndpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawJobsEndpoint.class);
+
+	/**
+	 * Submits a thaw job. Takes the same parameters as the thaw endpoint. The
+	 * job is planned when it starts, and is refused if the plan is.
+	 * 
+	 * @return the status of the submitted job, with status 202.
+	 * @see ThawBucketsEndpoint#thawBuckets(String, String, String, Integer,
+	 *      String, Boolean, String)
+	 */
+	@POST
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response submitThawJob(@FormParam("index") final String index,
+			@FormParam("from") String from, @FormParam("to") String to,
+			@FormParam("limit") Integer limit, @FormParam("cursor") String cursor,
+			@FormParam("trim") final Boolean trim,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+		logger.info(happened("Received REST request to submit thaw job",
+				"endpoint", ENDPOINT_THAW_JOBS, "index", index, "from", from, "to",
+				to, "limit", limit, "cursor", cursor, "trim", trim));
+		final Integer validLimit = RestUtil.getValidLimit(limit);
+		final BucketCursor bucketCursor = RestUtil.getValidCursor(cursor);
+		final Date fromDate = RestUtil.getValidFromDate(from);
+		final Date toDate = RestUtil.getValidToDate(to);
+		if (fromDate == null || toDate == null) {
+			logger.error(happened("Invalid time interval provided."));
+			throw new IllegalArgumentException(
+					"From and to date must be provided on the form yyyy-DD-mm");
+		}
+
+		final ThawJob job = ThawJob.create(BucketThawerFactory
+				.createDefaultThawer());
+		final ThawPlanner thawPlanner = ThawPlannerFactory.createDefaultPlanner();
+		ThawJobs.getSharedInstance().add(job);
+		try {
+			BucketShuttlerExecutor.getSharedInstance().submit(
+					JobClass.THAW,
+					planAndThaw(job, thawPlanner, index, fromDate, toDate, bucketCursor,
+							validLimit, Boolean.TRUE.equals(trim)));
+		} catch (RejectedExecutionException e) {
+			ThawJobs.getSharedInstance().remove(job);
+			throw new WebApplicationException(Response
+					.status(Status.SERVICE_UNAVAILABLE).entity("Thawing queue is full")
+					.type(MediaType.TEXT_PLAIN).build());
+		}
+		return Response.fromResponse(streamJobStatus(acceptEncoding, job))
+				.status(Status.ACCEPTED).build();
+	}
+
+	/**
+	 * @return runnable that plans the thaw and thaws it with the job. The job
+	 *         fails if the thaw can't be planned, so that it doesn't stay
+	 *         queued.
+	 */
+	static Runnable planAndThaw(final ThawJob job, final ThawPlanner thawPlanner,
+			final String index, final Date from, final Date to,
+			final BucketCursor cursor, final Integer limit, final boolean trim) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				ThawPlan plan;
+				try {
+					plan = thawPlanner.planThaw(index, from, to, cursor, limit, trim);
+				} catch (RuntimeException e) {
+					job.fail(e);
+					return;
+				}
+				job.thaw(plan);
+			}
+		};
+	}
+
+	/**
+	 * @return the status of the job.
+	 */
+	@GET
+	@Path("{id}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getThawJob(@PathParam("id") String id,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+		return streamJobStatus(acceptEncoding, getJob(id));
+	}
+
+	/**
+	 * Cancels the job. Buckets that are already thawed stay thawed.
+	 * 
+	 * @return the status of the job.
+	 */
+	@POST
+	@Path("{id}/cancel")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response cancelThawJob(@PathParam("id") String id,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+		logger.info(happened("Received REST request to cancel thaw job",
+				"endpoint", ENDPOINT_THAW_JOBS, "job_id", id));
+		ThawJob job = getJob(id);
+		job.cancel();
+		return streamJobStatus(acceptEncoding, job);
+	}
+
+	private ThawJob getJob(String id) {
+		ThawJob job = ThawJobs.getSharedInstance().get(id);
+		if (job == null)
+			throw new WebApplicationException(Response.status(Status.NOT_FOUND)
+					.entity("No thaw job with id: " + id).type(MediaType.TEXT_PLAIN)
+					.build());
+		return job;
+	}
+
+	/**
+	 * Writes the job as a JSON object obeying the following schema: { "id": {
+	 * "type":"string" }, "state": { "type":"string" }, "started": {
+	 * "type":"integer", "optional":true }, "finished": { "type":"integer",
+	 * "optional":true }, "bytes_transferred": { "type":"integer" },
+	 * "bytes_per_second": { "type":"integer" }, "buckets": { "type":"array",
+	 * "items": { "type":"object", "properties": { "bucket": {
+	 * "type":"BucketBean" }, "state": { "type":"string" }, "bytes": {
+	 * "type":"integer" }, "reason": { "type":"string", "optional":true } } } },
+	 * "plan": { "type":"object", "optional":true }, "next_cursor": {
+	 * "type":"string", "optional":true }, "reason": { "type":"string",
+	 * "optional":true } }. The times are milliseconds since the epoch, the plan
+	 * is there once the job has been planned and the reason once it has
+	 * failed.
+	 * 
+	 * @see RestUtil#writeThawPlanSummary(JsonGenerator, ThawPlan)
+	 */
+	private Response streamJobStatus(String acceptEncoding, final ThawJob job) {
+		return StreamedJsonResponse.create(acceptEncoding, new WritesJson() {
+
+			@Override
+			public void writeJson(JsonGenerator json) throws IOException {
+				json.writeStartObject();
+				json.writeStringField("id", job.getId());
+				json.writeStringField("state", job.getState().name());
+				writeTime(json, "started", job.getStarted());
+				writeTime(json, "finished", job.getFinished());
+				long bytesTransferred = 0;
+				json.writeArrayFieldStart("buckets");
+				for (BucketProgress progress : job.getBuckets()) {
+					json.writeStartObject();
+					json.writeObjectField("bucket",
+							BucketBean.createBeanFromBucket(progress.bucket));
+					json.writeStringField("state", progress.state.name());
+					json.writeNumberField("bytes", progress.bytes);
+					if (progress.reason != null)
+						json.writeStringField("reason", progress.reason);
+					json.writeEndObject();
+					bytesTransferred += progress.bytes;
+				}
+				json.writeEndArray();
+				json.writeNumberField("bytes_transferred", bytesTransferred);
+				json.writeNumberField("bytes_per_second", job.getBytesPerSecond());
+				ThawPlan plan = job.getPlan();
+				if (plan != null)
+					RestUtil.writeThawPlanSummary(json, plan);
+				if (job.getState().isFinished())
+					RestUtil.writeNextCursor(json, job.getNextCursor());
+				if (job.getFailureReason() != null)
+					json.writeStringField("reason", job.getFailureReason());
+				json.writeEndObject();
+			}
+		});
+	}
+
+	private void writeTime(JsonGenerator json, String field, Date time)
+			throws IOException {
+		if (time != null)
+			json.writeNumberField(field, time.getTime());
+	}
+}
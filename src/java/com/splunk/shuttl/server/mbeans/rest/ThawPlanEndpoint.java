@@ -0,0 +1,103 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static com.splunk.shuttl.ShuttlConstants.*;
+import static com.splunk.shuttl.archiver.LogFormatter.*;
+
+import java.io.IOException;
+import java.util.Date;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonGenerator;
+
+import com.splunk.shuttl.archiver.thaw.ThawPlan;
+import com.splunk.shuttl.archiver.thaw.ThawPlannerFactory;
+import com.splunk.shuttl.server.mbeans.rest.StreamedJsonResponse.WritesJson;
+
+/**
+ * Endpoint for planning a thaw without thawing anything, i.e. a dry run.
+ */
+@Path(ENDPOINT_ARCHIVER + ENDPOINT_THAW_PLAN)
+public class ThawPlanEndpoint {
+
+	private static final Logger logger = Logger
+			.getLogger(ThawPlanEndpoint.class);
+
+	/**
+	 * Plans a thaw. Takes the same parameters as the thaw endpoint.
+	 * 
+	 * @param trim
+	 *          to plan the buckets that fit in the free space, instead of
+	 *          refusing the plan if some don't.
+	 * @return the plan, with the buckets that would be thawed, the buckets that
+	 *         are excluded because they don't fit, the buckets that are already
+	 *         thawed and the buckets that couldn't be planned.
+	 * @see ThawBucketsEndpoint#thawBuckets(String, String, String, Integer,
+	 *      String, Boolean, String)
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response planThaw(@QueryParam("index") String index,
+			@QueryParam("from") String from, @QueryParam("to") String to,
+			@QueryParam("limit") Integer limit,
+			@QueryParam("cursor") String cursor,
+			@QueryParam("trim") Boolean trim,
+			@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+		logger.info(happened("Received REST request to plan thaw", "endpoint",
+				ENDPOINT_THAW_PLAN, "index", index, "from", from, "to", to,
+				"limit", limit, "cursor", cursor, "trim", trim));
+		Integer validLimit = RestUtil.getValidLimit(limit);
+		Date fromDate = RestUtil.getValidFromDate(from);
+		Date toDate = RestUtil.getValidToDate(to);
+		if (fromDate == null || toDate == null) {
+			logger.error(happened("Invalid time interval provided."));
+			throw new IllegalArgumentException(
+					"From and to date must be provided on the form yyyy-DD-mm");
+		}
+
+		ThawPlan plan = ThawPlannerFactory.createDefaultPlanner().plan(index,
+				fromDate, toDate, RestUtil.getValidCursor(cursor), validLimit,
+				Boolean.TRUE.equals(trim));
+		return streamPlan(acceptEncoding, plan);
+	}
+
+	private Response streamPlan(String acceptEncoding, final ThawPlan plan) {
+		return StreamedJsonResponse.create(acceptEncoding, new WritesJson() {
+
+			@Override
+			public void writeJson(JsonGenerator json) throws IOException {
+				json.writeStartObject();
+				RestUtil.writeThawPlanSummary(json, plan);
+				RestUtil.writeBucketArray(json, "buckets", plan.getBuckets());
+				RestUtil.writeBucketArray(json, "excluded",
+						plan.getExcludedBuckets());
+				RestUtil.writeBucketArray(json, "thawed", plan.getThawedBuckets());
+				RestUtil.writeFailedBuckets(json, "failed", plan.getFailedBuckets());
+				RestUtil.writeNextCursor(json, plan.getNextCursor());
+				json.writeEndObject();
+			}
+		});
+	}
+}
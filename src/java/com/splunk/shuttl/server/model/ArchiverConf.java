@@ -30,7 +30,12 @@ import javax.xml.bind.annotation.XmlType;
 @XmlRootElement(namespace = "com.splunk.shuttl.server.model")
 @XmlType(propOrder = { "localArchiverDir", "archiveFormats", "clusterName",
 		"serverName", "bucketFormatPriority", "backendName", "archivePath",
-		"archiverRootURI" })
+		"archiverRootURI", "archivingThreads", "archivingQueueSize",
+		"formatCopyConcurrency", "fileTransferStreams", "archiveBandwidthLimit",
+		"coldCopyBandwidthLimit", "thawBandwidthLimit", "listingConcurrency",
+		"metadataStorage", "thawConcurrency", "thawConcurrencyPerVolume",
+		"thawReservedSpace", "thawQuota", "thawImportRatePrior",
+		"catalogMaxAge" })
 public class ArchiverConf {
 	private String localArchiverDir;
 	private List<String> archiveFormats;
@@ -40,6 +45,21 @@ public class ArchiverConf {
 	private String backendName;
 	private String archivePath;
 	private String archiverRootURI;
+	private Integer archivingThreads;
+	private Integer archivingQueueSize;
+	private Integer formatCopyConcurrency;
+	private Integer fileTransferStreams;
+	private Long archiveBandwidthLimit;
+	private Long coldCopyBandwidthLimit;
+	private Long thawBandwidthLimit;
+	private Integer listingConcurrency;
+	private String metadataStorage;
+	private Integer thawConcurrency;
+	private Integer thawConcurrencyPerVolume;
+	private Long thawReservedSpace;
+	private Long thawQuota;
+	private Long thawImportRatePrior;
+	private Long catalogMaxAge;
 
 	public String getLocalArchiverDir() {
 		return localArchiverDir;
@@ -106,4 +126,124 @@ public class ArchiverConf {
 	public void setArchiverRootURI(String archiverRootURI) {
 		this.archiverRootURI = archiverRootURI;
 	}
+
+	public Integer getArchivingThreads() {
+		return archivingThreads;
+	}
+
+	public void setArchivingThreads(Integer archivingThreads) {
+		this.archivingThreads = archivingThreads;
+	}
+
+	public Integer getArchivingQueueSize() {
+		return archivingQueueSize;
+	}
+
+	public void setArchivingQueueSize(Integer archivingQueueSize) {
+		this.archivingQueueSize = archivingQueueSize;
+	}
+
+	public Integer getFormatCopyConcurrency() {
+		return formatCopyConcurrency;
+	}
+
+	public void setFormatCopyConcurrency(Integer formatCopyConcurrency) {
+		this.formatCopyConcurrency = formatCopyConcurrency;
+	}
+
+	public Integer getFileTransferStreams() {
+		return fileTransferStreams;
+	}
+
+	public void setFileTransferStreams(Integer fileTransferStreams) {
+		this.fileTransferStreams = fileTransferStreams;
+	}
+
+	public Long getArchiveBandwidthLimit() {
+		return archiveBandwidthLimit;
+	}
+
+	public void setArchiveBandwidthLimit(Long archiveBandwidthLimit) {
+		this.archiveBandwidthLimit = archiveBandwidthLimit;
+	}
+
+	public Long getColdCopyBandwidthLimit() {
+		return coldCopyBandwidthLimit;
+	}
+
+	public void setColdCopyBandwidthLimit(Long coldCopyBandwidthLimit) {
+		this.coldCopyBandwidthLimit = coldCopyBandwidthLimit;
+	}
+
+	public Long getThawBandwidthLimit() {
+		return thawBandwidthLimit;
+	}
+
+	public void setThawBandwidthLimit(Long thawBandwidthLimit) {
+		this.thawBandwidthLimit = thawBandwidthLimit;
+	}
+
+	public Integer getListingConcurrency() {
+		return listingConcurrency;
+	}
+
+	public void setListingConcurrency(Integer listingConcurrency) {
+		this.listingConcurrency = listingConcurrency;
+	}
+
+	public String getMetadataStorage() {
+		return metadataStorage;
+	}
+
+	public void setMetadataStorage(String metadataStorage) {
+		this.metadataStorage = metadataStorage;
+	}
+
+	public Integer getThawConcurrency() {
+		return thawConcurrency;
+	}
+
+	public void setThawConcurrency(Integer thawConcurrency) {
+		this.thawConcurrency = thawConcurrency;
+	}
+
+	public Integer getThawConcurrencyPerVolume() {
+		return thawConcurrencyPerVolume;
+	}
+
+	public void setThawConcurrencyPerVolume(Integer thawConcurrencyPerVolume) {
+		this.thawConcurrencyPerVolume = thawConcurrencyPerVolume;
+	}
+
+	public Long getThawReservedSpace() {
+		return thawReservedSpace;
+	}
+
+	public void setThawReservedSpace(Long thawReservedSpace) {
+		this.thawReservedSpace = thawReservedSpace;
+	}
+
+	public Long getThawQuota() {
+		return thawQuota;
+	}
+
+	public void setThawQuota(Long thawQuota) {
+		this.thawQuota = thawQuota;
+	}
+
+	public Long getThawImportRatePrior() {
+		return thawImportRatePrior;
+	}
+
+	public void setThawImportRatePrior(Long thawImportRatePrior) {
+		this.thawImportRatePrior = thawImportRatePrior;
+	}
+
+	public Long getCatalogMaxAge() {
+		return catalogMaxAge;
+	}
+
+	public void setCatalogMaxAge(Long catalogMaxAge) {
+		this.catalogMaxAge = catalogMaxAge;
+	}
 }
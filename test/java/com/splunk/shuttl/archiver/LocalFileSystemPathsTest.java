@@ -177,4 +177,29 @@ public class LocalFileSystemPathsTest {
 		assertBucketUniquePathInsideArchiverDirectory(localFileSystemPaths
 				.getCopyLocksDirectory(bucket));
 	}
+
+	public void getArchiveCatalogDirectory_setUp_dirExistsInsideArchiverDirectory() {
+		assertExistsInParentArchiverDirectory(localFileSystemPaths
+				.getArchiveCatalogDirectory());
+	}
+
+	public void getMetadataManifestTransfersDirectory_index_uniquePerIndexInsideArchiverDirectory() {
+		File dir = localFileSystemPaths
+				.getMetadataManifestTransfersDirectory("index");
+		assertTrue(dir.exists());
+		assertEquals("index", dir.getName());
+		assertExistsInParentArchiverDirectory(dir.getParentFile());
+	}
+
+	public void getMetadataStorageDirectory_setUp_dirExistsInsideArchiverDirectory() {
+		assertExistsInParentArchiverDirectory(localFileSystemPaths
+				.getMetadataStorageDirectory());
+	}
+
+	public void getGlacierArchiveIdsDirectory_vault_uniquePerVaultInsideArchiverDirectory() {
+		File dir = localFileSystemPaths.getGlacierArchiveIdsDirectory("vault");
+		assertTrue(dir.exists());
+		assertEquals("vault", dir.getName());
+		assertExistsInParentArchiverDirectory(dir.getParentFile());
+	}
 }
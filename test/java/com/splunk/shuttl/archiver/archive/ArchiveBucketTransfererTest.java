@@ -20,22 +20,32 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
-import java.io.FileNotFoundException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
-import com.splunk.shuttl.archiver.filesystem.FileOverwriteException;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
-import com.splunk.shuttl.archiver.filesystem.transaction.AbstractTransaction;
+import com.splunk.shuttl.archiver.filesystem.transaction.Transaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionException;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.BucketTransactionCleaner;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.PutBucketTransaction;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.TransfersBuckets;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.WritesBucketStream;
+import com.splunk.shuttl.archiver.importexport.BucketStreamExporter;
 import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
 @Test(groups = { "fast-unit" })
@@ -64,34 +74,31 @@ public class ArchiveBucketTransfererTest {
 		String temp = "/temp/path";
 		when(pathResolver.resolveArchivePath(bucket)).thenReturn(destination);
 		when(pathResolver.resolveTempPathForBucket(bucket)).thenReturn(temp);
+		Transaction bucketSizeTransaction = mock(Transaction.class);
+		when(archiveBucketSize.getPersistBucketSizeTransaction(bucket))
+				.thenReturn(bucketSizeTransaction);
 		archiveBucketTransferer.transferBucketToArchive(bucket);
 		verify(transactionExecuter).execute(
-				eq(PutBucketTransaction.create(archive, bucket, temp, destination)));
+				eq(PutBucketTransaction.create(archive, bucket, temp, destination)),
+				eq(bucketSizeTransaction));
 	}
 
-	public void transferBucketToArchive_givenSuccessfulBucketTransfer_startBucketSizeTransaction() {
+	public void transferBucketToArchive_givenBucket_executesBucketSizeTransactionTogetherWithBucketTransaction() {
 		Bucket bucket = mock(Bucket.class);
+		Transaction bucketSizeTransaction = mock(Transaction.class);
+		when(archiveBucketSize.getPersistBucketSizeTransaction(bucket))
+				.thenReturn(bucketSizeTransaction);
 		archiveBucketTransferer.transferBucketToArchive(bucket);
-		verify(archiveBucketSize).persistBucketSize(bucket);
-	}
-
-	public void transferBucketToArchive_whenBucketTransferIsUnsuccessful_dontPutBucketSizeInArchive()
-			throws FileNotFoundException, FileOverwriteException, IOException {
-		doThrow(Exception.class).when(transactionExecuter).execute(
-				any(AbstractTransaction.class));
-		try {
-			archiveBucketTransferer.transferBucketToArchive(mock(Bucket.class));
-			fail();
-		} catch (Exception e) {
-		}
-		verifyZeroInteractions(archiveBucketSize);
+		verify(transactionExecuter).execute(any(PutBucketTransaction.class),
+				eq(bucketSizeTransaction));
+		verify(archiveBucketSize, never()).persistBucketSize(bucket);
 	}
 
 	@Test(expectedExceptions = { FailedToArchiveBucketException.class })
 	public void _archiveFileSystemThrowsFileNotFoundException_throwFailedToArchiveBucketException()
 			throws IOException {
 		doThrow(TransactionException.class).when(transactionExecuter).execute(
-				any(AbstractTransaction.class));
+				any(Transaction.class), any(Transaction.class));
 		archiveBucketTransferer.transferBucketToArchive(mock(Bucket.class));
 	}
 
@@ -117,4 +124,74 @@ public class ArchiveBucketTransfererTest {
 		when(archive.listPath(bucketPath)).thenReturn(asList("/valid/path"));
 		assertTrue(archiveBucketTransferer.isArchived(bucket, bucket.getFormat()));
 	}
+
+	public void transferBucketToArchive_withCatalog_addsCommittedBucketToCatalog() {
+		ArchiveCatalog archiveCatalog = mock(ArchiveCatalog.class);
+		Bucket bucket = TUtilsBucket.createBucket();
+		new ArchiveBucketTransferer(archive, pathResolver, archiveBucketSize,
+				transactionExecuter, archiveCatalog).transferBucketToArchive(bucket);
+
+		InOrder inOrder = inOrder(transactionExecuter, archiveCatalog);
+		inOrder.verify(transactionExecuter).execute(any(Transaction.class),
+				any(Transaction.class));
+		inOrder.verify(archiveCatalog).addArchivedBucket(bucket);
+	}
+
+	public void transferBucketToArchive_transactionFails_doesNotCatalogBucket() {
+		ArchiveCatalog archiveCatalog = mock(ArchiveCatalog.class);
+		doThrow(TransactionException.class).when(transactionExecuter).execute(
+				any(Transaction.class), any(Transaction.class));
+		try {
+			new ArchiveBucketTransferer(archive, pathResolver, archiveBucketSize,
+					transactionExecuter, archiveCatalog)
+					.transferBucketToArchive(TUtilsBucket.createBucket());
+			fail();
+		} catch (FailedToArchiveBucketException e) {
+			verifyZeroInteractions(archiveCatalog);
+		}
+	}
+
+	public void streamBucketToArchive_exportedStream_persistsAndCatalogsTheWrittenBytesAsSize()
+			throws IOException {
+		TransfersBuckets transfersBuckets = mock(TransfersBuckets.class);
+		when(archive.getBucketTransferer()).thenReturn(transfersBuckets);
+		when(archive.getBucketTransactionCleaner()).thenReturn(
+				mock(BucketTransactionCleaner.class));
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws IOException {
+				((WritesBucketStream) invocation.getArguments()[2])
+						.writeTo(new ByteArrayOutputStream());
+				return null;
+			}
+		}).when(transfersBuckets).putStream(any(Bucket.class), anyString(),
+				any(WritesBucketStream.class), anyString(), anyString());
+		BucketStreamExporter streamExporter = mock(BucketStreamExporter.class);
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws IOException {
+				((OutputStream) invocation.getArguments()[1]).write(new byte[42]);
+				return null;
+			}
+		}).when(streamExporter).exportBucket(any(LocalBucket.class),
+				any(OutputStream.class));
+		when(archiveBucketSize.getPersistBucketSizeTransaction(any(Bucket.class)))
+				.thenReturn(mock(Transaction.class));
+		ArchiveCatalog archiveCatalog = mock(ArchiveCatalog.class);
+
+		new ArchiveBucketTransferer(archive, pathResolver, archiveBucketSize,
+				new TransactionExecuter(), archiveCatalog).streamBucketToArchive(
+				TUtilsBucket.createBucket(), BucketFormat.SPLUNK_BUCKET_TGZ,
+				streamExporter);
+
+		ArgumentCaptor<Bucket> persisted = ArgumentCaptor.forClass(Bucket.class);
+		verify(archiveBucketSize).getPersistBucketSizeTransaction(
+				persisted.capture());
+		assertEquals(persisted.getValue().getSize(), (Long) 42L);
+		assertEquals(persisted.getValue().getFormat(),
+				BucketFormat.SPLUNK_BUCKET_TGZ);
+		verify(archiveCatalog).addArchivedBucket(persisted.getValue());
+	}
 }
@@ -145,6 +145,17 @@ public class ArchiveConfigurationTest {
 		assertFalse(tempPath.contains(archivingRoot));
 	}
 
+	public void getArchiveMetadataPath_givenArchivePath_childToThePathOutsideArchiveDataPath() {
+		String archivePath = "/archive/path";
+		when(mBean.getArchivePath()).thenReturn(archivePath);
+		ArchiveConfiguration configuration = createConfiguration();
+		String metadataPath = configuration.getArchiveMetadataPath();
+
+		assertEquals(archivePath + "/" + FilenameUtils.getName(metadataPath),
+				metadataPath);
+		assertFalse(metadataPath.contains(configuration.getArchiveDataPath()));
+	}
+
 	public void getArchiveTempPath_givenConfiguredServerName_containsServerNameForGlobalyUniqueTempPath() {
 		String serverName = "some_server_name";
 		when(mBean.getServerName()).thenReturn(serverName);
@@ -165,12 +176,14 @@ public class ArchiveConfigurationTest {
 	public void newWithServerName_configHasAllValues_allValuesOtherThanServerNameAreTheSame() {
 		List<BucketFormat> list = asList(BucketFormat.UNKNOWN);
 		ArchiveConfiguration originalConf = new ArchiveConfiguration("a", list,
-				"c", "d", list, "f", "g", "h");
+				"c", "d", list, "f", "g", "m", "h", 2, 4, 8, 16, 3);
 		ArchiveConfiguration newConf = originalConf
 				.newConfigWithServerName("newServerName");
 
 		assertEquals(originalConf.getArchiveDataPath(),
 				newConf.getArchiveDataPath());
+		assertEquals(originalConf.getArchiveMetadataPath(),
+				newConf.getArchiveMetadataPath());
 		assertEquals(originalConf.getArchiveFormats(), newConf.getArchiveFormats());
 		assertEquals(originalConf.getArchiveTempPath(),
 				newConf.getArchiveTempPath());
@@ -180,6 +193,16 @@ public class ArchiveConfigurationTest {
 		assertEquals(originalConf.getClusterName(), newConf.getClusterName());
 		assertEquals(originalConf.getLocalArchiverDir(),
 				newConf.getLocalArchiverDir());
+		assertEquals(originalConf.getFormatCopyConcurrency(),
+				newConf.getFormatCopyConcurrency());
+		assertEquals(originalConf.getFileTransferStreams(),
+				newConf.getFileTransferStreams());
+		assertEquals(originalConf.getListingConcurrency(),
+				newConf.getListingConcurrency());
+		assertEquals(originalConf.getThawConcurrency(),
+				newConf.getThawConcurrency());
+		assertEquals(originalConf.getThawConcurrencyPerVolume(),
+				newConf.getThawConcurrencyPerVolume());
 
 		assertNotEquals(originalConf.getServerName(), newConf.getServerName());
 	}
@@ -18,13 +18,16 @@ package com.splunk.shuttl.archiver.archive;
 import static java.util.Arrays.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
 
 import java.util.List;
+import java.util.concurrent.Executors;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.importexport.BucketExportController;
+import com.splunk.shuttl.archiver.importexport.BucketStreamExporter;
 import com.splunk.shuttl.archiver.model.LocalBucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -97,4 +100,64 @@ public class BucketCopierTest {
 		verify(exporter, never()).exportBucket(bucket, format);
 	}
 
+	public void copyBucket_concurrentFormatCopies_exportsAndTransfersAllFormats() {
+		LocalBucket exportedBucket = getMockedBucketReturnFromExporter();
+		List<BucketFormat> formats = asList(BucketFormat.SPLUNK_BUCKET,
+				BucketFormat.CSV, BucketFormat.SPLUNK_BUCKET_TGZ);
+		newConcurrentCopier(formats).copyBucket(bucket);
+
+		for (BucketFormat format : formats)
+			verify(exporter).exportBucket(bucket, format);
+		verify(archiveBucketTransferer, times(3)).transferBucketToArchive(
+				exportedBucket);
+	}
+
+	public void copyBucket_concurrentFormatCopiesThrow_collectsAllExceptions() {
+		when(exporter.exportBucket(eq(bucket), any(BucketFormat.class)))
+				.thenThrow(new RuntimeException("export failure"));
+		List<BucketFormat> formats = asList(BucketFormat.CSV,
+				BucketFormat.SPLUNK_BUCKET_TGZ);
+		try {
+			newConcurrentCopier(formats).copyBucket(bucket);
+			fail("Should have thrown");
+		} catch (RuntimeException e) {
+			String message = e.getMessage();
+			assertNotEquals(message.indexOf("export failure"),
+					message.lastIndexOf("export failure"));
+		}
+	}
+
+	public void copyBucket_streamExporterAndStreamingTransferer_streamsBucketWithoutExporting() {
+		BucketStreamExporter streamExporter = mock(BucketStreamExporter.class);
+		BucketFormat format = bucketFormats.get(0);
+		when(exporter.getStreamExporter(bucket, format)).thenReturn(streamExporter);
+		when(archiveBucketTransferer.canStreamBuckets()).thenReturn(true);
+
+		bucketCopier.copyBucket(bucket);
+
+		verify(archiveBucketTransferer).streamBucketToArchive(bucket, format,
+				streamExporter);
+		verify(exporter, never()).exportBucket(bucket, format);
+	}
+
+	public void copyBucket_streamExporterButTransfererCannotStream_exportsBucketToLocalFileSystem() {
+		BucketStreamExporter streamExporter = mock(BucketStreamExporter.class);
+		BucketFormat format = bucketFormats.get(0);
+		when(exporter.getStreamExporter(bucket, format)).thenReturn(streamExporter);
+		when(archiveBucketTransferer.canStreamBuckets()).thenReturn(false);
+		LocalBucket exportedBucket = getMockedBucketReturnFromExporter();
+
+		bucketCopier.copyBucket(bucket);
+
+		verify(archiveBucketTransferer).transferBucketToArchive(exportedBucket);
+		verify(archiveBucketTransferer, never()).streamBucketToArchive(
+				any(LocalBucket.class), any(BucketFormat.class),
+				any(BucketStreamExporter.class));
+	}
+
+	private BucketCopier newConcurrentCopier(List<BucketFormat> formats) {
+		return new BucketCopier(exporter, archiveBucketTransferer, formats,
+				deletesBuckets, new FormatCopyExecutor(
+						Executors.newCachedThreadPool(), 1));
+	}
 }
@@ -0,0 +1,234 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.bucketlock.BucketLock;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.server.mbeans.ShuttlArchiverMBean;
+
+@Test(groups = { "fast-unit" })
+public class BucketShuttlerExecutorTest {
+
+	private BucketShuttlerExecutor executor;
+	private CountDownLatch release;
+	private CountDownLatch started;
+
+	@BeforeMethod
+	public void setUp() {
+		executor = new BucketShuttlerExecutor(1, 1);
+		release = new CountDownLatch(1);
+		started = new CountDownLatch(1);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		release.countDown();
+		executor.shutdown();
+	}
+
+	public void submit_givenRunner_returnsJobIdAndRunsTheShuttler()
+			throws InterruptedException {
+		BucketShuttler shuttler = mock(BucketShuttler.class);
+		LocalBucket bucket = mock(LocalBucket.class);
+		BucketLock bucketLock = lockedBucketLock();
+
+		String jobId = executor.submit(new BucketShuttlerRunner(shuttler, bucket,
+				bucketLock));
+		assertNotNull(jobId);
+
+		verify(shuttler, timeout(5000)).shuttlBucket(bucket);
+		verify(bucketLock, timeout(5000)).closeLock();
+	}
+
+	public void submit_workerBusyAndQueueFull_throwsAndCountsRejection()
+			throws InterruptedException {
+		executor.submit(blockingRunner());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.submit(blockingRunner());
+		assertEquals(1, executor.getQueueDepth());
+		try {
+			executor.submit(blockingRunner());
+			fail("Should have been rejected");
+		} catch (RejectedExecutionException e) {
+			assertEquals(1, executor.getRejectedJobs());
+			assertEquals(2, executor.getSubmittedJobs());
+		}
+	}
+
+	public void getWorkerUtilization_oneOfOneWorkerBusy_isOne()
+			throws InterruptedException {
+		executor.submit(blockingRunner());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.getActiveWorkers());
+		assertEquals(1.0, executor.getWorkerUtilization());
+	}
+
+	public void submit_workerBusy_runsQueuedThawBeforeQueuedColdCopy()
+			throws Exception {
+		executor.submit(blockingRunner());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		final List<JobClass> ranJobs = Collections
+				.synchronizedList(new ArrayList<JobClass>());
+		executor.submit(JobClass.COLD_COPY, new Runnable() {
+			@Override
+			public void run() {
+				ranJobs.add(JobClass.COLD_COPY);
+			}
+		});
+		executor.submit(JobClass.THAW, new Runnable() {
+			@Override
+			public void run() {
+				ranJobs.add(JobClass.THAW);
+			}
+		});
+		assertEquals(1, executor.getThawQueueDepth());
+		assertEquals(1, executor.getColdCopyQueueDepth());
+		release.countDown();
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(JobClass.THAW, JobClass.COLD_COPY), ranJobs);
+	}
+
+	public void submitAndWait_givenCallable_returnsResultAndMeasuresTheJob()
+			throws Exception {
+		String result = executor.submitAndWait(JobClass.THAW,
+				new Callable<String>() {
+					@Override
+					public String call() {
+						return "thawed";
+					}
+				});
+		assertEquals("thawed", result);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.getCompletedJobs(JobClass.THAW));
+		assertEquals(0, executor.getCompletedJobs(JobClass.ARCHIVE));
+	}
+
+	@Test(expectedExceptions = { ExecutionException.class })
+	public void submitAndWait_callableThrows_throwsExecutionException()
+			throws Exception {
+		executor.submitAndWait(JobClass.THAW, new Callable<String>() {
+			@Override
+			public String call() {
+				throw new IllegalStateException();
+			}
+		});
+	}
+
+	public void submitAndWaitWithStartTimeout_workerBusy_throwsAndNeverRunsTheJob()
+			throws Exception {
+		executor.submit(blockingRunner());
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		final AtomicBoolean ran = new AtomicBoolean();
+		try {
+			executor.submitAndWait(JobClass.THAW, new Callable<String>() {
+				@Override
+				public String call() {
+					ran.set(true);
+					return "thawed";
+				}
+			}, 10, TimeUnit.MILLISECONDS);
+			fail("Should have timed out");
+		} catch (TimeoutException e) {
+		}
+		assertEquals(0, executor.getThawQueueDepth());
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertFalse(ran.get());
+	}
+
+	public void submitAndWaitWithStartTimeout_workerFree_returnsResult()
+			throws Exception {
+		assertEquals("thawed", executor.submitAndWait(JobClass.THAW,
+				new Callable<String>() {
+					@Override
+					public String call() {
+						return "thawed";
+					}
+				}, 5, TimeUnit.SECONDS));
+	}
+
+	public void createWithMBean_notConfigured_usesDefaults() {
+		ShuttlArchiverMBean mBean = mock(ShuttlArchiverMBean.class);
+		BucketShuttlerExecutor configured = BucketShuttlerExecutor
+				.createWithMBean(mBean);
+		try {
+			assertEquals(BucketShuttlerExecutor.DEFAULT_WORKER_COUNT,
+					configured.getWorkerCount());
+			assertEquals(BucketShuttlerExecutor.DEFAULT_QUEUE_CAPACITY,
+					configured.getQueueCapacity());
+		} finally {
+			configured.shutdown();
+		}
+	}
+
+	public void createWithMBean_configured_usesConfiguredValues() {
+		ShuttlArchiverMBean mBean = mock(ShuttlArchiverMBean.class);
+		when(mBean.getArchivingThreads()).thenReturn(7);
+		when(mBean.getArchivingQueueSize()).thenReturn(13);
+		BucketShuttlerExecutor configured = BucketShuttlerExecutor
+				.createWithMBean(mBean);
+		try {
+			assertEquals(7, configured.getWorkerCount());
+			assertEquals(13, configured.getQueueCapacity());
+		} finally {
+			configured.shutdown();
+		}
+	}
+
+	private BucketShuttlerRunner blockingRunner() throws InterruptedException {
+		BucketShuttler shuttler = mock(BucketShuttler.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				started.countDown();
+				release.await();
+				return null;
+			}
+		}).when(shuttler).shuttlBucket(any(LocalBucket.class));
+		return new BucketShuttlerRunner(shuttler, mock(LocalBucket.class),
+				lockedBucketLock());
+	}
+
+	private BucketLock lockedBucketLock() {
+		BucketLock bucketLock = mock(BucketLock.class);
+		when(bucketLock.isLocked()).thenReturn(true);
+		return bucketLock;
+	}
+}
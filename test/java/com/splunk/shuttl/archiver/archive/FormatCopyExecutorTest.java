@@ -0,0 +1,140 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static org.testng.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class FormatCopyExecutorTest {
+
+	private FormatCopyExecutor formatCopyExecutor;
+
+	@BeforeMethod
+	public void setUp() {
+		formatCopyExecutor = new FormatCopyExecutor(
+				Executors.newCachedThreadPool(), 1);
+	}
+
+	public void copyConcurrently_differentFormats_runsCopiesAtTheSameTime() {
+		final CountDownLatch bothStarted = new CountDownLatch(2);
+		final AtomicInteger bothSawEachOther = new AtomicInteger();
+		Runnable copy = new Runnable() {
+
+			@Override
+			public void run() {
+				bothStarted.countDown();
+				try {
+					if (bothStarted.await(5, TimeUnit.SECONDS))
+						bothSawEachOther.incrementAndGet();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		Map<BucketFormat, Runnable> copies = new LinkedHashMap<BucketFormat, Runnable>();
+		copies.put(BucketFormat.CSV, copy);
+		copies.put(BucketFormat.SPLUNK_BUCKET_TGZ, copy);
+
+		formatCopyExecutor.copyConcurrently(copies);
+		assertEquals(2, bothSawEachOther.get());
+	}
+
+	public void copyConcurrently_sameFormatFromTwoCallers_limitsToPermitsPerFormat()
+			throws InterruptedException {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final Map<BucketFormat, Runnable> copies = new LinkedHashMap<BucketFormat, Runnable>();
+		copies.put(BucketFormat.CSV, new Runnable() {
+
+			@Override
+			public void run() {
+				int nowRunning = running.incrementAndGet();
+				if (nowRunning > maxRunning.get())
+					maxRunning.set(nowRunning);
+				sleep(100);
+				running.decrementAndGet();
+			}
+		});
+		Thread otherCaller = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				formatCopyExecutor.copyConcurrently(copies);
+			}
+		});
+		otherCaller.start();
+		formatCopyExecutor.copyConcurrently(copies);
+		otherCaller.join();
+
+		assertEquals(1, maxRunning.get());
+	}
+
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void getSharedInstance_samePermits_returnsSameInstance() {
+		assertSame(FormatCopyExecutor.getSharedInstance(2),
+				FormatCopyExecutor.getSharedInstance(2));
+	}
+
+	public void copyConcurrently_shutDown_copiesInCallingThread() {
+		AtomicReference<Thread> copyingThread = new AtomicReference<Thread>();
+
+		formatCopyExecutor.shutdown();
+		formatCopyExecutor.copyConcurrently(csvCopyRecordingThread(copyingThread));
+
+		assertSame(Thread.currentThread(), copyingThread.get());
+	}
+
+	public void getSharedInstance_otherPermits_shutsDownPreviousInstance() {
+		FormatCopyExecutor previous = FormatCopyExecutor.getSharedInstance(3);
+		FormatCopyExecutor current = FormatCopyExecutor.getSharedInstance(4);
+		AtomicReference<Thread> copyingThread = new AtomicReference<Thread>();
+
+		previous.copyConcurrently(csvCopyRecordingThread(copyingThread));
+
+		assertNotSame(previous, current);
+		assertSame(Thread.currentThread(), copyingThread.get());
+	}
+
+	private Map<BucketFormat, Runnable> csvCopyRecordingThread(
+			final AtomicReference<Thread> copyingThread) {
+		Map<BucketFormat, Runnable> copies = new LinkedHashMap<BucketFormat, Runnable>();
+		copies.put(BucketFormat.CSV, new Runnable() {
+
+			@Override
+			public void run() {
+				copyingThread.set(Thread.currentThread());
+			}
+		});
+		return copies;
+	}
+}
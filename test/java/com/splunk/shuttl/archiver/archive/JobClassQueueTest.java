@@ -0,0 +1,188 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.archive;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.JobClassQueue.ClassifiedJob;
+
+@Test(groups = { "fast-unit" })
+public class JobClassQueueTest {
+
+	private JobClassQueue queue;
+
+	@BeforeMethod
+	public void setUp() {
+		queue = new JobClassQueue(100);
+	}
+
+	public void poll_jobsOfAllClasses_thawThenArchiveThenColdCopy() {
+		Job copy = offer(JobClass.COLD_COPY);
+		Job archive = offer(JobClass.ARCHIVE);
+		Job thaw = offer(JobClass.THAW);
+
+		assertSame(queue.poll(), thaw);
+		assertSame(queue.poll(), archive);
+		assertSame(queue.poll(), copy);
+		assertNull(queue.poll());
+	}
+
+	public void poll_sameClass_firstInFirstOut() {
+		Job first = offer(JobClass.ARCHIVE);
+		Job second = offer(JobClass.ARCHIVE);
+
+		assertSame(queue.poll(), first);
+		assertSame(queue.poll(), second);
+	}
+
+	public void poll_manyThawsAndAColdCopy_coldCopyGetsItsMinimumShare() {
+		for (int i = 0; i < 20; i++)
+			offer(JobClass.THAW);
+		offer(JobClass.COLD_COPY);
+
+		int thawsBeforeCopy = JobClass.FULL_SHARE
+				/ JobClass.COLD_COPY.getMinimumShare();
+		for (int i = 0; i < thawsBeforeCopy; i++)
+			assertEquals(pollJobClass(), JobClass.THAW);
+		assertEquals(pollJobClass(), JobClass.COLD_COPY);
+		assertEquals(pollJobClass(), JobClass.THAW);
+	}
+
+	public void poll_classWasEmpty_doesNotBankCredit() {
+		for (int i = 0; i < 20; i++)
+			offer(JobClass.ARCHIVE);
+		for (int i = 0; i < 15; i++)
+			queue.poll();
+		offer(JobClass.COLD_COPY);
+		offer(JobClass.THAW);
+
+		assertEquals(pollJobClass(), JobClass.THAW);
+		assertEquals(pollJobClass(), JobClass.ARCHIVE);
+	}
+
+	public void offer_classIsFull_false() {
+		queue = new JobClassQueue(1);
+		assertTrue(queue.offer(new Job(JobClass.COLD_COPY)));
+		assertFalse(queue.offer(new Job(JobClass.COLD_COPY)));
+		assertTrue(queue.offer(new Job(JobClass.THAW)));
+		assertEquals(queue.size(), 2);
+		assertEquals(queue.size(JobClass.COLD_COPY), 1);
+	}
+
+	public void offer_notClassifiedJob_queuedAsArchive() {
+		queue.offer(new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		assertEquals(queue.size(JobClass.ARCHIVE), 1);
+	}
+
+	public void offerWithTimeout_classStaysFull_falseAfterTheTimeout()
+			throws InterruptedException {
+		queue = new JobClassQueue(1);
+		queue.offer(new Job(JobClass.ARCHIVE));
+		long start = System.nanoTime();
+		assertFalse(queue.offer(new Job(JobClass.ARCHIVE), 20,
+				TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS
+				.toNanos(20));
+	}
+
+	public void offerWithTimeout_jobOfClassTakenBeforeTheTimeout_true()
+			throws InterruptedException {
+		queue = new JobClassQueue(1);
+		queue.offer(new Job(JobClass.ARCHIVE));
+		takeLater(20);
+		assertTrue(queue.offer(new Job(JobClass.ARCHIVE), 5, TimeUnit.SECONDS));
+		assertEquals(queue.size(JobClass.ARCHIVE), 1);
+	}
+
+	public void put_classIsFull_waitsUntilAJobOfTheClassIsTaken()
+			throws InterruptedException {
+		queue = new JobClassQueue(1);
+		Job first = new Job(JobClass.ARCHIVE);
+		Job second = new Job(JobClass.ARCHIVE);
+		queue.put(first);
+		takeLater(20);
+		queue.put(second);
+		assertSame(queue.poll(), second);
+	}
+
+	private void takeLater(final long millis) {
+		new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(millis);
+					queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}).start();
+	}
+
+	public void poll_timeoutWithEmptyQueue_null() throws InterruptedException {
+		assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+	}
+
+	public void drainTo_jobs_drainsAllInPriorityOrder() {
+		Job archive = offer(JobClass.ARCHIVE);
+		Job thaw = offer(JobClass.THAW);
+		List<Runnable> drained = new ArrayList<Runnable>();
+
+		assertEquals(queue.drainTo(drained), 2);
+		assertEquals(drained.get(0), thaw);
+		assertEquals(drained.get(1), archive);
+		assertTrue(queue.isEmpty());
+	}
+
+	private JobClass pollJobClass() {
+		return ((Job) queue.poll()).getJobClass();
+	}
+
+	private Job offer(JobClass jobClass) {
+		Job job = new Job(jobClass);
+		assertTrue(queue.offer(job));
+		return job;
+	}
+
+	private static class Job implements ClassifiedJob {
+
+		private final JobClass jobClass;
+
+		public Job(JobClass jobClass) {
+			this.jobClass = jobClass;
+		}
+
+		@Override
+		public void run() {
+		}
+
+		@Override
+		public JobClass getJobClass() {
+			return jobClass;
+		}
+	}
+}
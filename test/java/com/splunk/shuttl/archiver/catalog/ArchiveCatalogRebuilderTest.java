@@ -0,0 +1,156 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.listers.ArchiveBucketsLister;
+import com.splunk.shuttl.archiver.listers.ArchivedIndexesLister;
+import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class ArchiveCatalogRebuilderTest {
+
+	private ArchivedIndexesLister indexesLister;
+	private ArchiveBucketsLister bucketsLister;
+	private BucketFormatResolver bucketFormatResolver;
+	private ArchiveBucketSize archiveBucketSize;
+	private ArchiveCatalog archiveCatalog;
+	private ArchiveCatalogRebuilder rebuilder;
+	private Bucket bucket;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		indexesLister = mock(ArchivedIndexesLister.class);
+		bucketsLister = mock(ArchiveBucketsLister.class);
+		bucketFormatResolver = mock(BucketFormatResolver.class);
+		archiveBucketSize = mock(ArchiveBucketSize.class);
+		archiveCatalog = new ArchiveCatalog(TUtilsFile.createDirectory());
+		rebuilder = new ArchiveCatalogRebuilder(indexesLister, bucketsLister,
+				bucketFormatResolver, archiveBucketSize, mock(PathResolver.class),
+				archiveCatalog);
+
+		bucket = new RemoteBucket("/path", "index", "db_20_10_0",
+				(BucketFormat) null);
+		when(indexesLister.listIndexes()).thenReturn(asList("index"));
+		when(bucketsLister.listBucketsInIndex("index")).thenReturn(asList(bucket));
+		when(bucketFormatResolver.listAvailableFormats(bucket))
+				.thenReturn(
+						asList(BucketFormat.SPLUNK_BUCKET, BucketFormat.SPLUNK_BUCKET_TGZ));
+	}
+
+	public void rebuild_bucketInArchive_catalogsBucketWithFormatsAndSizes() {
+		when(archiveBucketSize.readBucketSize(any(Bucket.class))).thenReturn(7L);
+
+		rebuilder.rebuild();
+
+		List<CatalogedBucket> buckets = archiveCatalog.listBucketsInIndex("index");
+		assertEquals(buckets.size(), 1);
+		CatalogedBucket cataloged = buckets.get(0);
+		assertEquals(cataloged.getName(), "db_20_10_0");
+		assertEquals(cataloged.getEarliestSeconds(), 10);
+		assertEquals(cataloged.getLatestSeconds(), 20);
+		assertEquals(cataloged.getFormats(),
+				asList(BucketFormat.SPLUNK_BUCKET, BucketFormat.SPLUNK_BUCKET_TGZ));
+		assertEquals(cataloged.getSize(BucketFormat.SPLUNK_BUCKET_TGZ), (Long) 7L);
+	}
+
+	public void rebuild_rebuilt_catalogIsComplete() {
+		rebuilder.rebuild();
+		assertTrue(archiveCatalog.isComplete());
+	}
+
+	public void rebuild_indexes_returnsNumberOfBucketsPerIndex() {
+		assertEquals(rebuilder.rebuild().get("index"), (Integer) 1);
+	}
+
+	public void rebuild_indexNoLongerInArchive_removedFromCatalog() {
+		archiveCatalog.addArchivedBucket(new RemoteBucket("/path", "gone",
+				"db_20_10_0", BucketFormat.SPLUNK_BUCKET, 1L));
+
+		rebuilder.rebuild();
+		assertEquals(archiveCatalog.listIndexes(), asList("index"));
+	}
+
+	public void rebuild_listingFails_catalogStaysIncomplete() {
+		archiveCatalog.markComplete();
+		when(bucketsLister.listBucketsInIndex("index")).thenThrow(
+				new RuntimeException());
+		try {
+			rebuilder.rebuild();
+			fail();
+		} catch (RuntimeException e) {
+			assertFalse(archiveCatalog.isComplete());
+		}
+	}
+
+	public void rebuild_formatsOfBucketCannotBeListed_catalogsTheOtherBucketsAndStaysIncomplete()
+			throws IOException {
+		Bucket failing = new RemoteBucket("/failing", "index", "db_40_30_1",
+				(BucketFormat) null);
+		when(bucketsLister.listBucketsInIndex("index")).thenReturn(
+				asList(failing, bucket));
+		final IOException exception = new IOException();
+		when(bucketFormatResolver.listAvailableFormats(any(Bucket.class)))
+				.thenAnswer(new Answer<List<BucketFormat>>() {
+					@Override
+					public List<BucketFormat> answer(InvocationOnMock invocation)
+							throws IOException {
+						Bucket b = (Bucket) invocation.getArguments()[0];
+						if (b.getName().equals("db_40_30_1"))
+							throw exception;
+						return asList(BucketFormat.SPLUNK_BUCKET);
+					}
+				});
+
+		assertEquals(rebuilder.rebuild().get("index"), (Integer) 1);
+		assertFalse(archiveCatalog.isComplete());
+		assertEquals(archiveCatalog.listBucketsInIndex("index").get(0).getName(),
+				"db_20_10_0");
+		assertEquals(rebuilder.getFailedBuckets().size(), 1);
+		assertEquals(rebuilder.getFailedBuckets().get(0).bucket, failing);
+		assertEquals(rebuilder.getFailedBuckets().get(0).exception, exception);
+	}
+
+	public void rebuild_catalog_marksIncompleteBeforeListingTheArchive() {
+		ArchiveCatalog catalog = mock(ArchiveCatalog.class);
+		new ArchiveCatalogRebuilder(indexesLister, bucketsLister,
+				bucketFormatResolver, archiveBucketSize, mock(PathResolver.class),
+				catalog).rebuild();
+
+		InOrder inOrder = inOrder(catalog, indexesLister);
+		inOrder.verify(catalog).markIncomplete();
+		inOrder.verify(indexesLister).listIndexes();
+		inOrder.verify(catalog).markComplete();
+	}
+}
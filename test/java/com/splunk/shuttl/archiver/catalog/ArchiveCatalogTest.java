@@ -0,0 +1,232 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.catalog;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static java.util.Arrays.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
+
+@Test(groups = { "fast-unit" })
+public class ArchiveCatalogTest {
+
+	private File catalogDirectory;
+	private ArchiveCatalog archiveCatalog;
+	private String name;
+
+	@BeforeMethod
+	public void setUp() {
+		catalogDirectory = createDirectory();
+		archiveCatalog = new ArchiveCatalog(catalogDirectory);
+		name = "db_1336330530_1336330500_0";
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(catalogDirectory);
+	}
+
+	private Bucket bucket(String index, BucketFormat format, Long size) {
+		return new RemoteBucket("/path", index, name, format, size);
+	}
+
+	public void listBucketsInIndex_addedBucket_catalogedWithTimesFormatAndSize() {
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 123L));
+
+		List<CatalogedBucket> buckets = archiveCatalog.listBucketsInIndex("index");
+		assertEquals(buckets.size(), 1);
+		CatalogedBucket cataloged = buckets.get(0);
+		assertEquals(cataloged.getIndex(), "index");
+		assertEquals(cataloged.getName(), name);
+		assertEquals(cataloged.getEarliestSeconds(), 1336330500);
+		assertEquals(cataloged.getLatestSeconds(), 1336330530);
+		assertEquals(cataloged.getFormats(), asList(BucketFormat.SPLUNK_BUCKET));
+		assertEquals(cataloged.getSize(BucketFormat.SPLUNK_BUCKET), (Long) 123L);
+	}
+
+	public void listBucketsInIndex_bucketAddedInTwoFormats_oneBucketWithBothFormats() {
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 123L));
+		archiveCatalog.addArchivedBucket(bucket("index", BucketFormat.CSV, null));
+
+		List<CatalogedBucket> buckets = archiveCatalog.listBucketsInIndex("index");
+		assertEquals(buckets.size(), 1);
+		assertEquals(buckets.get(0).getFormats(),
+				asList(BucketFormat.SPLUNK_BUCKET, BucketFormat.CSV));
+		assertNull(buckets.get(0).getSize(BucketFormat.CSV));
+	}
+
+	public void listBucketsInIndex_noCatalogForIndex_empty() {
+		assertTrue(archiveCatalog.listBucketsInIndex("index").isEmpty());
+	}
+
+	public void listBuckets_bucketsInTwoIndexes_listsBothIndexes() {
+		archiveCatalog.addArchivedBucket(bucket("a", BucketFormat.SPLUNK_BUCKET,
+				1L));
+		archiveCatalog.addArchivedBucket(bucket("b", BucketFormat.SPLUNK_BUCKET,
+				1L));
+
+		assertEquals(archiveCatalog.listBuckets().size(), 2);
+		assertEquals(archiveCatalog.listIndexes().size(), 2);
+		assertTrue(archiveCatalog.listIndexes().containsAll(asList("a", "b")));
+	}
+
+	public void listBucketsInIndex_brokenLine_ignoresTheLine() throws Exception {
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+		FileUtils.writeStringToFile(new File(catalogDirectory, "index"
+				+ ArchiveCatalog.CATALOG_FILE_EXTENSION), "broken\tline\n", true);
+
+		assertEquals(archiveCatalog.listBucketsInIndex("index").size(), 1);
+	}
+
+	public void isComplete_notMarked_false() {
+		assertFalse(archiveCatalog.isComplete());
+	}
+
+	public void isComplete_markedCompleteThenIncomplete_falseAgain() {
+		archiveCatalog.markComplete();
+		assertTrue(archiveCatalog.isComplete());
+		archiveCatalog.markIncomplete();
+		assertFalse(archiveCatalog.isComplete());
+	}
+
+	public void isComplete_otherInstanceOnSameDirectory_sharesState() {
+		archiveCatalog.markComplete();
+		assertTrue(new ArchiveCatalog(catalogDirectory).isComplete());
+	}
+
+	public void isComplete_rebuiltLongerThanMaxAgeAgo_staleAndNotComplete() {
+		ArchiveCatalog catalogWithMaxAge = new ArchiveCatalog(catalogDirectory,
+				60 * 1000L);
+		catalogWithMaxAge.markComplete();
+		new File(catalogDirectory, ArchiveCatalog.COMPLETE_MARKER_NAME)
+				.setLastModified(System.currentTimeMillis() - 120 * 1000);
+		assertTrue(catalogWithMaxAge.isStale());
+		assertFalse(catalogWithMaxAge.isComplete());
+	}
+
+	public void isComplete_rebuiltWithinMaxAge_notStaleAndComplete() {
+		ArchiveCatalog catalogWithMaxAge = new ArchiveCatalog(catalogDirectory,
+				60 * 1000L);
+		catalogWithMaxAge.markComplete();
+		assertFalse(catalogWithMaxAge.isStale());
+		assertTrue(catalogWithMaxAge.isComplete());
+	}
+
+	public void isStale_noMaxAge_neverStale() {
+		archiveCatalog.markComplete();
+		new File(catalogDirectory, ArchiveCatalog.COMPLETE_MARKER_NAME)
+				.setLastModified(0);
+		assertFalse(archiveCatalog.isStale());
+	}
+
+	public void isStale_notRebuilt_notStale() {
+		assertFalse(new ArchiveCatalog(catalogDirectory, 60 * 1000L).isStale());
+	}
+
+	public void replaceIndex_buckets_replacesCatalogedBuckets() {
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+		long mark = archiveCatalog.getAppendMark("index");
+		CatalogedBucket replacement = new CatalogedBucket("index",
+				"db_2_1_0", 1, 2, Collections.singletonMap(BucketFormat.CSV, 5L));
+
+		archiveCatalog.replaceIndex("index", asList(replacement), mark);
+
+		List<CatalogedBucket> buckets = archiveCatalog.listBucketsInIndex("index");
+		assertEquals(buckets.size(), 1);
+		assertEquals(buckets.get(0).getName(), "db_2_1_0");
+		assertEquals(buckets.get(0).getSize(BucketFormat.CSV), (Long) 5L);
+	}
+
+	public void replaceIndex_bucketAddedAfterAppendMark_keepsAddedBucket() {
+		long mark = archiveCatalog.getAppendMark("index");
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+
+		archiveCatalog.replaceIndex("index",
+				Collections.<CatalogedBucket> emptyList(), mark);
+
+		List<CatalogedBucket> buckets = archiveCatalog.listBucketsInIndex("index");
+		assertEquals(buckets.size(), 1);
+		assertEquals(buckets.get(0).getName(), name);
+	}
+
+	public void retainIndexes_indexNotRetained_removesItsBuckets() {
+		archiveCatalog.addArchivedBucket(bucket("a", BucketFormat.SPLUNK_BUCKET,
+				1L));
+		archiveCatalog.addArchivedBucket(bucket("b", BucketFormat.SPLUNK_BUCKET,
+				1L));
+
+		archiveCatalog.retainIndexes(asList("a"));
+		assertEquals(archiveCatalog.listIndexes(), asList("a"));
+	}
+
+	public void addArchivedBucket_catalogCannotBeWritten_marksCatalogIncomplete() {
+		archiveCatalog.markComplete();
+		assertTrue(new File(catalogDirectory, "index"
+				+ ArchiveCatalog.CATALOG_FILE_EXTENSION).mkdirs());
+
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+		assertFalse(archiveCatalog.isComplete());
+	}
+
+	public void getTimeIndex_catalogUnchanged_sameTimeIndex() {
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+
+		assertSame(archiveCatalog.getTimeIndex("index"),
+				new ArchiveCatalog(catalogDirectory).getTimeIndex("index"));
+	}
+
+	public void getTimeIndex_bucketAdded_newTimeIndexWithTheBucket() {
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+		assertEquals(archiveCatalog.getTimeIndex("index").size(), 1);
+
+		name = "db_1336330630_1336330600_1";
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+		assertEquals(archiveCatalog.getTimeIndex("index").size(), 2);
+	}
+
+	public void getTimeIndex_timeRange_filtersOnCatalogedTimes() {
+		archiveCatalog.addArchivedBucket(bucket("index",
+				BucketFormat.SPLUNK_BUCKET, 1L));
+
+		assertEquals(
+				archiveCatalog.getTimeIndex("index")
+						.filter(new Date(1336330500000L), new Date(1336330500000L))
+						.get(0).getName(), name);
+		assertTrue(archiveCatalog.getTimeIndex("index")
+				.filter(new Date(1336330531000L), new Date(1336330600000L)).isEmpty());
+	}
+}
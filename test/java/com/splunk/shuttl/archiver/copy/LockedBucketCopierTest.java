@@ -18,7 +18,6 @@ import static com.splunk.shuttl.testutil.TUtilsFile.*;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
-import org.mockito.InOrder;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -32,7 +31,6 @@ public class LockedBucketCopierTest {
 
 	private LockedBucketCopier copyBucketEntryPoint;
 	private CallCopyBucketEndpoint endpoint;
-	private CopyBucketReceipts receipts;
 	private BucketLocker realBucketLocker;
 	private LocalBucket bucket;
 
@@ -41,30 +39,24 @@ public class LockedBucketCopierTest {
 		realBucketLocker = new CopyBucketLocker(new LocalFileSystemPaths(
 				createDirectory()));
 		endpoint = mock(CallCopyBucketEndpoint.class);
-		receipts = mock(CopyBucketReceipts.class);
-		copyBucketEntryPoint = new LockedBucketCopier(realBucketLocker, endpoint,
-				receipts);
+		copyBucketEntryPoint = new LockedBucketCopier(realBucketLocker, endpoint);
 
 		bucket = TUtilsBucket.createBucket();
 	}
 
-	public void copyBucket_givenBucketLock_createsReceiptAfterSuccessfulBucketCopy() {
+	public void copyBucket_givenBucketLock_callsEndpoint() {
 		copyBucketEntryPoint.copyBucket(bucket);
-
-		InOrder inOrder = inOrder(endpoint, receipts);
-		inOrder.verify(endpoint).call(bucket);
-		inOrder.verify(receipts).createReceipt(bucket);
+		verify(endpoint).call(bucket);
 	}
 
-	public void copyBucket_endpointCallThrows_doesNotCreateReceipt() {
+	public void copyBucket_endpointCallThrows_doesNotThrow() {
 		doThrow(RuntimeException.class).when(endpoint).call(bucket);
 		copyBucketEntryPoint.copyBucket(bucket);
-		verify(receipts, never()).createReceipt(bucket);
 	}
 
 	public void copyBucket_notGivenBucketLock_doesNothingWithDependencies() {
 		assertTrue(realBucketLocker.getLockForBucket(bucket).tryLockExclusive());
 		copyBucketEntryPoint.copyBucket(bucket);
-		verifyZeroInteractions(endpoint, receipts);
+		verifyZeroInteractions(endpoint);
 	}
 }
@@ -73,6 +73,8 @@ public class PathResolverTest {
 		tmpDirectory = "tmp_dir";
 		when(configuration.getArchiveTempPath()).thenReturn(
 				ROOT_PATH + "/" + tmpDirectory);
+		when(configuration.getArchiveMetadataPath()).thenReturn(
+				ROOT_PATH + "/metadata");
 	}
 
 	@Test(groups = { "fast-unit" })
@@ -227,4 +229,19 @@ public class PathResolverTest {
 		assertEquals(indexesHomeParent, serversHome);
 	}
 
+
+	public void getMetadataManifestHome_givenIndex_uniqueForClusterServerAndIndexOutsideIndexesHome() {
+		String expected = ROOT_PATH + "/metadata/" + clusterName + "/"
+				+ serverName + "/" + bucketIndex;
+		String manifestHome = pathResolver.getMetadataManifestHome(bucketIndex);
+		assertEquals(expected, manifestHome);
+		assertFalse(manifestHome.startsWith(pathResolver.getIndexesHome()));
+	}
+
+	public void resolveTempPathForMetadataManifest_indexAndFileName_tmpDirConcatWithManifestFile() {
+		String expected = ROOT_PATH + "/" + tmpDirectory
+				+ pathResolver.getMetadataManifestHome(bucketIndex) + "/file";
+		assertEquals(expected,
+				pathResolver.resolveTempPathForMetadataManifest(bucketIndex, "file"));
+	}
 }
@@ -0,0 +1,111 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class RecursivePathIteratorTest {
+
+	private ArchiveFileSystem archiveFileSystem;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		archiveFileSystem = mock(ArchiveFileSystem.class);
+		when(archiveFileSystem.listPath("/a")).thenReturn(asList("/a/b", "/a/c"));
+		when(archiveFileSystem.listPath("/a/b")).thenReturn(
+				asList("/a/b/1", "/a/b/2"));
+		when(archiveFileSystem.listPath("/a/c")).thenReturn(asList("/a/c/3"));
+	}
+
+	private List<String> toList(Iterator<String> paths) {
+		List<String> list = new ArrayList<String>();
+		while (paths.hasNext())
+			list.add(paths.next());
+		return list;
+	}
+
+	public void listPathsRecursively_depthOne_listsLikeListPath()
+			throws IOException {
+		assertEquals(toList(RecursivePathIterator.listPathsRecursively(
+				archiveFileSystem, "/a", 1)), asList("/a/b", "/a/c"));
+	}
+
+	public void listPathsRecursively_depthTwo_pathsTwoLevelsDownGroupedByParent()
+			throws IOException {
+		assertEquals(toList(RecursivePathIterator.listPathsRecursively(
+				archiveFileSystem, "/a", 2)), asList("/a/b/1", "/a/b/2", "/a/c/3"));
+	}
+
+	public void listPathsRecursively_iterating_listsDirectoriesWhenWalkingToThem()
+			throws IOException {
+		Iterator<String> paths = RecursivePathIterator.listPathsRecursively(
+				archiveFileSystem, "/a", 2);
+		verify(archiveFileSystem).listPath("/a");
+		verifyNoMoreInteractions(archiveFileSystem);
+
+		paths.next();
+		verify(archiveFileSystem).listPath("/a/b");
+		verify(archiveFileSystem, never()).listPath("/a/c");
+	}
+
+	public void listPathsRecursively_fileInTheWalk_isNotWalkedInto()
+			throws IOException {
+		when(archiveFileSystem.listPath("/a/c")).thenReturn(asList("/a/c"));
+		assertEquals(toList(RecursivePathIterator.listPathsRecursively(
+				archiveFileSystem, "/a", 2)), asList("/a/b/1", "/a/b/2"));
+	}
+
+	public void listPathsRecursively_emptyDirectories_noPaths()
+			throws IOException {
+		when(archiveFileSystem.listPath("/a/b")).thenReturn(
+				Collections.<String> emptyList());
+		when(archiveFileSystem.listPath("/a/c")).thenReturn(
+				Collections.<String> emptyList());
+		assertFalse(RecursivePathIterator.listPathsRecursively(archiveFileSystem,
+				"/a", 2).hasNext());
+	}
+
+	@Test(expectedExceptions = { RuntimeException.class })
+	public void listPathsRecursively_listingFailsWhileIterating_throwsRuntimeException()
+			throws IOException {
+		when(archiveFileSystem.listPath("/a/b")).thenThrow(new IOException());
+		RecursivePathIterator.listPathsRecursively(archiveFileSystem, "/a", 2)
+				.next();
+	}
+
+	public void listPathsRecursively_fileSystemListsRecursively_usesTheFileSystemsListing()
+			throws IOException {
+		ArchiveFileSystem recursiveFileSystem = mock(ArchiveFileSystem.class,
+				withSettings().extraInterfaces(ListsPathsRecursively.class));
+		Iterator<String> paths = asList("/x").iterator();
+		when(
+				((ListsPathsRecursively) recursiveFileSystem).listPathsRecursively(
+						"/a", 2)).thenReturn(paths);
+		assertSame(RecursivePathIterator.listPathsRecursively(recursiveFileSystem,
+				"/a", 2), paths);
+	}
+}
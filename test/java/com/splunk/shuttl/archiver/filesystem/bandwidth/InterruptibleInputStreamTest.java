@@ -0,0 +1,48 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.bandwidth;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class InterruptibleInputStreamTest {
+
+	@AfterMethod
+	public void clearInterrupt() {
+		Thread.interrupted();
+	}
+
+	public void read_notInterrupted_readsTheStream() throws IOException {
+		InterruptibleInputStream in = new InterruptibleInputStream(
+				new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+		assertEquals(in.read(new byte[3], 0, 3), 3);
+	}
+
+	@Test(expectedExceptions = { InterruptedIOException.class })
+	public void read_interrupted_throwsInterruptedIOException()
+			throws IOException {
+		InterruptibleInputStream in = new InterruptibleInputStream(
+				new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+		Thread.currentThread().interrupt();
+		in.read(new byte[3], 0, 3);
+	}
+}
@@ -0,0 +1,62 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.bandwidth;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class RateLimitedStreamsTest {
+
+	private TransferRateLimiter rateLimiter;
+
+	@BeforeMethod
+	public void setUp() {
+		rateLimiter = mock(TransferRateLimiter.class);
+	}
+
+	public void read_bytes_acquiresTheBytesThatWereRead() throws IOException {
+		RateLimitedInputStream in = new RateLimitedInputStream(
+				new ByteArrayInputStream(new byte[10]), rateLimiter);
+		assertEquals(in.read(new byte[6]), 6);
+		assertEquals(in.read(new byte[6]), 4);
+		assertEquals(in.read(new byte[6]), -1);
+
+		verify(rateLimiter).acquire(6);
+		verify(rateLimiter).acquire(4);
+		verifyNoMoreInteractions(rateLimiter);
+	}
+
+	public void write_bytes_acquiresTheBytesBeforeWritingThem()
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RateLimitedOutputStream out = new RateLimitedOutputStream(bytes,
+				rateLimiter);
+		IOUtils.write("content", out);
+		out.write('!');
+
+		assertEquals(bytes.toString(), "content!");
+		verify(rateLimiter).acquire("content".length());
+		verify(rateLimiter).acquire(1);
+	}
+}
@@ -0,0 +1,69 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.bandwidth;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.server.mbeans.ShuttlArchiverMBean;
+
+@Test(groups = { "fast-unit" })
+public class TransferBudgetsTest {
+
+	private TransferBudgets transferBudgets;
+
+	@BeforeMethod
+	public void setUp() {
+		transferBudgets = TransferBudgets.createUnlimited();
+	}
+
+	public void getLimiter_differentBudgets_differentLimiters() {
+		assertNotSame(transferBudgets.getLimiter(TransferBudget.ARCHIVE),
+				transferBudgets.getLimiter(TransferBudget.THAW));
+	}
+
+	public void setBytesPerSecond_givenLimit_limitsOnlyThatBudget() {
+		transferBudgets.setBytesPerSecond(TransferBudget.THAW, 1000L);
+		assertEquals(transferBudgets.getLimiter(TransferBudget.THAW)
+				.getBytesPerSecond(), 1000);
+		assertEquals(transferBudgets.getLimiter(TransferBudget.ARCHIVE)
+				.getBytesPerSecond(), 0);
+	}
+
+	public void setBytesPerSecond_null_unlimited() {
+		transferBudgets.setBytesPerSecond(TransferBudget.THAW, 1000L);
+		transferBudgets.setBytesPerSecond(TransferBudget.THAW, null);
+		assertEquals(transferBudgets.getLimiter(TransferBudget.THAW)
+				.getBytesPerSecond(), 0);
+	}
+
+	public void configure_givenMBean_setsTheLimitsOfAllBudgets() {
+		ShuttlArchiverMBean mBean = mock(ShuttlArchiverMBean.class);
+		when(mBean.getArchiveBandwidthLimit()).thenReturn(1L);
+		when(mBean.getColdCopyBandwidthLimit()).thenReturn(2L);
+		when(mBean.getThawBandwidthLimit()).thenReturn(3L);
+		transferBudgets.configure(mBean);
+
+		assertEquals(transferBudgets.getLimiter(TransferBudget.ARCHIVE)
+				.getBytesPerSecond(), 1);
+		assertEquals(transferBudgets.getLimiter(TransferBudget.COLD_COPY)
+				.getBytesPerSecond(), 2);
+		assertEquals(transferBudgets.getLimiter(TransferBudget.THAW)
+				.getBytesPerSecond(), 3);
+	}
+}
@@ -0,0 +1,97 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.bandwidth;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferRateLimiter.Clock;
+
+@Test(groups = { "fast-unit" })
+public class TransferRateLimiterTest {
+
+	private static final long SECOND = 1000L * 1000 * 1000;
+
+	private FakeClock clock;
+	private TransferRateLimiter rateLimiter;
+
+	@BeforeMethod
+	public void setUp() {
+		clock = new FakeClock();
+		rateLimiter = new TransferRateLimiter(clock, 100);
+	}
+
+	public void acquire_withinTokens_doesNotSleep() {
+		clock.now += SECOND;
+		rateLimiter.acquire(100);
+		assertEquals(clock.slept, 0);
+	}
+
+	public void acquire_moreThanTheTokens_sleepsUntilTheDebtIsPaid() {
+		rateLimiter.acquire(50);
+		assertEquals(clock.slept, SECOND / 2);
+	}
+
+	public void acquire_afterIdlingLongerThanASecond_burstsAtMostOneSecondOfBytes() {
+		clock.now += 10 * SECOND;
+		rateLimiter.acquire(300);
+		assertEquals(clock.slept, 2 * SECOND);
+	}
+
+	public void acquire_unlimited_doesNotSleep() {
+		rateLimiter.setBytesPerSecond(0);
+		rateLimiter.acquire(1000 * 1000);
+		assertEquals(clock.slept, 0);
+	}
+
+	public void setBytesPerSecond_whileLimited_newLimitIsUsedForTheNextAcquire() {
+		rateLimiter.setBytesPerSecond(1000);
+		rateLimiter.acquire(500);
+		assertEquals(clock.slept, SECOND / 2);
+	}
+
+	public void getObservedBytesPerSecond_afterAMeasuredWindow_bytesPerSecondOfTheWindow() {
+		rateLimiter.setBytesPerSecond(0);
+		rateLimiter.acquire(500);
+		clock.now += TransferRateLimiter.MEASURE_WINDOW_NANOS;
+		assertEquals(rateLimiter.getObservedBytesPerSecond(), 100);
+	}
+
+	public void getObservedBytesPerSecond_idleForMoreThanAWindow_zero() {
+		rateLimiter.setBytesPerSecond(0);
+		rateLimiter.acquire(500);
+		clock.now += 2 * TransferRateLimiter.MEASURE_WINDOW_NANOS;
+		assertEquals(rateLimiter.getObservedBytesPerSecond(), 0);
+	}
+
+	private static class FakeClock extends Clock {
+
+		long now = 0;
+		long slept = 0;
+
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+
+		@Override
+		public void sleepNanos(long nanos) {
+			slept += nanos;
+			now += nanos;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.glacier;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.filesystem.glacier.GlacierArchiveIdIndex.BulkPut;
+
+@Test(groups = { "fast-unit" })
+public class GlacierArchiveIdIndexTest {
+
+	private File directory;
+	private GlacierArchiveIdIndex index;
+
+	@BeforeMethod
+	public void setUp() {
+		directory = createDirectory();
+		index = new GlacierArchiveIdIndex(directory, 4, 2);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+
+	public void get_notPut_null() {
+		assertNull(index.get("/path"));
+	}
+
+	public void get_put_getsArchiveId() {
+		index.put("/path", "id");
+		assertEquals(index.get("/path"), "id");
+	}
+
+	public void get_putTwice_getsLatestArchiveId() {
+		index.put("/path", "id");
+		index.put("/path", "new id");
+		assertEquals(index.get("/path"), "new id");
+	}
+
+	public void get_otherInstanceWithSameDirectory_getsPersistedArchiveId() {
+		index.put("/path", "id");
+		assertEquals(new GlacierArchiveIdIndex(directory, 4, 2).get("/path"), "id");
+	}
+
+	public void get_morePathsThanCacheSize_getsAllArchiveIds() {
+		for (int i = 0; i < 10; i++)
+			index.put("/path" + i, "id" + i);
+		for (int i = 0; i < 10; i++)
+			assertEquals(index.get("/path" + i), "id" + i);
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void put_pathWithTab_throws() {
+		index.put("/pa\tth", "id");
+	}
+
+	public void bulkPut_moreThanBatchSize_allArchiveIdsCanBeReadAfterFinish() {
+		BulkPut bulkPut = index.startBulkPut();
+		int archives = GlacierArchiveIdIndex.BATCH_SIZE + 10;
+		for (int i = 0; i < archives; i++)
+			bulkPut.put("/path" + i, "id" + i);
+
+		assertEquals(bulkPut.finish(), archives);
+		assertEquals(index.get("/path0"), "id0");
+		assertEquals(index.get("/path" + (archives - 1)), "id" + (archives - 1));
+	}
+
+	public void bulkPut_overwritesCachedArchiveIdAndCompactsShards()
+			throws IOException {
+		index.put("/path", "id");
+		assertEquals(index.get("/path"), "id");
+		BulkPut bulkPut = index.startBulkPut();
+		bulkPut.put("/path", "new id");
+		bulkPut.finish();
+
+		assertEquals(index.get("/path"), "new id");
+		int lines = 0;
+		for (File shard : directory.listFiles())
+			lines += FileUtils.readLines(shard).size();
+		assertEquals(lines, 1);
+	}
+}
@@ -20,8 +20,6 @@ import static org.testng.Assert.*;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.mockito.InOrder;
 import org.testng.annotations.BeforeMethod;
@@ -38,13 +36,13 @@ public class GlacierClientTest {
 	private ArchiveTransferManager transferManager;
 	private String vault;
 	private GlacierClient glacierClient;
-	private Map<String, String> archiveIds;
+	private GlacierArchiveIdIndex archiveIds;
 
 	@BeforeMethod
 	public void setUp() {
 		transferManager = mock(ArchiveTransferManager.class);
 		vault = "vault";
-		archiveIds = new HashMap<String, String>();
+		archiveIds = new GlacierArchiveIdIndex(createDirectory(), 4, 10);
 		glacierClient = new GlacierClient(transferManager, vault, archiveIds);
 	}
 
@@ -107,4 +105,10 @@ public class GlacierClientTest {
 		verify(file).delete();
 		verify(file, never()).mkdirs();
 	}
+
+	public void getArchiveId_pathPutInIndexByOtherClient_getsArchiveId() {
+		new GlacierClient(transferManager, vault, archiveIds).putArchiveId(
+				"/some/key", "archiveId");
+		assertEquals(glacierClient.getArchiveId("/some/key"), "archiveId");
+	}
 }
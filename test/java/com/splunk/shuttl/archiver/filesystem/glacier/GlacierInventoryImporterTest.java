@@ -0,0 +1,92 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.glacier;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class GlacierInventoryImporterTest {
+
+	private File directory;
+	private GlacierArchiveIdIndex index;
+	private GlacierInventoryImporter importer;
+
+	@BeforeMethod
+	public void setUp() {
+		directory = createDirectory();
+		index = new GlacierArchiveIdIndex(directory, 4, 10);
+		importer = new GlacierInventoryImporter(index);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+
+	public void importInventory_archiveList_importsArchiveIdsByDescription()
+			throws IOException {
+		String inventory = "{\"VaultARN\":\"arn\",\"InventoryDate\":\"2013-01-01\","
+				+ "\"ArchiveList\":["
+				+ "{\"ArchiveId\":\"id1\",\"ArchiveDescription\":\"/archive/a\","
+				+ "\"Size\":3,\"SHA256TreeHash\":\"hash\"},"
+				+ "{\"ArchiveDescription\":\"/archive/b\",\"ArchiveId\":\"id2\","
+				+ "\"CreationDate\":\"2013-01-01\"}]}";
+
+		assertEquals(importer.importInventory(toStream(inventory)), 2);
+		assertEquals(index.get("/archive/a"), "id1");
+		assertEquals(index.get("/archive/b"), "id2");
+	}
+
+	public void importInventory_archivesWithoutDescription_areSkipped()
+			throws IOException {
+		String inventory = "{\"ArchiveList\":["
+				+ "{\"ArchiveId\":\"id1\",\"ArchiveDescription\":\"\"},"
+				+ "{\"ArchiveId\":\"id2\"},"
+				+ "{\"ArchiveId\":\"id3\",\"ArchiveDescription\":\"/archive/c\"}]}";
+
+		assertEquals(importer.importInventory(toStream(inventory)), 1);
+		assertEquals(index.get("/archive/c"), "id3");
+	}
+
+	public void importInventory_pathWithManyArchives_importsLastArchive()
+			throws IOException {
+		String inventory = "{\"ArchiveList\":["
+				+ "{\"ArchiveId\":\"old\",\"ArchiveDescription\":\"/archive/a\"},"
+				+ "{\"ArchiveId\":\"new\",\"ArchiveDescription\":\"/archive/a\"}]}";
+
+		importer.importInventory(toStream(inventory));
+		assertEquals(index.get("/archive/a"), "new");
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void importInventory_notAnObject_throws() throws IOException {
+		importer.importInventory(toStream("[]"));
+	}
+
+	private InputStream toStream(String inventory) throws IOException {
+		return new ByteArrayInputStream(inventory.getBytes("UTF-8"));
+	}
+}
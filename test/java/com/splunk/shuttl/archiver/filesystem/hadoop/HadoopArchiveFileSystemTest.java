@@ -16,18 +16,31 @@
 package com.splunk.shuttl.archiver.filesystem.hadoop;
 
 import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.filesystem.FileOverwriteException;
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferRateLimiter;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.ReadsBucketStream;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.WritesBucketStream;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
 import com.splunk.shuttl.testutil.TUtilsFile;
 import com.splunk.shuttl.testutil.TUtilsFileSystem;
 
@@ -65,6 +78,31 @@ public class HadoopArchiveFileSystemTest {
 		assertTrue(listing.contains(file2.getAbsolutePath()));
 	}
 
+	public void listPathsRecursively_directoriesAndFiles_filesAreNotWalkedInto()
+			throws IOException {
+		File dir = createDirectory();
+		File bucket = createDirectoryInParent(dir, "bucket");
+		File format = createDirectoryInParent(bucket, "SPLUNK_BUCKET");
+		createFileInParent(dir, "file");
+
+		Iterator<String> paths = hadoopArchiveFileSystem.listPathsRecursively(
+				dir.getAbsolutePath(), 2);
+
+		assertTrue(paths.hasNext());
+		assertEquals(paths.next(), format.getAbsolutePath());
+		assertFalse(paths.hasNext());
+	}
+
+	public void isBulkListing_hadoopWithoutRecursiveListing_false() {
+		assertFalse(hadoopArchiveFileSystem.isBulkListing());
+	}
+
+	public void listPathsRecursively_pathDoesNotExist_noPaths()
+			throws IOException {
+		assertFalse(hadoopArchiveFileSystem.listPathsRecursively(
+				"/does/not/exist/" + System.nanoTime(), 2).hasNext());
+	}
+
 	public void listPath_listingAnEmptyDirectory_emptyList() throws IOException {
 		File testDirectory = TUtilsFile.createDirectory();
 		List<String> listing = hadoopArchiveFileSystem.listPath(testDirectory
@@ -171,4 +209,195 @@ public class HadoopArchiveFileSystemTest {
 	public void putFile_givenRelativeBucket_putsFile() {
 
 	}
+
+	public void putBucket_withFileTransferStreams_putsBucketDirectoryToTemp()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		FileUtils.writeStringToFile(new File(bucket.getDirectory(),
+				"rawdata/journal.gz"), "journal");
+		File temp = new File(createDirectory(), "temp");
+		hadoopArchiveFileSystem.withFileTransferStreams(2).getBucketTransferer()
+				.put(bucket, temp.getAbsolutePath(), createFilePath().getAbsolutePath());
+
+		assertEquals("journal",
+				FileUtils.readFileToString(new File(temp, "rawdata/journal.gz")));
+	}
+
+	public void getBucket_withFileTransferStreams_getsBucketDirectoryToTemp()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		FileUtils.writeStringToFile(new File(bucket.getDirectory(),
+				"rawdata/journal.gz"), "journal");
+		File temp = new File(createDirectory(), "temp");
+		hadoopArchiveFileSystem.withFileTransferStreams(2).getBucketTransferer()
+				.get(bucket, temp, createFilePath());
+
+		assertEquals("journal",
+				FileUtils.readFileToString(new File(temp, "rawdata/journal.gz")));
+	}
+
+	public void putBucket_withRateLimiter_acquiresTheBytesOfTheBucket()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		FileUtils.writeStringToFile(new File(bucket.getDirectory(),
+				"rawdata/journal.gz"), "journal");
+		TransferRateLimiter rateLimiter = mock(TransferRateLimiter.class);
+		when(rateLimiter.getBytesPerSecond()).thenReturn(1000L);
+		File temp = new File(createDirectory(), "temp");
+		hadoopArchiveFileSystem.withRateLimiter(rateLimiter).getBucketTransferer()
+				.put(bucket, temp.getAbsolutePath(), createFilePath().getAbsolutePath());
+
+		assertEquals("journal",
+				FileUtils.readFileToString(new File(temp, "rawdata/journal.gz")));
+		verify(rateLimiter).acquire("journal".length());
+	}
+
+	public void getFile_withRateLimiter_getsSingleFile() throws IOException {
+		File file = createFile();
+		FileUtils.writeStringToFile(file, "content");
+		TransferRateLimiter rateLimiter = mock(TransferRateLimiter.class);
+		when(rateLimiter.getBytesPerSecond()).thenReturn(1000L);
+		File temp = new File(createDirectory(), "temp");
+		hadoopArchiveFileSystem.withRateLimiter(rateLimiter).getFileTransferer()
+				.get(file.getAbsolutePath(), temp, createFilePath());
+
+		assertEquals("content", FileUtils.readFileToString(temp));
+		verify(rateLimiter).acquire("content".length());
+	}
+
+	public void putBucket_earlierAttemptLeftCheckpoint_onlyPutsFilesNotInCheckpoint()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		File journal = new File(bucket.getDirectory(), "rawdata/journal.gz");
+		FileUtils.writeStringToFile(journal, "journal");
+		File temp = new File(createDirectory(), "temp");
+		File tempJournal = new File(temp, "rawdata/journal.gz");
+		FileUtils.writeStringToFile(tempJournal, "JOURNAL");
+		TransferCheckpoint.load(fileSystem, new Path(temp.getAbsolutePath()), 0, 0)
+				.addTransferred(journal, "rawdata/journal.gz", new Path(
+						tempJournal.getAbsolutePath()));
+
+		hadoopArchiveFileSystem.getBucketTransferer().put(bucket,
+				temp.getAbsolutePath(), createFilePath().getAbsolutePath());
+
+		assertEquals("JOURNAL", FileUtils.readFileToString(tempJournal));
+		for (File file : bucket.getDirectory().listFiles())
+			assertTrue(new File(temp, file.getName()).exists());
+	}
+
+	public void putBucket_noCheckpoint_recordsPutFilesInCheckpoint()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		File journal = new File(bucket.getDirectory(), "rawdata/journal.gz");
+		FileUtils.writeStringToFile(journal, "journal");
+		File temp = new File(createDirectory(), "temp");
+		Path tempPath = new Path(temp.getAbsolutePath());
+
+		new HadoopArchiveFileSystem(fileSystem, null, null, 0)
+				.getBucketTransferer().put(bucket, temp.getAbsolutePath(),
+						createFilePath().getAbsolutePath());
+
+		assertTrue(TransferCheckpoint.load(fileSystem, tempPath).isTransferred(
+				journal, "rawdata/journal.gz", new Path(tempPath, "rawdata/journal.gz")));
+	}
+
+	public void putBucket_smallerThanCheckpointBytes_putsWithoutCheckpoint()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		File temp = new File(createDirectory(), "temp");
+
+		hadoopArchiveFileSystem.getBucketTransferer().put(bucket,
+				temp.getAbsolutePath(), createFilePath().getAbsolutePath());
+
+		assertFalse(TransferCheckpoint.exists(fileSystem,
+				new Path(temp.getAbsolutePath())));
+	}
+
+	public void bucketTransactionCleaner_tempWithCheckpoint_keepsTempForResuming()
+			throws IOException {
+		File temp = createDirectory();
+		File file = createFileInParent(temp, "file");
+		TransferCheckpoint.load(fileSystem, new Path(temp.getAbsolutePath()), 0, 0)
+				.addTransferred(file, "file", new Path(file.getAbsolutePath()));
+
+		hadoopArchiveFileSystem.getBucketTransactionCleaner().cleanTransaction(
+				null, temp.getAbsolutePath());
+
+		assertTrue(file.exists());
+	}
+
+	public void bucketTransactionCleaner_committedTempWithCheckpoint_deletesCheckpoint()
+			throws IOException {
+		File temp = createDirectory();
+		File file = createFileInParent(temp, "file");
+		Path tempPath = new Path(temp.getAbsolutePath());
+		TransferCheckpoint.load(fileSystem, tempPath, 0, 0).addTransferred(file,
+				"file", new Path(file.getAbsolutePath()));
+		FileUtils.deleteDirectory(temp);
+
+		hadoopArchiveFileSystem.getBucketTransactionCleaner().cleanTransaction(
+				null, temp.getAbsolutePath());
+
+		assertFalse(TransferCheckpoint.exists(fileSystem, tempPath));
+	}
+
+	public void withRateLimiter_limiterWithoutLimit_sameFileSystem() {
+		assertSame(hadoopArchiveFileSystem,
+				hadoopArchiveFileSystem.withRateLimiter(TransferRateLimiter
+						.createUnlimited()));
+	}
+
+	public void withRateLimiter_null_sameFileSystem() {
+		assertSame(hadoopArchiveFileSystem,
+				hadoopArchiveFileSystem.withRateLimiter(null));
+	}
+
+	public void withFileTransferStreams_null_sameFileSystem() {
+		assertSame(hadoopArchiveFileSystem,
+				hadoopArchiveFileSystem.withFileTransferStreams(null));
+	}
+
+	public void putStream_givenWriter_writesStreamToFileInTemp()
+			throws IOException {
+		File temp = new File(createDirectory(), "temp");
+		File dst = new File(createDirectory(), "dst");
+		hadoopArchiveFileSystem.getBucketTransferer().putStream(
+				TUtilsBucket.createBucket(), "bucket.tgz", new WritesBucketStream() {
+
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						out.write("content".getBytes());
+					}
+				}, temp.getAbsolutePath(), dst.getAbsolutePath());
+
+		assertEquals("content",
+				FileUtils.readFileToString(new File(temp, "bucket.tgz")));
+	}
+
+	public void getStream_givenReader_readsFileInRemoteBucketToTemp()
+			throws IOException {
+		Bucket remoteBucket = TUtilsBucket.createBucket();
+		FileUtils.writeStringToFile(new File(remoteBucket.getPath(), "bucket.tgz"),
+				"content");
+		File temp = new File(createDirectory(), "temp");
+		File dst = new File(createDirectory(), "dst");
+		hadoopArchiveFileSystem.getBucketTransferer().getStream(remoteBucket,
+				"bucket.tgz", new ReadsBucketStream() {
+
+					@Override
+					public void readFrom(InputStream in, File temp) throws IOException {
+						FileUtils.writeStringToFile(new File(temp, "read"),
+								IOUtils.toString(in));
+					}
+				}, temp, dst);
+
+		assertEquals("content", FileUtils.readFileToString(new File(temp, "read")));
+	}
+
+	@Test(expectedExceptions = { FileOverwriteException.class })
+	public void getStream_dstExists_throws() throws IOException {
+		hadoopArchiveFileSystem.getBucketTransferer().getStream(
+				TUtilsBucket.createBucket(), "bucket.tgz",
+				mock(ReadsBucketStream.class), createFilePath(), createDirectory());
+	}
 }
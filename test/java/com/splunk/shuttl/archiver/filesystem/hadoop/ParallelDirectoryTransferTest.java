@@ -0,0 +1,154 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.hadoop;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.filesystem.bandwidth.TransferRateLimiter;
+import com.splunk.shuttl.testutil.TUtilsFileSystem;
+
+@Test(groups = { "fast-unit" })
+public class ParallelDirectoryTransferTest {
+
+	private FileSystem fileSystem;
+	private ExecutorService executor;
+	private ParallelDirectoryTransfer parallelDirectoryTransfer;
+	private File directory;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		fileSystem = TUtilsFileSystem.getLocalFileSystem();
+		executor = Executors.newCachedThreadPool();
+		parallelDirectoryTransfer = new ParallelDirectoryTransfer(fileSystem,
+				executor, 3);
+		directory = createDirectory();
+		FileUtils.writeStringToFile(createFileInParent(directory, "a"), "aa");
+		File subDirectory = createDirectoryInParent(directory, "sub");
+		FileUtils.writeStringToFile(createFileInParent(subDirectory, "b"), "b");
+		FileUtils.writeStringToFile(createFileInParent(subDirectory, "c"), "ccc");
+		createDirectoryInParent(directory, "empty");
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	public void put_directoryWithFilesAndDirectories_copiesEverything()
+			throws IOException {
+		File remote = new File(createDirectory(), "remote");
+		parallelDirectoryTransfer.put(directory, new Path(remote.toURI()));
+
+		assertCopied(remote);
+	}
+
+	public void get_directoryWithFilesAndDirectories_copiesEverything()
+			throws IOException {
+		File local = new File(createDirectory(), "local");
+		parallelDirectoryTransfer.get(new Path(directory.toURI()), local);
+
+		assertCopied(local);
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void put_copyOfAFileFails_throwsIOException() throws IOException {
+		FileSystem failingFileSystem = mock(FileSystem.class);
+		doThrow(new IOException()).when(failingFileSystem).copyFromLocalFile(
+				anyBoolean(), anyBoolean(), any(Path.class), any(Path.class));
+		new ParallelDirectoryTransfer(failingFileSystem, executor, 3).put(
+				directory, new Path("/remote"));
+	}
+
+	public void put_copyOfAFileFails_stopsCopyingTheRemainingFiles()
+			throws IOException {
+		FileSystem failingFileSystem = mock(FileSystem.class);
+		doThrow(new IOException()).when(failingFileSystem).copyFromLocalFile(
+				anyBoolean(), anyBoolean(), any(Path.class), any(Path.class));
+		try {
+			new ParallelDirectoryTransfer(failingFileSystem, executor, 1).put(
+					directory, new Path("/remote"));
+			fail();
+		} catch (IOException e) {
+		}
+		verify(failingFileSystem, times(1)).copyFromLocalFile(anyBoolean(),
+				anyBoolean(), any(Path.class), any(Path.class));
+	}
+
+	public void put_withRateLimiter_copiesEverythingAndAcquiresAllBytes()
+			throws IOException {
+		TransferRateLimiter rateLimiter = mock(TransferRateLimiter.class);
+		when(rateLimiter.getBytesPerSecond()).thenReturn(1000L);
+		File remote = new File(createDirectory(), "remote");
+		new ParallelDirectoryTransfer(fileSystem, executor, 3, rateLimiter).put(
+				directory, new Path(remote.toURI()));
+
+		assertCopied(remote);
+		verify(rateLimiter).acquire(2);
+		verify(rateLimiter).acquire(1);
+		verify(rateLimiter).acquire(3);
+	}
+
+	public void get_withRateLimiter_copiesEverything() throws IOException {
+		TransferRateLimiter rateLimiter = mock(TransferRateLimiter.class);
+		when(rateLimiter.getBytesPerSecond()).thenReturn(1000L);
+		File local = new File(createDirectory(), "local");
+		new ParallelDirectoryTransfer(fileSystem, executor, 3, rateLimiter).get(
+				new Path(directory.toURI()), local);
+
+		assertCopied(local);
+		verify(rateLimiter).acquire(3);
+	}
+
+	public void put_withRateLimiterWithoutLimit_copiesWithoutAcquiring()
+			throws IOException {
+		TransferRateLimiter rateLimiter = mock(TransferRateLimiter.class);
+		File remote = new File(createDirectory(), "remote");
+		new ParallelDirectoryTransfer(fileSystem, executor, 3, rateLimiter).put(
+				directory, new Path(remote.toURI()));
+
+		assertCopied(remote);
+		verify(rateLimiter, never()).acquire(anyLong());
+	}
+
+	public void get_file_copiesTheFile() throws IOException {
+		File local = new File(createDirectory(), "local");
+		parallelDirectoryTransfer.get(
+				new Path(new File(directory, "a").toURI()), local);
+
+		assertEquals(FileUtils.readFileToString(local), "aa");
+	}
+
+		private void assertCopied(File copy) throws IOException {
+		assertEquals(FileUtils.readFileToString(new File(copy, "a")), "aa");
+		assertEquals(FileUtils.readFileToString(new File(copy, "sub/b")), "b");
+		assertEquals(FileUtils.readFileToString(new File(copy, "sub/c")), "ccc");
+		assertTrue(new File(copy, "empty").isDirectory());
+	}
+}
@@ -0,0 +1,211 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.filesystem.hadoop;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.testutil.TUtilsFileSystem;
+
+@Test(groups = { "fast-unit" })
+public class TransferCheckpointTest {
+
+	private FileSystem fileSystem;
+	private Path temp;
+	private File localFile;
+	private Path remoteFile;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		fileSystem = TUtilsFileSystem.getLocalFileSystem();
+		temp = new Path(new File(createDirectory(), "temp").getAbsolutePath());
+		localFile = createFile();
+		FileUtils.writeStringToFile(localFile, "content");
+		remoteFile = new Path(temp, "file");
+		fileSystem.copyFromLocalFile(new Path(localFile.toURI()), remoteFile);
+	}
+
+	/**
+	 * @return checkpoint that writes the manifest for every transferred file.
+	 */
+	private TransferCheckpoint checkpoint() throws IOException {
+		return TransferCheckpoint.load(fileSystem, temp, 0, 0);
+	}
+
+	private static File toFile(Path path) {
+		return new File(path.toUri().getPath());
+	}
+
+	public void load_noManifest_isEmpty() throws IOException {
+		assertTrue(TransferCheckpoint.load(fileSystem, temp).isEmpty());
+		assertFalse(TransferCheckpoint.exists(fileSystem, temp));
+	}
+
+	public void addTransferred_loadedAgain_fileIsTransferred() throws IOException {
+		checkpoint().addTransferred(localFile, "file", remoteFile);
+
+		assertTrue(TransferCheckpoint.exists(fileSystem, temp));
+		TransferCheckpoint loaded = TransferCheckpoint.load(fileSystem, temp);
+		assertFalse(loaded.isEmpty());
+		assertTrue(loaded.isTransferred(localFile, "file", remoteFile));
+	}
+
+	public void isTransferred_notAdded_false() throws IOException {
+		assertFalse(TransferCheckpoint.load(fileSystem, temp).isTransferred(
+				localFile, "file", remoteFile));
+	}
+
+	public void isTransferred_localFileChanged_false() throws IOException {
+		checkpoint().addTransferred(localFile, "file", remoteFile);
+		FileUtils.writeStringToFile(localFile, "changed content");
+
+		assertFalse(TransferCheckpoint.load(fileSystem, temp).isTransferred(
+				localFile, "file", remoteFile));
+	}
+
+	public void isTransferred_remoteFileHasOtherLength_false()
+			throws IOException {
+		checkpoint().addTransferred(localFile, "file", remoteFile);
+		fileSystem.delete(remoteFile, false);
+		fileSystem.create(remoteFile).close();
+
+		assertFalse(TransferCheckpoint.load(fileSystem, temp).isTransferred(
+				localFile, "file", remoteFile));
+	}
+
+	public void load_brokenManifestLine_ignoresTheLine() throws IOException {
+		checkpoint().addTransferred(localFile, "file", remoteFile);
+		Path manifest = TransferCheckpoint.getManifestPath(temp);
+		String lines = IOUtils.toString(fileSystem.open(manifest));
+		FSDataOutputStream out = fileSystem.create(manifest, true);
+		IOUtils.write(lines + "12\tbroken", out);
+		out.close();
+
+		TransferCheckpoint loaded = TransferCheckpoint.load(fileSystem, temp);
+		assertTrue(loaded.isTransferred(localFile, "file", remoteFile));
+	}
+
+	public void load_manifestFailsChecksum_isEmpty() throws IOException {
+		checkpoint().addTransferred(localFile, "file", remoteFile);
+		File manifest = new File(TransferCheckpoint.getManifestPath(temp).toUri()
+				.getPath());
+		FileUtils.writeStringToFile(manifest, "corrupted");
+
+		assertTrue(TransferCheckpoint.load(fileSystem, temp).isEmpty());
+	}
+
+	public void isTransferred_remoteFileReplacedWithSameLength_false()
+			throws IOException {
+		checkpoint().addTransferred(localFile, "file", remoteFile);
+		long modified = fileSystem.getFileStatus(remoteFile).getModificationTime();
+		toFile(remoteFile).setLastModified(modified + 10000);
+
+		assertFalse(TransferCheckpoint.load(fileSystem, temp).isTransferred(
+				localFile, "file", remoteFile));
+	}
+
+	public void addTransferred_lessThanBatchOfBytes_doesNotWriteManifest()
+			throws IOException {
+		TransferCheckpoint.load(fileSystem, temp, 10, Long.MAX_VALUE)
+				.addTransferred(localFile, "file", remoteFile);
+		assertFalse(TransferCheckpoint.exists(fileSystem, temp));
+	}
+
+	public void addTransferred_batchOfBytes_writesManifest() throws IOException {
+		TransferCheckpoint checkpoint = TransferCheckpoint.load(fileSystem, temp,
+				10, Long.MAX_VALUE);
+		checkpoint.addTransferred(localFile, "file", remoteFile);
+		checkpoint.addTransferred(localFile, "other", remoteFile);
+
+		TransferCheckpoint loaded = TransferCheckpoint.load(fileSystem, temp);
+		assertTrue(loaded.isTransferred(localFile, "file", remoteFile));
+		assertTrue(loaded.isTransferred(localFile, "other", remoteFile));
+	}
+
+	public void save_uploadSmallerThanBatch_doesNotWriteManifest()
+			throws IOException {
+		TransferCheckpoint checkpoint = TransferCheckpoint.load(fileSystem, temp,
+				10, Long.MAX_VALUE);
+		checkpoint.addTransferred(localFile, "file", remoteFile);
+		checkpoint.save();
+		assertFalse(TransferCheckpoint.exists(fileSystem, temp));
+	}
+
+	public void save_resumedUploadOfABatch_writesUnsavedFiles()
+			throws IOException {
+		checkpoint().addTransferred(localFile, "file", remoteFile);
+		TransferCheckpoint resumed = TransferCheckpoint.load(fileSystem, temp, 10,
+				Long.MAX_VALUE);
+		resumed.addTransferred(localFile, "other", remoteFile);
+		assertFalse(TransferCheckpoint.load(fileSystem, temp).isTransferred(
+				localFile, "other", remoteFile));
+
+		resumed.save();
+		assertTrue(TransferCheckpoint.load(fileSystem, temp).isTransferred(
+				localFile, "other", remoteFile));
+	}
+
+	public void deleteAbandoned_oldTempAndManifest_deletesBoth()
+			throws IOException {
+		File bucketTemps = createDirectory();
+		Path oldTemp = new Path(new File(bucketTemps, "db_2_1_0/SPLUNK_BUCKET")
+				.getAbsolutePath());
+		Path newTemp = new Path(new File(bucketTemps, "db_4_3_1/SPLUNK_BUCKET")
+				.getAbsolutePath());
+		fileSystem.mkdirs(oldTemp);
+		fileSystem.mkdirs(newTemp);
+		fileSystem.create(TransferCheckpoint.getManifestPath(oldTemp)).close();
+		toFile(oldTemp).setLastModified(1000);
+		toFile(TransferCheckpoint.getManifestPath(oldTemp)).setLastModified(1000);
+
+		TransferCheckpoint.deleteAbandoned(fileSystem,
+				new Path(bucketTemps.getAbsolutePath()), 60 * 1000);
+		assertFalse(fileSystem.exists(oldTemp));
+		assertFalse(TransferCheckpoint.exists(fileSystem, oldTemp));
+		assertTrue(fileSystem.exists(newTemp));
+	}
+
+	public void deleteAbandoned_oldTempWithRecentManifest_keepsTemp()
+			throws IOException {
+		File bucketTemps = createDirectory();
+		Path temp = new Path(new File(bucketTemps, "db_2_1_0/SPLUNK_BUCKET")
+				.getAbsolutePath());
+		fileSystem.mkdirs(temp);
+		fileSystem.create(TransferCheckpoint.getManifestPath(temp)).close();
+		toFile(temp).setLastModified(1000);
+
+		TransferCheckpoint.deleteAbandoned(fileSystem,
+				new Path(bucketTemps.getAbsolutePath()), 60 * 1000);
+		assertTrue(fileSystem.exists(temp));
+	}
+
+	public void getManifestPath_temp_siblingOfTemp() {
+		Path manifest = TransferCheckpoint.getManifestPath(temp);
+		assertEquals(manifest.getParent(), temp.getParent());
+		assertEquals(manifest.getName(), "temp"
+				+ TransferCheckpoint.MANIFEST_SUFFIX);
+	}
+}
@@ -18,6 +18,8 @@ import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
 import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -63,4 +65,64 @@ public class TransactionExecuterTest {
 		}
 		verify(transaction).clean();
 	}
+
+	public void execute_givenTransactions_preparesAllBeforeCommittingAllBeforeCleaningAll() {
+		Transaction other = mock(Transaction.class);
+		transactionExecuter.execute(transaction, other);
+
+		InOrder inOrder = inOrder(transaction, other);
+		inOrder.verify(transaction).prepare();
+		inOrder.verify(other).prepare();
+		inOrder.verify(transaction).commit();
+		inOrder.verify(other).commit();
+		inOrder.verify(transaction).clean();
+		inOrder.verify(other).clean();
+		inOrder.verifyNoMoreInteractions();
+	}
+
+	public void execute_givenTransactionsAndLastPrepareThrows_commitsNoneAndCleansAll() {
+		Transaction other = mock(Transaction.class);
+		doThrow(new RuntimeException()).when(other).prepare();
+		try {
+			transactionExecuter.execute(transaction, other);
+			fail();
+		} catch (RuntimeException e) {
+		}
+		verify(transaction, never()).commit();
+		verify(other, never()).commit();
+		verify(transaction).clean();
+		verify(other).clean();
+	}
+
+	public void execute_givenTransactionsAndFirstCleanThrows_cleansTheRestAndThrows() {
+		Transaction other = mock(Transaction.class);
+		RuntimeException cleanException = new RuntimeException();
+		doThrow(cleanException).when(transaction).clean();
+		try {
+			transactionExecuter.execute(transaction, other);
+			fail();
+		} catch (RuntimeException e) {
+			assertSame(e, cleanException);
+		}
+		verify(other).clean();
+	}
+
+	public void execute_interruptedWhilePreparing_cleansWithoutCommitting() {
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}).when(transaction).prepare();
+		try {
+			transactionExecuter.execute(transaction);
+			fail();
+		} catch (TransactionException e) {
+		} finally {
+			Thread.interrupted();
+		}
+		verify(transaction, never()).commit();
+		verify(transaction).clean();
+	}
 }
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Date;
 
 import org.testng.annotations.BeforeMethod;
@@ -124,4 +125,26 @@ public class FlusherTest {
 		Bucket b = TUtilsBucket.createBucketInDirectory(thawDir);
 		flusher.flush("index-does-not-exist", b.getEarliest(), b.getLatest());
 	}
+
+	public void _bucketThawedAfterAFlush_nextFlushDeletesIt()
+			throws IllegalIndexException {
+		LocalBucket b1 = TUtilsBucket.createBucketInDirectoryWithIndex(thawDir,
+				index);
+		flusher.flush(index, b1.getEarliest(), b1.getLatest());
+		LocalBucket b2 = TUtilsBucket.createBucketInDirectoryWithTimesAndIndex(
+				thawDir, b1.getEarliest(), b1.getLatest(), index);
+
+		flusher.flush(index, b1.getEarliest(), b1.getLatest());
+		assertFalse(b2.getDirectory().exists());
+		assertEquals(2, flusher.getFlushedBuckets().size());
+	}
+
+	public void flushBucket_thawedBucketOutsideTimeRange_deletesBucket()
+			throws IOException {
+		LocalBucket thawedBucket = TUtilsBucket.createBucketInDirectoryWithIndex(
+				thawDir, index);
+		flusher.flushBucket(thawedBucket);
+		assertFalse(thawedBucket.getDirectory().exists());
+		assertEquals(asList(thawedBucket), flusher.getFlushedBuckets());
+	}
 }
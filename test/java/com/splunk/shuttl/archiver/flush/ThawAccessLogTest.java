@@ -0,0 +1,123 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.flush;
+
+import static java.util.Arrays.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.util.HashSet;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class ThawAccessLogTest {
+
+	private File directory;
+	private ThawAccessLog accessLog;
+
+	@BeforeMethod
+	public void setUp() {
+		directory = TUtilsFile.createDirectory();
+		accessLog = new ThawAccessLog(directory);
+	}
+
+	public void getLastAccess_nothingLogged_null() {
+		assertNull(accessLog.getLastAccess("index", "db_2_1_0"));
+		assertNull(accessLog.getThawTime("index", "db_2_1_0"));
+	}
+
+	public void thawed_bucket_isThawedAndAccessedAtTheTime() {
+		accessLog.thawed("index", "db_2_1_0", 10);
+		assertEquals(accessLog.getThawTime("index", "db_2_1_0"), Long.valueOf(10));
+		assertEquals(accessLog.getLastAccess("index", "db_2_1_0"),
+				Long.valueOf(10));
+	}
+
+	public void accessed_thawedBucket_keepsThawTime() {
+		accessLog.thawed("index", "db_2_1_0", 10);
+		accessLog.accessed("index", "db_2_1_0", 20);
+		assertEquals(accessLog.getThawTime("index", "db_2_1_0"), Long.valueOf(10));
+		assertEquals(accessLog.getLastAccess("index", "db_2_1_0"),
+				Long.valueOf(20));
+	}
+
+	public void thawed_newInstanceWithSameDirectory_readsTheTimes() {
+		accessLog.thawed("index", "db_2_1_0", 10);
+		accessLog.accessed("index", "db_2_1_0", 20);
+
+		ThawAccessLog reread = new ThawAccessLog(directory);
+		assertEquals(reread.getThawTime("index", "db_2_1_0"), Long.valueOf(10));
+		assertEquals(reread.getLastAccess("index", "db_2_1_0"), Long.valueOf(20));
+	}
+
+	public void thawed_sameBucketNameInOtherIndex_isNotAccessed() {
+		accessLog.thawed("index", "db_2_1_0", 10);
+		assertNull(accessLog.getLastAccess("other", "db_2_1_0"));
+	}
+
+	public void retain_bucketNotAmongNames_isForgotten() {
+		accessLog.thawed("index", "db_2_1_0", 10);
+		accessLog.thawed("index", "db_4_3_1", 10);
+		accessLog.retain("index", asList("db_4_3_1"));
+
+		assertNull(accessLog.getLastAccess("index", "db_2_1_0"));
+		assertNull(new ThawAccessLog(directory).getLastAccess("index",
+				"db_2_1_0"));
+		assertNotNull(accessLog.getLastAccess("index", "db_4_3_1"));
+	}
+
+	public void getThawingBytes_bucketsThawingAndDone_sumOfThawingBuckets() {
+		accessLog.thawing("index", "db_2_1_0", 100);
+		accessLog.thawing("index", "db_4_3_1", 200);
+		accessLog.thawing("other", "db_4_3_1", 400);
+		accessLog.doneThawing("index", "db_2_1_0");
+		assertEquals(accessLog.getThawingBytes("index"), 200);
+	}
+
+	public void accessed_manyTimes_newInstanceReadsTheLastAccess() {
+		accessLog.thawed("index", "db_2_1_0", 10);
+		accessLog.thawed("index", "db_4_3_1", 10);
+		for (int i = 1; i <= 250; i++)
+			accessLog.accessed("index", "db_2_1_0", 10 + i);
+
+		ThawAccessLog reread = new ThawAccessLog(directory);
+		assertEquals(reread.getLastAccess("index", "db_2_1_0"),
+				Long.valueOf(260));
+		assertEquals(reread.getThawTime("index", "db_2_1_0"), Long.valueOf(10));
+		assertEquals(reread.getLastAccess("index", "db_4_3_1"), Long.valueOf(10));
+	}
+
+	public void getThawingBuckets_bucketsThawingAndDone_namesOfThawingBuckets() {
+		accessLog.thawing("index", "db_2_1_0", 100);
+		accessLog.thawing("index", "db_4_3_1", 200);
+		accessLog.doneThawing("index", "db_2_1_0");
+		assertEquals(accessLog.getThawingBuckets("index"),
+				new HashSet<String>(asList("db_4_3_1")));
+	}
+
+	public void getLock_sameIndex_sameLockButOtherIndexHasItsOwn() {
+		assertSame(accessLog.getLock("index"), accessLog.getLock("index"));
+		assertNotSame(accessLog.getLock("index"), accessLog.getLock("other"));
+	}
+
+	public void getSharedInstance_sameDirectory_sameInstance() {
+		assertSame(ThawAccessLog.getSharedInstance(directory),
+				ThawAccessLog.getSharedInstance(directory));
+	}
+}
@@ -0,0 +1,194 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.flush;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.listers.ArchivedIndexesLister;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.IllegalIndexException;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.archiver.thaw.SplunkIndexesLayer;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class ThawSpaceManagerTest {
+
+	private SplunkIndexesLayer splunkIndexesLayer;
+	private Flusher flusher;
+	private ThawAccessLog accessLog;
+	private File thawDir;
+	private String index;
+
+	@BeforeMethod
+	public void setUp() throws IllegalIndexException {
+		splunkIndexesLayer = mock(SplunkIndexesLayer.class);
+		flusher = new Flusher(splunkIndexesLayer,
+				mock(ArchivedIndexesLister.class));
+		accessLog = new ThawAccessLog(TUtilsFile.createDirectory());
+		thawDir = TUtilsFile.createDirectory();
+		index = "index";
+		when(splunkIndexesLayer.getThawLocation(index)).thenReturn(thawDir);
+	}
+
+	private ThawSpaceManager createManager(Long quota) {
+		return new ThawSpaceManager(splunkIndexesLayer, flusher, accessLog, quota,
+				new ThawedBucketSizes());
+	}
+
+	private Bucket createArchivedBucket(long size) {
+		return createArchivedBucket("db_9_8_7", size);
+	}
+
+	private Bucket createArchivedBucket(String name, long size) {
+		return new Bucket("/archive/" + name, index, name,
+				BucketFormat.SPLUNK_BUCKET, size);
+	}
+
+	private LocalBucket createThawedBucket(long lastAccess) {
+		LocalBucket thawedBucket = TUtilsBucket.createBucketInDirectoryWithIndex(
+				thawDir, index);
+		accessLog.accessed(index, thawedBucket.getName(), lastAccess);
+		return thawedBucket;
+	}
+
+	public void makeRoom_noQuota_evictsNothing() throws Exception {
+		LocalBucket thawedBucket = createThawedBucket(10);
+		List<LocalBucket> evicted = createManager(null).makeRoom(
+				createArchivedBucket(Long.MAX_VALUE));
+		assertTrue(evicted.isEmpty());
+		assertTrue(thawedBucket.getDirectory().exists());
+	}
+
+	public void makeRoom_bucketFitsInQuota_evictsNothingAndHoldsTheBytes()
+			throws Exception {
+		LocalBucket thawedBucket = createThawedBucket(10);
+		ThawSpaceManager manager = createManager(thawedBucket.getSize() + 100);
+
+		assertTrue(manager.makeRoom(createArchivedBucket(100)).isEmpty());
+		assertTrue(thawedBucket.getDirectory().exists());
+		assertEquals(manager.getUsedBytes(index), thawedBucket.getSize() + 100);
+	}
+
+	public void makeRoom_bucketDoesNotFit_flushesLeastRecentlyUsedBucket()
+			throws Exception {
+		LocalBucket recentlyUsed = createThawedBucket(20);
+		LocalBucket leastRecentlyUsed = createThawedBucket(10);
+		ThawSpaceManager manager = createManager(recentlyUsed.getSize()
+				+ leastRecentlyUsed.getSize());
+
+		List<LocalBucket> evicted = manager.makeRoom(createArchivedBucket(1));
+		assertEquals(evicted, asList(leastRecentlyUsed));
+		assertFalse(leastRecentlyUsed.getDirectory().exists());
+		assertTrue(recentlyUsed.getDirectory().exists());
+		assertEquals(flusher.getFlushedBuckets(), asList(leastRecentlyUsed));
+	}
+
+	public void makeRoom_evictedBucket_isForgottenByTheAccessLog()
+			throws Exception {
+		LocalBucket thawedBucket = createThawedBucket(10);
+		ThawSpaceManager manager = createManager(thawedBucket.getSize());
+		manager.makeRoom(createArchivedBucket(1));
+		manager.makeRoom(createArchivedBucket(0));
+		assertNull(accessLog.getLastAccess(index, thawedBucket.getName()));
+	}
+
+	@Test(expectedExceptions = { ThawQuotaExceededException.class })
+	public void makeRoom_bucketBiggerThanQuota_throws() throws Exception {
+		createManager(100L).makeRoom(createArchivedBucket(101));
+	}
+
+	public void makeRoom_otherBucketIsBeingThawed_countsTheOtherBucket()
+			throws Exception {
+		ThawSpaceManager manager = createManager(100L);
+		Bucket thawing = new Bucket("/archive/db_2_1_0", index, "db_2_1_0",
+				BucketFormat.SPLUNK_BUCKET, 60L);
+		manager.makeRoom(thawing);
+		try {
+			manager.makeRoom(createArchivedBucket(60));
+			fail();
+		} catch (ThawQuotaExceededException e) {
+		}
+		manager.failed(thawing);
+		manager.makeRoom(createArchivedBucket(60));
+	}
+
+	public void thawed_bucket_isLoggedAsThawedAndCountedWithItsSizeOnDisk()
+			throws Exception {
+		ThawSpaceManager manager = createManager(Long.MAX_VALUE);
+		LocalBucket thawedBucket = TUtilsBucket.createBucketInDirectoryWithIndex(
+				thawDir, index);
+		Bucket bucket = createArchivedBucket(thawedBucket.getName(), 60);
+		manager.makeRoom(bucket);
+		manager.thawed(bucket, thawedBucket);
+		assertNotNull(accessLog.getThawTime(index, bucket.getName()));
+		assertEquals(manager.getUsedBytes(index), thawedBucket.getSize()
+				.longValue());
+	}
+
+	public void getUsedBytes_bucketInThawDirectoryBeforeItIsThawed_isCountedOnce()
+			throws Exception {
+		ThawSpaceManager manager = createManager(Long.MAX_VALUE);
+		manager.makeRoom(createArchivedBucket("db_9_8_7", 1000));
+		TUtilsBucket.createBucketInDirectoryWithIndexAndName(thawDir, index,
+				"db_9_8_7");
+		assertEquals(manager.getUsedBytes(index), 1000);
+	}
+
+	public void makeRoom_bucketInThawDirectoryBeforeItIsThawed_isNotEvicted()
+			throws Exception {
+		ThawSpaceManager manager = createManager(1000L);
+		manager.makeRoom(createArchivedBucket("db_9_8_7", 1000));
+		LocalBucket thawing = TUtilsBucket
+				.createBucketInDirectoryWithIndexAndName(thawDir, index, "db_9_8_7");
+		try {
+			manager.makeRoom(createArchivedBucket("db_6_5_4", 1));
+			fail();
+		} catch (ThawQuotaExceededException e) {
+		}
+		assertTrue(thawing.getDirectory().exists());
+	}
+
+	public void makeRoom_formatGrewWhenThawed_holdsTheEstimatedThawedBytes()
+			throws Exception {
+		ThawSpaceManager manager = createManager(Long.MAX_VALUE);
+		LocalBucket thawedBucket = TUtilsBucket.createBucketInDirectoryWithIndex(
+				thawDir, index);
+		long thawedBytes = thawedBucket.getSize();
+		Bucket bucket = createArchivedBucket(thawedBucket.getName(), 1);
+		manager.makeRoom(bucket);
+		manager.thawed(bucket, thawedBucket);
+
+		manager.makeRoom(createArchivedBucket(2));
+		assertEquals(manager.getUsedBytes(index), thawedBytes + 2 * thawedBytes);
+	}
+
+	public void accessed_bucket_updatesLastAccess() throws IOException {
+		LocalBucket thawedBucket = createThawedBucket(10);
+		createManager(null).accessed(thawedBucket);
+		assertTrue(accessLog.getLastAccess(index, thawedBucket.getName()) > 10);
+	}
+}
@@ -0,0 +1,142 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.flush;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class ThawedBucketSizesTest {
+
+	private ThawedBucketSizes thawedBucketSizes;
+	private File directory;
+	private File rawdata;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		thawedBucketSizes = new ThawedBucketSizes();
+		directory = TUtilsFile.createDirectory();
+		rawdata = new File(directory, ThawedBucketSizes.RAWDATA_DIRECTORY_NAME);
+		FileUtils.writeByteArrayToFile(new File(rawdata, "journal.gz"),
+				new byte[100]);
+	}
+
+	private Bucket createArchivedBucket(BucketFormat format, Long size) {
+		return new Bucket("/archive/db_2_1_0", "index", "db_2_1_0", format, size);
+	}
+
+	private void setLastModified(long lastModified) {
+		directory.setLastModified(lastModified);
+		rawdata.setLastModified(lastModified);
+	}
+
+	private long getSettledTime() {
+		return System.currentTimeMillis() - 2 * ThawedBucketSizes.SETTLED_MILLIS;
+	}
+
+	public void getSize_directory_sizeOfTheDirectory() {
+		assertEquals(thawedBucketSizes.getSize(directory), 100);
+	}
+
+	public void getSize_unmodifiedSettledBucketGrew_keepsTheSize()
+			throws IOException {
+		long settled = getSettledTime();
+		setLastModified(settled);
+		thawedBucketSizes.getSize(directory);
+		FileUtils.writeByteArrayToFile(new File(rawdata, "journal.gz"),
+				new byte[200]);
+		setLastModified(settled);
+		assertEquals(thawedBucketSizes.getSize(directory), 100);
+	}
+
+	public void getSize_fileAddedToRawdata_walksTheDirectoryAgain()
+			throws IOException {
+		long settled = getSettledTime();
+		setLastModified(settled);
+		thawedBucketSizes.getSize(directory);
+		FileUtils.writeByteArrayToFile(new File(rawdata, "slices.dat"),
+				new byte[50]);
+		directory.setLastModified(settled);
+		rawdata.setLastModified(settled + 1000);
+		assertEquals(thawedBucketSizes.getSize(directory), 150);
+	}
+
+	public void getSize_recentlyModifiedBucketGrew_walksTheDirectoryAgain()
+			throws IOException {
+		long recent = System.currentTimeMillis() - 1000;
+		setLastModified(recent);
+		thawedBucketSizes.getSize(directory);
+		FileUtils.writeByteArrayToFile(new File(rawdata, "journal.gz"),
+				new byte[200]);
+		setLastModified(recent);
+		assertEquals(thawedBucketSizes.getSize(directory), 200);
+	}
+
+	public void getSize_forgottenDirectory_walksTheDirectoryAgain()
+			throws IOException {
+		long settled = getSettledTime();
+		setLastModified(settled);
+		thawedBucketSizes.getSize(directory);
+		FileUtils.writeByteArrayToFile(new File(rawdata, "journal.gz"),
+				new byte[200]);
+		setLastModified(settled);
+		thawedBucketSizes.forget(directory);
+		assertEquals(thawedBucketSizes.getSize(directory), 200);
+	}
+
+	public void getThawedBytes_nothingThawed_scaledWithTheDefaultExpansion() {
+		assertEquals(thawedBucketSizes.getThawedBytes(createArchivedBucket(
+				BucketFormat.CSV, 50L)), 100);
+		assertEquals(thawedBucketSizes.getThawedBytes(createArchivedBucket(
+				BucketFormat.SPLUNK_BUCKET, 50L)), 50);
+	}
+
+	public void getThawedBytes_bucketThawedBeforeRestart_scaledLikeTheThawedBucket()
+			throws IOException {
+		File sizesDirectory = TUtilsFile.createDirectory();
+		new ThawedBucketSizes(sizesDirectory).thawed(
+				createArchivedBucket(BucketFormat.SPLUNK_BUCKET_TGZ, 10L), directory);
+
+		ThawedBucketSizes restarted = new ThawedBucketSizes(sizesDirectory);
+		assertEquals(restarted.getThawedBytes(createArchivedBucket(
+				BucketFormat.SPLUNK_BUCKET_TGZ, 50L)), 500);
+		assertEquals(restarted.getThawedBytes(createArchivedBucket(
+				BucketFormat.CSV, 50L)), 100);
+	}
+
+	public void getThawedBytes_bucketOfFormatThawed_scaledLikeTheThawedBucket() {
+		assertEquals(thawedBucketSizes.thawed(
+				createArchivedBucket(BucketFormat.CSV, 25L), directory), 100);
+		assertEquals(thawedBucketSizes.getThawedBytes(createArchivedBucket(
+				BucketFormat.CSV, 50L)), 200);
+		assertEquals(thawedBucketSizes.getThawedBytes(createArchivedBucket(
+				BucketFormat.SPLUNK_BUCKET, 50L)), 50);
+	}
+
+	public void getThawedBytes_noSize_zero() {
+		assertEquals(thawedBucketSizes.getThawedBytes(createArchivedBucket(
+				BucketFormat.CSV, null)), 0);
+	}
+}
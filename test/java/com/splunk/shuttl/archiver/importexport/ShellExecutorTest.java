@@ -15,6 +15,8 @@
 package com.splunk.shuttl.archiver.importexport;
 
 import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
 import java.util.HashMap;
@@ -43,4 +45,22 @@ public class ShellExecutorTest {
 		assertEquals(1, out.size());
 		assertEquals("foo", out.get(0));
 	}
+
+	public void executeCommand_interruptedWhileWaiting_destroysProcessAndKeepsInterrupt()
+			throws Exception {
+		Process process = mock(Process.class);
+		when(process.waitFor()).thenThrow(new InterruptedException());
+		Runtime runtime = mock(Runtime.class);
+		when(runtime.exec(any(String[].class), any(String[].class))).thenReturn(
+				process);
+		try {
+			int exitCode = new ShellExecutor(runtime).executeCommand(env,
+					asList("sleep", "60"));
+			assertTrue(exitCode != 0);
+			verify(process).destroy();
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+	}
 }
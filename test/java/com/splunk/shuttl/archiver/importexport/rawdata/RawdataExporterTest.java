@@ -0,0 +1,98 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.rawdata;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.GetsBucketsExportFile;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class RawdataExporterTest {
+
+	private RawdataExporter rawdataExporter;
+	private LocalBucket bucket;
+	private File exportDirectory;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		GetsBucketsExportFile getsBucketsExportFile = mock(GetsBucketsExportFile.class);
+		rawdataExporter = new RawdataExporter(getsBucketsExportFile);
+		bucket = TUtilsBucket.createBucket();
+		exportDirectory = new File(createDirectory(), "export.rawdata");
+		when(getsBucketsExportFile.getExportFile(any(Bucket.class), eq("rawdata")))
+				.thenReturn(exportDirectory);
+
+		File bucketDir = bucket.getDirectory();
+		FileUtils.writeStringToFile(new File(bucketDir, "rawdata/journal.gz"),
+				"journal");
+		FileUtils.writeStringToFile(new File(bucketDir, "Hosts.data"), "hosts");
+		FileUtils.writeStringToFile(new File(bucketDir, "1-2-3.tsidx"), "tsidx");
+		FileUtils.writeStringToFile(new File(bucketDir, "merged_lexicon.lex"),
+				"lex");
+		FileUtils.writeStringToFile(new File(bucketDir, "bloomfilter"), "bloom");
+		FileUtils.writeStringToFile(new File(bucketDir, "summary/file"), "summary");
+	}
+
+	public void exportBucket_bucket_copiesRawdataAndMetadataFiles()
+			throws IOException {
+		LocalBucket exported = rawdataExporter.exportBucket(bucket);
+
+		assertEquals(exported.getDirectory(), exportDirectory);
+		assertEquals(FileUtils.readFileToString(new File(exportDirectory,
+				"rawdata/journal.gz")), "journal");
+		assertEquals(FileUtils.readFileToString(new File(exportDirectory,
+				"Hosts.data")), "hosts");
+	}
+
+	public void exportBucket_bucket_leavesOutIndexFilesAndOtherDirectories() {
+		rawdataExporter.exportBucket(bucket);
+
+		assertFalse(new File(exportDirectory, "1-2-3.tsidx").exists());
+		assertFalse(new File(exportDirectory, "merged_lexicon.lex").exists());
+		assertFalse(new File(exportDirectory, "bloomfilter").exists());
+		assertFalse(new File(exportDirectory, "summary").exists());
+	}
+
+	public void exportBucket_bucket_rawdataBucketWithSameNameAndIndex() {
+		LocalBucket exported = rawdataExporter.exportBucket(bucket);
+
+		assertEquals(exported.getFormat(), BucketFormat.SPLUNK_BUCKET_RAWDATA);
+		assertEquals(exported.getName(), bucket.getName());
+		assertEquals(exported.getIndex(), bucket.getIndex());
+	}
+
+	public void exportBucket_exportDirectoryExists_replacesIt()
+			throws IOException {
+		File stale = new File(exportDirectory, "stale");
+		FileUtils.writeStringToFile(stale, "stale");
+
+		rawdataExporter.exportBucket(bucket);
+		assertFalse(stale.exists());
+	}
+}
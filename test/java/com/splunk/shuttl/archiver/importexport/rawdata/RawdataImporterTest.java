@@ -0,0 +1,91 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.rawdata;
+
+import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.archiver.importexport.csv.splunk.SplunkRebuildTool;
+import com.splunk.shuttl.archiver.importexport.rawdata.RawdataImporter.RebuildFailedException;
+import com.splunk.shuttl.archiver.model.BucketFactory;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class RawdataImporterTest {
+
+	private RawdataImporter rawdataImporter;
+	private SplunkRebuildTool splunkRebuildTool;
+	private ShellExecutor shellExecutor;
+	private BucketFactory bucketFactory;
+	private LocalBucket rawdataBucket;
+	private Map<String, String> environment;
+
+	@BeforeMethod
+	public void setUp() throws Exception {
+		splunkRebuildTool = mock(SplunkRebuildTool.class);
+		shellExecutor = mock(ShellExecutor.class);
+		bucketFactory = mock(BucketFactory.class);
+		rawdataImporter = new RawdataImporter(splunkRebuildTool, shellExecutor,
+				bucketFactory);
+		rawdataBucket = new LocalBucket(TUtilsBucket.createBucket()
+				.getDirectory(), "index", BucketFormat.SPLUNK_BUCKET_RAWDATA);
+		environment = Collections.singletonMap("SPLUNK_HOME", "/splunk");
+		when(splunkRebuildTool.getEnvironment()).thenReturn(environment);
+		when(splunkRebuildTool.getExecutableCommand()).thenReturn(
+				asList("splunk", "rebuild"));
+	}
+
+	public void importBucket_rawdataBucket_rebuildsTheBucketDirectory() {
+		rawdataImporter.importBucket(rawdataBucket);
+
+		List<String> command = asList("splunk", "rebuild", rawdataBucket
+				.getDirectory().getAbsolutePath());
+		verify(shellExecutor).executeCommand(environment, command);
+	}
+
+	public void importBucket_rebuildSucceeds_splunkBucketInSameDirectory() {
+		LocalBucket splunkBucket = mock(LocalBucket.class);
+		when(
+				bucketFactory.createWithIndexDirectoryAndFormat("index",
+						rawdataBucket.getDirectory(), BucketFormat.SPLUNK_BUCKET))
+				.thenReturn(splunkBucket);
+
+		assertEquals(rawdataImporter.importBucket(rawdataBucket), splunkBucket);
+	}
+
+	@Test(expectedExceptions = { RebuildFailedException.class })
+	public void importBucket_rebuildFails_throws() {
+		when(shellExecutor.executeCommand(anyMapOf(String.class, String.class),
+				anyListOf(String.class))).thenReturn(1);
+		rawdataImporter.importBucket(rawdataBucket);
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void importBucket_notRawdataBucket_throws() {
+		rawdataImporter.importBucket(TUtilsBucket.createBucket());
+	}
+}
@@ -0,0 +1,61 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.importexport.BucketFileCreator;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "slow-unit" })
+public class StreamingTgzExporterIntegrationTest {
+
+	public void exportBucket_streamedTgzImportedWithTgzImporter_hasTheSameContentAsTheBucket()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		File journal = new File(bucket.getDirectory(), "rawdata/journal.gz");
+		FileUtils.writeStringToFile(journal, "journal content");
+
+		StreamingTgzExporter streamingTgzExporter = new StreamingTgzExporter();
+		File tgz = new File(createDirectory(),
+				streamingTgzExporter.getExportFileName(bucket));
+		FileOutputStream out = new FileOutputStream(tgz);
+		try {
+			streamingTgzExporter.exportBucket(bucket, out);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		FileUtils.deleteDirectory(bucket.getDirectory());
+
+		LocalBucket tgzBucket = BucketFileCreator.createForTgz()
+				.createBucketWithFile(tgz, bucket);
+		LocalBucket importedBucket = TgzImporter.create().importBucket(tgzBucket);
+
+		File importedJournal = new File(importedBucket.getDirectory(),
+				"rawdata/journal.gz");
+		assertEquals("journal content",
+				FileUtils.readFileToString(importedJournal));
+	}
+}
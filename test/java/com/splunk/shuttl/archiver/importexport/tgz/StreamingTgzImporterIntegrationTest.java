@@ -0,0 +1,59 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.importexport.GetsBucketsExportFile;
+import com.splunk.shuttl.archiver.importexport.ShellExecutor;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "slow-unit" })
+public class StreamingTgzImporterIntegrationTest {
+
+	public void importBucket_tgzCreatedWithTar_extractsTheBucketsContent()
+			throws IOException {
+		LocalBucket bucket = TUtilsBucket.createBucket();
+		File journal = new File(bucket.getDirectory(), "rawdata/journal.gz");
+		FileUtils.writeStringToFile(journal, "journal content");
+		CreatesBucketTgz createsBucketTgz = new CreatesBucketTgz(
+				ShellExecutor.getInstance(), new GetsBucketsExportFile(
+						new LocalFileSystemPaths(createDirectory())));
+		File tgz = createsBucketTgz.createTgz(bucket);
+
+		File bucketDirectory = new File(createDirectory(), bucket.getName());
+		FileInputStream in = new FileInputStream(tgz);
+		try {
+			new StreamingTgzImporter().importBucket(in, bucketDirectory);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+
+		File importedJournal = new File(bucketDirectory, "rawdata/journal.gz");
+		assertEquals("journal content",
+				FileUtils.readFileToString(importedJournal));
+	}
+}
@@ -0,0 +1,153 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class TarReaderTest {
+
+	private File directory;
+	private File extractTo;
+
+	@BeforeMethod
+	public void setUp() {
+		directory = createDirectoryWithName("bucket");
+		extractTo = new File(createDirectory(), "extracted");
+	}
+
+	public void extractStrippingTopDirectory_writtenDirectoryWithFile_extractsFileWithoutTopDirectory()
+			throws IOException {
+		File file = createFileInParent(directory, "file");
+		FileUtils.writeStringToFile(file, "content");
+
+		newReader(writeTar()).extractStrippingTopDirectory(extractTo);
+
+		assertEquals("content",
+				FileUtils.readFileToString(new File(extractTo, "file")));
+	}
+
+	public void extractStrippingTopDirectory_writtenDirectoryWithEmptyDirectory_extractsEmptyDirectory()
+			throws IOException {
+		createDirectoryInParent(directory, "empty");
+
+		newReader(writeTar()).extractStrippingTopDirectory(extractTo);
+
+		assertTrue(new File(extractTo, "empty").isDirectory());
+	}
+
+	public void extractStrippingTopDirectory_fileWithLongPath_extractsFileWithTheWholePath()
+			throws IOException {
+		String longDirName = createLongName('d', 80);
+		String longFileName = createLongName('f', 80);
+		File longDir = createDirectoryInParent(directory, longDirName);
+		FileUtils.writeStringToFile(createFileInParent(longDir, longFileName),
+				"content");
+
+		newReader(writeTar()).extractStrippingTopDirectory(extractTo);
+
+		assertEquals("content", FileUtils.readFileToString(new File(new File(
+				extractTo, longDirName), longFileName)));
+	}
+
+	public void extractStrippingTopDirectory_fileLargerThanBuffer_extractsAllContent()
+			throws IOException {
+		byte[] content = new byte[100 * 1024 + 7];
+		Arrays.fill(content, (byte) 'a');
+		FileUtils.writeByteArrayToFile(createFileInParent(directory, "big"),
+				content);
+
+		newReader(writeTar()).extractStrippingTopDirectory(extractTo);
+
+		assertEquals(content,
+				FileUtils.readFileToByteArray(new File(extractTo, "big")));
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void extractStrippingTopDirectory_entryOutsideOfTopDirectory_throws()
+			throws IOException {
+		createFileInParent(directory, "file");
+		byte[] tar = writeTar();
+		replaceName(tar, TarWriter.BLOCK_SIZE, "bucket/../../file");
+
+		newReader(tar).extractStrippingTopDirectory(extractTo);
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void extractStrippingTopDirectory_corruptHeader_throws()
+			throws IOException {
+		byte[] tar = writeTar();
+		tar[0] = 'X';
+
+		newReader(tar).extractStrippingTopDirectory(extractTo);
+	}
+
+	@Test(expectedExceptions = { IOException.class })
+	public void extractStrippingTopDirectory_truncatedArchive_throws()
+			throws IOException {
+		FileUtils.writeStringToFile(createFileInParent(directory, "file"),
+				"content");
+		byte[] tar = writeTar();
+
+		newReader(Arrays.copyOf(tar, TarWriter.BLOCK_SIZE * 2 + 3))
+				.extractStrippingTopDirectory(extractTo);
+	}
+
+	private TarReader newReader(byte[] tar) {
+		return new TarReader(new ByteArrayInputStream(tar));
+	}
+
+	private byte[] writeTar() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TarWriter tarWriter = new TarWriter(out);
+		tarWriter.writeDirectory(directory);
+		tarWriter.finish();
+		return out.toByteArray();
+	}
+
+	private void replaceName(byte[] tar, int headerOffset, String name) {
+		Arrays.fill(tar, headerOffset, headerOffset + 100, (byte) 0);
+		byte[] bytes = name.getBytes();
+		System.arraycopy(bytes, 0, tar, headerOffset, bytes.length);
+		updateChecksum(tar, headerOffset);
+	}
+
+	private void updateChecksum(byte[] tar, int headerOffset) {
+		Arrays.fill(tar, headerOffset + 148, headerOffset + 156, (byte) ' ');
+		long checksum = 0;
+		for (int i = headerOffset; i < headerOffset + TarWriter.BLOCK_SIZE; i++)
+			checksum += tar[i] & 0xff;
+		String octal = String.format("%06o", checksum);
+		System.arraycopy(octal.getBytes(), 0, tar, headerOffset + 148, 6);
+		tar[headerOffset + 154] = 0;
+	}
+
+	private String createLongName(char c, int length) {
+		char[] name = new char[length];
+		Arrays.fill(name, c);
+		return new String(name);
+	}
+}
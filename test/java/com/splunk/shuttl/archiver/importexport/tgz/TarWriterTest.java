@@ -0,0 +1,119 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.importexport.tgz;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class TarWriterTest {
+
+	private ByteArrayOutputStream out;
+	private TarWriter tarWriter;
+	private File directory;
+
+	@BeforeMethod
+	public void setUp() {
+		out = new ByteArrayOutputStream();
+		tarWriter = new TarWriter(out);
+		directory = createDirectoryWithName("bucket");
+	}
+
+	public void writeDirectory_directoryWithFile_firstEntryIsTheDirectory()
+			throws IOException {
+		tarWriter.writeDirectory(directory);
+		byte[] tar = out.toByteArray();
+
+		assertEquals("bucket/", readString(tar, 0, 100));
+		assertEquals('5', tar[156]);
+	}
+
+	public void writeDirectory_directoryWithFile_fileEntryHasNameSizeAndContent()
+			throws IOException {
+		File file = createFileInParent(directory, "file");
+		FileUtils.writeStringToFile(file, "content");
+
+		tarWriter.writeDirectory(directory);
+		byte[] tar = out.toByteArray();
+		int fileHeader = TarWriter.BLOCK_SIZE;
+
+		assertEquals("bucket/file", readString(tar, fileHeader, 100));
+		assertEquals('0', tar[fileHeader + 156]);
+		assertEquals(7, Long.parseLong(readString(tar, fileHeader + 124, 12), 8));
+		assertEquals("content", readString(tar, fileHeader + TarWriter.BLOCK_SIZE,
+				TarWriter.BLOCK_SIZE));
+	}
+
+	public void writeDirectory_givenDirectory_headersHaveValidChecksum()
+			throws IOException {
+		tarWriter.writeDirectory(directory);
+		byte[] header = Arrays.copyOf(out.toByteArray(), TarWriter.BLOCK_SIZE);
+
+		long expected = Long.parseLong(readString(header, 148, 6), 8);
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		long actual = 0;
+		for (byte b : header)
+			actual += b & 0xff;
+		assertEquals(actual, expected);
+	}
+
+	public void writeDirectory_fileWithLongPath_splitsPathIntoPrefixAndName()
+			throws IOException {
+		String longDirName = createLongName('d', 80);
+		String longFileName = createLongName('f', 80);
+		File longDir = createDirectoryInParent(directory, longDirName);
+		createFileInParent(longDir, longFileName);
+
+		tarWriter.writeDirectory(directory);
+		int fileHeader = TarWriter.BLOCK_SIZE * 2;
+		byte[] tar = out.toByteArray();
+
+		assertEquals("bucket/" + longDirName, readString(tar, fileHeader + 345, 155));
+		assertEquals(longFileName, readString(tar, fileHeader, 100));
+	}
+
+	public void finish_afterWritingDirectory_endsWithTwoEmptyBlocks()
+			throws IOException {
+		tarWriter.writeDirectory(directory);
+		tarWriter.finish();
+		byte[] tar = out.toByteArray();
+
+		assertEquals(TarWriter.BLOCK_SIZE * 3, tar.length);
+		for (int i = TarWriter.BLOCK_SIZE; i < tar.length; i++)
+			assertEquals(0, tar[i]);
+	}
+
+	private String createLongName(char c, int length) {
+		char[] name = new char[length];
+		Arrays.fill(name, c);
+		return new String(name);
+	}
+
+	private String readString(byte[] bytes, int offset, int length) {
+		int end = offset;
+		while (end < offset + length && bytes[end] != 0)
+			end++;
+		return new String(bytes, offset, end - offset);
+	}
+}
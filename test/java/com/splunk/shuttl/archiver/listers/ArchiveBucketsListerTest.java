@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -106,4 +107,27 @@ public class ArchiveBucketsListerTest {
 					.isBucketEqualOnIndexFormatAndName(bucket1, bucket)
 					|| TUtilsTestNG.isBucketEqualOnIndexFormatAndName(bucket2, bucket));
 	}
+
+	public void listBuckets_concurrentListing_bucketsInTheOrderOfTheIndexes()
+			throws IOException {
+		List<String> indexes = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			String index = "index" + i;
+			indexes.add(index);
+			when(pathResolver.getBucketsHome(index)).thenReturn("/" + index);
+			when(archiveFileSystem.listPath("/" + index)).thenReturn(
+					asList("/" + index + "/db_2_1_" + i));
+			when(pathResolver.resolveIndexFromPathToBucket("/" + index + "/db_2_1_"
+					+ i)).thenReturn(index);
+		}
+		when(indexLister.listIndexes()).thenReturn(indexes);
+
+		List<Bucket> buckets = new ArchiveBucketsLister(archiveFileSystem,
+				indexLister, pathResolver, ArchiveListingExecutor.getSharedInstance(4))
+				.listBuckets();
+
+		assertEquals(20, buckets.size());
+		for (int i = 0; i < 20; i++)
+			assertEquals("index" + i, buckets.get(i).getIndex());
+	}
 }
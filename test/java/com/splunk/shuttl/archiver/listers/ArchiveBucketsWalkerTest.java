@@ -0,0 +1,142 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import static java.util.Arrays.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.ListsPathsRecursively;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketFormatChooser;
+
+@Test(groups = { "fast-unit" })
+public class ArchiveBucketsWalkerTest {
+
+	private ArchiveFileSystem archiveFileSystem;
+	private ArchivedIndexesLister indexesLister;
+	private PathResolver pathResolver;
+	private BucketFormatChooser bucketFormatChooser;
+	private ArchiveBucketsWalker walker;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		archiveFileSystem = mock(ArchiveFileSystem.class);
+		indexesLister = mock(ArchivedIndexesLister.class);
+		pathResolver = mock(PathResolver.class);
+		bucketFormatChooser = mock(BucketFormatChooser.class);
+		walker = new ArchiveBucketsWalker(archiveFileSystem, indexesLister,
+				pathResolver, bucketFormatChooser);
+
+		when(pathResolver.getBucketsHome("index")).thenReturn("/index");
+		when(archiveFileSystem.listPath("/index")).thenReturn(
+				asList("/index/db_2_1_0", "/index/db_4_3_1"));
+		when(archiveFileSystem.listPath("/index/db_2_1_0")).thenReturn(
+				asList("/index/db_2_1_0/SPLUNK_BUCKET",
+						"/index/db_2_1_0/SPLUNK_BUCKET_TGZ"));
+		when(archiveFileSystem.listPath("/index/db_4_3_1")).thenReturn(
+				asList("/index/db_4_3_1/CSV"));
+		when(bucketFormatChooser.chooseBucketFormat(anyListOf(BucketFormat.class)))
+				.thenReturn(BucketFormat.SPLUNK_BUCKET);
+	}
+
+	private List<Bucket> toList(Iterator<Bucket> buckets) {
+		List<Bucket> list = new ArrayList<Bucket>();
+		while (buckets.hasNext())
+			list.add(buckets.next());
+		return list;
+	}
+
+	public void walkBucketsInIndex_formatsOfBuckets_oneBucketPerBucketDirectory() {
+		List<Bucket> buckets = toList(walker.walkBucketsInIndex("index"));
+		assertEquals(buckets.size(), 2);
+		assertEquals(buckets.get(0).getName(), "db_2_1_0");
+		assertEquals(buckets.get(0).getIndex(), "index");
+		assertEquals(buckets.get(1).getName(), "db_4_3_1");
+	}
+
+	public void walkBucketsInIndex_formatsOfBucket_chosenAmongTheWalkedFormats() {
+		toList(walker.walkBucketsInIndex("index"));
+		verify(bucketFormatChooser).chooseBucketFormat(
+				asList(BucketFormat.SPLUNK_BUCKET, BucketFormat.SPLUNK_BUCKET_TGZ));
+		verify(bucketFormatChooser).chooseBucketFormat(asList(BucketFormat.CSV));
+	}
+
+	public void walkBucketsInIndex_chosenFormat_bucketHasFormatAndPath() {
+		when(
+				pathResolver.resolveArchivedBucketPath("index", "db_2_1_0",
+						BucketFormat.SPLUNK_BUCKET)).thenReturn("/bucket/path");
+		Bucket bucket = walker.walkBucketsInIndex("index").next();
+		assertEquals(bucket.getFormat(), BucketFormat.SPLUNK_BUCKET);
+		assertEquals(bucket.getPath(), "/bucket/path");
+	}
+
+	public void walkBucketsInIndex_unknownFormatDirectory_isSkipped()
+			throws IOException {
+		when(archiveFileSystem.listPath("/index/db_4_3_1")).thenReturn(
+				asList("/index/db_4_3_1/CSV", "/index/db_4_3_1/not_a_format"));
+		toList(walker.walkBucketsInIndex("index"));
+		verify(bucketFormatChooser).chooseBucketFormat(asList(BucketFormat.CSV));
+	}
+
+	public void walkBucketsInIndex_walking_listsEachDirectoryOnce()
+			throws IOException {
+		toList(walker.walkBucketsInIndex("index"));
+		verify(archiveFileSystem, times(3)).listPath(anyString());
+	}
+
+	public void walkBuckets_indexes_bucketsOfAllIndexesInOrder()
+			throws IOException {
+		when(indexesLister.listIndexes()).thenReturn(asList("empty", "index"));
+		when(pathResolver.getBucketsHome("empty")).thenReturn("/empty");
+		when(archiveFileSystem.listPath("/empty")).thenReturn(
+				new ArrayList<String>());
+
+		List<Bucket> buckets = toList(walker.walkBuckets());
+		assertEquals(buckets.size(), 2);
+		assertEquals(buckets.get(0).getName(), "db_2_1_0");
+	}
+
+	public void canWalkInBulk_fileSystemWithoutRecursiveListing_false() {
+		assertFalse(ArchiveBucketsWalker.canWalkInBulk(archiveFileSystem));
+	}
+
+	public void canWalkInBulk_recursiveListingThatWalksEachDirectory_false() {
+		ArchiveFileSystem walkingFileSystem = mock(ArchiveFileSystem.class,
+				withSettings().extraInterfaces(ListsPathsRecursively.class));
+		when(((ListsPathsRecursively) walkingFileSystem).isBulkListing())
+				.thenReturn(false);
+		assertFalse(ArchiveBucketsWalker.canWalkInBulk(walkingFileSystem));
+	}
+
+	public void canWalkInBulk_bulkListing_true() {
+		ArchiveFileSystem bulkFileSystem = mock(ArchiveFileSystem.class,
+				withSettings().extraInterfaces(ListsPathsRecursively.class));
+		when(((ListsPathsRecursively) bulkFileSystem).isBulkListing()).thenReturn(
+				true);
+		assertTrue(ArchiveBucketsWalker.canWalkInBulk(bulkFileSystem));
+	}
+}
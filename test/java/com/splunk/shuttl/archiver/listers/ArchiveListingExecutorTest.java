@@ -0,0 +1,127 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor.Outcome;
+
+@Test(groups = { "fast-unit" })
+public class ArchiveListingExecutorTest {
+
+	private static class ReturnsValue implements Callable<Integer> {
+
+		private final int value;
+		private final CountDownLatch start;
+		private final AtomicInteger inFlight;
+		private final AtomicInteger maxSeenInFlight;
+
+		public ReturnsValue(int value, CountDownLatch start,
+				AtomicInteger inFlight, AtomicInteger maxSeenInFlight) {
+			this.value = value;
+			this.start = start;
+			this.inFlight = inFlight;
+			this.maxSeenInFlight = maxSeenInFlight;
+		}
+
+		@Override
+		public Integer call() throws Exception {
+			int current = inFlight.incrementAndGet();
+			synchronized (maxSeenInFlight) {
+				maxSeenInFlight.set(Math.max(maxSeenInFlight.get(), current));
+			}
+			start.await(1, TimeUnit.SECONDS);
+			Thread.sleep(Math.abs(value) % 3);
+			inFlight.decrementAndGet();
+			if (value < 0)
+				throw new IOException("failed " + value);
+			return value;
+		}
+	}
+
+	private List<ReturnsValue> calls(CountDownLatch start,
+			AtomicInteger maxSeenInFlight, int... values) {
+		AtomicInteger inFlight = new AtomicInteger();
+		List<ReturnsValue> calls = new ArrayList<ReturnsValue>();
+		for (int value : values)
+			calls.add(new ReturnsValue(value, start, inFlight, maxSeenInFlight));
+		return calls;
+	}
+
+	public void callAll_sequential_returnsOutcomesInOrderOfTheCalls() {
+		List<Outcome<Integer>> outcomes = ArchiveListingExecutor
+				.createSequential().callAll(
+						calls(new CountDownLatch(0), new AtomicInteger(), 3, 1, 2));
+		assertEquals(outcomes.size(), 3);
+		assertEquals(outcomes.get(0).getValue(), (Integer) 3);
+		assertEquals(outcomes.get(1).getValue(), (Integer) 1);
+		assertEquals(outcomes.get(2).getValue(), (Integer) 2);
+	}
+
+	public void callAll_concurrent_returnsOutcomesInOrderOfTheCalls() {
+		int[] values = new int[50];
+		for (int i = 0; i < values.length; i++)
+			values[i] = values.length - i;
+		List<Outcome<Integer>> outcomes = ArchiveListingExecutor
+				.getSharedInstance(4).callAll(
+						calls(new CountDownLatch(0), new AtomicInteger(), values));
+		for (int i = 0; i < values.length; i++)
+			assertEquals(outcomes.get(i).getValue(), (Integer) values[i]);
+	}
+
+	public void callAll_oneCallFails_theOtherCallsStillHaveValues() {
+		List<Outcome<Integer>> outcomes = ArchiveListingExecutor
+				.getSharedInstance(4).callAll(
+						calls(new CountDownLatch(0), new AtomicInteger(), 1, -1, 2));
+		assertFalse(outcomes.get(0).isFailure());
+		assertTrue(outcomes.get(1).isFailure());
+		assertTrue(outcomes.get(1).getFailure() instanceof IOException);
+		assertNull(outcomes.get(1).getValue());
+		assertEquals(outcomes.get(2).getValue(), (Integer) 2);
+	}
+
+	public void callAll_moreCallsThanMaxInFlight_neverMoreCallsInFlightThanMax() {
+		AtomicInteger maxSeenInFlight = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<ReturnsValue> calls = calls(start, maxSeenInFlight, 1, 2, 3, 4, 5,
+				6, 7, 8, 9, 10, 11, 12);
+		start.countDown();
+		ArchiveListingExecutor.getSharedInstance(3).callAll(calls);
+		assertTrue(maxSeenInFlight.get() <= 3);
+		assertTrue(maxSeenInFlight.get() >= 1);
+	}
+
+	public void getSharedInstance_nullOrOne_sequential() {
+		assertEquals(ArchiveListingExecutor.getSharedInstance(null)
+				.getMaxInFlight(), 1);
+		assertEquals(ArchiveListingExecutor.getSharedInstance(1).getMaxInFlight(),
+				1);
+	}
+
+	public void getSharedInstance_sameMaxInFlight_sameInstance() {
+		assertSame(ArchiveListingExecutor.getSharedInstance(5),
+				ArchiveListingExecutor.getSharedInstance(5));
+	}
+}
@@ -0,0 +1,100 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.listers;
+
+import static java.util.Arrays.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
+
+@Test(groups = { "fast-unit" })
+public class BucketCursorTest {
+
+	private Bucket bucket(String index, String name) {
+		return new RemoteBucket("/" + index + "/" + name, index, name,
+				BucketFormat.SPLUNK_BUCKET);
+	}
+
+	private List<String> names(List<? extends Bucket> buckets) {
+		List<String> names = new ArrayList<String>();
+		for (Bucket bucket : buckets)
+			names.add(bucket.getName());
+		return names;
+	}
+
+	public void parse_toString_sameCursor() {
+		BucketCursor cursor = BucketCursor.parse(new BucketCursor("index",
+				"db_2_1_0").toString());
+		assertEquals(cursor.getIndex(), "index");
+		assertEquals(cursor.getBucketName(), "db_2_1_0");
+	}
+
+	public void parse_null_null() {
+		assertNull(BucketCursor.parse(null));
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void parse_noSeparator_throws() {
+		BucketCursor.parse("index");
+	}
+
+	@Test(expectedExceptions = { IllegalArgumentException.class })
+	public void parse_noBucketName_throws() {
+		BucketCursor.parse("index/");
+	}
+
+	public void isBefore_bucketsAfterTheCursor_true() {
+		BucketCursor cursor = new BucketCursor("b", "db_2_1_0");
+		assertTrue(cursor.isBefore("b", "db_4_3_1"));
+		assertTrue(cursor.isBefore("c", "db_0_0_0"));
+		assertFalse(cursor.isBefore("b", "db_2_1_0"));
+		assertFalse(cursor.isBefore("a", "db_9_9_9"));
+	}
+
+	public void isBeforeOrInIndex_indexes_trueForCursorIndexAndLater() {
+		BucketCursor cursor = new BucketCursor("b", "db_2_1_0");
+		assertFalse(cursor.isBeforeOrInIndex("a"));
+		assertTrue(cursor.isBeforeOrInIndex("b"));
+		assertTrue(cursor.isBeforeOrInIndex("c"));
+	}
+
+	public void sortedAfter_noCursor_allBucketsSortedByName() {
+		List<Bucket> buckets = new ArrayList<Bucket>(asList(bucket("i", "db_4"),
+				bucket("i", "db_2"), bucket("i", "db_3")));
+		assertEquals(names(BucketCursor.sortedAfter(buckets, null)),
+				asList("db_2", "db_3", "db_4"));
+	}
+
+	public void sortedAfter_cursorInIndex_bucketsAfterTheCursor() {
+		List<Bucket> buckets = new ArrayList<Bucket>(asList(bucket("i", "db_4"),
+				bucket("i", "db_2"), bucket("i", "db_3")));
+		assertEquals(names(BucketCursor.sortedAfter(buckets, new BucketCursor("i",
+				"db_2"))), asList("db_3", "db_4"));
+	}
+
+	public void sortedAfter_cursorBucketIsGone_bucketsAfterWhereItWas() {
+		List<Bucket> buckets = new ArrayList<Bucket>(asList(bucket("i", "db_4"),
+				bucket("i", "db_2")));
+		assertEquals(names(BucketCursor.sortedAfter(buckets, new BucketCursor("i",
+				"db_3"))), asList("db_4"));
+	}
+}
@@ -19,15 +19,29 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.catalog.ArchiveCatalog;
+import com.splunk.shuttl.archiver.catalog.CatalogedBucket;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
 import com.splunk.shuttl.archiver.thaw.BucketFilter;
+import com.splunk.shuttl.archiver.thaw.BucketFormatChooser;
 import com.splunk.shuttl.archiver.thaw.BucketFormatResolver;
+import com.splunk.shuttl.archiver.thaw.BucketTimeIndex;
 
 @Test(groups = { "fast-unit" })
 public class ListsBucketsFilteredTest {
@@ -38,7 +52,16 @@ public class ListsBucketsFilteredTest {
 	private ListsBucketsFiltered listsBucketsFiltered;
 	private Date earliestTime;
 	private Date latestTime;
+	private ArchiveFileSystem archiveFileSystem;
 
+	private static final Answer<Object> RETURNS_FIRST_ARGUMENT = new Answer<Object>() {
+		@Override
+		public Object answer(InvocationOnMock invocation) {
+			return invocation.getArguments()[0];
+		}
+	};
+
+	@SuppressWarnings("unchecked")
 	@BeforeMethod
 	public void setUp() {
 		earliestTime = mock(Date.class);
@@ -47,28 +70,38 @@ public class ListsBucketsFilteredTest {
 		archiveBucketsLister = mock(ArchiveBucketsLister.class);
 		bucketFilter = mock(BucketFilter.class);
 		bucketFormatResolver = mock(BucketFormatResolver.class);
+		archiveFileSystem = mock(ArchiveFileSystem.class);
+		when(archiveBucketsLister.iterateBuckets()).thenReturn(
+				Collections.<Bucket> emptyList().iterator());
+		when(
+				bucketFilter.filterBucketsByTimeRange(any(Iterator.class),
+						any(Date.class), any(Date.class))).then(RETURNS_FIRST_ARGUMENT);
+		when(bucketFormatResolver.resolveBucketsFormats(any(Iterator.class)))
+				.then(RETURNS_FIRST_ARGUMENT);
 		listsBucketsFiltered = new ListsBucketsFiltered(archiveBucketsLister,
 				bucketFilter, bucketFormatResolver);
 	}
 
+	@SuppressWarnings("unchecked")
 	@Test(groups = { "fast-unit" })
 	public void _givenBucketsInAnIndex_filterBucketsOnTimeRange() {
-		List<Bucket> bucketsInIndex = asList(mock(Bucket.class));
+		Bucket bucket = mock(Bucket.class);
 		String index = "index";
 		when(archiveBucketsLister.listBucketsInIndex(index)).thenReturn(
-				bucketsInIndex);
-		listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
-				latestTime);
-		verify(bucketFilter).filterBucketsByTimeRange(bucketsInIndex, earliestTime,
-				latestTime);
+				asList(bucket));
+		List<Bucket> buckets = listsBucketsFiltered.listFilteredBucketsAtIndex(
+				index, earliestTime, latestTime);
+		verify(bucketFilter).filterBucketsByTimeRange(any(Iterator.class),
+				eq(earliestTime), eq(latestTime));
+		assertEquals(asList(bucket), buckets);
 	}
 
 	@SuppressWarnings("unchecked")
 	public void _givenFilteredBuckets_resolvesFilteredBucketsFormats() {
-		List<Bucket> filteredBuckets = asList(mock(Bucket.class));
+		Iterator<Bucket> filteredBuckets = asList(mock(Bucket.class)).iterator();
 		when(
-				bucketFilter.filterBucketsByTimeRange(anyList(), any(Date.class),
-						any(Date.class))).thenReturn(filteredBuckets);
+				bucketFilter.filterBucketsByTimeRange(any(Iterator.class),
+						any(Date.class), any(Date.class))).thenReturn(filteredBuckets);
 		listsBucketsFiltered.listFilteredBucketsAtIndex("foo", earliestTime,
 				latestTime);
 		verify(bucketFormatResolver).resolveBucketsFormats(filteredBuckets);
@@ -77,11 +110,124 @@ public class ListsBucketsFilteredTest {
 	@SuppressWarnings("unchecked")
 	public void _givenFilteredBuckets_returnThoseBuckets() {
 		List<Bucket> bucketsWithFormats = asList(mock(Bucket.class));
-		when(bucketFormatResolver.resolveBucketsFormats(anyList())).thenReturn(
-				bucketsWithFormats);
+		when(bucketFormatResolver.resolveBucketsFormats(any(Iterator.class)))
+				.thenReturn(bucketsWithFormats.iterator());
 
 		List<Bucket> filteredBucketsAtIndex = listsBucketsFiltered
 				.listFilteredBucketsAtIndex("foo", earliestTime, latestTime);
 		assertEquals(bucketsWithFormats, filteredBucketsAtIndex);
 	}
+
+	public void iterateFilteredBuckets_notIterated_formatsAreNotResolved() {
+		when(archiveBucketsLister.iterateBuckets()).thenReturn(
+				asList(mock(Bucket.class)).iterator());
+		ListsBucketsFiltered lazyListsBucketsFiltered = new ListsBucketsFiltered(
+				archiveBucketsLister, new BucketFilter(), new BucketFormatResolver(
+						mock(PathResolver.class), archiveFileSystem,
+						mock(BucketFormatChooser.class)));
+
+		lazyListsBucketsFiltered.iterateFilteredBuckets(earliestTime, latestTime);
+		verifyZeroInteractions(archiveFileSystem);
+	}
+
+	public void listFilteredBucketsAtIndex_completeCatalog_resolvesBucketsWithinTimeRangeFromCatalog() {
+		ArchiveCatalog archiveCatalog = mock(ArchiveCatalog.class);
+		when(archiveCatalog.isComplete()).thenReturn(true);
+		CatalogedBucket inRange = new CatalogedBucket("index", "db_20_10_0", 10,
+				20, new HashMap<BucketFormat, Long>());
+		CatalogedBucket outOfRange = new CatalogedBucket("index", "db_90_80_0",
+				80, 90, new HashMap<BucketFormat, Long>());
+		when(archiveCatalog.getTimeIndex("index")).thenReturn(
+				new BucketTimeIndex.Builder<CatalogedBucket>()
+						.add(inRange, 10000, 20000).add(outOfRange, 80000, 90000).build());
+		Bucket resolved = mock(Bucket.class);
+		when(bucketFormatResolver.resolveCatalogedBucket(inRange)).thenReturn(
+				resolved);
+
+		List<Bucket> buckets = new ListsBucketsFiltered(archiveBucketsLister,
+				bucketFilter, bucketFormatResolver, archiveCatalog)
+				.listFilteredBucketsAtIndex("index", new Date(5000), new Date(30000));
+		assertEquals(asList(resolved), buckets);
+		verifyZeroInteractions(archiveBucketsLister);
+	}
+
+	public void listFilteredBuckets_incompleteCatalog_listsTheArchive() {
+		ArchiveCatalog archiveCatalog = mock(ArchiveCatalog.class);
+		when(archiveCatalog.isComplete()).thenReturn(false);
+
+		new ListsBucketsFiltered(archiveBucketsLister, bucketFilter,
+				bucketFormatResolver, archiveCatalog).listFilteredBuckets(
+				earliestTime, latestTime);
+		verify(archiveBucketsLister).iterateBuckets();
+		verify(archiveCatalog, never()).getTimeIndex(anyString());
+	}
+
+	public void listFilteredBucketsAtIndex_bucketsWalker_filtersWalkedBucketsWithoutResolvingFormats() {
+		ArchiveBucketsWalker bucketsWalker = mock(ArchiveBucketsWalker.class);
+		Bucket walked = mock(Bucket.class);
+		Iterator<Bucket> walkedBuckets = asList(walked).iterator();
+		when(bucketsWalker.walkBucketsInIndex("index")).thenReturn(walkedBuckets);
+		List<Bucket> filtered = asList(walked);
+		when(bucketFilter.filterBucketsByTimeRange(walkedBuckets, earliestTime,
+				latestTime)).thenReturn(filtered.iterator());
+
+		List<Bucket> buckets = new ListsBucketsFiltered(archiveBucketsLister,
+				bucketFilter, bucketFormatResolver, null, bucketsWalker)
+				.listFilteredBucketsAtIndex("index", earliestTime, latestTime);
+
+		assertEquals(filtered, buckets);
+		verifyZeroInteractions(archiveBucketsLister, bucketFormatResolver);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void iterateFilteredBucketsAfter_cursor_skipsIndexesBeforeCursorAndSortsBucketsAfterIt() {
+		when(archiveBucketsLister.listIndexes()).thenReturn(asList("b", "a", "c"));
+		when(archiveBucketsLister.listBucketsInIndex("b")).thenReturn(
+				asList(remoteBucket("b", "db_3"), remoteBucket("b", "db_1"),
+						remoteBucket("b", "db_2")));
+		when(archiveBucketsLister.listBucketsInIndex("c")).thenReturn(
+				asList(remoteBucket("c", "db_1")));
+		when(
+				bucketFilter.filterBucketsByTimeRange(any(List.class), any(Date.class),
+						any(Date.class))).then(RETURNS_FIRST_ARGUMENT);
+
+		List<String> bucketNames = new ArrayList<String>();
+		Iterator<Bucket> buckets = listsBucketsFiltered
+				.iterateFilteredBucketsAfter(null, earliestTime, latestTime,
+						new BucketCursor("b", "db_1"));
+		while (buckets.hasNext())
+			bucketNames.add(buckets.next().toString());
+
+		verify(archiveBucketsLister, never()).listBucketsInIndex("a");
+		assertEquals(asList("b/db_2", "b/db_3", "c/db_1"), bucketNames);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void iterateFilteredBucketsAfter_bucketsWalker_listsBucketsByNameWithoutWalking() {
+		ArchiveBucketsWalker bucketsWalker = mock(ArchiveBucketsWalker.class);
+		when(archiveBucketsLister.listBucketsInIndex("index")).thenReturn(
+				asList(remoteBucket("index", "db_2"), remoteBucket("index", "db_1")));
+		when(
+				bucketFilter.filterBucketsByTimeRange(any(List.class), any(Date.class),
+						any(Date.class))).then(RETURNS_FIRST_ARGUMENT);
+
+		Iterator<Bucket> buckets = new ListsBucketsFiltered(archiveBucketsLister,
+				bucketFilter, bucketFormatResolver, null, bucketsWalker)
+				.iterateFilteredBucketsAfter("index", earliestTime, latestTime,
+						new BucketCursor("index", "db_1"));
+
+		assertEquals("index/db_2", buckets.next().toString());
+		assertFalse(buckets.hasNext());
+		verifyZeroInteractions(bucketsWalker);
+	}
+
+	private Bucket remoteBucket(String index, String name) {
+		return new RemoteBucket(index + "/" + name, index, name,
+				BucketFormat.SPLUNK_BUCKET) {
+			@Override
+			public String toString() {
+				return getIndex() + "/" + getName();
+			}
+		};
+	}
 }
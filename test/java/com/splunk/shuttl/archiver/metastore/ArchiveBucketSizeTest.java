@@ -22,6 +22,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.transaction.Transaction;
 import com.splunk.shuttl.archiver.metastore.MetadataStore.CouldNotReadMetadataException;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
@@ -51,6 +52,16 @@ public class ArchiveBucketSizeTest {
 				archiveBucketSize.getSizeMetadataFileName(), "" + bucket.getSize());
 	}
 
+	public void getPersistBucketSizeTransaction_givenBucket_putTransactionFromMetadataStore() {
+		Transaction transaction = mock(Transaction.class);
+		when(
+				metadataStore.getPutTransaction(bucket,
+						archiveBucketSize.getSizeMetadataFileName(), "" + bucket.getSize()))
+				.thenReturn(transaction);
+		assertEquals(transaction,
+				archiveBucketSize.getPersistBucketSizeTransaction(bucket));
+	}
+
 	public void readBucketSize_givenBucket_sizeFromMetadataStore() {
 		String data = "123";
 		Long longData = 123L;
@@ -66,4 +66,13 @@ public class FlatFileStorageTest {
 	public void readFlatFile_givenEmptyFile_throws() {
 		flatFileStorage.readFlatFile(createFile());
 	}
+
+	public void read_writtenData_readsData() {
+		flatFileStorage.write(bucket, fileName, "data");
+		assertEquals(flatFileStorage.read(bucket, fileName), "data");
+	}
+
+	public void read_nothingWritten_null() {
+		assertNull(flatFileStorage.read(bucket, fileName));
+	}
 }
@@ -0,0 +1,156 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class LogStructuredMetadataStorageTest {
+
+	private File directory;
+	private File logFile;
+	private LogStructuredMetadataStorage storage;
+	private LocalBucket bucket;
+	private String fileName;
+
+	@BeforeMethod
+	public void setUp() {
+		directory = createDirectory();
+		logFile = new File(directory, "metadata.log");
+		storage = open(Long.MAX_VALUE);
+		bucket = TUtilsBucket.createBucket();
+		fileName = "fileName";
+	}
+
+	private LogStructuredMetadataStorage open(long minCompactionBytes) {
+		return new LogStructuredMetadataStorage(logFile, minCompactionBytes);
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		storage.close();
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public void read_nothingWritten_null() {
+		assertNull(storage.read(bucket, fileName));
+	}
+
+	public void read_writtenData_readsData() {
+		storage.write(bucket, fileName, "data");
+		assertEquals(storage.read(bucket, fileName), "data");
+	}
+
+	public void read_overwrittenData_readsLatestData() {
+		storage.write(bucket, fileName, "data");
+		storage.write(bucket, fileName, "new data");
+		assertEquals(storage.read(bucket, fileName), "new data");
+	}
+
+	public void read_otherFileNameOfSameBucket_null() {
+		storage.write(bucket, fileName, "data");
+		assertNull(storage.read(bucket, "otherFileName"));
+	}
+
+	public void write_dataWithManyLines_storesFirstLine() {
+		storage.write(bucket, fileName, "first\r\nsecond");
+		assertEquals(storage.read(bucket, fileName), "first");
+	}
+
+	public void read_reopenedLog_readsLatestDataFromMappedLog()
+			throws IOException {
+		storage.write(bucket, fileName, "data");
+		storage.write(bucket, fileName, "new data\twith tab");
+		storage.close();
+
+		storage = open(Long.MAX_VALUE);
+		assertEquals(storage.read(bucket, fileName), "new data\twith tab");
+	}
+
+	public void read_moreWritesThanRemapBatch_readsAllData() {
+		int writes = LogStructuredMetadataStorage.REMAP_BATCH_SIZE + 10;
+		Bucket[] buckets = new Bucket[writes];
+		for (int i = 0; i < writes; i++) {
+			buckets[i] = TUtilsBucket.createBucket();
+			storage.write(buckets[i], fileName, "data" + i);
+		}
+		for (int i = 0; i < writes; i++)
+			assertEquals(storage.read(buckets[i], fileName), "data" + i);
+	}
+
+	public void open_logEndsWithTornLine_cutsOffTornLine() throws IOException {
+		storage.write(bucket, fileName, "data");
+		storage.close();
+		long size = logFile.length();
+		appendBytes("torn-key\tto");
+
+		storage = open(Long.MAX_VALUE);
+		assertEquals(logFile.length(), size);
+		assertEquals(storage.read(bucket, fileName), "data");
+	}
+
+	private void appendBytes(String bytes) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+		try {
+			file.seek(file.length());
+			file.write(bytes.getBytes("UTF-8"));
+		} finally {
+			file.close();
+		}
+	}
+
+	public void write_mostlyOverwrittenLog_compactsToLatestData()
+			throws IOException {
+		storage.close();
+		storage = open(1);
+		LocalBucket otherBucket = TUtilsBucket.createBucket();
+		storage.write(otherBucket, fileName, "other");
+		for (int i = 0; i < 10; i++)
+			storage.write(bucket, fileName, "data" + i);
+
+		assertTrue(FileUtils.readLines(logFile).size() < 11);
+		assertEquals(storage.read(bucket, fileName), "data9");
+		assertEquals(storage.read(otherBucket, fileName), "other");
+		storage.close();
+
+		storage = open(Long.MAX_VALUE);
+		assertEquals(storage.read(bucket, fileName), "data9");
+		assertEquals(storage.read(otherBucket, fileName), "other");
+		assertFalse(new File(logFile.getPath() + ".compacting").exists());
+	}
+
+	public void getSharedInstance_sameDirectory_sameInstance() {
+		LocalFileSystemPaths localFileSystemPaths = new LocalFileSystemPaths(
+				directory);
+		assertSame(
+				LogStructuredMetadataStorage.getSharedInstance(localFileSystemPaths),
+				LogStructuredMetadataStorage.getSharedInstance(localFileSystemPaths));
+	}
+}
@@ -0,0 +1,88 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.metastore.MetadataCache.Clock;
+
+@Test(groups = { "fast-unit" })
+public class MetadataCacheTest {
+
+	private MetadataCache metadataCache;
+	private Clock clock;
+
+	@BeforeMethod
+	public void setUp() {
+		clock = mock(Clock.class);
+		metadataCache = new MetadataCache(2, 1000, clock);
+	}
+
+	public void get_nothingCached_nullAndCountsMiss() {
+		assertNull(metadataCache.get("file"));
+		assertEquals(metadataCache.getMisses(), 1);
+		assertEquals(metadataCache.getHits(), 0);
+	}
+
+	public void get_putMetadata_cachedDataAndCountsHit() {
+		metadataCache.put("file", "data");
+		assertEquals(metadataCache.get("file").getData(), "data");
+		assertEquals(metadataCache.getHits(), 1);
+		assertEquals(metadataCache.getMisses(), 0);
+	}
+
+	public void get_otherKey_miss() {
+		metadataCache.put("file", "data");
+		assertNull(metadataCache.get("other.file"));
+	}
+
+	public void get_putMissingWithinTtl_missingAndCountsNegativeHit() {
+		when(clock.currentTimeMillis()).thenReturn(0L, 999L);
+		metadataCache.putMissing("file");
+		assertTrue(metadataCache.get("file").isMissing());
+		assertEquals(metadataCache.getNegativeHits(), 1);
+	}
+
+	public void get_putMissingAfterTtl_nullAndRemoved() {
+		when(clock.currentTimeMillis()).thenReturn(0L, 1000L);
+		metadataCache.putMissing("file");
+		assertNull(metadataCache.get("file"));
+		assertEquals(metadataCache.getMisses(), 1);
+		assertEquals(metadataCache.getSize(), 0);
+	}
+
+	public void put_afterPutMissing_replacesMissing() {
+		metadataCache.putMissing("file");
+		metadataCache.put("file", "data");
+		assertEquals(metadataCache.get("file").getData(), "data");
+	}
+
+	public void put_moreThanMaxSize_evictsLeastRecentlyUsed() {
+		metadataCache.put("a", "a");
+		metadataCache.put("b", "b");
+		metadataCache.get("a");
+		metadataCache.put("c", "c");
+
+		assertEquals(metadataCache.getSize(), 2);
+		assertEquals(metadataCache.getEvictions(), 1);
+		assertNull(metadataCache.get("b"));
+		assertNotNull(metadataCache.get("a"));
+		assertNotNull(metadataCache.get("c"));
+	}
+}
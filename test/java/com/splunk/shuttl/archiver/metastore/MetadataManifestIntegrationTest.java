@@ -0,0 +1,301 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+import com.splunk.shuttl.archiver.archive.ArchiveConfiguration;
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
+import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
+import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
+import com.splunk.shuttl.archiver.metastore.MetadataStore.CouldNotReadMetadataException;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
+import com.splunk.shuttl.testutil.TUtilsFunctional;
+
+@Test(groups = { "slow-unit" })
+public class MetadataManifestIntegrationTest {
+
+	private ArchiveFileSystem localFileSystem;
+	private PathResolver pathResolver;
+	private LocalFileSystemPaths localFileSystemPaths;
+	private TransactionExecuter transactionExecuter;
+	private String index;
+	private File manifestHome;
+	private Bucket bucket;
+	private Bucket otherBucket;
+	private String fileName;
+
+	@BeforeMethod
+	public void setUp() {
+		ArchiveConfiguration config = TUtilsFunctional
+				.getLocalFileSystemConfiguration();
+		localFileSystem = ArchiveFileSystemFactory.getWithConfiguration(config);
+		pathResolver = new PathResolver(config);
+		localFileSystemPaths = new LocalFileSystemPaths(createDirectory());
+		transactionExecuter = new TransactionExecuter();
+
+		index = "index-" + UUID.randomUUID();
+		manifestHome = new File(pathResolver.getMetadataManifestHome(index));
+		bucket = createRemoteBucket("db_2_1_0");
+		otherBucket = createRemoteBucket("db_4_3_1");
+		fileName = "metadata.file";
+	}
+
+	private Bucket createRemoteBucket(String name) {
+		return new RemoteBucket(pathResolver.resolveArchivedBucketPath(index,
+				name, BucketFormat.SPLUNK_BUCKET), index, name,
+				BucketFormat.SPLUNK_BUCKET);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(manifestHome);
+		FileUtils.deleteQuietly(new File(bucket.getPath()));
+		FileUtils.deleteQuietly(localFileSystemPaths.getArchiverDirectory());
+	}
+
+	/**
+	 * Flushes are only done by the tests, unless the delta lines are reached.
+	 */
+	private MetadataManifest createManifest(int compactionThreshold) {
+		return createManifest(100, compactionThreshold);
+	}
+
+	private MetadataManifest createManifest(int deltaLines,
+			int compactionThreshold) {
+		return new MetadataManifest(pathResolver, localFileSystem,
+				transactionExecuter, localFileSystemPaths, deltaLines,
+				compactionThreshold, TimeUnit.HOURS.toMillis(1));
+	}
+
+	private void record(MetadataManifest manifest, Bucket bucket, String data) {
+		try {
+			manifest.record(bucket, fileName, data);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private List<String> listManifestHome() throws IOException {
+		return localFileSystem.listPath(manifestHome.getAbsolutePath());
+	}
+
+	private void writeManifestFile(String name, String data) throws IOException {
+		FileUtils.writeStringToFile(new File(manifestHome, name),
+				bucket.getName() + "\t" + bucket.getFormat() + "\t" + fileName
+						+ "\t" + data);
+	}
+
+	private List<String> namesWithPrefix(List<String> paths, String prefix) {
+		List<String> names = new ArrayList<String>();
+		for (String path : paths)
+			if (FilenameUtils.getName(path).startsWith(prefix))
+				names.add(FilenameUtils.getName(path));
+		return names;
+	}
+
+	public void record_notFlushed_doesNotUploadAnything() {
+		record(createManifest(2), bucket, "data");
+
+		assertFalse(manifestHome.exists());
+		assertNull(createManifest(2).read(bucket, fileName));
+	}
+
+	public void flush_pendingLines_uploadsOneDeltaFileWithAllOfThem()
+			throws IOException {
+		MetadataManifest manifest = createManifest(10);
+		record(manifest, bucket, "data");
+		record(manifest, otherBucket, "other data");
+		manifest.flush(index);
+
+		List<String> files = listManifestHome();
+		assertEquals(files.size(), 1);
+		assertEquals(namesWithPrefix(files, MetadataManifest.DELTA_PREFIX).size(),
+				1);
+		MetadataManifest readManifest = createManifest(10);
+		assertEquals(readManifest.read(bucket, fileName), "data");
+		assertEquals(readManifest.read(otherBucket, fileName), "other data");
+		assertNull(readManifest.read(bucket, "other.file"));
+	}
+
+	public void flush_deltasReachCompactionThreshold_mergesThemIntoOneManifestFile()
+			throws IOException {
+		MetadataManifest manifest = createManifest(2);
+		record(manifest, bucket, "data");
+		manifest.flush(index);
+		record(manifest, otherBucket, "other data");
+		manifest.flush(index);
+
+		List<String> files = listManifestHome();
+		assertEquals(files.size(), 1);
+		assertEquals(
+				namesWithPrefix(files, MetadataManifest.MANIFEST_PREFIX).size(), 1);
+		assertEquals(createManifest(2).read(bucket, fileName), "data");
+		assertEquals(createManifest(2).read(otherBucket, fileName), "other data");
+	}
+
+	public void flush_deltasBelowCompactionThreshold_leavesManifestFilesAlone()
+			throws IOException {
+		writeManifestFile(MetadataManifest.MANIFEST_PREFIX + "9-a", "old data");
+		MetadataManifest manifest = createManifest(2);
+		record(manifest, bucket, "new data");
+		manifest.flush(index);
+
+		assertEquals(listManifestHome().size(), 2);
+		assertEquals(createManifest(2).read(bucket, fileName), "new data");
+	}
+
+	public void flush_recordedInSeparateInstances_uploadsPendingOfBoth() {
+		record(createManifest(2), bucket, "data");
+		record(createManifest(2), otherBucket, "other data");
+		createManifest(2).flush(index);
+
+		assertEquals(createManifest(2).read(bucket, fileName), "data");
+		assertEquals(createManifest(2).read(otherBucket, fileName), "other data");
+	}
+
+	public void flush_nothingRecorded_uploadsNothing() {
+		createManifest(2).flush(index);
+
+		assertFalse(manifestHome.exists());
+	}
+
+	public void record_deltaLinesReached_uploadsDeltaInTheBackground()
+			throws Exception {
+		MetadataManifest manifest = createManifest(2, 10);
+		record(manifest, bucket, "data");
+		record(manifest, otherBucket, "other data");
+
+		for (int i = 0; i < 100 && !manifestHome.exists(); i++)
+			Thread.sleep(50);
+		assertEquals(createManifest(10).read(otherBucket, fileName), "other data");
+	}
+
+	public void read_noManifestForIndex_null() {
+		assertNull(createManifest(10).read(bucket, fileName));
+	}
+
+	public void flush_recordedAgainAfterCompaction_newDataIsRead()
+			throws IOException {
+		MetadataManifest manifest = createManifest(1);
+		record(manifest, bucket, "data");
+		manifest.flush(index);
+		record(manifest, bucket, "new data");
+		manifest.flush(index);
+
+		assertEquals(listManifestHome().size(), 1);
+		assertEquals(createManifest(1).read(bucket, fileName), "new data");
+	}
+
+	public void read_deltaWrittenAfterManifest_deltaIsReadLast()
+			throws IOException {
+		writeManifestFile(MetadataManifest.MANIFEST_PREFIX + "9-a", "old data");
+		writeManifestFile(MetadataManifest.DELTA_PREFIX + "10-b", "new data");
+
+		assertEquals(createManifest(10).read(bucket, fileName), "new data");
+	}
+
+	public void read_manifestFilesWithTimesOfDifferentLengths_newestWrittenIsReadLast()
+			throws IOException {
+		writeManifestFile(MetadataManifest.MANIFEST_PREFIX + "9-a", "old data");
+		writeManifestFile(MetadataManifest.MANIFEST_PREFIX + "10-b", "new data");
+
+		assertEquals(createManifest(10).read(bucket, fileName), "new data");
+	}
+
+	public void read_manifestFileDeletedAfterListing_readsTheRemainingFiles()
+			throws IOException {
+		writeManifestFile(MetadataManifest.MANIFEST_PREFIX + "10-b", "data");
+		String deleted = new File(manifestHome, MetadataManifest.MANIFEST_PREFIX
+				+ "9-a").getAbsolutePath();
+		List<String> listing = new ArrayList<String>(listManifestHome());
+		listing.add(deleted);
+		localFileSystem = spy(localFileSystem);
+		when(localFileSystem.listPath(manifestHome.getAbsolutePath()))
+				.thenReturn(listing).thenCallRealMethod();
+
+		assertEquals(createManifest(10).read(bucket, fileName), "data");
+	}
+
+	public void canRecord_dataWithTab_false() {
+		assertFalse(createManifest(10).canRecord("da\tta"));
+		assertTrue(createManifest(10).canRecord("data"));
+	}
+
+	public void getRecordingTransaction_committed_recordsPendingLine() {
+		MetadataManifest manifest = createManifest(10);
+		transactionExecuter.execute(manifest.getRecordingTransaction(bucket,
+				fileName, "data"));
+		manifest.flush(index);
+
+		assertEquals(createManifest(10).read(bucket, fileName), "data");
+	}
+
+	public void metadataStorePut_recordedInManifest_doesNotPutBucketMetadataFile() {
+		FlatFileStorage flatFileStorage = new FlatFileStorage(
+				localFileSystemPaths);
+		MetadataManifest manifest = createManifest(10);
+		MetadataStore metadataStore = new MetadataStore(pathResolver,
+				flatFileStorage, localFileSystem, transactionExecuter,
+				localFileSystemPaths, manifest);
+		metadataStore.put(bucket, fileName, "data");
+		manifest.flush(index);
+		File bucketMetadataFile = new File(pathResolver.resolvePathForBucketMetadata(
+				bucket, flatFileStorage.getFlatFile(bucket, fileName)));
+		assertFalse(bucketMetadataFile.exists());
+		FileUtils.deleteQuietly(flatFileStorage.getFlatFile(bucket, fileName));
+
+		assertEquals(metadataStore.read(bucket, fileName), "data");
+	}
+
+	public void metadataStoreRead_legacyBucketMetadataFile_readsIt() {
+		FlatFileStorage flatFileStorage = new FlatFileStorage(
+				localFileSystemPaths);
+		new MetadataStore(pathResolver, flatFileStorage, localFileSystem,
+				transactionExecuter, localFileSystemPaths).put(bucket, fileName,
+				"data");
+		FileUtils.deleteQuietly(flatFileStorage.getFlatFile(bucket, fileName));
+
+		assertEquals(new MetadataStore(pathResolver, flatFileStorage,
+				localFileSystem, transactionExecuter, localFileSystemPaths,
+				createManifest(10)).read(bucket, fileName), "data");
+	}
+
+	@Test(expectedExceptions = { CouldNotReadMetadataException.class })
+	public void metadataStoreRead_metadataNowhere_throws() {
+		new MetadataStore(pathResolver, new FlatFileStorage(localFileSystemPaths),
+				localFileSystem, transactionExecuter, localFileSystemPaths,
+				createManifest(10)).read(bucket, fileName);
+	}
+}
@@ -0,0 +1,61 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.metastore;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.LocalFileSystemPaths;
+
+@Test(groups = { "fast-unit" })
+public class MetadataStorageFactoryTest {
+
+	private File directory;
+	private LocalFileSystemPaths localFileSystemPaths;
+
+	@BeforeMethod
+	public void setUp() {
+		directory = createDirectory();
+		localFileSystemPaths = new LocalFileSystemPaths(directory);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(directory);
+	}
+
+	public void create_noStorageConfigured_flatFileStorage() {
+		assertTrue(MetadataStorageFactory.create(localFileSystemPaths, null)
+				instanceof FlatFileStorage);
+	}
+
+	public void create_logStorageConfigured_logStructuredStorage() {
+		assertTrue(MetadataStorageFactory.create(localFileSystemPaths,
+				MetadataStorageFactory.LOG_STRUCTURED_STORAGE)
+				instanceof LogStructuredMetadataStorage);
+	}
+
+	public void create_unknownStorageConfigured_flatFileStorage() {
+		assertTrue(MetadataStorageFactory.create(localFileSystemPaths, "unknown")
+				instanceof FlatFileStorage);
+	}
+}
@@ -95,6 +95,7 @@ public class MetadataStoreReadIntegrationTest {
 		assertFalse(localMetadata.exists());
 
 		assertEquals(expectedData, metadataStore.read(remoteBucket, fileName));
+		assertEquals(expectedData, flatFileStorage.readFlatFile(localMetadata));
 	}
 
 	public void readBucketSize_sizeMetadataExistsLocally_readsSize()
@@ -14,19 +14,27 @@
 // limitations under the License.
 package com.splunk.shuttl.archiver.metastore;
 
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
 
 import java.io.File;
+import java.io.IOException;
 
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.LocalFileSystemPaths;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.filesystem.transaction.Transaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
 import com.splunk.shuttl.archiver.filesystem.transaction.file.PutFileTransaction;
+import com.splunk.shuttl.archiver.metastore.MetadataCache.CachedMetadata;
+import com.splunk.shuttl.archiver.metastore.MetadataStore.CouldNotReadMetadataException;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
@@ -35,40 +43,152 @@ public class MetadataStoreTest {
 
 	private MetadataStore metadataStore;
 	private PathResolver pathResolver;
-	private FlatFileStorage flatFileStorage;
+	private MetadataStorage metadataStorage;
 	private ArchiveFileSystem archiveFileSystem;
 	private TransactionExecuter transactionExecuter;
 	private LocalFileSystemPaths localFileSystemPaths;
 	private Bucket bucket;
 
+	private File transfersDirectory;
+
 	@BeforeMethod
 	public void setUp() {
 		pathResolver = mock(PathResolver.class);
-		flatFileStorage = mock(FlatFileStorage.class);
+		metadataStorage = mock(MetadataStorage.class);
 		archiveFileSystem = mock(ArchiveFileSystem.class);
 		transactionExecuter = mock(TransactionExecuter.class);
 		localFileSystemPaths = mock(LocalFileSystemPaths.class);
-		metadataStore = new MetadataStore(pathResolver, flatFileStorage,
+		metadataStore = new MetadataStore(pathResolver, metadataStorage,
 				archiveFileSystem, transactionExecuter, localFileSystemPaths);
 
 		bucket = TUtilsBucket.createBucket();
+		transfersDirectory = createDirectory();
+		when(localFileSystemPaths.getMetadataTransfersDirectory(bucket))
+				.thenReturn(transfersDirectory);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(transfersDirectory);
 	}
 
-	public void put_bucketFileNameAndData_transfersFlatFileWithTransactionally() {
-		File flatFile = mock(File.class);
+	public void put_bucketFileNameAndData_transfersStagedFileTransactionally()
+			throws IOException {
 		String filename = "filename";
+		File stagedFile = new File(transfersDirectory, filename);
 		String temp = "temp";
-		when(flatFileStorage.getFlatFile(bucket, filename)).thenReturn(flatFile);
-		when(pathResolver.resolveTempPathForBucketMetadata(bucket, flatFile))
+		when(pathResolver.resolveTempPathForBucketMetadata(bucket, stagedFile))
 				.thenReturn(temp);
-		String flatFileRealPath = "";
-		when(pathResolver.resolvePathForBucketMetadata(bucket, flatFile))
-				.thenReturn(flatFileRealPath);
+		String remotePath = "";
+		when(pathResolver.resolvePathForBucketMetadata(bucket, stagedFile))
+				.thenReturn(remotePath);
 
 		metadataStore.put(bucket, filename, "data");
 
+		verify(metadataStorage).write(bucket, filename, "data");
+		assertEquals(FileUtils.readFileToString(stagedFile), "data");
 		verify(transactionExecuter).execute(
 				eq(PutFileTransaction.create(archiveFileSystem,
-						flatFile.getAbsolutePath(), temp, flatFileRealPath)));
+						stagedFile.getAbsolutePath(), temp, remotePath)));
+	}
+
+	public void put_recordableInManifest_recordsItWithoutStagingBucketFileAndKeepsLocalCopy() {
+		MetadataManifest metadataManifest = mock(MetadataManifest.class);
+		when(metadataManifest.canRecord("data")).thenReturn(true);
+		Transaction recordingTransaction = mock(Transaction.class);
+		when(metadataManifest.getRecordingTransaction(bucket, "filename", "data"))
+				.thenReturn(recordingTransaction);
+		new MetadataStore(pathResolver, metadataStorage, archiveFileSystem,
+				transactionExecuter, localFileSystemPaths, metadataManifest).put(
+				bucket, "filename", "data");
+
+		verify(metadataStorage).write(bucket, "filename", "data");
+		verify(transactionExecuter).execute(recordingTransaction);
+		assertFalse(new File(transfersDirectory, "filename").exists());
+	}
+
+	public void put_notRecordableInManifest_putsBucketFile() {
+		MetadataManifest metadataManifest = mock(MetadataManifest.class);
+		when(metadataManifest.canRecord("data")).thenReturn(false);
+		new MetadataStore(pathResolver, metadataStorage, archiveFileSystem,
+				transactionExecuter, localFileSystemPaths, metadataManifest).put(
+				bucket, "filename", "data");
+
+		verify(metadataManifest, never()).getRecordingTransaction(
+				any(Bucket.class), anyString(), anyString());
+		verify(transactionExecuter).execute(any(PutFileTransaction.class));
+	}
+
+	public void read_cachedMetadata_returnsCachedWithoutReadingFiles() {
+		MetadataCache metadataCache = mock(MetadataCache.class);
+		CachedMetadata cached = mock(CachedMetadata.class);
+		when(cached.getData()).thenReturn("data");
+		when(metadataCache.get(anyString())).thenReturn(cached);
+
+		assertEquals(createCachedMetadataStore(metadataCache).read(bucket,
+				"filename"), "data");
+		verifyZeroInteractions(metadataStorage, transactionExecuter);
+	}
+
+	@Test(expectedExceptions = { CouldNotReadMetadataException.class })
+	public void read_cachedAsMissing_throwsWithoutReadingFiles() {
+		MetadataCache metadataCache = mock(MetadataCache.class);
+		CachedMetadata cached = mock(CachedMetadata.class);
+		when(cached.isMissing()).thenReturn(true);
+		when(metadataCache.get(anyString())).thenReturn(cached);
+		try {
+			createCachedMetadataStore(metadataCache).read(bucket, "filename");
+		} finally {
+			verifyZeroInteractions(metadataStorage, transactionExecuter);
+		}
+	}
+
+	public void read_notCachedAndCannotBeRead_cachesAsMissing() {
+		MetadataCache metadataCache = mock(MetadataCache.class);
+		try {
+			createCachedMetadataStore(metadataCache).read(bucket, "filename");
+			fail();
+		} catch (CouldNotReadMetadataException e) {
+		}
+		verify(metadataCache).putMissing(anyString());
+	}
+
+	public void read_notCachedAndReadLocally_cachesMetadata() {
+		MetadataCache metadataCache = mock(MetadataCache.class);
+		when(metadataStorage.read(bucket, "filename")).thenReturn("data");
+
+		createCachedMetadataStore(metadataCache).read(bucket, "filename");
+		verify(metadataCache).put(anyString(), eq("data"));
+	}
+
+	public void getPutTransaction_withCache_writesThroughToCache() {
+		MetadataCache metadataCache = mock(MetadataCache.class);
+		createCachedMetadataStore(metadataCache).getPutTransaction(bucket,
+				"filename", "data");
+		verify(metadataCache).put(anyString(), eq("data"));
+	}
+
+	public void read_onlyInManifest_writesToLocalStorage() {
+		MetadataManifest metadataManifest = mock(MetadataManifest.class);
+		when(metadataManifest.read(bucket, "filename")).thenReturn("data");
+
+		assertEquals(new MetadataStore(pathResolver, metadataStorage,
+				archiveFileSystem, transactionExecuter, localFileSystemPaths,
+				metadataManifest).read(bucket, "filename"), "data");
+		verify(metadataStorage).write(bucket, "filename", "data");
+		verifyZeroInteractions(transactionExecuter);
+	}
+
+	public void read_inLocalStorage_doesNotWriteItBack() {
+		when(metadataStorage.read(bucket, "filename")).thenReturn("data");
+
+		assertEquals(metadataStore.read(bucket, "filename"), "data");
+		verify(metadataStorage, never()).write(any(Bucket.class), anyString(),
+				anyString());
+	}
+
+	private MetadataStore createCachedMetadataStore(MetadataCache metadataCache) {
+		return new MetadataStore(pathResolver, metadataStorage, archiveFileSystem,
+				transactionExecuter, localFileSystemPaths, null, metadataCache);
 	}
 }
@@ -19,6 +19,7 @@ import static org.testng.Assert.*;
 
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import org.testng.annotations.BeforeMethod;
@@ -126,4 +127,23 @@ public class BucketFilterTest {
 		assertTrue(filteredBuckets.contains(bucket));
 	}
 
+
+	public void filterBucketsByTimeRange_iterator_onlyBucketsWithinTimeRange() {
+		Bucket inRange = TUtilsBucket.createBucketWithTimes(earliest, latest);
+		Bucket before = createBucketWithEarliestAndLatestSetToDate(new Date(
+				earliest.getTime() - 100));
+		Iterator<Bucket> buckets = bucketFilter.filterBucketsByTimeRange(
+				Arrays.asList(before, inRange, before).iterator(), earliest, latest);
+		assertTrue(buckets.hasNext());
+		assertEquals(inRange, buckets.next());
+		assertFalse(buckets.hasNext());
+	}
+
+	@SuppressWarnings("unchecked")
+	public void filterBucketsByTimeRange_iteratorWithEarliestLaterThanLatest_noBucketsAreIterated() {
+		Iterator<Bucket> buckets = mock(Iterator.class);
+		assertFalse(bucketFilter.filterBucketsByTimeRange(buckets, latest,
+				earliest).hasNext());
+		verifyZeroInteractions(buckets);
+	}
 }
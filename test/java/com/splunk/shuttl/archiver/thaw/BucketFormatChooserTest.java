@@ -19,7 +19,9 @@ import static org.testng.AssertJUnit.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -96,4 +98,84 @@ public class BucketFormatChooserTest {
 		assertEquals(BucketFormat.UNKNOWN, chosenFormat);
 	}
 
+	public void chooseBucketFormat_noPrioritizingWithTgzAndRawdata_choosesTgzForFasterThaw() {
+		when(configuration.getBucketFormatPriority()).thenReturn(
+				new ArrayList<BucketFormat>());
+		List<BucketFormat> formats = Arrays.asList(BucketFormat.CSV,
+				BucketFormat.SPLUNK_BUCKET_RAWDATA, BucketFormat.SPLUNK_BUCKET_TGZ);
+
+		assertEquals(BucketFormat.SPLUNK_BUCKET_TGZ,
+				bucketFormatChooser.chooseBucketFormat(formats));
+	}
+
+	public void chooseBucketFormat_noPrioritizingWithCsvAndRawdata_choosesRawdata() {
+		when(configuration.getBucketFormatPriority()).thenReturn(
+				new ArrayList<BucketFormat>());
+		List<BucketFormat> formats = Arrays.asList(BucketFormat.CSV,
+				BucketFormat.SPLUNK_BUCKET_RAWDATA);
+
+		assertEquals(BucketFormat.SPLUNK_BUCKET_RAWDATA,
+				bucketFormatChooser.chooseBucketFormat(formats));
+	}
+
+	public void chooseBucketFormat_givenCostModelAndSizes_choosesLowestExpectedThawTime() {
+		when(configuration.getBucketFormatPriority()).thenReturn(
+				new ArrayList<BucketFormat>());
+		ThawCostModel thawCostModel = new ThawCostModel();
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET, 1000, 1000, 0);
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET_TGZ, 10000, 10000,
+				1000);
+		bucketFormatChooser = new BucketFormatChooser(configuration, thawCostModel);
+		Map<BucketFormat, Long> sizes = new HashMap<BucketFormat, Long>();
+		sizes.put(BucketFormat.SPLUNK_BUCKET, 3000L);
+		sizes.put(BucketFormat.SPLUNK_BUCKET_TGZ, 1000L);
+
+		assertEquals(BucketFormat.SPLUNK_BUCKET_TGZ,
+				bucketFormatChooser.chooseBucketFormat(Arrays.asList(
+						BucketFormat.SPLUNK_BUCKET, BucketFormat.SPLUNK_BUCKET_TGZ), sizes));
+	}
+
+	public void chooseBucketFormat_formatThatHasNotBeenImported_canBeChosen() {
+		when(configuration.getBucketFormatPriority()).thenReturn(
+				new ArrayList<BucketFormat>());
+		ThawCostModel thawCostModel = new ThawCostModel();
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET, 1000, 1000, 0);
+		bucketFormatChooser = new BucketFormatChooser(configuration, thawCostModel);
+		Map<BucketFormat, Long> sizes = new HashMap<BucketFormat, Long>();
+		sizes.put(BucketFormat.SPLUNK_BUCKET, 3000L);
+		sizes.put(BucketFormat.SPLUNK_BUCKET_TGZ, 1000L);
+
+		assertEquals(BucketFormat.SPLUNK_BUCKET_TGZ,
+				bucketFormatChooser.chooseBucketFormat(Arrays.asList(
+						BucketFormat.SPLUNK_BUCKET, BucketFormat.SPLUNK_BUCKET_TGZ), sizes));
+	}
+
+	public void chooseBucketFormat_givenCostModelAndPriority_choosesPrioritizedFormat() {
+		when(configuration.getBucketFormatPriority()).thenReturn(
+				Arrays.asList(BucketFormat.SPLUNK_BUCKET));
+		ThawCostModel thawCostModel = new ThawCostModel();
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET, 1000, 1000, 0);
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET_TGZ, 10000, 10000,
+				1000);
+		bucketFormatChooser = new BucketFormatChooser(configuration, thawCostModel);
+		Map<BucketFormat, Long> sizes = new HashMap<BucketFormat, Long>();
+		sizes.put(BucketFormat.SPLUNK_BUCKET, 3000L);
+		sizes.put(BucketFormat.SPLUNK_BUCKET_TGZ, 1000L);
+
+		assertEquals(BucketFormat.SPLUNK_BUCKET,
+				bucketFormatChooser.chooseBucketFormat(Arrays.asList(
+						BucketFormat.SPLUNK_BUCKET_TGZ, BucketFormat.SPLUNK_BUCKET), sizes));
+	}
+
+	public void chooseBucketFormat_givenCostModelWithoutSizes_choosesByDefaultPriority() {
+		when(configuration.getBucketFormatPriority()).thenReturn(
+				new ArrayList<BucketFormat>());
+		ThawCostModel thawCostModel = new ThawCostModel();
+		thawCostModel.recordThaw(BucketFormat.CSV, 1000, 1, 1);
+		bucketFormatChooser = new BucketFormatChooser(configuration, thawCostModel);
+
+		assertEquals(BucketFormat.SPLUNK_BUCKET,
+				bucketFormatChooser.chooseBucketFormat(Arrays.asList(BucketFormat.CSV,
+						BucketFormat.SPLUNK_BUCKET)));
+	}
 }
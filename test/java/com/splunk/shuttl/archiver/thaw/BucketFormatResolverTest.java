@@ -19,16 +19,24 @@ import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.catalog.CatalogedBucket;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.PathResolver;
+import com.splunk.shuttl.archiver.listers.ArchiveListingExecutor;
 import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.thaw.BucketThawer.FailedBucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
 
 @Test(groups = { "fast-unit" })
@@ -72,6 +80,40 @@ public class BucketFormatResolverTest {
 		verify(bucketFormatChooser).chooseBucketFormat(Arrays.asList(format));
 	}
 
+	public void resolveBucketsFormats_listingFormatsFailsWithFailedBucketsList_bucketIsFailedAndLeftOut()
+			throws IOException {
+		Bucket failing = TUtilsBucket.createBucket();
+		Bucket bucket = TUtilsBucket.createBucket();
+		when(pathResolver.getFormatsHome(failing.getIndex(), failing.getName()))
+				.thenReturn("/failing");
+		IOException exception = new IOException();
+		when(archiveFileSystem.listPath("/failing")).thenThrow(exception);
+		bucketFormatResolver = new BucketFormatResolver(pathResolver,
+				archiveFileSystem, bucketFormatChooser,
+				ArchiveListingExecutor.getSharedInstance(2));
+
+		List<FailedBucket> failedBuckets = new ArrayList<FailedBucket>();
+		List<Bucket> resolved = bucketFormatResolver.resolveBucketsFormats(
+				Arrays.asList(failing, bucket), failedBuckets);
+
+		assertEquals(1, resolved.size());
+		assertEquals(bucket.getName(), resolved.get(0).getName());
+		assertEquals(1, failedBuckets.size());
+		assertEquals(failing, failedBuckets.get(0).bucket);
+		assertEquals(exception, failedBuckets.get(0).exception);
+	}
+
+	public void resolveBucketsFormats_listingFormatsFailsWithoutFailedBucketsList_bucketHasNoFormats()
+			throws IOException {
+		when(archiveFileSystem.listPath(anyString())).thenThrow(
+				new IOException());
+		List<Bucket> resolved = bucketFormatResolver
+				.resolveBucketsFormats(mockedBucketsList);
+		assertEquals(1, resolved.size());
+		verify(bucketFormatChooser).chooseBucketFormat(
+				Collections.<BucketFormat> emptyList());
+	}
+
 	@SuppressWarnings("unchecked")
 	public void resolveBucketsFormats_givenChosenFormat_resolvingPathForBucketWithFormat() {
 		Bucket bucket = TUtilsBucket.createBucket();
@@ -110,4 +152,46 @@ public class BucketFormatResolverTest {
 		assertEquals(1, bucketsWithFormat.size());
 		assertEquals(path, bucketsWithFormat.get(0).getPath());
 	}
+
+	public void resolveCatalogedBucket_catalogedFormats_choosesFormatAndUsesItsSize()
+			throws IOException {
+		Map<BucketFormat, Long> formatSizes = new LinkedHashMap<BucketFormat, Long>();
+		formatSizes.put(BucketFormat.CSV, 1L);
+		formatSizes.put(BucketFormat.SPLUNK_BUCKET, 2L);
+		CatalogedBucket cataloged = new CatalogedBucket("index", "db_20_10_0", 10,
+				20, formatSizes);
+		when(
+				bucketFormatChooser.chooseBucketFormat(Arrays.asList(BucketFormat.CSV,
+						BucketFormat.SPLUNK_BUCKET), formatSizes)).thenReturn(
+				BucketFormat.SPLUNK_BUCKET);
+		when(
+				pathResolver.resolveArchivedBucketPath("index", "db_20_10_0",
+						BucketFormat.SPLUNK_BUCKET)).thenReturn("/bucket/path");
+
+		Bucket bucket = bucketFormatResolver.resolveCatalogedBucket(cataloged);
+		assertEquals(BucketFormat.SPLUNK_BUCKET, bucket.getFormat());
+		assertEquals("/bucket/path", bucket.getPath());
+		assertEquals(2L, (long) bucket.getSize());
+		verifyZeroInteractions(archiveFileSystem);
+	}
+
+	public void resolveBucketsFormats_iterator_listsFormatsOfOneBatchAtATime()
+			throws IOException {
+		bucketFormatResolver = new BucketFormatResolver(pathResolver,
+				archiveFileSystem, bucketFormatChooser,
+				ArchiveListingExecutor.getSharedInstance(2));
+		List<Bucket> buckets = Arrays.<Bucket> asList(TUtilsBucket.createBucket(),
+				TUtilsBucket.createBucket(), TUtilsBucket.createBucket());
+
+		Iterator<Bucket> resolved = bucketFormatResolver
+				.resolveBucketsFormats(buckets.iterator());
+		verifyZeroInteractions(archiveFileSystem);
+
+		resolved.next();
+		verify(archiveFileSystem, times(2)).listPath(anyString());
+		resolved.next();
+		resolved.next();
+		verify(archiveFileSystem, times(3)).listPath(anyString());
+		assertFalse(resolved.hasNext());
+	}
 }
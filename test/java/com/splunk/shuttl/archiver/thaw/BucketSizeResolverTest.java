@@ -17,9 +17,13 @@ package com.splunk.shuttl.archiver.thaw;
 import static org.mockito.Mockito.*;
 import static org.testng.AssertJUnit.*;
 
+import java.util.Arrays;
+import java.util.Iterator;
+
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.metastore.ArchiveBucketSize;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
@@ -60,4 +64,26 @@ public class BucketSizeResolverTest {
 		assertEquals(bucketWithoutSize.getPath(), sizedBucket.getPath());
 		assertFalse(bucketWithoutSize.getSize() == sizedBucket.getSize());
 	}
+
+	public void resolveBucketSize_bucketWithKnownSize_doesNotReadSizeFromArchive() {
+		Bucket sizedBucket = new Bucket("/path", "index", "db_20_10_0",
+				BucketFormat.SPLUNK_BUCKET, 12L);
+
+		assertSame(bucketSizeResolver.resolveBucketSize(sizedBucket), sizedBucket);
+		verifyZeroInteractions(archiveBucketSize);
+	}
+
+	public void resolveBucketsSizes_notIterated_noSizesAreRead() {
+		bucketSizeResolver.resolveBucketsSizes(Arrays.asList(bucketWithoutSize)
+				.iterator());
+		verifyZeroInteractions(archiveBucketSize);
+	}
+
+	public void resolveBucketsSizes_iterated_bucketsWithSizes() {
+		when(archiveBucketSize.readBucketSize(bucketWithoutSize)).thenReturn(3L);
+		Iterator<Bucket> buckets = bucketSizeResolver
+				.resolveBucketsSizes(Arrays.asList(bucketWithoutSize).iterator());
+		assertEquals(3, (long) buckets.next().getSize());
+		assertFalse(buckets.hasNext());
+	}
 }
@@ -24,13 +24,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.splunk.shuttl.archiver.bucketlock.BucketLock;
 import com.splunk.shuttl.archiver.bucketlock.BucketLocker;
 import com.splunk.shuttl.archiver.bucketlock.BucketLockerInTestDir;
+import com.splunk.shuttl.archiver.flush.ThawQuotaExceededException;
+import com.splunk.shuttl.archiver.flush.ThawSpaceManager;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
 import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.LocalBucket;
@@ -196,4 +204,190 @@ public class BucketThawerTest {
 		run_thawBuckets_bucketFieldPassedToGetsBucketFromArchive();
 		assertTrue(bucketThawer.getFailedBuckets().isEmpty());
 	}
+
+	public void thawBuckets_limitReached_thawsLimitedBucketsAndHasCursorOfLastBucket()
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		Bucket first = mock(Bucket.class);
+		Bucket second = mock(Bucket.class);
+		when(second.getIndex()).thenReturn(index);
+		when(second.getName()).thenReturn("db_4_3_1");
+		Bucket third = mock(Bucket.class);
+		BucketCursor cursor = new BucketCursor(index, "db_0_0_0");
+		when(
+				listsBucketsFiltered.iterateFilteredBucketsAfter(index, earliestTime,
+						latestTime, cursor)).thenReturn(
+				asList(first, second, third).iterator());
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime, cursor, 2);
+
+		verify(getsBucketsFromArchive).getBucketFromArchive(first);
+		verify(getsBucketsFromArchive).getBucketFromArchive(second);
+		verify(getsBucketsFromArchive, never()).getBucketFromArchive(third);
+		assertEquals(index + "/db_4_3_1", bucketThawer.getNextCursor().toString());
+	}
+
+	public void thawBuckets_concurrentThawExecutor_thawsAllBuckets()
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for (int i = 0; i < 10; i++)
+			buckets.add(TUtilsBucket.createBucket());
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(buckets);
+		when(getsBucketsFromArchive.getBucketFromArchive(any(Bucket.class)))
+				.thenReturn(TUtilsBucket.createBucket());
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			new BucketThawer(listsBucketsFiltered, getsBucketsFromArchive,
+					localBuckets, thawBucketLocker, null, new ThawExecutor(
+							executorService, 4, 2)).thawBuckets(index, earliestTime,
+					latestTime);
+		} finally {
+			executorService.shutdownNow();
+		}
+		verify(getsBucketsFromArchive, times(10)).getBucketFromArchive(
+				any(Bucket.class));
+	}
+
+	public void thawBuckets_fewerBucketsThanLimit_noCursor() {
+		when(
+				listsBucketsFiltered.iterateFilteredBucketsAfter(index, earliestTime,
+						latestTime, null)).thenReturn(asList(bucket).iterator());
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime, null, 2);
+		assertNull(bucketThawer.getNextCursor());
+	}
+
+	public void thawBuckets_givenListener_toldWhatHappensToEachBucket()
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		Bucket failing = mock(Bucket.class);
+		LocalBucket thawedBucket = mock(LocalBucket.class);
+		when(getsBucketsFromArchive.getBucketFromArchive(bucket)).thenReturn(
+				thawedBucket);
+		doThrow(ThawTransferFailException.class).when(getsBucketsFromArchive)
+				.getBucketFromArchive(failing);
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(bucket, failing));
+		ThawListener listener = mock(ThawListener.class);
+		bucketThawer.setThawListener(listener);
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime);
+
+		InOrder inOrder = inOrder(listener);
+		inOrder.verify(listener).bucketQueued(bucket);
+		inOrder.verify(listener).bucketQueued(failing);
+		inOrder.verify(listener).bucketThawing(bucket);
+		inOrder.verify(listener).bucketThawed(bucket, thawedBucket);
+		inOrder.verify(listener).bucketThawing(failing);
+		inOrder.verify(listener).bucketFailed(eq(failing),
+				any(ThawTransferFailException.class));
+	}
+
+	public void cancel_whileThawing_interruptsTheTransferAndCancelsTheRest()
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		Bucket notStarted = mock(Bucket.class);
+		final boolean[] interrupted = new boolean[1];
+		when(getsBucketsFromArchive.getBucketFromArchive(bucket)).thenAnswer(
+				new Answer<LocalBucket>() {
+					@Override
+					public LocalBucket answer(InvocationOnMock invocation)
+							throws Throwable {
+						bucketThawer.cancel();
+						interrupted[0] = Thread.currentThread().isInterrupted();
+						throw new ThawTransferFailException(bucket);
+					}
+				});
+		when(
+				listsBucketsFiltered.listFilteredBucketsAtIndex(index, earliestTime,
+						latestTime)).thenReturn(asList(bucket, notStarted));
+		ThawListener listener = mock(ThawListener.class);
+		bucketThawer.setThawListener(listener);
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime);
+
+		assertTrue(interrupted[0]);
+		assertFalse(Thread.currentThread().isInterrupted());
+		assertTrue(bucketThawer.isCancelled());
+		assertTrue(bucketThawer.getFailedBuckets().isEmpty());
+		verify(getsBucketsFromArchive, never()).getBucketFromArchive(notStarted);
+		verify(listener).bucketCancelled(bucket);
+		verify(listener).bucketCancelled(notStarted);
+	}
+
+	public void thawBuckets_cancelledBeforePage_thawsNothing()
+			throws ThawTransferFailException, ImportThawedBucketFailException {
+		when(
+				listsBucketsFiltered.iterateFilteredBucketsAfter(index, earliestTime,
+						latestTime, null)).thenReturn(asList(bucket).iterator());
+		bucketThawer.cancel();
+
+		bucketThawer.thawBuckets(index, earliestTime, latestTime, null, null);
+		verifyZeroInteractions(getsBucketsFromArchive);
+	}
+
+	private ThawSpaceManager createThawerWithThawSpaceManager() {
+		ThawSpaceManager thawSpaceManager = mock(ThawSpaceManager.class);
+		bucketThawer = new BucketThawer(listsBucketsFiltered,
+				getsBucketsFromArchive, localBuckets, thawBucketLocker, null,
+				ThawExecutor.createSequential(), thawSpaceManager);
+		return thawSpaceManager;
+	}
+
+	public void thawBuckets_givenThawSpaceManager_makesRoomBeforeTransferring()
+			throws Exception {
+		ThawSpaceManager thawSpaceManager = createThawerWithThawSpaceManager();
+		LocalBucket thawedBucket = TUtilsBucket.createBucket();
+		when(getsBucketsFromArchive.getBucketFromArchive(bucket)).thenReturn(
+				thawedBucket);
+
+		bucketThawer.thawBuckets(asList(bucket));
+		InOrder inOrder = inOrder(thawSpaceManager, getsBucketsFromArchive);
+		inOrder.verify(thawSpaceManager).makeRoom(bucket);
+		inOrder.verify(getsBucketsFromArchive).getBucketFromArchive(bucket);
+		inOrder.verify(thawSpaceManager).thawed(bucket, thawedBucket);
+		verify(thawSpaceManager, never()).failed(bucket);
+	}
+
+	public void thawBuckets_bucketDoesNotFitInThawQuota_failsWithoutTransferring()
+			throws Exception {
+		ThawSpaceManager thawSpaceManager = createThawerWithThawSpaceManager();
+		ThawQuotaExceededException exception = new ThawQuotaExceededException(
+				bucket, "too big");
+		when(thawSpaceManager.makeRoom(bucket)).thenThrow(exception);
+
+		bucketThawer.thawBuckets(asList(bucket));
+		verifyZeroInteractions(getsBucketsFromArchive);
+		assertEquals(exception, bucketThawer.getFailedBuckets().get(0).exception);
+	}
+
+	public void thawBuckets_transferFailsAfterMakingRoom_releasesTheRoom()
+			throws Exception {
+		ThawSpaceManager thawSpaceManager = createThawerWithThawSpaceManager();
+		when(getsBucketsFromArchive.getBucketFromArchive(bucket)).thenThrow(
+				new ThawTransferFailException(bucket));
+
+		bucketThawer.thawBuckets(asList(bucket));
+		verify(thawSpaceManager).failed(bucket);
+		verify(thawSpaceManager, never()).thawed(eq(bucket),
+				any(LocalBucket.class));
+	}
+
+	public void thawBuckets_givenThawSpaceManagerAndAlreadyThawedBucket_logsAccess()
+			throws Exception {
+		ThawSpaceManager thawSpaceManager = createThawerWithThawSpaceManager();
+		when(localBuckets.hasBucket(bucket)).thenReturn(true);
+
+		bucketThawer.thawBuckets(asList(bucket));
+		verify(thawSpaceManager).accessed(bucket);
+		verify(thawSpaceManager, never()).makeRoom(bucket);
+	}
+
+	public void accessedBuckets_givenThawSpaceManager_logsAccessOfEveryBucket() {
+		ThawSpaceManager thawSpaceManager = createThawerWithThawSpaceManager();
+		Bucket otherBucket = mock(Bucket.class);
+		bucketThawer.accessedBuckets(asList(bucket, otherBucket));
+		verify(thawSpaceManager).accessed(bucket);
+		verify(thawSpaceManager).accessed(otherBucket);
+	}
 }
@@ -0,0 +1,113 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static java.util.Arrays.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.RemoteBucket;
+
+@Test(groups = { "fast-unit" })
+public class BucketTimeIndexTest {
+
+	private Bucket bucket(long earliestSeconds, long latestSeconds, int id) {
+		return new RemoteBucket("/path", "index", "db_" + latestSeconds + "_"
+				+ earliestSeconds + "_" + id, BucketFormat.SPLUNK_BUCKET);
+	}
+
+	private Date seconds(long seconds) {
+		return new Date(seconds * 1000);
+	}
+
+	public void filter_noBuckets_empty() {
+		BucketTimeIndex<Bucket> index = BucketTimeIndex
+				.create(new ArrayList<Bucket>());
+		assertTrue(index.filter(seconds(0), seconds(100)).isEmpty());
+	}
+
+	public void filter_bucketsInsideAndOutsideTimeRange_bucketsInside() {
+		Bucket before = bucket(0, 9, 0);
+		Bucket overlapsStart = bucket(5, 10, 1);
+		Bucket inside = bucket(12, 15, 2);
+		Bucket overlapsEnd = bucket(20, 30, 3);
+		Bucket after = bucket(21, 30, 4);
+		BucketTimeIndex<Bucket> index = BucketTimeIndex.create(asList(after,
+				inside, before, overlapsEnd, overlapsStart));
+
+		assertEquals(index.filter(seconds(10), seconds(20)),
+				asList(inside, overlapsEnd, overlapsStart));
+	}
+
+	public void filter_bucketSpanningTheTimeRange_included() {
+		Bucket spanning = bucket(0, 1000, 0);
+		BucketTimeIndex<Bucket> index = BucketTimeIndex.create(asList(
+				bucket(0, 1, 1), spanning, bucket(2000, 2001, 2)));
+
+		assertEquals(index.filter(seconds(500), seconds(501)), asList(spanning));
+	}
+
+	public void filter_earliestAfterLatest_empty() {
+		BucketTimeIndex<Bucket> index = BucketTimeIndex.create(asList(bucket(0,
+				100, 0)));
+		assertTrue(index.filter(seconds(50), seconds(10)).isEmpty());
+	}
+
+	public void create_bucketWithoutTimesInName_leftOut() {
+		Bucket notABucket = new RemoteBucket("/path", "index", "not-a-bucket",
+				BucketFormat.SPLUNK_BUCKET);
+		Bucket bucket = bucket(0, 10, 0);
+		BucketTimeIndex<Bucket> index = BucketTimeIndex.create(asList(notABucket,
+				bucket));
+
+		assertEquals(index.size(), 1);
+		assertEquals(index.filter(seconds(0), seconds(10)), asList(bucket));
+	}
+
+	public void filter_randomBuckets_sameBucketsAsBucketFilter() {
+		Random random = new Random(1234);
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for (int i = 0; i < 500; i++) {
+			long earliest = random.nextInt(10000);
+			long span = random.nextInt(10) == 0 ? random.nextInt(5000) : random
+					.nextInt(50);
+			buckets.add(bucket(earliest, earliest + span, i));
+		}
+		BucketTimeIndex<Bucket> index = BucketTimeIndex.create(buckets);
+
+		for (int i = 0; i < 200; i++) {
+			Date from = seconds(random.nextInt(12000));
+			Date to = seconds(from.getTime() / 1000 + random.nextInt(500));
+			assertEquals(index.filter(from, to),
+					BucketFilter.filterBuckets(buckets, from, to));
+		}
+	}
+
+	public void builder_itemsWithTimes_filtersOnGivenTimes() {
+		BucketTimeIndex<String> index = new BucketTimeIndex.Builder<String>()
+				.add("b", 3000, 4000).add("a", 1000, 2000).build();
+
+		assertEquals(index.filter(new Date(0), new Date(5000)), asList("b", "a"));
+		assertEquals(index.filter(new Date(1500), new Date(1500)), asList("a"));
+	}
+}
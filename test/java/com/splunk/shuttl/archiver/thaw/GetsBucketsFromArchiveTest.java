@@ -23,7 +23,9 @@ import java.io.IOException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.importexport.BucketImportController;
+import com.splunk.shuttl.archiver.importexport.BucketStreamImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.LocalBucket;
 import com.splunk.shuttl.testutil.TUtilsBucket;
@@ -71,8 +73,62 @@ public class GetsBucketsFromArchiveTest {
 		assertEquals(sizedBucket.getSize(), actualBucket.getSize());
 	}
 
+	public void _givenStreamImporterAndStreamingTransferer_streamsBucketWithoutImportingIt()
+			throws Exception {
+		BucketStreamImporter streamImporter = mock(BucketStreamImporter.class);
+		when(bucketImportController.getStreamImporter(any(BucketFormat.class)))
+				.thenReturn(streamImporter);
+		when(thawBucketTransferer.canStreamBuckets()).thenReturn(true);
+		LocalBucket streamedBucket = TUtilsBucket.createBucket();
+		when(thawBucketTransferer.streamBucketToThaw(bucket, streamImporter))
+				.thenReturn(streamedBucket);
+		when(bucketSizeResolver.resolveBucketSize(any(Bucket.class))).thenReturn(
+				bucket);
+
+		LocalBucket actualBucket = getsBucketsFromArchive
+				.getBucketFromArchive(bucket);
+
+		assertEquals(streamedBucket.getDirectory(), actualBucket.getDirectory());
+		verify(thawBucketTransferer, never()).transferBucketToThaw(
+				any(Bucket.class));
+		verify(bucketImportController, never()).restoreToSplunkBucketFormat(
+				any(LocalBucket.class));
+	}
+
+	public void _givenStreamImporterButTransfererCannotStream_transfersAndImportsBucket()
+			throws Exception {
+		when(bucketImportController.getStreamImporter(any(BucketFormat.class)))
+				.thenReturn(mock(BucketStreamImporter.class));
+		when(thawBucketTransferer.canStreamBuckets()).thenReturn(false);
+		LocalBucket importedBucket = TUtilsBucket.createBucket();
+		when(
+				bucketImportController
+						.restoreToSplunkBucketFormat(any(LocalBucket.class)))
+				.thenReturn(importedBucket);
+		when(bucketSizeResolver.resolveBucketSize(any(Bucket.class))).thenReturn(
+				bucket);
+
+		getsBucketsFromArchive.getBucketFromArchive(bucket);
+
+		verify(thawBucketTransferer).transferBucketToThaw(bucket);
+		verify(thawBucketTransferer, never()).streamBucketToThaw(
+				any(Bucket.class), any(BucketStreamImporter.class));
+	}
+
 	// Sad path
 
+	@Test(expectedExceptions = { ThawTransferFailException.class })
+	public void _whenStreamingBucketFails_throwsThawTransferFailException()
+			throws Exception {
+		BucketStreamImporter streamImporter = mock(BucketStreamImporter.class);
+		when(bucketImportController.getStreamImporter(any(BucketFormat.class)))
+				.thenReturn(streamImporter);
+		when(thawBucketTransferer.canStreamBuckets()).thenReturn(true);
+		doThrow(new IOException()).when(thawBucketTransferer).streamBucketToThaw(
+				bucket, streamImporter);
+		getsBucketsFromArchive.getBucketFromArchive(bucket);
+	}
+
 	@Test(expectedExceptions = { ThawTransferFailException.class })
 	public void _whenTransferBucketsFailToThaw_throwsExceptionAndDoesNotRestoreFailedBucket()
 			throws Exception {
@@ -83,4 +139,48 @@ public class GetsBucketsFromArchiveTest {
 		verifyZeroInteractions(bucketImportController);
 	}
 
+
+	public void _givenThawCostModel_recordsTransferAndImportOfTheFormat()
+			throws Exception {
+		ThawCostModel thawCostModel = mock(ThawCostModel.class);
+		getsBucketsFromArchive = new GetsBucketsFromArchive(thawBucketTransferer,
+				bucketImportController, bucketSizeResolver, thawCostModel);
+		when(bucket.getFormat()).thenReturn(BucketFormat.CSV);
+		Bucket sizedBucket = mock(Bucket.class);
+		when(sizedBucket.getSize()).thenReturn(121L);
+		when(
+				bucketImportController
+						.restoreToSplunkBucketFormat(any(LocalBucket.class)))
+				.thenReturn(TUtilsBucket.createBucket());
+		when(bucketSizeResolver.resolveBucketSize(any(Bucket.class))).thenReturn(
+				sizedBucket);
+
+		getsBucketsFromArchive.getBucketFromArchive(bucket);
+		verify(thawCostModel).recordThaw(eq(BucketFormat.CSV), eq(121L),
+				anyLong(), anyLong());
+	}
+
+	public void _givenThawCostModelAndStreamedImport_recordsStreamedImport()
+			throws Exception {
+		ThawCostModel thawCostModel = mock(ThawCostModel.class);
+		getsBucketsFromArchive = new GetsBucketsFromArchive(thawBucketTransferer,
+				bucketImportController, bucketSizeResolver, thawCostModel);
+		when(bucket.getFormat()).thenReturn(BucketFormat.CSV);
+		BucketStreamImporter streamImporter = mock(BucketStreamImporter.class);
+		when(bucketImportController.getStreamImporter(BucketFormat.CSV))
+				.thenReturn(streamImporter);
+		when(thawBucketTransferer.canStreamBuckets()).thenReturn(true);
+		when(thawBucketTransferer.streamBucketToThaw(bucket, streamImporter))
+				.thenReturn(TUtilsBucket.createBucket());
+		Bucket sizedBucket = mock(Bucket.class);
+		when(sizedBucket.getSize()).thenReturn(121L);
+		when(bucketSizeResolver.resolveBucketSize(any(Bucket.class))).thenReturn(
+				sizedBucket);
+
+		getsBucketsFromArchive.getBucketFromArchive(bucket);
+		verify(thawCostModel).recordStreamedImport(eq(BucketFormat.CSV),
+				eq(121L), anyLong());
+		verify(thawCostModel, never()).recordThaw(any(BucketFormat.class),
+				anyLong(), anyLong(), anyLong());
+	}
 }
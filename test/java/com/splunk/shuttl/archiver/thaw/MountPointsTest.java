@@ -0,0 +1,44 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static java.util.Arrays.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class MountPointsTest {
+
+	public void parseMountPoint_dfOutput_lastColumnOfSecondLine() {
+		assertEquals(MountPoints.parseMountPoint(asList(
+				"Filesystem 1024-blocks Used Available Capacity Mounted on",
+				"/dev/sda1 1000 500 500 50% /mnt/splunk thawed")),
+				"/mnt/splunk thawed");
+	}
+
+	public void parseMountPoint_noOutput_null() {
+		assertNull(MountPoints.parseMountPoint(Collections.<String> emptyList()));
+	}
+
+	public void getMountPoint_directoryThatDoesNotExist_isItsOwnMountPoint() {
+		File directory = new File("/shuttl-directory-that-does-not-exist");
+		assertEquals(new MountPoints().getMountPoint(directory),
+				directory.getAbsolutePath());
+	}
+}
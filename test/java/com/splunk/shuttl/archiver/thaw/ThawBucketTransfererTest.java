@@ -25,9 +25,12 @@ import java.io.IOException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.splunk.shuttl.archiver.archive.BucketFormat;
 import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.transaction.TransactionExecuter;
+import com.splunk.shuttl.archiver.filesystem.transaction.bucket.GetBucketStreamTransaction;
 import com.splunk.shuttl.archiver.filesystem.transaction.bucket.GetBucketTransaction;
+import com.splunk.shuttl.archiver.importexport.BucketStreamImporter;
 import com.splunk.shuttl.archiver.model.Bucket;
 import com.splunk.shuttl.archiver.model.BucketFactory;
 import com.splunk.shuttl.archiver.model.LocalBucket;
@@ -89,4 +92,24 @@ public class ThawBucketTransfererTest {
 		assertEquals(bucketOnLocalDisk, actualBucket);
 	}
 
+	public void streamBucketToThaw_givenStreamImporter_executesStreamTransactionAndReturnsSplunkBucket()
+			throws IOException {
+		File temp = createDirectory();
+		when(thawLocationProvider.getThawTransferLocation(bucket)).thenReturn(temp);
+		File dst = createDirectory();
+		when(thawLocationProvider.getLocationInThawForBucket(bucket)).thenReturn(
+				dst);
+		BucketStreamImporter streamImporter = mock(BucketStreamImporter.class);
+		LocalBucket bucketInThaw = mock(LocalBucket.class);
+		when(
+				bucketFactory.createWithIndexDirectoryAndSize(bucket.getIndex(), dst,
+						BucketFormat.SPLUNK_BUCKET, bucket.getSize())).thenReturn(
+				bucketInThaw);
+
+		LocalBucket actualBucket = bucketTransferer.streamBucketToThaw(bucket,
+				streamImporter);
+
+		verify(transactionExecuter).execute(any(GetBucketStreamTransaction.class));
+		assertEquals(bucketInThaw, actualBucket);
+	}
 }
@@ -0,0 +1,102 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+
+@Test(groups = { "fast-unit" })
+public class ThawCostModelTest {
+
+	private ThawCostModel thawCostModel;
+
+	@BeforeMethod
+	public void setUp() {
+		thawCostModel = new ThawCostModel();
+	}
+
+	public void getExpectedSeconds_nothingRecorded_null() {
+		assertNull(thawCostModel.getExpectedSeconds(BucketFormat.SPLUNK_BUCKET,
+				1000));
+	}
+
+	public void getExpectedSeconds_splunkBucketTransferred_transferTimeOnly() {
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET, 1000, 1000, 0);
+		assertEquals(
+				thawCostModel.getExpectedSeconds(BucketFormat.SPLUNK_BUCKET, 3000),
+				3.0);
+	}
+
+	public void getExpectedSeconds_formatNotThawed_importTakesAsLongAsTransferOfOtherFormats() {
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET, 1000, 1000, 0);
+		assertEquals(thawCostModel.getExpectedSeconds(BucketFormat.CSV, 1000),
+				1.0 + 1.0);
+	}
+
+	public void getExpectedSeconds_formatNotImportedWithImportRatePrior_usesPrior() {
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET, 1000, 1000, 0);
+		thawCostModel.setImportRatePrior(500L);
+		assertEquals(thawCostModel.getExpectedSeconds(
+				BucketFormat.SPLUNK_BUCKET_TGZ, 1000), 1.0 + 2.0);
+	}
+
+	public void getExpectedSeconds_importRatePriorOfZero_importTakesAsLongAsTransfer() {
+		thawCostModel.recordThaw(BucketFormat.SPLUNK_BUCKET, 1000, 1000, 0);
+		thawCostModel.setImportRatePrior(0L);
+		assertEquals(thawCostModel.getExpectedSeconds(BucketFormat.CSV, 1000),
+				1.0 + 1.0);
+	}
+
+	public void getExpectedSeconds_transferredAndImported_sumOfTransferAndImportTime() {
+		thawCostModel.setImportRatePrior(1L);
+		thawCostModel.recordThaw(BucketFormat.CSV, 1000, 500, 10000);
+		assertEquals(thawCostModel.getExpectedSeconds(BucketFormat.CSV, 1000),
+				0.5 + 10.0);
+	}
+
+	public void recordThaw_givenThawThroughput_recordsTheWholeThaw() {
+		ThawThroughput thawThroughput = new ThawThroughput();
+		new ThawCostModel(thawThroughput).recordThaw(BucketFormat.CSV, 1000, 500,
+				1500);
+		assertEquals(thawThroughput.getBytesPerSecond(), (Long) 500L);
+	}
+
+	public void recordStreamedImport_givenThawThroughput_recordsTheWholeThaw() {
+		ThawThroughput thawThroughput = new ThawThroughput();
+		new ThawCostModel(thawThroughput).recordStreamedImport(BucketFormat.CSV,
+				1000, 2000);
+		assertEquals(thawThroughput.getBytesPerSecond(), (Long) 500L);
+	}
+
+	public void getExpectedSeconds_streamedImport_noSeparateImportTime() {
+		thawCostModel.recordStreamedImport(BucketFormat.CSV, 1000, 2000);
+		assertEquals(thawCostModel.getExpectedSeconds(BucketFormat.CSV, 1000), 2.0);
+	}
+
+	public void getExpectedSeconds_onlyOtherFormatStreamed_doesNotUseItsRate() {
+		thawCostModel.recordStreamedImport(BucketFormat.CSV, 1000, 2000);
+		assertNull(thawCostModel.getExpectedSeconds(BucketFormat.SPLUNK_BUCKET,
+				1000));
+	}
+
+	public void getSharedInstance_sameBackend_sameInstance() {
+		assertSame(ThawCostModel.getSharedInstance("hdfs"),
+				ThawCostModel.getSharedInstance("hdfs"));
+	}
+}
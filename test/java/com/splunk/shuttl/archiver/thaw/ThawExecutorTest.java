@@ -0,0 +1,192 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class ThawExecutorTest {
+
+	private ExecutorService executorService;
+
+	@BeforeMethod
+	public void setUp() {
+		executorService = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	public void submit_sequential_runsThawInCallingThread() {
+		final Thread callingThread = Thread.currentThread();
+		final List<Thread> threads = new ArrayList<Thread>();
+		Future<?> future = ThawExecutor.createSequential().submit("volume",
+				new Runnable() {
+
+					@Override
+					public void run() {
+						threads.add(Thread.currentThread());
+					}
+				});
+		assertTrue(future.isDone());
+		assertEquals(threads.get(0), callingThread);
+	}
+
+	public void submit_onePermitPerVolume_thawsToSameVolumeOneAtATime() {
+		ThawExecutor thawExecutor = new ThawExecutor(executorService, 4, 1);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 8; i++)
+			futures.add(thawExecutor.submit("volume", new Runnable() {
+
+				@Override
+				public void run() {
+					int nowRunning = running.incrementAndGet();
+					if (nowRunning > maxRunning.get())
+						maxRunning.set(nowRunning);
+					sleep(5);
+					running.decrementAndGet();
+				}
+			}));
+		thawExecutor.waitForAll(futures);
+		assertEquals(maxRunning.get(), 1);
+	}
+
+	public void submit_differentVolumes_thawsAtTheSameTime()
+			throws InterruptedException {
+		ThawExecutor thawExecutor = new ThawExecutor(executorService, 4, 1);
+		final CountDownLatch bothRunning = new CountDownLatch(2);
+		final AtomicInteger sawBothRunning = new AtomicInteger();
+		Runnable thaw = new Runnable() {
+
+			@Override
+			public void run() {
+				bothRunning.countDown();
+				try {
+					if (bothRunning.await(5, TimeUnit.SECONDS))
+						sawBothRunning.incrementAndGet();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		futures.add(thawExecutor.submit("volume1", thaw));
+		futures.add(thawExecutor.submit("volume2", thaw));
+		thawExecutor.waitForAll(futures);
+		assertEquals(sawBothRunning.get(), 2);
+	}
+
+	public void submit_volumeWithoutPermits_doesNotHoldThreadsFromOtherVolumes() {
+		executorService.shutdownNow();
+		executorService = Executors.newFixedThreadPool(2);
+		ThawExecutor thawExecutor = new ThawExecutor(executorService, 2, 1);
+		final CountDownLatch otherVolumeThawed = new CountDownLatch(1);
+		final AtomicInteger sawOtherVolumeThawed = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		futures.add(thawExecutor.submit("volume1", new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					if (otherVolumeThawed.await(5, TimeUnit.SECONDS))
+						sawOtherVolumeThawed.incrementAndGet();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}));
+		futures.add(thawExecutor.submit("volume1", new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		}));
+		futures.add(thawExecutor.submit("volume2", new Runnable() {
+
+			@Override
+			public void run() {
+				otherVolumeThawed.countDown();
+			}
+		}));
+		thawExecutor.waitForAll(futures);
+		assertEquals(sawOtherVolumeThawed.get(), 1);
+	}
+
+	public void waitForAll_firstThawFails_waitsForTheOtherThawsBeforeThrowing() {
+		ThawExecutor thawExecutor = new ThawExecutor(executorService, 4, 1);
+		final AtomicInteger thawed = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		futures.add(thawExecutor.submit("volume", new Runnable() {
+
+			@Override
+			public void run() {
+				throw new IllegalStateException("failed");
+			}
+		}));
+		for (int i = 0; i < 3; i++)
+			futures.add(thawExecutor.submit("volume", new Runnable() {
+
+				@Override
+				public void run() {
+					sleep(5);
+					thawed.incrementAndGet();
+				}
+			}));
+		try {
+			thawExecutor.waitForAll(futures);
+			fail();
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(thawed.get(), 3);
+	}
+
+	public void getDefaultConcurrency_hdfs_thawsManyBucketsAtATime() {
+		assertEquals(ThawExecutor.getDefaultConcurrency("hdfs"), 8);
+	}
+
+	public void getDefaultConcurrency_unknownBackend_one() {
+		assertEquals(ThawExecutor.getDefaultConcurrency("unknown"), 1);
+	}
+
+	public void getSharedInstance_concurrencyOfOne_sequential() {
+		assertEquals(ThawExecutor.getSharedInstance(1, 4).getConcurrency(), 1);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
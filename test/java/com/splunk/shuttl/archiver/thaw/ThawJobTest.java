@@ -0,0 +1,229 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static com.splunk.shuttl.testutil.TUtilsFile.*;
+import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.archiver.thaw.ThawJob.BucketProgress;
+import com.splunk.shuttl.archiver.thaw.ThawJob.BucketState;
+import com.splunk.shuttl.archiver.thaw.ThawJob.State;
+
+@Test(groups = { "fast-unit" })
+public class ThawJobTest {
+
+	private BucketThawer bucketThawer;
+	private ThawLocationProvider thawLocationProvider;
+	private ThawJob thawJob;
+	private Bucket bucket;
+	private Bucket otherBucket;
+	private ThawPlan plan;
+
+	@BeforeMethod
+	public void setUp() {
+		bucketThawer = mock(BucketThawer.class);
+		thawLocationProvider = mock(ThawLocationProvider.class);
+		when(bucketThawer.getThawLocationProvider()).thenReturn(
+				thawLocationProvider);
+		thawJob = new ThawJob("id", bucketThawer);
+		bucket = createBucket("db_2_1_0");
+		otherBucket = createBucket("db_4_3_1");
+		plan = new ThawPlan(false);
+	}
+
+	private Bucket createBucket(String name) {
+		Bucket bucket = mock(Bucket.class);
+		when(bucket.getIndex()).thenReturn("index");
+		when(bucket.getName()).thenReturn(name);
+		return bucket;
+	}
+
+	public void ThawJob_created_isQueuedAndListensToTheThawer() {
+		assertEquals(thawJob.getState(), State.QUEUED);
+		assertNull(thawJob.getStarted());
+		verify(bucketThawer).setThawListener(thawJob);
+	}
+
+	public void thaw_bucketsAreThawed_isDoneWithTheBytesOfTheThawedBuckets() {
+		final LocalBucket thawedBucket = mock(LocalBucket.class);
+		when(thawedBucket.getSize()).thenReturn(100L);
+		whenThawing(new Runnable() {
+
+			@Override
+			public void run() {
+				thawJob.bucketQueued(bucket);
+				thawJob.bucketThawing(bucket);
+				thawJob.bucketThawed(bucket, thawedBucket);
+			}
+		});
+
+		thawJob.thaw(plan);
+		assertEquals(thawJob.getState(), State.DONE);
+		assertEquals(thawJob.getBytesTransferred(), 100);
+		assertNotNull(thawJob.getStarted());
+		assertNotNull(thawJob.getFinished());
+		List<BucketProgress> buckets = thawJob.getBuckets();
+		assertEquals(buckets.size(), 1);
+		assertEquals(buckets.get(0).state, BucketState.THAWED);
+	}
+
+	public void getBuckets_bucketIsThawing_bytesAreTheBytesInItsTransferLocation()
+			throws IOException {
+		File transferLocation = createDirectory();
+		FileUtils.writeStringToFile(new File(transferLocation, "file"),
+				"0123456789");
+		when(thawLocationProvider.getThawTransferPath(bucket)).thenReturn(
+				transferLocation);
+
+		thawJob.bucketThawing(bucket);
+		assertEquals(thawJob.getBuckets().get(0).bytes, 10);
+		assertEquals(thawJob.getBytesTransferred(), 10);
+	}
+
+	public void getBuckets_transferLocationDoesNotExist_noBytes() {
+		when(thawLocationProvider.getThawTransferPath(bucket)).thenReturn(
+				createFilePath());
+
+		thawJob.bucketThawing(bucket);
+		assertEquals(thawJob.getBytesTransferred(), 0);
+	}
+
+	public void getBuckets_bucketStateChanges_keepsTheOrderTheBucketsWereQueued() {
+		thawJob.bucketQueued(bucket);
+		thawJob.bucketQueued(otherBucket);
+		thawJob.bucketFailed(otherBucket, new RuntimeException());
+		thawJob.bucketSkipped(bucket);
+
+		List<BucketProgress> buckets = thawJob.getBuckets();
+		assertEquals(buckets.get(0).state, BucketState.SKIPPED);
+		assertEquals(buckets.get(1).state, BucketState.FAILED);
+		assertEquals(buckets.get(1).reason, "RuntimeException");
+	}
+
+	public void cancel_beforeThaw_doesNotThawAndIsCancelled() {
+		thawJob.cancel();
+		thawJob.thaw(plan);
+
+		verify(bucketThawer, never()).thawBuckets(anyListOf(Bucket.class));
+		assertEquals(thawJob.getState(), State.CANCELLED);
+	}
+
+	public void cancel_whileThawing_cancelsTheThawerAndTheBucketsThatDidNotStart() {
+		whenThawing(new Runnable() {
+
+			@Override
+			public void run() {
+				thawJob.bucketQueued(bucket);
+				thawJob.bucketQueued(otherBucket);
+				thawJob.cancel();
+				thawJob.bucketCancelled(bucket);
+			}
+		});
+
+		thawJob.thaw(plan);
+		verify(bucketThawer).cancel();
+		assertEquals(thawJob.getState(), State.CANCELLED);
+		for (BucketProgress progress : thawJob.getBuckets())
+			assertEquals(progress.state, BucketState.CANCELLED);
+	}
+
+	public void cancel_finishedJob_staysDone() {
+		thawJob.thaw(plan);
+		thawJob.cancel();
+
+		assertEquals(thawJob.getState(), State.DONE);
+		verify(bucketThawer, never()).cancel();
+	}
+
+	public void thaw_thawerThrows_isFailedAndThrows() {
+		RuntimeException exception = new RuntimeException();
+		doThrow(exception).when(bucketThawer).thawBuckets(
+				anyListOf(Bucket.class));
+		try {
+			thawJob.thaw(plan);
+			fail();
+		} catch (RuntimeException e) {
+			assertSame(e, exception);
+		}
+		assertEquals(thawJob.getState(), State.FAILED);
+	}
+
+	public void fail_queuedJob_isFailedWithTheReason() {
+		thawJob.fail(new IllegalStateException("listing failed"));
+
+		assertEquals(thawJob.getState(), State.FAILED);
+		assertEquals(thawJob.getFailureReason(),
+				"IllegalStateException: listing failed");
+		assertNotNull(thawJob.getFinished());
+	}
+
+	public void fail_cancelledBeforeFailing_isCancelled() {
+		thawJob.cancel();
+		thawJob.fail(new RuntimeException());
+
+		assertEquals(thawJob.getState(), State.CANCELLED);
+	}
+
+	public void thaw_givenPlan_thawsThePlannedBuckets() {
+		plan.addBucket(bucket);
+		thawJob.thaw(plan);
+		verify(bucketThawer).thawBuckets(asList(bucket));
+		assertSame(thawJob.getPlan(), plan);
+	}
+
+	public void thaw_planHasBucketsThatWereNotPlanned_hasTheirStates() {
+		plan.addThawedBucket(bucket);
+		plan.addExcludedBucket(otherBucket);
+		thawJob.thaw(plan);
+
+		List<BucketProgress> buckets = thawJob.getBuckets();
+		assertEquals(buckets.get(0).state, BucketState.SKIPPED);
+		assertEquals(buckets.get(1).state, BucketState.EXCLUDED);
+	}
+
+	public void thaw_refusedPlan_isRefusedWithoutThawing() {
+		plan.addExcludedBucket(bucket);
+		thawJob.thaw(plan);
+
+		assertEquals(thawJob.getState(), State.REFUSED);
+		verify(bucketThawer, never()).thawBuckets(anyListOf(Bucket.class));
+	}
+
+	private void whenThawing(final Runnable thaw) {
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				thaw.run();
+				return null;
+			}
+		}).when(bucketThawer).thawBuckets(anyListOf(Bucket.class));
+	}
+}
@@ -0,0 +1,76 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.thaw.ThawJob.State;
+
+@Test(groups = { "fast-unit" })
+public class ThawJobsTest {
+
+	private ThawJobs thawJobs;
+
+	@BeforeMethod
+	public void setUp() {
+		thawJobs = new ThawJobs(1);
+	}
+
+	private ThawJob createJob(String id, State state) {
+		ThawJob job = mock(ThawJob.class);
+		when(job.getId()).thenReturn(id);
+		when(job.getState()).thenReturn(state);
+		return job;
+	}
+
+	public void get_addedJob_getsJob() {
+		ThawJob job = createJob("id", State.QUEUED);
+		thawJobs.add(job);
+		assertSame(thawJobs.get("id"), job);
+	}
+
+	public void get_noJobWithId_null() {
+		assertNull(thawJobs.get("id"));
+	}
+
+	public void add_moreFinishedJobsThanKept_removesTheOldestFinishedJobs() {
+		thawJobs.add(createJob("old", State.DONE));
+		thawJobs.add(createJob("new", State.CANCELLED));
+
+		assertNull(thawJobs.get("old"));
+		assertNotNull(thawJobs.get("new"));
+	}
+
+	public void add_moreJobsThanKept_keepsJobsThatAreNotFinished() {
+		thawJobs.add(createJob("queued", State.QUEUED));
+		thawJobs.add(createJob("running", State.RUNNING));
+		thawJobs.add(createJob("done", State.DONE));
+
+		assertNotNull(thawJobs.get("queued"));
+		assertNotNull(thawJobs.get("running"));
+		assertNotNull(thawJobs.get("done"));
+	}
+
+	public void remove_addedJob_removesJob() {
+		ThawJob job = createJob("id", State.QUEUED);
+		thawJobs.add(job);
+		thawJobs.remove(job);
+		assertNull(thawJobs.get("id"));
+	}
+}
@@ -94,4 +94,20 @@ public class ThawLocationProviderTest {
 				secondLocation.getAbsolutePath());
 		assertFalse(secondLocation.exists());
 	}
+
+	public void getThawTransferPath_locationExists_doesNotDeleteLocation()
+			throws IOException {
+		File transferLoc = thawLocationProvider.getThawTransferLocation(bucket);
+		assertTrue(transferLoc.mkdirs());
+		createFileInParent(transferLoc, "transferring");
+
+		File path = thawLocationProvider.getThawTransferPath(bucket);
+		assertEquals(transferLoc, path);
+		assertTrue(new File(path, "transferring").exists());
+	}
+
+	public void getThawTransferPath_locationDoesNotExist_doesNotCreateIt() {
+		File path = thawLocationProvider.getThawTransferPath(bucket);
+		assertFalse(path.getParentFile().exists());
+	}
 }
@@ -0,0 +1,346 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static java.util.Arrays.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.archive.BucketFormat;
+import com.splunk.shuttl.archiver.flush.ThawSpaceManager;
+import com.splunk.shuttl.archiver.listers.BucketCursor;
+import com.splunk.shuttl.archiver.listers.ListsBucketsFiltered;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.testutil.TUtilsFile;
+
+@Test(groups = { "fast-unit" })
+public class ThawPlannerTest {
+
+	private ListsBucketsFiltered listsBucketsFiltered;
+	private BucketSizeResolver bucketSizeResolver;
+	private LocalBucketStorage localBuckets;
+	private ThawLocationProvider thawLocationProvider;
+	private ThawThroughput thawThroughput;
+	private ThawReservations thawReservations;
+	private MountPoints mountPoints;
+	private File thawDirectory;
+	private String index;
+	private Date earliest;
+	private Date latest;
+
+	@BeforeMethod
+	public void setUp() {
+		listsBucketsFiltered = mock(ListsBucketsFiltered.class);
+		bucketSizeResolver = mock(BucketSizeResolver.class);
+		localBuckets = mock(LocalBucketStorage.class);
+		thawLocationProvider = mock(ThawLocationProvider.class);
+		thawThroughput = new ThawThroughput();
+		thawReservations = new ThawReservations();
+		mountPoints = mock(MountPoints.class);
+		when(mountPoints.getMountPoint(any(File.class))).thenReturn("/");
+		thawDirectory = mock(File.class);
+		when(thawDirectory.exists()).thenReturn(true);
+		when(thawDirectory.getAbsolutePath()).thenReturn("/thaw");
+		index = "index";
+		earliest = new Date(0);
+		latest = new Date();
+	}
+
+	private ThawPlanner createPlanner(long reservedSpace) {
+		return createPlanner(reservedSpace, null);
+	}
+
+	private ThawPlanner createPlanner(long reservedSpace,
+			ThawSpaceManager thawSpaceManager) {
+		return new ThawPlanner(listsBucketsFiltered, bucketSizeResolver,
+				localBuckets, thawLocationProvider, thawThroughput,
+				ThawExecutor.createSequential(), reservedSpace, thawSpaceManager,
+				thawReservations, mountPoints);
+	}
+
+	/**
+	 * Every bucket has its own index, since buckets are equal when their
+	 * indexes are.
+	 */
+	private Bucket createBucket(String name, Long size) throws IOException {
+		return createBucket(name, size, thawDirectory);
+	}
+
+	private Bucket createBucket(String name, Long size, File thawDirectory)
+			throws IOException {
+		return createBucket(name, size, thawDirectory, BucketFormat.SPLUNK_BUCKET);
+	}
+
+	private Bucket createBucket(String name, Long size, File thawDirectory,
+			BucketFormat format) throws IOException {
+		Bucket bucket = new Bucket("/archive/" + name, index + name, name,
+				format, size);
+		when(bucketSizeResolver.resolveBucketSize(bucket)).thenReturn(bucket);
+		File thawLocation = mock(File.class);
+		when(thawLocation.getParentFile()).thenReturn(thawDirectory);
+		when(thawLocationProvider.getLocationInThawForBucket(bucket)).thenReturn(
+				thawLocation);
+		return bucket;
+	}
+
+	private void listBuckets(Bucket... buckets) {
+		when(
+				listsBucketsFiltered.iterateFilteredBucketsAfter(index, earliest,
+						latest, null)).thenReturn(asList(buckets).iterator());
+	}
+
+	public void plan_bucketsFitInTheFreeSpace_plansAllBucketsWithTheirSizes()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket first = createBucket("db_2_1_0", 300L);
+		Bucket second = createBucket("db_4_3_1", 400L);
+		listBuckets(first, second);
+
+		ThawPlan plan = createPlanner(100).plan(index, earliest, latest, null,
+				null, false);
+		assertEquals(plan.getBucketsToThaw(), asList(first, second));
+		assertEquals(plan.getBytes(), 700);
+		assertEquals(plan.getBytesPerFormat().get(BucketFormat.SPLUNK_BUCKET),
+				Long.valueOf(700));
+		assertFalse(plan.isRefused());
+		assertEquals(plan.getVolumes().iterator().next().getPlannedBytes(), 700);
+	}
+
+	public void plan_bucketsDontFitWithTheReservedSpace_isRefusedAndThawsNothing()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket first = createBucket("db_2_1_0", 500L);
+		Bucket second = createBucket("db_4_3_1", 400L);
+		listBuckets(first, second);
+
+		ThawPlan plan = createPlanner(200).plan(index, earliest, latest, null,
+				null, false);
+		assertTrue(plan.isRefused());
+		assertTrue(plan.getBucketsToThaw().isEmpty());
+		assertEquals(plan.getExcludedBuckets(), asList(second));
+	}
+
+	public void plan_bucketsDontFitAndTrimmed_thawsTheBucketsThatFit()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket first = createBucket("db_2_1_0", 500L);
+		Bucket second = createBucket("db_4_3_1", 400L);
+		Bucket third = createBucket("db_6_5_2", 100L);
+		listBuckets(first, second, third);
+
+		ThawPlan plan = createPlanner(200).plan(index, earliest, latest, null,
+				null, true);
+		assertFalse(plan.isRefused());
+		assertEquals(plan.getBucketsToThaw(), asList(first, third));
+		assertEquals(plan.getExcludedBuckets(), asList(second));
+	}
+
+	public void plan_compressedBucketFitsButNotOnceThawed_isRefused()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket bucket = createBucket("db_2_1_0", 400L, thawDirectory,
+				BucketFormat.SPLUNK_BUCKET_TGZ);
+		listBuckets(bucket);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, false);
+		assertTrue(plan.isRefused());
+		assertEquals(plan.getExcludedBuckets(), asList(bucket));
+	}
+
+	public void plan_bucketIsAlreadyThawed_isNeitherPlannedNorSized()
+			throws IOException {
+		Bucket bucket = createBucket("db_2_1_0", 500L);
+		when(localBuckets.hasBucket(bucket)).thenReturn(true);
+		listBuckets(bucket);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, false);
+		assertEquals(plan.getThawedBuckets(), asList(bucket));
+		assertTrue(plan.getBuckets().isEmpty());
+		verifyZeroInteractions(bucketSizeResolver);
+	}
+
+	public void plan_bucketsSizeIsUnknown_isPlannedAsTheLargestBucketAndCounted()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket unknown = createBucket("db_2_1_0", null);
+		Bucket small = createBucket("db_4_3_1", 100L);
+		Bucket large = createBucket("db_6_5_2", 500L);
+		listBuckets(unknown, small, large);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, true);
+		assertEquals(plan.getBuckets(), asList(unknown, small));
+		assertEquals(plan.getExcludedBuckets(), asList(large));
+		assertEquals(plan.getBucketsWithUnknownSize(), 1);
+		assertEquals(plan.getBytes(), 100);
+	}
+
+	public void plan_noBucketsSizeIsKnown_bucketsAreExcluded()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket bucket = createBucket("db_2_1_0", null);
+		listBuckets(bucket);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, false);
+		assertEquals(plan.getExcludedBuckets(), asList(bucket));
+		assertTrue(plan.isRefused());
+	}
+
+	public void plan_thawDirectoriesOnTheSameFileSystem_shareItsSpace()
+			throws IOException {
+		File otherThawDirectory = mock(File.class);
+		when(otherThawDirectory.exists()).thenReturn(true);
+		when(otherThawDirectory.getAbsolutePath()).thenReturn("/other-thaw");
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		when(otherThawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket first = createBucket("db_2_1_0", 600L);
+		Bucket second = createBucket("db_4_3_1", 600L, otherThawDirectory);
+		listBuckets(first, second);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, true);
+		assertEquals(plan.getBucketsToThaw(), asList(first));
+		assertEquals(plan.getExcludedBuckets(), asList(second));
+		assertEquals(plan.getVolumes().size(), 2);
+		assertEquals(plan.getSpaces().size(), 1);
+	}
+
+	public void plan_otherThawHasReservedTheSpace_excludesBucketsUntilReleased()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		listBuckets(createBucket("db_2_1_0", 600L));
+		ThawPlan thawing = createPlanner(0).planThaw(index, earliest, latest,
+				null, null, false);
+		assertEquals(thawing.getBuckets().size(), 1);
+
+		listBuckets(createBucket("db_4_3_1", 600L));
+		assertTrue(createPlanner(0).plan(index, earliest, latest, null, null,
+				false).isRefused());
+
+		thawing.release();
+		listBuckets(createBucket("db_4_3_1", 600L));
+		assertFalse(createPlanner(0).plan(index, earliest, latest, null, null,
+				false).isRefused());
+	}
+
+	public void planThaw_refused_reservesNothing() throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		listBuckets(createBucket("db_2_1_0", 600L), createBucket("db_4_3_1",
+				600L));
+
+		assertTrue(createPlanner(0).planThaw(index, earliest, latest, null,
+				null, false).isRefused());
+		assertEquals(thawReservations.getReservedBytes("/"), 0);
+	}
+
+	public void plan_thawLocationThrows_bucketIsFailed() throws IOException {
+		Bucket bucket = createBucket("db_2_1_0", 1L);
+		when(thawLocationProvider.getLocationInThawForBucket(bucket)).thenThrow(
+				new IOException());
+		listBuckets(bucket);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, false);
+		assertEquals(plan.getFailedBuckets().get(0).bucket, bucket);
+		assertTrue(plan.getBuckets().isEmpty());
+	}
+
+	public void plan_limitReached_hasCursorOfLastPlannedBucket()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(1000L);
+		Bucket first = createBucket("db_2_1_0", 1L);
+		Bucket second = createBucket("db_4_3_1", 1L);
+		listBuckets(first, second);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null, 1,
+				false);
+		assertEquals(plan.getBuckets(), asList(first));
+		assertEquals(plan.getNextCursor().toString(),
+				BucketCursor.after(first).toString());
+	}
+
+	public void plan_throughputIsObserved_estimatesSecondsFromIt()
+			throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(10000L);
+		listBuckets(createBucket("db_2_1_0", 3000L));
+		thawThroughput.record(1000, 1000);
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, false);
+		assertEquals(plan.getBytesPerSecond(), Long.valueOf(1000));
+		assertEquals(plan.getEstimatedSeconds(), Long.valueOf(3));
+	}
+
+	public void plan_noThroughputObserved_noEstimate() throws IOException {
+		when(thawDirectory.getUsableSpace()).thenReturn(10000L);
+		listBuckets(createBucket("db_2_1_0", 3000L));
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, false);
+		assertNull(plan.getEstimatedSeconds());
+	}
+
+	public void plan_thawDirectoryDoesNotExist_usesTheSpaceOfItsParent()
+			throws IOException {
+		File parent = TUtilsFile.createDirectory();
+		when(thawDirectory.exists()).thenReturn(false);
+		when(thawDirectory.getParentFile()).thenReturn(parent);
+		listBuckets(createBucket("db_2_1_0", 1L));
+
+		ThawPlan plan = createPlanner(0).plan(index, earliest, latest, null,
+				null, false);
+		assertEquals(plan.getVolumes().iterator().next().space.usableSpace,
+				parent.getUsableSpace(), parent.getUsableSpace() / 100.0);
+	}
+
+	public void plan_givenThawQuota_countsEvictedBucketsAsFreeAndExcludesBucketsOverQuota()
+			throws Exception {
+		ThawSpaceManager thawSpaceManager = mock(ThawSpaceManager.class);
+		when(thawSpaceManager.getQuota()).thenReturn(1000L);
+		when(thawSpaceManager.getUsedBytes(anyString())).thenReturn(600L);
+		when(thawSpaceManager.getThawedBytes(any(BucketFormat.class), anyLong()))
+				.thenAnswer(new Answer<Long>() {
+
+					@Override
+					public Long answer(InvocationOnMock invocation) {
+						return (Long) invocation.getArguments()[1];
+					}
+				});
+		when(thawDirectory.getUsableSpace()).thenReturn(500L);
+		Bucket first = createBucket("db_2_1_0", 300L);
+		Bucket second = createBucket("db_4_3_1", 400L);
+		Bucket third = createBucket("db_6_5_2", 301L);
+		listBuckets(first, second, third);
+
+		ThawPlan plan = createPlanner(0, thawSpaceManager).plan(index, earliest,
+				latest, null, null, true);
+		assertEquals(plan.getBucketsToThaw(), asList(first, second));
+		assertEquals(plan.getExcludedBuckets(), asList(third));
+		assertEquals(plan.getEvictedBytes(), 300);
+	}
+}
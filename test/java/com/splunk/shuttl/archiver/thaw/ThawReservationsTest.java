@@ -0,0 +1,54 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class ThawReservationsTest {
+
+	private ThawReservations thawReservations;
+
+	@BeforeMethod
+	public void setUp() {
+		thawReservations = new ThawReservations();
+	}
+
+	public void tryReserve_fitsInTheAvailableBytes_reserves() {
+		assertTrue(thawReservations.tryReserve("/", 600, 1000));
+		assertEquals(thawReservations.getReservedBytes("/"), 600);
+	}
+
+	public void tryReserve_doesNotFitWithReservedBytes_reservesNothing() {
+		thawReservations.tryReserve("/", 600, 1000);
+		assertFalse(thawReservations.tryReserve("/", 600, 1000));
+		assertEquals(thawReservations.getReservedBytes("/"), 600);
+	}
+
+	public void tryReserve_otherFileSystem_doesNotShareTheReservedBytes() {
+		thawReservations.tryReserve("/", 600, 1000);
+		assertTrue(thawReservations.tryReserve("/mnt", 600, 1000));
+	}
+
+	public void release_reservedBytes_canBeReservedAgain() {
+		thawReservations.tryReserve("/", 600, 1000);
+		thawReservations.release("/", 600);
+		assertEquals(thawReservations.getReservedBytes("/"), 0);
+		assertTrue(thawReservations.tryReserve("/", 600, 1000));
+	}
+}
@@ -0,0 +1,60 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.archiver.thaw;
+
+import static org.testng.Assert.*;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = { "fast-unit" })
+public class ThawThroughputTest {
+
+	private ThawThroughput thawThroughput;
+
+	@BeforeMethod
+	public void setUp() {
+		thawThroughput = new ThawThroughput();
+	}
+
+	public void getBytesPerSecond_nothingRecorded_null() {
+		assertNull(thawThroughput.getBytesPerSecond());
+	}
+
+	public void getBytesPerSecond_oneRecord_bytesPerSecondOfTheRecord() {
+		thawThroughput.record(3000, 2000);
+		assertEquals(thawThroughput.getBytesPerSecond(), Long.valueOf(1500));
+	}
+
+	public void getBytesPerSecond_newerRecord_movesTowardsTheNewerRecord() {
+		thawThroughput.record(1000, 1000);
+		thawThroughput.record(2000, 1000);
+		long bytesPerSecond = thawThroughput.getBytesPerSecond();
+		assertTrue(bytesPerSecond > 1000 && bytesPerSecond < 2000);
+	}
+
+	public void record_noTimeOrBytes_isIgnored() {
+		thawThroughput.record(1000, 0);
+		thawThroughput.record(0, 1000);
+		assertNull(thawThroughput.getBytesPerSecond());
+	}
+
+	public void getSharedInstance_sameBackend_sameInstance() {
+		assertSame(ThawThroughput.getSharedInstance("hdfs"),
+				ThawThroughput.getSharedInstance("hdfs"));
+		assertNotSame(ThawThroughput.getSharedInstance("hdfs"),
+				ThawThroughput.getSharedInstance("s3"));
+	}
+}
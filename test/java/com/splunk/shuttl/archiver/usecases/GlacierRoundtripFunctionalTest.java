@@ -18,7 +18,6 @@ import static com.splunk.shuttl.testutil.TUtilsFile.*;
 import static java.util.Arrays.*;
 import static org.testng.Assert.*;
 
-import java.util.HashMap;
 import java.util.List;
 
 import org.testng.annotations.Parameters;
@@ -34,6 +33,7 @@ import com.splunk.shuttl.archiver.filesystem.ArchiveFileSystemFactory;
 import com.splunk.shuttl.archiver.filesystem.glacier.FakeArchiveTransferManager;
 import com.splunk.shuttl.archiver.filesystem.glacier.GlacierArchiveFileSystem;
 import com.splunk.shuttl.archiver.filesystem.glacier.GlacierArchiveFileSystemFactory;
+import com.splunk.shuttl.archiver.filesystem.glacier.GlacierArchiveIdIndex;
 import com.splunk.shuttl.archiver.filesystem.glacier.GlacierClient;
 import com.splunk.shuttl.archiver.model.IllegalIndexException;
 import com.splunk.shuttl.archiver.model.LocalBucket;
@@ -93,10 +93,13 @@ public class GlacierRoundtripFunctionalTest {
 	}
 
 	private void setup(ArchiveConfiguration config) throws IllegalIndexException {
-		GlacierClient client = new GlacierClient(new FakeArchiveTransferManager(
-				createDirectory()), "vault", new HashMap<String, String>());
 		LocalFileSystemPaths localFileSystemPaths = new LocalFileSystemPaths(
 				createDirectory());
+		GlacierClient client = new GlacierClient(new FakeArchiveTransferManager(
+				createDirectory()), "vault", new GlacierArchiveIdIndex(
+				localFileSystemPaths.getGlacierArchiveIdsDirectory("vault"),
+				GlacierArchiveIdIndex.DEFAULT_SHARDS,
+				GlacierArchiveIdIndex.DEFAULT_CACHE_SIZE));
 
 		GlacierArchiveFileSystem glacierArchive = getGlacierArchiveFileSystem(
 				client, localFileSystemPaths, config);
@@ -0,0 +1,118 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static java.util.Arrays.*;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.listers.BucketCursor;
+import com.splunk.shuttl.archiver.model.Bucket;
+import com.splunk.shuttl.archiver.model.LocalBucket;
+import com.splunk.shuttl.testutil.TUtilsBucket;
+
+@Test(groups = { "fast-unit" })
+public class RestUtilTest {
+
+	private LocalBucket first;
+	private LocalBucket second;
+
+	@BeforeMethod
+	public void setUp() {
+		first = TUtilsBucket.createBucket();
+		second = TUtilsBucket.createBucket();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		FileUtils.deleteQuietly(first.getDirectory());
+		FileUtils.deleteQuietly(second.getDirectory());
+	}
+
+	public void writeBuckets_limitReachedWithMoreBuckets_writesNextCursor()
+			throws IOException {
+		Map<String, Object> json = writeBuckets(
+				asList((Bucket) first, second).iterator(), 1);
+
+		assertEquals(((List<?>) json.get("buckets")).size(), 1);
+		assertEquals(json.get("next_cursor"), BucketCursor.after(first)
+				.toString());
+	}
+
+	public void writeBuckets_limitReachedWithNoMoreBuckets_noNextCursor()
+			throws IOException {
+		Map<String, Object> json = writeBuckets(
+				asList((Bucket) first, second).iterator(), 2);
+
+		assertEquals(((List<?>) json.get("buckets")).size(), 2);
+		assertFalse(json.containsKey("next_cursor"));
+	}
+
+	public void writeBuckets_listingFailsAfterFirstBucket_writesErrorAndCursorAfterWrittenBucket()
+			throws IOException {
+		final Iterator<Bucket> buckets = asList((Bucket) first).iterator();
+		Iterator<Bucket> failingBuckets = new Iterator<Bucket>() {
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Bucket next() {
+				if (buckets.hasNext())
+					return buckets.next();
+				throw new RuntimeException("listing failed");
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		Map<String, Object> json = writeBuckets(failingBuckets, 10);
+
+		assertEquals(((List<?>) json.get("buckets")).size(), 1);
+		assertEquals(json.get("error"), "listing failed");
+		assertEquals(json.get("next_cursor"), BucketCursor.after(first)
+				.toString());
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> writeBuckets(Iterator<Bucket> buckets,
+			Integer limit) throws IOException {
+		StringWriter writer = new StringWriter();
+		JsonGenerator json = new ObjectMapper().getJsonFactory()
+				.createJsonGenerator(writer);
+		json.writeStartObject();
+		RestUtil.writeBuckets(json, buckets, limit);
+		json.writeEndObject();
+		json.close();
+		return new ObjectMapper().readValue(writer.toString(), Map.class);
+	}
+}
@@ -0,0 +1,81 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.Response;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.server.mbeans.rest.StreamedJsonResponse.WritesJson;
+
+@Test(groups = { "fast-unit" })
+public class StreamedJsonResponseTest {
+
+	private static final WritesJson WRITES_FIELD = new WritesJson() {
+
+		@Override
+		public void writeJson(JsonGenerator json) throws IOException {
+			json.writeStartObject();
+			json.writeStringField("field", "value");
+			json.writeEndObject();
+		}
+	};
+
+	public void acceptsGzip_headers_trueWhenGzipIsAccepted() {
+		assertFalse(StreamedJsonResponse.acceptsGzip(null));
+		assertFalse(StreamedJsonResponse.acceptsGzip("deflate"));
+		assertTrue(StreamedJsonResponse.acceptsGzip("gzip"));
+		assertTrue(StreamedJsonResponse.acceptsGzip("deflate, GZIP;q=0.5"));
+		assertFalse(StreamedJsonResponse.acceptsGzip("gzip;q=0"));
+		assertFalse(StreamedJsonResponse.acceptsGzip("gzip; q=0.0"));
+	}
+
+	public void create_acceptsGzip_contentEncodingIsGzip() {
+		Response response = StreamedJsonResponse.create("gzip", WRITES_FIELD);
+		assertEquals(response.getMetadata().getFirst("Content-Encoding"), "gzip");
+	}
+
+	public void create_acceptsGzip_variesOnAcceptEncoding() {
+		Response response = StreamedJsonResponse.create("gzip", WRITES_FIELD);
+		assertEquals(response.getMetadata().getFirst("Vary"), "Accept-Encoding");
+	}
+
+	public void create_doesNotAcceptGzip_noContentEncoding() {
+		Response response = StreamedJsonResponse.create(null, WRITES_FIELD);
+		assertNull(response.getMetadata().getFirst("Content-Encoding"));
+	}
+
+	@SuppressWarnings("unchecked")
+	public void writeJson_gzipStream_gzippedJsonIsFinished() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamedJsonResponse.writeJson(new GZIPOutputStream(out), WRITES_FIELD);
+
+		Map<String, Object> json = new ObjectMapper().readValue(
+				new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())),
+				Map.class);
+		assertEquals(json.get("field"), "value");
+	}
+}
@@ -0,0 +1,76 @@
+// Copyright (C) 2011 Splunk Inc.
+//
+// Splunk Inc. licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.splunk.shuttl.server.mbeans.rest;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.Date;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.splunk.shuttl.archiver.listers.BucketCursor;
+import com.splunk.shuttl.archiver.thaw.BucketThawer;
+import com.splunk.shuttl.archiver.thaw.ThawJob;
+import com.splunk.shuttl.archiver.thaw.ThawJob.State;
+import com.splunk.shuttl.archiver.thaw.ThawPlan;
+import com.splunk.shuttl.archiver.thaw.ThawPlanner;
+
+@Test(groups = { "fast-unit" })
+public class ThawJobsEndpointTest {
+
+	private BucketThawer bucketThawer;
+	private ThawJob job;
+	private ThawPlanner thawPlanner;
+
+	@BeforeMethod
+	public void setUp() {
+		bucketThawer = mock(BucketThawer.class);
+		job = new ThawJob("id", bucketThawer);
+		thawPlanner = mock(ThawPlanner.class);
+	}
+
+	private void planAndThaw() {
+		ThawJobsEndpoint.planAndThaw(job, thawPlanner, "index", new Date(0),
+				new Date(), null, 10, false).run();
+	}
+
+	public void planAndThaw_planThrows_jobIsFailedWithTheReason() {
+		when(
+				thawPlanner.planThaw(anyString(), any(Date.class), any(Date.class),
+						any(BucketCursor.class), anyInt(), anyBoolean())).thenThrow(
+				new RuntimeException("archive listing failed"));
+
+		planAndThaw();
+
+		assertEquals(job.getState(), State.FAILED);
+		assertEquals(job.getFailureReason(),
+				"RuntimeException: archive listing failed");
+	}
+
+	public void planAndThaw_planned_thawsThePlan() {
+		when(
+				thawPlanner.planThaw(anyString(), any(Date.class), any(Date.class),
+						any(BucketCursor.class), anyInt(), anyBoolean())).thenReturn(
+				mock(ThawPlan.class));
+
+		planAndThaw();
+
+		assertEquals(job.getState(), State.DONE);
+		assertNull(job.getFailureReason());
+	}
+}
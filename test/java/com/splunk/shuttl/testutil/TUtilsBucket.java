@@ -131,6 +131,16 @@ public class TUtilsBucket {
 		return createBucketWithIndexInDirectory(index, bucketDir);
 	}
 
+	/**
+	 * @return bucket with the name, created in parent.
+	 */
+	public static LocalBucket createBucketInDirectoryWithIndexAndName(
+			File parent, String index, String bucketName) {
+		File bucketDir = createFileFormatedAsBucketInDirectoryWithName(parent,
+				bucketName);
+		return createBucketWithIndexInDirectory(index, bucketDir);
+	}
+
 	/**
 	 * @param parent
 	 *          to create the bucket in.